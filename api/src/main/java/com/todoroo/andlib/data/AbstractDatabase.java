@@ -12,6 +12,10 @@ import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
 import com.todoroo.andlib.data.Property.PropertyVisitor;
@@ -19,9 +23,16 @@ import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.service.ExceptionService;
+import com.todoroo.andlib.sql.PreparedSql;
 import com.todoroo.andlib.utility.AndroidUtilities;
 
-import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * AbstractDatabase is a database abstraction which wraps a SQLite database.
@@ -34,6 +45,10 @@ import java.util.ArrayList;
  * <p>
  * Direct querying is not recommended for type safety reasons. Instead, use one
  * of the service classes to issue the request and return a {@link TodorooCursor}.
+ * <p>
+ * Reads take no Java lock. Writes wait their turn on a single fair write lock.
+ * On devices that support it, the database uses write-ahead logging, so reads
+ * can continue while a write or transaction is in progress.
  *
  * @author Tim Su <tim@todoroo.com>
  *
@@ -80,7 +95,14 @@ abstract public class AbstractDatabase {
      * Internal pointer to open database. Hides the fact that there is a
      * database and a wrapper by making a single monolithic interface
      */
-    protected SQLiteDatabase database = null;
+    protected volatile SQLiteDatabase database = null;
+
+    /**
+     * Number of compiled statements SQLite keeps per connection. DAO queries
+     * use bind arguments, so a small number of statement shapes covers most
+     * of our traffic. 100 is the maximum Android allows
+     */
+    protected static final int SQL_CACHE_SIZE = 100;
 
     // --- listeners
 
@@ -89,20 +111,346 @@ abstract public class AbstractDatabase {
      */
     public interface DatabaseUpdateListener {
         /**
-         * Called when an INSERT, UPDATE, or DELETE occurs
+         * Called after INSERT, UPDATE, or DELETE statements, once for each
+         * burst of writes. Runs on the database's notification thread,
+         * unless the listener was added with
+         * {@link AbstractDatabase#addMainThreadListener(DatabaseUpdateListener)}
+         *
+         * @param changes tables and rows written since the last call
          */
-        public void onDatabaseUpdated();
+        public void onDatabaseUpdated(ChangeSet changes);
     }
 
-    private final ArrayList<DatabaseUpdateListener> listeners = new ArrayList<DatabaseUpdateListener>();
+    /** default for {@link #setNotificationDelay(long)} */
+    public static final long DEFAULT_NOTIFICATION_DELAY = 500L;
+
+    /** longest time {@link #holdNotifications()} can hold back changes */
+    private static final long MAX_HOLD = TimeUnit.MINUTES.toMillis(5);
+
+    private final CopyOnWriteArrayList<DatabaseUpdateListener> listeners =
+        new CopyOnWriteArrayList<DatabaseUpdateListener>();
+
+    /** listeners that {@link #holdNotifications()} holds back */
+    private final CopyOnWriteArrayList<DatabaseUpdateListener> deferrableListeners =
+        new CopyOnWriteArrayList<DatabaseUpdateListener>();
+
+    private volatile long notificationDelay = DEFAULT_NOTIFICATION_DELAY;
+
+    /** Guards the pending changes and hold state */
+    private final Object changeLock = new Object();
+
+    /** Changes written since listeners were last notified */
+    private ChangeSet pendingChanges = new ChangeSet();
+
+    /** Changes deferrable listeners have not been notified of because of a hold */
+    private ChangeSet heldChanges = new ChangeSet();
+
+    private boolean notificationScheduled = false;
+    private int holdCount = 0;
+
+    private Handler notificationHandler;
+
+    private final Runnable notifyListeners = new Runnable() {
+        @Override
+        public void run() {
+            ChangeSet changes;
+            ChangeSet deferred = null;
+            synchronized(changeLock) {
+                notificationScheduled = false;
+                changes = pendingChanges;
+                pendingChanges = new ChangeSet();
+                heldChanges.addAll(changes);
+                if(holdCount == 0) {
+                    deferred = heldChanges;
+                    heldChanges = new ChangeSet();
+                }
+            }
+            if(!changes.isEmpty()) {
+                for(DatabaseUpdateListener listener : listeners) {
+                    listener.onDatabaseUpdated(changes);
+                }
+            }
+            if(deferred != null && !deferred.isEmpty()) {
+                for(DatabaseUpdateListener listener : deferrableListeners) {
+                    listener.onDatabaseUpdated(deferred);
+                }
+            }
+        }
+    };
+
+    /** ends a hold that was not released in time */
+    private final Runnable holdLapsed = new Runnable() {
+        @Override
+        public void run() {
+            synchronized(changeLock) {
+                holdCount = 0;
+            }
+            publishChanges(new ChangeSet());
+        }
+    };
 
     public void addListener(DatabaseUpdateListener listener) {
         listeners.add(listener);
     }
 
-    protected void onDatabaseUpdated() {
-        for(DatabaseUpdateListener listener : listeners) {
-            listener.onDatabaseUpdated();
+    /**
+     * Add a listener that is called on the main thread, such as one that
+     * updates views
+     */
+    public void addMainThreadListener(DatabaseUpdateListener listener) {
+        listeners.add(new MainThreadListener(listener));
+    }
+
+    public void removeListener(DatabaseUpdateListener listener) {
+        for(DatabaseUpdateListener added : listeners) {
+            if(added == listener || (added instanceof MainThreadListener &&
+                    ((MainThreadListener) added).listener == listener)) {
+                listeners.remove(added);
+            }
+        }
+    }
+
+    /**
+     * Passes notifications on to a listener on the main thread
+     */
+    private static final class MainThreadListener implements DatabaseUpdateListener {
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+        private final DatabaseUpdateListener listener;
+
+        MainThreadListener(DatabaseUpdateListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onDatabaseUpdated(final ChangeSet changes) {
+            if(Looper.myLooper() == Looper.getMainLooper()) {
+                listener.onDatabaseUpdated(changes);
+                return;
+            }
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onDatabaseUpdated(changes);
+                }
+            });
+        }
+    }
+
+    /**
+     * Add a listener that is not notified while notifications are held with
+     * {@link #holdNotifications()}, such as one that refreshes widgets
+     */
+    public void addDeferrableListener(DatabaseUpdateListener listener) {
+        deferrableListeners.add(listener);
+    }
+
+    /**
+     * Set how long listeners are notified after a write. Writes within this
+     * window are combined into a single notification. With a delay of zero,
+     * listeners are called on the writing thread after every write
+     */
+    public void setNotificationDelay(long millis) {
+        notificationDelay = millis;
+    }
+
+    /**
+     * Hold back change notifications to deferrable listeners, for example
+     * while syncing. Their changes are collected and delivered together once
+     * every hold is released, or after five minutes at most. Other listeners
+     * are notified as usual
+     */
+    public void holdNotifications() {
+        synchronized(changeLock) {
+            if(holdCount++ == 0) {
+                Handler handler = getNotificationHandler();
+                handler.removeCallbacks(holdLapsed);
+                handler.postDelayed(holdLapsed, MAX_HOLD);
+            }
+        }
+    }
+
+    /**
+     * Release a hold taken with {@link #holdNotifications()}
+     */
+    public void releaseNotifications() {
+        synchronized(changeLock) {
+            if(holdCount == 0) {
+                return;
+            }
+            if(--holdCount == 0) {
+                getNotificationHandler().removeCallbacks(holdLapsed);
+            }
+        }
+        publishChanges(new ChangeSet());
+    }
+
+    /**
+     * Add the given changes to the pending ones and make sure listeners will
+     * be notified of them
+     */
+    private void publishChanges(ChangeSet changes) {
+        long delay = notificationDelay;
+        synchronized(changeLock) {
+            pendingChanges.addAll(changes);
+            boolean heldDue = holdCount == 0 && !heldChanges.isEmpty();
+            if(notificationScheduled || (pendingChanges.isEmpty() && !heldDue)) {
+                return;
+            }
+            if(delay > 0) {
+                notificationScheduled = true;
+                getNotificationHandler().postDelayed(notifyListeners, delay);
+                return;
+            }
+        }
+        notifyListeners.run();
+    }
+
+    private synchronized Handler getNotificationHandler() {
+        if(notificationHandler == null) {
+            HandlerThread thread = new HandlerThread(getName() + "-changes", //$NON-NLS-1$
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            notificationHandler = new Handler(thread.getLooper());
+        }
+        return notificationHandler;
+    }
+
+    /**
+     * Record a write. Inside a transaction the change is published when
+     * the outermost transaction ends. Called with the write lock held
+     *
+     * @param id row written, or {@link ChangeSet#ALL_ROWS}
+     * @param columns columns set by an update, or null if any may have changed
+     */
+    private void databaseUpdated(String table, long id, Set<String> columns) {
+        if(transactionDepth > 0) {
+            transactionChanges.add(table, id, columns);
+        } else {
+            ChangeSet changes = new ChangeSet();
+            changes.add(table, id, columns);
+            publishChanges(changes);
+        }
+    }
+
+    // --- write lock
+
+    /**
+     * Write lock. Writers are queued and served in the order they arrive.
+     * Readers never take it
+     */
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong contendedWrites = new AtomicLong();
+    private final AtomicLong writeWaitNanos = new AtomicLong();
+    private final AtomicLong maxWriteWaitNanos = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong readsDuringWrite = new AtomicLong();
+
+    private void lockForWriting() {
+        boolean contended = writeLock.isLocked() && !writeLock.isHeldByCurrentThread();
+        long start = contended ? System.nanoTime() : 0;
+        writeLock.lock();
+        writes.incrementAndGet();
+        if(contended) {
+            long waited = System.nanoTime() - start;
+            contendedWrites.incrementAndGet();
+            writeWaitNanos.addAndGet(waited);
+            long max;
+            do {
+                max = maxWriteWaitNanos.get();
+            } while(waited > max && !maxWriteWaitNanos.compareAndSet(max, waited));
+        }
+    }
+
+    private void unlockForWriting() {
+        writeLock.unlock();
+    }
+
+    /**
+     * Lock contention statistics, for diagnosing stalls
+     */
+    public static final class LockStatistics {
+        /** number of writes and transactions */
+        public final long writes;
+        /** number of writes that had to wait for another writer */
+        public final long contendedWrites;
+        /** total time writers spent waiting, in milliseconds */
+        public final long totalWriteWaitMillis;
+        /** longest time a writer spent waiting, in milliseconds */
+        public final long maxWriteWaitMillis;
+        /** number of queries */
+        public final long reads;
+        /** number of queries issued while a write was in progress */
+        public final long readsDuringWrite;
+
+        LockStatistics(long writes, long contendedWrites, long totalWriteWaitNanos,
+                long maxWriteWaitNanos, long reads, long readsDuringWrite) {
+            this.writes = writes;
+            this.contendedWrites = contendedWrites;
+            this.totalWriteWaitMillis = TimeUnit.NANOSECONDS.toMillis(totalWriteWaitNanos);
+            this.maxWriteWaitMillis = TimeUnit.NANOSECONDS.toMillis(maxWriteWaitNanos);
+            this.reads = reads;
+            this.readsDuringWrite = readsDuringWrite;
+        }
+
+        @Override
+        public String toString() {
+            return "writes: " + writes + " (" + contendedWrites + " contended, " + //$NON-NLS-1$ //$NON-NLS-2$
+                    totalWriteWaitMillis + "ms waiting, max " + maxWriteWaitMillis + "ms), " + //$NON-NLS-1$ //$NON-NLS-2$
+                    "reads: " + reads + " (" + readsDuringWrite + " during writes)"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+    }
+
+    /**
+     * @return lock contention statistics since the database was created
+     */
+    public LockStatistics getLockStatistics() {
+        return new LockStatistics(writes.get(), contendedWrites.get(), writeWaitNanos.get(),
+                maxWriteWaitNanos.get(), reads.get(), readsDuringWrite.get());
+    }
+
+    // --- transactions
+
+    /** Nesting level of {@link #runInTransaction(Runnable)} calls */
+    private int transactionDepth = 0;
+
+    /** Writes made during the current transaction */
+    private ChangeSet transactionChanges = new ChangeSet();
+
+    /**
+     * Run the given operation in a single transaction. All writes are
+     * committed together, and listeners are notified once when the outermost
+     * transaction ends instead of once per write. If the operation throws,
+     * the transaction is rolled back and the exception is rethrown.
+     * <p>
+     * Other writers wait while the operation runs, so keep network and other
+     * slow work outside of it. With write-ahead logging, readers don't wait.
+     */
+    public void runInTransaction(Runnable operation) {
+        lockForWriting();
+        try {
+            SQLiteDatabase db = getDatabase();
+            transactionDepth++;
+            if(AndroidUtilities.getSdkVersion() >= 11) {
+                db.beginTransactionNonExclusive();
+            } else {
+                db.beginTransaction();
+            }
+            try {
+                operation.run();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                transactionDepth--;
+                if(transactionDepth == 0 && !transactionChanges.isEmpty()) {
+                    ChangeSet changes = transactionChanges;
+                    transactionChanges = new ChangeSet();
+                    publishChanges(changes);
+                }
+            }
+        } finally {
+            unlockForWriting();
         }
     }
 
@@ -150,6 +498,7 @@ abstract public class AbstractDatabase {
 
         try {
             database = helper.getWritableDatabase();
+            onDatabaseOpened();
         } catch (NullPointerException e) {
             // don't know why this happens
             throw new IllegalStateException(e);
@@ -177,36 +526,69 @@ abstract public class AbstractDatabase {
             return;
         }
         database = helper.getReadableDatabase();
+        onDatabaseOpened();
+    }
+
+    /**
+     * Configure a newly opened database connection. Write-ahead logging lets
+     * queries run while another thread is writing
+     */
+    private void onDatabaseOpened() {
+        if(AndroidUtilities.getSdkVersion() >= 11) {
+            database.setMaxSqlCacheSize(SQL_CACHE_SIZE);
+            if(!database.isReadOnly() && !database.enableWriteAheadLogging()) {
+                Log.w("database-" + getName(), "Could not enable write-ahead logging"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
     }
 
     /**
      * Close the database if it has been opened previously
      */
-    public synchronized final void close() {
-        if(database != null) {
-            database.close();
+    public final void close() {
+        // writers take the write lock before this object's monitor, so do the same
+        lockForWriting();
+        try {
+            synchronized(this) {
+                if(database != null) {
+                    database.close();
+                }
+                database = null;
+            }
+        } finally {
+            unlockForWriting();
         }
-        database = null;
     }
 
     /**
      * Clear all data in database. Warning: this does what it says. Any open
      * database resources will be abruptly closed.
      */
-    public synchronized final void clear() {
-        close();
-        ContextManager.getContext().deleteDatabase(getName());
+    public final void clear() {
+        lockForWriting();
+        try {
+            close();
+            ContextManager.getContext().deleteDatabase(getName());
+        } finally {
+            unlockForWriting();
+        }
     }
 
     /**
      * @return sql database. opens database if not yet open
      */
-    public synchronized final SQLiteDatabase getDatabase() {
-        if(database == null) {
-            AndroidUtilities.sleepDeep(300L);
-            openForWriting();
+    public final SQLiteDatabase getDatabase() {
+        SQLiteDatabase db = database;
+        if(db != null) {
+            return db;
+        }
+        synchronized(this) {
+            if(database == null) {
+                AndroidUtilities.sleepDeep(300L);
+                openForWriting();
+            }
+            return database;
         }
-        return database;
     }
 
     /**
@@ -222,43 +604,101 @@ abstract public class AbstractDatabase {
     /*
      * @see android.database.sqlite.SQLiteDatabase#rawQuery(String  sql, String[] selectionArgs)
      */
-    public synchronized Cursor rawQuery(String sql, String[] selectionArgs) {
+    public Cursor rawQuery(String sql, String[] selectionArgs) {
+        reads.incrementAndGet();
+        if(writeLock.isLocked()) {
+            readsDuringWrite.incrementAndGet();
+        }
         return getDatabase().rawQuery(sql, selectionArgs);
     }
 
+    /**
+     * Run a query built with placeholders. Queries with the same shape share
+     * a compiled statement
+     */
+    public Cursor rawQuery(PreparedSql sql) {
+        return rawQuery(sql.sql, sql.args);
+    }
+
     /*
      * @see android.database.sqlite.SQLiteDatabase#insert(String  table, String  nullColumnHack, ContentValues  values)
      */
-    public synchronized long insert(String table, String nullColumnHack, ContentValues values) {
-        long result;
+    public long insert(String table, String nullColumnHack, ContentValues values) {
+        lockForWriting();
         try {
-            result = getDatabase().insertOrThrow(table, nullColumnHack, values);
-        } catch (SQLiteConstraintException e) { // Throw these exceptions
-            throw e;
-        } catch (Exception e) { // Suppress others
-            Log.e("SQLiteDatabase", "Error inserting " + values, e);
-            result = -1;
+            long result;
+            try {
+                result = getDatabase().insertOrThrow(table, nullColumnHack, values);
+            } catch (SQLiteConstraintException e) { // Throw these exceptions
+                throw e;
+            } catch (Exception e) { // Suppress others
+                Log.e("SQLiteDatabase", "Error inserting " + values, e);
+                result = -1;
+            }
+            if(result != -1) {
+                databaseUpdated(table, result, null);
+            }
+            return result;
+        } finally {
+            unlockForWriting();
         }
-        onDatabaseUpdated();
-        return result;
     }
 
     /*
      * @see android.database.sqlite.SQLiteDatabase#delete(String  table, String  whereClause, String[] whereArgs)
      */
-    public synchronized int delete(String table, String whereClause, String[] whereArgs) {
-        int result = getDatabase().delete(table, whereClause, whereArgs);
-        onDatabaseUpdated();
-        return result;
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        return delete(table, whereClause, whereArgs, ChangeSet.ALL_ROWS);
+    }
+
+    /**
+     * Delete, recording the given row as the one changed
+     */
+    int delete(String table, String whereClause, String[] whereArgs, long id) {
+        lockForWriting();
+        try {
+            int result = getDatabase().delete(table, whereClause, whereArgs);
+            if(result > 0) {
+                databaseUpdated(table, id, null);
+            }
+            return result;
+        } finally {
+            unlockForWriting();
+        }
     }
 
     /*
      * @see android.database.sqlite.SQLiteDatabase#update(String  table, ContentValues  values, String  whereClause, String[] whereArgs)
      */
-    public synchronized int update(String  table, ContentValues  values, String  whereClause, String[] whereArgs) {
-        int result = getDatabase().update(table, values, whereClause, whereArgs);
-        onDatabaseUpdated();
-        return result;
+    public int update(String  table, ContentValues  values, String  whereClause, String[] whereArgs) {
+        return update(table, values, whereClause, whereArgs, ChangeSet.ALL_ROWS);
+    }
+
+    /**
+     * Update, recording the given row as the one changed
+     */
+    int update(String table, ContentValues values, String whereClause, String[] whereArgs, long id) {
+        lockForWriting();
+        try {
+            int result = getDatabase().update(table, values, whereClause, whereArgs);
+            if(result > 0) {
+                databaseUpdated(table, id, columnsOf(values));
+            }
+            return result;
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+    /**
+     * @return names of the columns in the given values
+     */
+    private static Set<String> columnsOf(ContentValues values) {
+        HashSet<String> columns = new HashSet<String>();
+        for(Entry<String, Object> entry : values.valueSet()) {
+            columns.add(entry.getKey());
+        }
+        return columns;
     }
 
     // --- helper classes
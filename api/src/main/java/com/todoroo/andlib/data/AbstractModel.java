@@ -11,7 +11,6 @@ import android.os.Parcelable;
 
 import com.todoroo.andlib.data.Property.IntegerProperty;
 import com.todoroo.andlib.data.Property.LongProperty;
-import com.todoroo.andlib.data.Property.PropertyVisitor;
 import com.todoroo.andlib.utility.AndroidUtilities;
 
 import java.lang.reflect.Array;
@@ -21,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <code>AbstractModel</code> represents a row in a database.
@@ -28,16 +28,16 @@ import java.util.Map.Entry;
  * A single database can be represented by multiple <code>AbstractModel</code>s
  * corresponding to different queries that return a different set of columns.
  * Each model exposes a set of properties that it contains.
+ * <p>
+ * Values are kept in typed slots laid out per model class (see
+ * {@link ModelLayout}) and only converted to {@link ContentValues} when
+ * handed to the database. Models are not thread-safe.
  *
  * @author Tim Su <tim@todoroo.com>
  *
  */
 public abstract class AbstractModel implements Parcelable, Cloneable {
 
-    // --- static variables
-
-    private static final ContentValuesSavingVisitor saver = new ContentValuesSavingVisitor();
-
     // --- constants
 
     /** id property common to all models */
@@ -62,27 +62,72 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
     /* Data Source Ordering:
      *
      * In order to return the best data, we want to check first what the user
-     * has explicitly set (setValues), then the values we have read out of
-     * the database (values), then defaults (getDefaultValues)
+     * has explicitly set or what we have read out of the database (slots),
+     * then defaults (getDefaultValues). A slot that the user has set is
+     * marked dirty until the model is saved.
+     */
+
+    /** Slot layout for this model class */
+    private final ModelLayout layout = ModelLayout.forClass(getClass());
+
+    private long[] longValues = new long[layout.longCount];
+    private int[] intValues = new int[layout.intCount];
+    private String[] stringValues = new String[layout.stringCount];
+
+    /** Slots that hold a value */
+    private long[] present = new long[layout.bitWords];
+
+    /** Slots whose value is null */
+    private long[] nulls = new long[layout.bitWords];
+
+    /** Slots set by the user and not yet saved */
+    private long[] dirty = new long[layout.bitWords];
+
+    /**
+     * Dirty slots that replaced a value read from the database. That value
+     * is kept in the shadow arrays, which are only allocated once needed
      */
+    private long[] shadowed = new long[layout.bitWords];
+    private long[] shadowNulls = new long[layout.bitWords];
+    private long[] shadowLongValues = null;
+    private int[] shadowIntValues = null;
+    private String[] shadowStringValues = null;
 
-    /** User set values */
-    protected ContentValues setValues = null;
+    /** Values from database for columns outside the layout (aliases, joins) */
+    private ContentValues extraValues = null;
 
-    /** Values from database */
-    protected ContentValues values = null;
+    /** User set values for columns outside the layout */
+    private ContentValues extraSetValues = null;
 
     /** Transitory Metadata (not saved in database) */
     protected HashMap<String, Object> transitoryData = null;
 
-    /** Get database-read values for this object */
+    /**
+     * Get the values as last read or saved, including the stored value of
+     * columns the user has since changed. Returns a copy; writing to it
+     * does not change the model
+     */
     public ContentValues getDatabaseValues() {
-        return values;
+        ContentValues result = new ContentValues();
+        exportSlots(result, false);
+        exportShadows(result);
+        if(extraValues != null) {
+            result.putAll(extraValues);
+        }
+        return result;
     }
 
-    /** Get the user-set values for this object */
+    /**
+     * Get the user-set values for this object. Returns a copy; writing to
+     * it does not change the model
+     */
     public ContentValues getSetValues() {
-        return setValues;
+        ContentValues result = new ContentValues();
+        exportSlots(result, true);
+        if(extraSetValues != null) {
+            result.putAll(extraSetValues);
+        }
+        return result;
     }
 
     /** Get a list of all field/value pairs merged across data sources */
@@ -93,12 +138,15 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
         if(defaultValues != null) {
             mergedValues.putAll(defaultValues);
         }
-        if(values != null) {
-            mergedValues.putAll(values);
+        if(extraValues != null) {
+            mergedValues.putAll(extraValues);
         }
-        if(setValues != null) {
-            mergedValues.putAll(setValues);
+        if(extraSetValues != null) {
+            mergedValues.putAll(extraSetValues);
         }
+        exportSlots(mergedValues, false);
+        exportShadows(mergedValues);
+        exportSlots(mergedValues, true);
 
         return mergedValues;
     }
@@ -107,21 +155,30 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * Clear all data on this model
      */
     public void clear() {
-        values = null;
-        setValues = null;
+        Arrays.fill(present, 0);
+        Arrays.fill(nulls, 0);
+        Arrays.fill(dirty, 0);
+        Arrays.fill(stringValues, null);
+        clearShadows();
+        extraValues = null;
+        extraSetValues = null;
     }
 
     /**
-     * Transfers all set values into values. This occurs when a task is
+     * Marks all set values as saved. This occurs when a task is
      * saved - future saves will not need to write all the data as before.
      */
     public void markSaved() {
-        if(values == null) {
-            values = setValues;
-        } else if(setValues != null) {
-            values.putAll(setValues);
+        Arrays.fill(dirty, 0);
+        clearShadows();
+        if(extraSetValues != null) {
+            if(extraValues == null) {
+                extraValues = extraSetValues;
+            } else {
+                extraValues.putAll(extraSetValues);
+            }
+            extraSetValues = null;
         }
-        setValues = null;
     }
 
     /**
@@ -147,9 +204,9 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
         StringBuilder builder = new StringBuilder();
         builder.append(getClass().getSimpleName()).append("\n")
         .append("set values:\n")
-        .append(setValues).append("\n")
+        .append(getSetValues()).append("\n")
         .append("values:\n")
-        .append(values).append("\n");
+        .append(getDatabaseValues()).append("\n");
         return builder.toString();
     }
 
@@ -161,56 +218,347 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
         }
-        if(setValues != null) {
-            clone.setValues = new ContentValues(setValues);
-        }
-        if(values != null) {
-            clone.values = new ContentValues(values);
+        clone.longValues = longValues.clone();
+        clone.intValues = intValues.clone();
+        clone.stringValues = stringValues.clone();
+        clone.present = present.clone();
+        clone.nulls = nulls.clone();
+        clone.dirty = dirty.clone();
+        clone.shadowed = shadowed.clone();
+        clone.shadowNulls = shadowNulls.clone();
+        if(shadowLongValues != null) {
+            clone.shadowLongValues = shadowLongValues.clone();
+            clone.shadowIntValues = shadowIntValues.clone();
+            clone.shadowStringValues = shadowStringValues.clone();
+        }
+        if(extraSetValues != null) {
+            clone.extraSetValues = new ContentValues(extraSetValues);
+        }
+        if(extraValues != null) {
+            clone.extraValues = new ContentValues(extraValues);
         }
         return clone;
     }
 
-    // --- data retrieval
+    // --- slot storage
+
+    private static boolean isSet(long[] bits, int slot) {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private static void setBit(long[] bits, int slot, boolean value) {
+        if(value) {
+            bits[slot >>> 6] |= 1L << slot;
+        } else {
+            bits[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+
+    /**
+     * Store a value in a slot, converting it to the slot's type. Values that
+     * can't be converted leave the slot empty
+     */
+    private void putSlot(int slot, Object value, boolean userSet) {
+        int kind = layout.kinds[slot];
+        long number = 0;
+        if(value != null && kind != ModelLayout.KIND_STRING) {
+            try {
+                number = toLong(value);
+            } catch (NumberFormatException e) {
+                clearSlot(slot);
+                return;
+            }
+        }
+
+        if(!userSet) {
+            setBit(shadowed, slot, false);
+        } else if(isSet(present, slot) && !isSet(dirty, slot)) {
+            shadowSlot(slot);
+        }
+        int index = layout.indices[slot];
+        if(value == null) {
+            if(kind == ModelLayout.KIND_STRING) {
+                stringValues[index] = null;
+            }
+        } else {
+            switch(kind) {
+            case ModelLayout.KIND_LONG:
+                longValues[index] = number;
+                break;
+            case ModelLayout.KIND_INTEGER:
+                intValues[index] = (int) number;
+                break;
+            default:
+                stringValues[index] = value.toString();
+            }
+        }
+        setBit(present, slot, true);
+        setBit(nulls, slot, value == null);
+        setBit(dirty, slot, userSet);
+    }
+
+    private static long toLong(Object value) {
+        if(value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if(value instanceof Boolean) {
+            return ((Boolean) value) ? 1 : 0;
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    private void clearSlot(int slot) {
+        setBit(present, slot, false);
+        setBit(nulls, slot, false);
+        setBit(dirty, slot, false);
+        setBit(shadowed, slot, false);
+        if(layout.kinds[slot] == ModelLayout.KIND_STRING) {
+            stringValues[layout.indices[slot]] = null;
+        }
+    }
+
+    /**
+     * Read a slot as the given kind of value
+     */
+    private Object readSlot(int slot, int kind) {
+        if(isSet(nulls, slot)) {
+            return null;
+        }
+        int index = layout.indices[slot];
+        switch(layout.kinds[slot]) {
+        case ModelLayout.KIND_LONG: {
+            long value = longValues[index];
+            if(kind == ModelLayout.KIND_INTEGER) {
+                return (int) value;
+            } else if(kind == ModelLayout.KIND_STRING) {
+                return String.valueOf(value);
+            }
+            return value;
+        }
+        case ModelLayout.KIND_INTEGER: {
+            int value = intValues[index];
+            if(kind == ModelLayout.KIND_LONG) {
+                return (long) value;
+            } else if(kind == ModelLayout.KIND_STRING) {
+                return String.valueOf(value);
+            }
+            return value;
+        }
+        default: {
+            String value = stringValues[index];
+            if(kind == ModelLayout.KIND_LONG) {
+                return Long.valueOf(value);
+            } else if(kind == ModelLayout.KIND_INTEGER) {
+                return Integer.valueOf(value);
+            }
+            return value;
+        }
+        }
+    }
+
+    /**
+     * Write present slots into the given content values
+     * @param userSet whether to write the dirty slots or the clean ones
+     */
+    private void exportSlots(ContentValues target, boolean userSet) {
+        for(int slot = 0; slot < layout.slotCount; slot++) {
+            if(!isSet(present, slot) || isSet(dirty, slot) != userSet) {
+                continue;
+            }
+            String column = layout.columns[slot];
+            if(isSet(nulls, slot)) {
+                target.putNull(column);
+                continue;
+            }
+            int index = layout.indices[slot];
+            switch(layout.kinds[slot]) {
+            case ModelLayout.KIND_LONG:
+                target.put(column, longValues[index]);
+                break;
+            case ModelLayout.KIND_INTEGER:
+                target.put(column, intValues[index]);
+                break;
+            default:
+                target.put(column, stringValues[index]);
+            }
+        }
+    }
+
+    /**
+     * Keep the database value of a slot that the user is about to change
+     */
+    private void shadowSlot(int slot) {
+        if(shadowLongValues == null) {
+            shadowLongValues = new long[layout.longCount];
+            shadowIntValues = new int[layout.intCount];
+            shadowStringValues = new String[layout.stringCount];
+        }
+        int index = layout.indices[slot];
+        switch(layout.kinds[slot]) {
+        case ModelLayout.KIND_LONG:
+            shadowLongValues[index] = longValues[index];
+            break;
+        case ModelLayout.KIND_INTEGER:
+            shadowIntValues[index] = intValues[index];
+            break;
+        default:
+            shadowStringValues[index] = stringValues[index];
+        }
+        setBit(shadowed, slot, true);
+        setBit(shadowNulls, slot, isSet(nulls, slot));
+    }
+
+    private void clearShadows() {
+        Arrays.fill(shadowed, 0);
+        if(shadowStringValues != null) {
+            Arrays.fill(shadowStringValues, null);
+        }
+    }
+
+    /**
+     * Write the database values of changed slots into the given content values
+     */
+    private void exportShadows(ContentValues target) {
+        for(int slot = 0; slot < layout.slotCount; slot++) {
+            if(!isSet(shadowed, slot)) {
+                continue;
+            }
+            String column = layout.columns[slot];
+            if(isSet(shadowNulls, slot)) {
+                target.putNull(column);
+                continue;
+            }
+            int index = layout.indices[slot];
+            switch(layout.kinds[slot]) {
+            case ModelLayout.KIND_LONG:
+                target.put(column, shadowLongValues[index]);
+                break;
+            case ModelLayout.KIND_INTEGER:
+                target.put(column, shadowIntValues[index]);
+                break;
+            default:
+                target.put(column, shadowStringValues[index]);
+            }
+        }
+    }
 
     /**
-     * Reads all properties from the supplied cursor and store
+     * Store a value for the given column
+     * @param userSet true if this is a user-set value, false if it was read
+     *        from the database
      */
-    public synchronized void readPropertiesFromCursor(TodorooCursor<? extends AbstractModel> cursor) {
-        if (values == null) {
-            values = new ContentValues();
+    private void putColumn(String column, Object value, boolean userSet) {
+        int slot = layout.slotOf(column);
+        if(slot >= 0) {
+            putSlot(slot, value, userSet);
+            return;
         }
+        if(userSet) {
+            if(extraSetValues == null) {
+                extraSetValues = new ContentValues();
+            }
+            putExtra(extraSetValues, column, value);
+        } else {
+            if(extraValues == null) {
+                extraValues = new ContentValues();
+            }
+            putExtra(extraValues, column, value);
+        }
+    }
+
+    private static void putExtra(ContentValues target, String column, Object value) {
+        if(value == null) {
+            target.putNull(column);
+        } else {
+            AndroidUtilities.putInto(target, column, value, false);
+        }
+    }
 
+    // --- data retrieval
+
+    /**
+     * Reads all properties from the supplied cursor and store. Columns that
+     * match a slot of this model are read straight into it
+     */
+    public void readPropertiesFromCursor(TodorooCursor<? extends AbstractModel> cursor) {
         // clears user-set values
-        setValues = null;
+        for(int slot = 0; slot < layout.slotCount; slot++) {
+            if(isSet(dirty, slot)) {
+                clearSlot(slot);
+            }
+        }
+        extraSetValues = null;
         transitoryData = null;
 
-        for (Property<?> property : cursor.getProperties()) {
-            try {
-                saver.save(property, values, cursor.get(property));
-            } catch (IllegalArgumentException e) {
-                // underlying cursor may have changed, suppress
+        Property<?>[] properties = cursor.getProperties();
+        int[] columns = cursor.getColumnPlan();
+        int[] kinds = cursor.getKindPlan();
+        boolean[] nullable = cursor.getNullablePlan();
+        int[] slots = cursor.getSlotPlan(layout);
+        for (int i = 0; i < properties.length; i++) {
+            int column = columns[i];
+            if(column < 0) {
+                continue;
+            }
+
+            // we don't allow null values, as they indicate unset properties
+            // when the database was written
+            if(nullable[i] && cursor.isNull(column)) {
+                continue;
+            }
+
+            int slot = slots[i];
+            if(slot < 0 || layout.kinds[slot] != kinds[i]) {
+                Object value = cursor.get(properties[i]);
+                if(value != null) {
+                    putColumn(properties[i].getColumnName(), value, false);
+                }
+                continue;
+            }
+
+            int index = layout.indices[slot];
+            switch(kinds[i]) {
+            case ModelLayout.KIND_LONG:
+                longValues[index] = cursor.getLong(column);
+                break;
+            case ModelLayout.KIND_INTEGER:
+                intValues[index] = cursor.getInt(column);
+                break;
+            default:
+                String value = cursor.getString(column);
+                if(value == null) {
+                    continue;
+                }
+                stringValues[index] = value;
             }
+            setBit(present, slot, true);
+            setBit(nulls, slot, false);
         }
     }
 
     /**
      * Reads the given property. Make sure this model has this property!
      */
-    public synchronized <TYPE> TYPE getValue(Property<TYPE> property) {
+    public <TYPE> TYPE getValue(Property<TYPE> property) {
+        String column = property.getColumnName();
+        int slot = layout.slotOf(column);
         Object value;
-        if(setValues != null && setValues.containsKey(property.getColumnName())) {
-            value = setValues.get(property.getColumnName());
-        } else if(values != null && values.containsKey(property.getColumnName())) {
-            value = values.get(property.getColumnName());
-        } else if(getDefaultValues().containsKey(property.getColumnName())) {
-            value = getDefaultValues().get(property.getColumnName());
-        } else {
-            throw new UnsupportedOperationException(
-                    "Model Error: Did not read property " + property.name); //$NON-NLS-1$
-        }
-
-        // resolve properties that were retrieved with a different type than accessed
         try {
+            if(slot >= 0 && isSet(present, slot)) {
+                return (TYPE) readSlot(slot, ModelLayout.kindOf(property));
+            } else if(extraSetValues != null && extraSetValues.containsKey(column)) {
+                value = extraSetValues.get(column);
+            } else if(extraValues != null && extraValues.containsKey(column)) {
+                value = extraValues.get(column);
+            } else {
+                ContentValues defaultValues = getDefaultValues();
+                if(!defaultValues.containsKey(column)) {
+                    throw new UnsupportedOperationException(
+                            "Model Error: Did not read property " + property.name); //$NON-NLS-1$
+                }
+                value = defaultValues.get(column);
+            }
+
+            // resolve properties that were retrieved with a different type than accessed
             if(value instanceof String && property instanceof LongProperty) {
                 return (TYPE) Long.valueOf((String) value);
             } else if(value instanceof String && property instanceof IntegerProperty) {
@@ -232,24 +580,24 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
     abstract public long getId();
 
     protected long getIdHelper(LongProperty id) {
-        if(setValues != null && setValues.containsKey(id.name)) {
-            return setValues.getAsLong(id.name);
-        } else if(values != null && values.containsKey(id.name)) {
-            return values.getAsLong(id.name);
+        int slot = layout.slotOf(id.name);
+        if(slot >= 0 && layout.kinds[slot] == ModelLayout.KIND_LONG) {
+            if(!isSet(present, slot) || isSet(nulls, slot)) {
+                return NO_ID;
+            }
+            return longValues[layout.indices[slot]];
+        } else if(containsNonNullValue(id)) {
+            return getValue(id);
         } else {
             return NO_ID;
         }
     }
 
     public void setId(long id) {
-        if (setValues == null) {
-            setValues = new ContentValues();
-        }
-
         if(id == NO_ID) {
             clearValue(ID_PROPERTY);
         } else {
-            setValues.put(ID_PROPERTY_NAME, id);
+            putValue(ID_PROPERTY_NAME, id);
         }
     }
 
@@ -261,28 +609,38 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
     }
 
     /**
-     * @return true if setValues or values contains this property
+     * @return true if the user or the database has set this property
      */
     public boolean containsValue(Property<?> property) {
-        if(setValues != null && setValues.containsKey(property.getColumnName())) {
+        String column = property.getColumnName();
+        int slot = layout.slotOf(column);
+        if(slot >= 0) {
+            return isSet(present, slot);
+        }
+        if(extraSetValues != null && extraSetValues.containsKey(column)) {
             return true;
         }
-        if(values != null && values.containsKey(property.getColumnName())) {
+        if(extraValues != null && extraValues.containsKey(column)) {
             return true;
         }
         return false;
     }
 
     /**
-     * @return true if setValues or values contains this property, and the value
-     *         stored is not null
+     * @return true if the user or the database has set this property, and
+     *         the value stored is not null
      */
     public boolean containsNonNullValue(Property<?> property) {
-        if(setValues != null && setValues.containsKey(property.getColumnName())) {
-            return setValues.get(property.getColumnName()) != null;
+        String column = property.getColumnName();
+        int slot = layout.slotOf(column);
+        if(slot >= 0) {
+            return isSet(present, slot) && !isSet(nulls, slot);
+        }
+        if(extraSetValues != null && extraSetValues.containsKey(column)) {
+            return extraSetValues.get(column) != null;
         }
-        if(values != null && values.containsKey(property.getColumnName())) {
-            return values.get(property.getColumnName()) != null;
+        if(extraValues != null && extraValues.containsKey(column)) {
+            return extraValues.get(column) != null;
         }
         return false;
     }
@@ -293,16 +651,20 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * Check whether the user has changed this property value and it should be
      * stored for saving in the database
      */
-    protected synchronized <TYPE> boolean shouldSaveValue(
+    protected <TYPE> boolean shouldSaveValue(
             Property<TYPE> property, TYPE newValue) {
 
-    	// we've already decided to save it, so overwrite old value
-        if (setValues.containsKey(property.getColumnName())) {
+        String column = property.getColumnName();
+        int slot = layout.slotOf(column);
+
+        // we've already decided to save it, so overwrite old value
+        if (slot >= 0 ? isSet(dirty, slot) :
+                extraSetValues != null && extraSetValues.containsKey(column)) {
             return true;
         }
 
-        // values contains this key, we should check it out
-        if(values != null && values.containsKey(property.getColumnName())) {
+        // we have a database value for this key, we should check it out
+        if(containsValue(property)) {
             TYPE value = getValue(property);
             if (value == null) {
                 if (newValue == null) {
@@ -320,53 +682,74 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
     /**
      * Sets the given property. Make sure this model has this property!
      */
-    public synchronized <TYPE> void setValue(Property<TYPE> property,
+    public <TYPE> void setValue(Property<TYPE> property,
             TYPE value) {
-        if (setValues == null) {
-            setValues = new ContentValues();
-        }
         if (!shouldSaveValue(property, value)) {
             return;
         }
 
-        saver.save(property, setValues, value);
+        // we don't allow null values, as they indicate unset properties
+        // when the database was written
+        if(value != null) {
+            putColumn(property.getColumnName(), value, true);
+        }
+    }
+
+    /**
+     * Sets the value of the given column without checking whether it
+     * changed. Null values are stored as null
+     */
+    protected void putValue(String column, Object value) {
+        putColumn(column, value, true);
     }
 
     /**
      * Merges content values with those coming from another source
      */
-    public synchronized <TYPE> void mergeWith(ContentValues other) {
-        if (setValues == null) {
-            setValues = new ContentValues();
+    public <TYPE> void mergeWith(ContentValues other) {
+        for (Entry<String, Object> item : other.valueSet()) {
+            putColumn(item.getKey(), item.getValue(), true);
         }
-        setValues.putAll(other);
     }
 
     /**
      * Merges set values with those coming from another source,
      * keeping the existing value if one already exists
      */
-    public synchronized <TYPE> void mergeWithoutReplacement(ContentValues other) {
-        if (setValues == null) {
-            setValues = new ContentValues();
-        }
+    public <TYPE> void mergeWithoutReplacement(ContentValues other) {
         for (Entry<String, Object> item : other.valueSet()) {
-            if (setValues.containsKey(item.getKey())) {
+            String column = item.getKey();
+            int slot = layout.slotOf(column);
+            if (slot >= 0 ? isSet(dirty, slot) :
+                    extraSetValues != null && extraSetValues.containsKey(column)) {
                 continue;
             }
-            AndroidUtilities.putInto(setValues, item.getKey(), item.getValue(), true);
+            putColumn(column, item.getValue(), true);
         }
     }
 
     /**
      * Clear the key for the given property
      */
-    public synchronized void clearValue(Property<?> property) {
-        if(setValues != null && setValues.containsKey(property.getColumnName())) {
-            setValues.remove(property.getColumnName());
+    public void clearValue(Property<?> property) {
+        clearValue(property.getColumnName());
+    }
+
+    /**
+     * Clear the given column, which may also be a key that is not a
+     * database column
+     */
+    public void clearValue(String column) {
+        int slot = layout.slotOf(column);
+        if(slot >= 0) {
+            clearSlot(slot);
+            return;
+        }
+        if(extraSetValues != null) {
+            extraSetValues.remove(column);
         }
-        if(values != null && values.containsKey(property.getColumnName())) {
-            values.remove(property.getColumnName());
+        if(extraValues != null) {
+            extraValues.remove(column);
         }
     }
 
@@ -383,7 +766,7 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
 
     // --- setting and retrieving flags
 
-    public synchronized void putTransitory(String key, Object value) {
+    public void putTransitory(String key, Object value) {
         if(transitoryData == null) {
             transitoryData = new HashMap<String, Object>();
         }
@@ -415,6 +798,45 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
         return trans != null;
     }
 
+    // --- model factories
+
+    /**
+     * Creates empty instances of a model class
+     */
+    public interface ModelFactory<TYPE extends AbstractModel> {
+        public TYPE create();
+    }
+
+    private static final ConcurrentHashMap<Class<?>, ModelFactory<?>> factories =
+        new ConcurrentHashMap<Class<?>, ModelFactory<?>>();
+
+    /**
+     * Register the factory used to create instances of the given model class,
+     * so that they can be created without reflection
+     */
+    protected static <TYPE extends AbstractModel> void registerFactory(Class<TYPE> cls,
+            ModelFactory<TYPE> factory) {
+        factories.put(cls, factory);
+    }
+
+    /**
+     * Create an empty instance of the given model class. Uses the registered
+     * factory, or reflection if none has been registered yet
+     */
+    public static <TYPE extends AbstractModel> TYPE newInstance(Class<TYPE> cls) {
+        ModelFactory<?> factory = factories.get(cls);
+        if(factory != null) {
+            return cls.cast(factory.create());
+        }
+        try {
+            return cls.newInstance();
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InstantiationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // --- property management
 
     /**
@@ -450,46 +872,6 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
         return properties.toArray(new Property<?>[properties.size()]);
     }
 
-    /**
-     * Visitor that saves a value into a content values store
-     *
-     * @author Tim Su <tim@todoroo.com>
-     *
-     */
-    public static class ContentValuesSavingVisitor implements PropertyVisitor<Void, Object> {
-
-        private ContentValues store;
-
-        public synchronized void save(Property<?> property, ContentValues newStore, Object value) {
-            this.store = newStore;
-
-            // we don't allow null values, as they indicate unset properties
-            // when the database was written
-
-            if(value != null) {
-                property.accept(this, value);
-            }
-        }
-
-        @Override
-        public Void visitInteger(Property<Integer> property, Object value) {
-            store.put(property.getColumnName(), (Integer) value);
-            return null;
-        }
-
-        @Override
-        public Void visitLong(Property<Long> property, Object value) {
-            store.put(property.getColumnName(), (Long) value);
-            return null;
-        }
-
-        @Override
-        public Void visitString(Property<String> property, Object value) {
-            store.put(property.getColumnName(), (String) value);
-            return null;
-        }
-    }
-
     // --- parcelable helpers
 
     /**
@@ -505,8 +887,8 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      */
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeParcelable(setValues, 0);
-        dest.writeParcelable(values, 0);
+        dest.writeParcelable(getSetValues(), 0);
+        dest.writeParcelable(getDatabaseValues(), 0);
     }
 
    /**
@@ -527,16 +909,17 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
          */
         @Override
         public TYPE createFromParcel(Parcel source) {
-            TYPE model;
-            try {
-                model = cls.newInstance();
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            } catch (InstantiationException e) {
-                throw new RuntimeException(e);
+            TYPE model = newInstance(cls);
+            ContentValues setValues = source.readParcelable(ContentValues.class.getClassLoader());
+            ContentValues values = source.readParcelable(ContentValues.class.getClassLoader());
+            if(values != null) {
+                for (Entry<String, Object> item : values.valueSet()) {
+                    ((AbstractModel) model).putColumn(item.getKey(), item.getValue(), false);
+                }
+            }
+            if(setValues != null) {
+                model.mergeWith(setValues);
             }
-            model.setValues = source.readParcelable(ContentValues.class.getClassLoader());
-            model.values = source.readParcelable(ContentValues.class.getClassLoader());
             return model;
         }
 
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tables, rows and columns written since the last change notification.
+ * Writes by id record the id; writes by criteria mark every row of the
+ * table as changed. Updates record the columns they set; inserts and
+ * deletes mark every column as changed.
+ */
+public final class ChangeSet {
+
+    /** id recorded for writes that may have touched any row */
+    static final long ALL_ROWS = -1;
+
+    /** changed ids by table name. A null set means any row may have changed */
+    private final HashMap<String, HashSet<Long>> changes = new HashMap<String, HashSet<Long>>();
+
+    /** written columns by table name. A null set means any column may have changed */
+    private final HashMap<String, HashSet<String>> columns = new HashMap<String, HashSet<String>>();
+
+    void add(String table, long id) {
+        add(table, id, null);
+    }
+
+    /**
+     * @param writtenColumns columns set by the write, or null for inserts,
+     *        deletes and writes whose columns aren't known
+     */
+    void add(String table, long id, Set<String> writtenColumns) {
+        addId(table, id);
+        addColumns(table, writtenColumns);
+    }
+
+    private void addId(String table, long id) {
+        if(id == ALL_ROWS) {
+            changes.put(table, null);
+            return;
+        }
+        HashSet<Long> ids = changes.get(table);
+        if(ids == null) {
+            if(changes.containsKey(table)) {
+                return;
+            }
+            ids = new HashSet<Long>();
+            changes.put(table, ids);
+        }
+        ids.add(id);
+    }
+
+    private void addColumns(String table, Set<String> writtenColumns) {
+        if(writtenColumns == null) {
+            columns.put(table, null);
+            return;
+        }
+        HashSet<String> written = columns.get(table);
+        if(written == null) {
+            if(columns.containsKey(table)) {
+                return;
+            }
+            written = new HashSet<String>();
+            columns.put(table, written);
+        }
+        written.addAll(writtenColumns);
+    }
+
+    void addAll(ChangeSet other) {
+        for(String table : other.changes.keySet()) {
+            HashSet<Long> ids = other.changes.get(table);
+            if(ids == null) {
+                addId(table, ALL_ROWS);
+            } else {
+                for(Long id : ids) {
+                    addId(table, id);
+                }
+            }
+            addColumns(table, other.columns.get(table));
+        }
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return true if any row of the given table was written
+     */
+    public boolean affects(Table table) {
+        return changes.containsKey(table.name);
+    }
+
+    /**
+     * @return true if the given row may have been written
+     */
+    public boolean affects(Table table, long id) {
+        if(!changes.containsKey(table.name)) {
+            return false;
+        }
+        HashSet<Long> ids = changes.get(table.name);
+        return ids == null || ids.contains(id);
+    }
+
+    /**
+     * @return ids written in the given table, or null if any row may have
+     *         been written
+     */
+    public Set<Long> getChangedIds(Table table) {
+        if(!changes.containsKey(table.name)) {
+            return Collections.emptySet();
+        }
+        HashSet<Long> ids = changes.get(table.name);
+        return ids == null ? null : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * @return columns written in the given table, or null if rows may have
+     *         been inserted or deleted, or any column written
+     */
+    public Set<String> getChangedColumns(Table table) {
+        if(!columns.containsKey(table.name)) {
+            return Collections.emptySet();
+        }
+        HashSet<String> written = columns.get(table.name);
+        return written == null ? null : Collections.unmodifiableSet(written);
+    }
+
+    @Override
+    public String toString() {
+        return changes.toString();
+    }
+
+}
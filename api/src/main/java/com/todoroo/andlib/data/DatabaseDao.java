@@ -12,12 +12,14 @@ import android.util.Log;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.PreparedSql;
 import com.todoroo.andlib.sql.Query;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * DAO for reading data from an instance of {@link AbstractDatabase}. If you
@@ -38,6 +40,23 @@ public class DatabaseDao<TYPE extends AbstractModel> {
     @Autowired
     protected Boolean debug;
 
+    /** Maximum number of fetch statements remembered per DAO */
+    private static final int FETCH_SQL_CACHE_SIZE = 16;
+
+    /**
+     * Fetch-by-id SQL keyed by the properties read. Fetches only differ by id,
+     * which is bound, so the statement text can be reused
+     */
+    private final Map<List<Property<?>>, String> fetchSqlCache =
+        new LinkedHashMap<List<Property<?>>, String>(FETCH_SQL_CACHE_SIZE, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Property<?>>, String> eldest) {
+                return size() > FETCH_SQL_CACHE_SIZE;
+            }
+        };
+
     public DatabaseDao(Class<TYPE> modelClass) {
         DependencyInjectionService.getInstance().inject(this);
         this.modelClass = modelClass;
@@ -90,10 +109,11 @@ public class DatabaseDao<TYPE extends AbstractModel> {
      */
     public TodorooCursor<TYPE> query(Query query) {
         query.from(table);
+        PreparedSql sql = query.prepare();
         if(debug) {
-            Log.i("SQL-" + modelClass.getSimpleName(), query.toString()); //$NON-NLS-1$
+            Log.i("SQL-" + modelClass.getSimpleName(), sql.toString()); //$NON-NLS-1$
         }
-        Cursor cursor = database.rawQuery(query.toString(), null);
+        Cursor cursor = database.rawQuery(sql);
         return new TodorooCursor<TYPE>(cursor, query.getFields());
     }
 
@@ -128,20 +148,9 @@ public class DatabaseDao<TYPE extends AbstractModel> {
             if (cursor.getCount() == 0) {
                 return null;
             }
-            Constructor<TYPE> constructor = modelClass.getConstructor(TodorooCursor.class);
-            return constructor.newInstance(cursor);
-        } catch (SecurityException e) {
-            throw new RuntimeException(e);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException(e);
-        } catch (InstantiationException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        } catch (InvocationTargetException e) {
-            throw new RuntimeException(e);
+            TYPE model = AbstractModel.newInstance(modelClass);
+            model.readPropertiesFromCursor(cursor);
+            return model;
         } finally {
             cursor.close();
         }
@@ -152,8 +161,8 @@ public class DatabaseDao<TYPE extends AbstractModel> {
      * @return true if delete was successful
      */
     public boolean delete(long id) {
-        return database.delete(table.name,
-                AbstractModel.ID_PROPERTY.eq(id).toString(), null) > 0;
+        PreparedSql where = AbstractModel.ID_PROPERTY.eq(id).prepare();
+        return database.delete(table.name, where.sql, where.args, id) > 0;
     }
 
     /**
@@ -162,8 +171,8 @@ public class DatabaseDao<TYPE extends AbstractModel> {
      * @return # of deleted items
      */
     public int deleteWhere(Criterion where) {
-        return database.delete(table.name,
-                where.toString(), null);
+        PreparedSql sql = where.prepare();
+        return database.delete(table.name, sql.sql, sql.args);
     }
 
     /**
@@ -180,8 +189,22 @@ public class DatabaseDao<TYPE extends AbstractModel> {
      * @return # of updated items
      */
     public int update(Criterion where, TYPE template) {
+        PreparedSql sql = where.prepare();
         return database.update(table.name, template.getSetValues(),
-                where.toString(), null);
+                sql.sql, sql.args);
+    }
+
+    /**
+     * Update the row with the given id from the values set on the template.
+     * Unlike {@link #saveExisting(AbstractModel)}, model listeners are not
+     * called. Only the row is recorded as changed, where a criteria update
+     * marks the whole table
+     *
+     * @return true if the row was updated
+     */
+    public boolean updateById(long id, TYPE template) {
+        PreparedSql where = AbstractModel.ID_PROPERTY.eq(id).prepare();
+        return database.update(table.name, template.getSetValues(), where.sql, where.args, id) > 0;
     }
 
     /**
@@ -209,16 +232,18 @@ public class DatabaseDao<TYPE extends AbstractModel> {
         public boolean makeChange();
     }
 
+    /**
+     * Make the change and, if it succeeded, notify model listeners and mark
+     * the item saved. The write itself takes the database's write lock, so
+     * listeners run without it unless the caller is inside a transaction
+     */
     private boolean insertOrUpdateAndRecordChanges(TYPE item, DatabaseChangeOp op) {
-        final AtomicBoolean result = new AtomicBoolean(false);
-        synchronized(database) {
-            result.set(op.makeChange());
-            if (result.get()) {
-                onModelUpdated(item);
-                item.markSaved();
-            }
+        boolean result = op.makeChange();
+        if (result) {
+            onModelUpdated(item);
+            item.markSaved();
         }
-        return result.get();
+        return result;
     }
 
     /**
@@ -252,7 +277,17 @@ public class DatabaseDao<TYPE extends AbstractModel> {
      * @return returns true on success.
      */
     public boolean saveExisting(final TYPE item) {
-        final ContentValues values = item.getSetValues();
+        return saveExisting(item, item.getSetValues());
+    }
+
+    /**
+     * Saves the given values to the item's row. For subclasses that look
+     * at the set values before saving, so they aren't built twice
+     *
+     * @param values the item's set values
+     * @return returns true on success.
+     */
+    protected boolean saveExisting(final TYPE item, final ContentValues values) {
         if(values == null || values.size() == 0) // nothing changed
         {
             return true;
@@ -260,13 +295,22 @@ public class DatabaseDao<TYPE extends AbstractModel> {
         DatabaseChangeOp update = new DatabaseChangeOp() {
             @Override
             public boolean makeChange() {
-                return database.update(table.name, values,
-                        AbstractModel.ID_PROPERTY.eq(item.getId()).toString(), null) > 0;
+                PreparedSql where = AbstractModel.ID_PROPERTY.eq(item.getId()).prepare();
+                return database.update(table.name, values, where.sql, where.args, item.getId()) > 0;
             }
         };
         return insertOrUpdateAndRecordChanges(item, update);
     }
 
+    /**
+     * Run the given operation in a single database transaction, notifying
+     * database listeners once at the end. See
+     * {@link AbstractDatabase#runInTransaction(Runnable)}
+     */
+    public void runInTransaction(Runnable operation) {
+        database.runInTransaction(operation);
+    }
+
     // --- helper methods
 
     /**
@@ -277,16 +321,34 @@ public class DatabaseDao<TYPE extends AbstractModel> {
      *            id of item
      */
     protected TodorooCursor<TYPE> fetchItem(long id, Property<?>... properties) {
-        TodorooCursor<TYPE> cursor = query(
-                Query.select(properties).where(AbstractModel.ID_PROPERTY.eq(id)));
+        List<Property<?>> shape = Arrays.asList(properties);
+        String sql;
+        synchronized(fetchSqlCache) {
+            sql = fetchSqlCache.get(shape);
+            if(sql == null) {
+                sql = Query.select(properties).from(table).where(
+                        AbstractModel.ID_PROPERTY.eq(id)).prepare().sql;
+                fetchSqlCache.put(shape, sql);
+            }
+        }
+        Cursor cursor = database.rawQuery(sql, new String[] { Long.toString(id) });
         cursor.moveToFirst();
         return new TodorooCursor<TYPE>(cursor, properties);
     }
 
+    /**
+     * Count rows matching the given query. The database counts them, so no
+     * rows are read into a cursor window
+     */
     public int count(Query query) {
-        TodorooCursor<TYPE> cursor = query(query);
+        query.from(table);
+        PreparedSql sql = query.prepare();
+        if(debug) {
+            Log.i("SQL-" + modelClass.getSimpleName(), "COUNT " + sql.toString()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        Cursor cursor = database.rawQuery("SELECT COUNT(*) FROM (" + sql.sql + ")", sql.args); //$NON-NLS-1$ //$NON-NLS-2$
         try {
-            return cursor.getCount();
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
         } finally {
             cursor.close();
         }
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import com.todoroo.andlib.data.Property.PropertyVisitor;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Value slot layout shared by all instances of a model class. Each column
+ * of the model's table gets a slot, and each slot an index into the long,
+ * int or String array matching the column type.
+ */
+final class ModelLayout {
+
+    static final int KIND_LONG = 0;
+    static final int KIND_INTEGER = 1;
+    static final int KIND_STRING = 2;
+
+    private static final ConcurrentHashMap<Class<?>, ModelLayout> layouts =
+        new ConcurrentHashMap<Class<?>, ModelLayout>();
+
+    private static final KindVisitor kindVisitor = new KindVisitor();
+
+    /** number of slots */
+    final int slotCount;
+
+    /** column name for each slot */
+    final String[] columns;
+
+    /** value kind for each slot */
+    final int[] kinds;
+
+    /** index into the value array of the slot's kind */
+    final int[] indices;
+
+    final int longCount;
+    final int intCount;
+    final int stringCount;
+
+    /** number of longs needed for a bit set with one bit per slot */
+    final int bitWords;
+
+    private final HashMap<String, Integer> slots = new HashMap<String, Integer>();
+
+    private ModelLayout(Property<?>[] properties) {
+        int count = properties.length;
+        boolean hasId = false;
+        for(Property<?> property : properties) {
+            if(AbstractModel.ID_PROPERTY_NAME.equals(property.getColumnName())) {
+                hasId = true;
+            }
+        }
+        if(!hasId) {
+            count++;
+        }
+
+        columns = new String[count];
+        kinds = new int[count];
+        indices = new int[count];
+
+        int longs = 0, ints = 0, strings = 0, slot = 0;
+        for(int i = 0; i < count; i++) {
+            Property<?> property = i < properties.length ? properties[i] : AbstractModel.ID_PROPERTY;
+            String column = property.getColumnName();
+            if(slots.containsKey(column)) {
+                continue;
+            }
+            int kind = kindOf(property);
+            columns[slot] = column;
+            kinds[slot] = kind;
+            switch(kind) {
+            case KIND_LONG:
+                indices[slot] = longs++;
+                break;
+            case KIND_INTEGER:
+                indices[slot] = ints++;
+                break;
+            default:
+                indices[slot] = strings++;
+            }
+            slots.put(column, slot);
+            slot++;
+        }
+
+        longCount = longs;
+        intCount = ints;
+        stringCount = strings;
+        slotCount = slot;
+        bitWords = (slot + 63) >>> 6;
+    }
+
+    /**
+     * @return slot for the given column, or -1 if the column is not part
+     *         of this layout
+     */
+    int slotOf(String column) {
+        Integer slot = slots.get(column);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return one of the <code>KIND_</code> constants for the given property
+     */
+    static int kindOf(Property<?> property) {
+        return property.accept(kindVisitor, null);
+    }
+
+    /**
+     * Get the layout for the given model class, building it from the model's
+     * <code>PROPERTIES</code> the first time it is requested
+     */
+    static ModelLayout forClass(Class<? extends AbstractModel> cls) {
+        ModelLayout layout = layouts.get(cls);
+        if(layout == null) {
+            layout = new ModelLayout(propertiesOf(cls));
+            ModelLayout existing = layouts.putIfAbsent(cls, layout);
+            if(existing != null) {
+                layout = existing;
+            }
+        }
+        return layout;
+    }
+
+    private static Property<?>[] propertiesOf(Class<? extends AbstractModel> cls) {
+        try {
+            return (Property<?>[]) cls.getField("PROPERTIES").get(null); //$NON-NLS-1$
+        } catch (NoSuchFieldException e) {
+            return AbstractModel.generateProperties(cls);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class KindVisitor implements PropertyVisitor<Integer, Void> {
+
+        @Override
+        public Integer visitInteger(Property<Integer> property, Void data) {
+            return KIND_INTEGER;
+        }
+
+        @Override
+        public Integer visitLong(Property<Long> property, Void data) {
+            return KIND_LONG;
+        }
+
+        @Override
+        public Integer visitString(Property<String> property, Void data) {
+            return KIND_STRING;
+        }
+    }
+
+}
@@ -12,6 +12,8 @@ import com.todoroo.andlib.sql.Field;
 import com.todoroo.andlib.sql.Operator;
 import com.todoroo.andlib.sql.UnaryCriterion;
 
+import java.util.List;
+
 import static com.todoroo.andlib.sql.SqlConstants.COMMA;
 import static com.todoroo.andlib.sql.SqlConstants.LEFT_PARENTHESIS;
 import static com.todoroo.andlib.sql.SqlConstants.RIGHT_PARENTHESIS;
@@ -212,9 +214,19 @@ public abstract class Property<TYPE> extends Field implements Cloneable {
 
                 @Override
                 protected void populate(StringBuilder sb) {
+                    populate(sb, null);
+                }
+
+                @Override
+                protected void populate(StringBuilder sb, List<Object> args) {
                     sb.append(field).append(SPACE).append(Operator.in).append(SPACE).append(LEFT_PARENTHESIS).append(SPACE);
                     for (String s : value) {
-                        sb.append("'").append(UnaryCriterion.sanitize(s)).append("'").append(COMMA);
+                        if(args != null) {
+                            sb.append('?').append(COMMA);
+                            args.add(s);
+                        } else {
+                            sb.append("'").append(UnaryCriterion.sanitize(s)).append("'").append(COMMA);
+                        }
                     }
                     sb.deleteCharAt(sb.length() - 1).append(RIGHT_PARENTHESIS);
                 }
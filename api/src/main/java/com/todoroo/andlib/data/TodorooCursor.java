@@ -10,7 +10,7 @@ import android.database.CursorWrapper;
 
 import com.todoroo.andlib.data.Property.PropertyVisitor;
 
-import java.util.WeakHashMap;
+import java.util.HashMap;
 
 /**
  * AstridCursor wraps a cursor and allows users to query for individual
@@ -26,9 +26,23 @@ public class TodorooCursor<TYPE extends AbstractModel> extends CursorWrapper {
     /** Properties read by this cursor */
     private final Property<?>[] properties;
 
-    /** Weakly cache field name to column id references for this cursor.
-     * Because it's a weak hash map, entire keys can be discarded by GC */
-    private final WeakHashMap<String, Integer> columnIndexCache;
+    /** Cache of field name to column id references for this cursor */
+    private final HashMap<String, Integer> columnIndexCache;
+
+    /** Column index for each property, or -1 if the column is missing */
+    private int[] columnPlan = null;
+
+    /** Value kind of each property, see {@link ModelLayout} */
+    private int[] kindPlan;
+
+    /** Whether each property may be read as null */
+    private boolean[] nullablePlan;
+
+    /** Layout that {@link #slotPlan} was computed for */
+    private ModelLayout slotPlanLayout = null;
+
+    /** Model slot for each property, or -1 if the model has no slot for it */
+    private int[] slotPlan;
 
     /** Property reading visitor */
     private static final CursorReadingVisitor reader = new CursorReadingVisitor();
@@ -43,7 +57,7 @@ public class TodorooCursor<TYPE extends AbstractModel> extends CursorWrapper {
         super(cursor);
 
         this.properties = properties;
-        columnIndexCache = new WeakHashMap<String, Integer>();
+        columnIndexCache = new HashMap<String, Integer>();
     }
 
     /**
@@ -66,7 +80,7 @@ public class TodorooCursor<TYPE extends AbstractModel> extends CursorWrapper {
     /**
      * Use cache to get the column index for the given field name
      */
-    public synchronized int getColumnIndexFromCache(String field) {
+    public int getColumnIndexFromCache(String field) {
         Integer index = columnIndexCache.get(field);
         if(index == null) {
             index = getColumnIndexOrThrow(field);
@@ -76,6 +90,65 @@ public class TodorooCursor<TYPE extends AbstractModel> extends CursorWrapper {
         return index;
     }
 
+    // --- read plan
+
+    /**
+     * Look up column indices and value kinds for all properties of this
+     * cursor. Done once, the first time a model is read from the cursor
+     */
+    private void buildPlan() {
+        columnPlan = new int[properties.length];
+        kindPlan = new int[properties.length];
+        nullablePlan = new boolean[properties.length];
+        for(int i = 0; i < properties.length; i++) {
+            Property<?> property = properties[i];
+            int column = getColumnIndex(property.getColumnName());
+            columnPlan[i] = column;
+            if(column >= 0) {
+                columnIndexCache.put(property.getColumnName(), column);
+            }
+            kindPlan[i] = ModelLayout.kindOf(property);
+            nullablePlan[i] = property.checkFlag(Property.PROP_FLAG_NULLABLE);
+        }
+    }
+
+    /** @return column index for each property, -1 if missing */
+    int[] getColumnPlan() {
+        if(columnPlan == null) {
+            buildPlan();
+        }
+        return columnPlan;
+    }
+
+    /** @return value kind of each property */
+    int[] getKindPlan() {
+        if(columnPlan == null) {
+            buildPlan();
+        }
+        return kindPlan;
+    }
+
+    /** @return whether each property may be read as null */
+    boolean[] getNullablePlan() {
+        if(columnPlan == null) {
+            buildPlan();
+        }
+        return nullablePlan;
+    }
+
+    /** @return slot in the given layout for each property, -1 if missing */
+    int[] getSlotPlan(ModelLayout layout) {
+        if(slotPlanLayout != layout) {
+            int[] slots = new int[properties.length];
+            for(int i = 0; i < properties.length; i++) {
+                slots[i] = layout.slotOf(properties[i].getColumnName());
+            }
+            slotPlan = slots;
+            slotPlanLayout = layout;
+        }
+        return slotPlan;
+    }
+
     /**
      * Visitor that reads the given property from a cursor
      *
@@ -9,6 +9,8 @@ import com.todoroo.andlib.service.ExceptionService.AndroidLogReporter;
 import com.todoroo.andlib.service.ExceptionService.ErrorReporter;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 
 
@@ -32,6 +34,23 @@ public class DependencyInjectionService {
      */
     private final LinkedList<AbstractDependencyInjector> injectors = new LinkedList<AbstractDependencyInjector>();
 
+    /** injector used for classes that have no generated one */
+    private static final FieldInjector NO_GENERATED_INJECTOR = new FieldInjector() {
+        @Override
+        public void inject(Object target, DependencyInjectionService service) {
+            // classes without one are injected reflectively
+        }
+    };
+
+    /** generated injectors by class, or NO_GENERATED_INJECTOR */
+    private final HashMap<Class<?>, FieldInjector> generatedInjectors = new HashMap<Class<?>, FieldInjector>();
+
+    /** autowired fields by class, for classes injected reflectively */
+    private final HashMap<Class<?>, Field[]> autowiredFields = new HashMap<Class<?>, Field[]>();
+
+    /** whether to use generated injectors where they exist. Off for benchmarks */
+    boolean useGeneratedInjectors = true;
+
     /**
      * Perform dependency injection in the caller object
      *
@@ -39,9 +58,9 @@ public class DependencyInjectionService {
      *            object to perform DI on
      */
     public void inject(Object caller) {
-        // Traverse through class and all parent classes, looking for
-        // fields declared with the @Autowired annotation and using
-        // dependency injection to set them as appropriate
+        // Traverse through class and all parent classes, setting fields
+        // declared with the @Autowired annotation with the injector
+        // generated for each class, or with reflection if there is none
 
         Class<?> cls = caller.getClass();
         while(cls != null) {
@@ -50,9 +69,11 @@ public class DependencyInjectionService {
                 break;
             }
 
-            for(Field field : cls.getDeclaredFields()) {
-                if(field.getAnnotation(Autowired.class) != null) {
-                    field.setAccessible(true);
+            FieldInjector generated = useGeneratedInjectors ? getGeneratedInjector(cls) : NO_GENERATED_INJECTOR;
+            if(generated != NO_GENERATED_INJECTOR) {
+                generated.inject(caller, this);
+            } else {
+                for(Field field : getAutowiredFields(cls)) {
                     try {
                         handleField(caller, field);
                     } catch (IllegalStateException e) {
@@ -72,6 +93,86 @@ public class DependencyInjectionService {
         }
     }
 
+    /**
+     * @return injector generated for the given class, or
+     *         NO_GENERATED_INJECTOR if it has none
+     */
+    FieldInjector getGeneratedInjector(Class<?> cls) {
+        synchronized(generatedInjectors) {
+            FieldInjector injector = generatedInjectors.get(cls);
+            if(injector != null) {
+                return injector;
+            }
+            try {
+                ClassLoader loader = cls.getClassLoader();
+                Class<?> injectorClass = Class.forName(cls.getName() + FieldInjector.SUFFIX, true,
+                        loader == null ? getClass().getClassLoader() : loader);
+                injector = (FieldInjector) injectorClass.newInstance();
+            } catch (ClassNotFoundException e) {
+                injector = NO_GENERATED_INJECTOR;
+            } catch (InstantiationException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            generatedInjectors.put(cls, injector);
+            return injector;
+        }
+    }
+
+    /**
+     * @return whether an injector was generated for the given class
+     */
+    boolean hasGeneratedInjector(Class<?> cls) {
+        return getGeneratedInjector(cls) != NO_GENERATED_INJECTOR;
+    }
+
+    /**
+     * @return autowired fields declared by the given class, made accessible
+     */
+    private Field[] getAutowiredFields(Class<?> cls) {
+        synchronized(autowiredFields) {
+            Field[] fields = autowiredFields.get(cls);
+            if(fields != null) {
+                return fields;
+            }
+            ArrayList<Field> autowired = new ArrayList<Field>();
+            for(Field field : cls.getDeclaredFields()) {
+                if(field.getAnnotation(Autowired.class) != null) {
+                    field.setAccessible(true);
+                    autowired.add(field);
+                }
+            }
+            fields = autowired.toArray(new Field[autowired.size()]);
+            autowiredFields.put(cls, fields);
+            return fields;
+        }
+    }
+
+    /**
+     * Look up the injection for an autowired field of the caller. Used by
+     * generated injectors, which set the field themselves
+     *
+     * @param caller
+     *            object being injected
+     * @param field
+     *            field to inject
+     */
+    public synchronized Object getInjection(Object caller, Field field) {
+        for (AbstractDependencyInjector injector : injectors) {
+            Object injection = injector.getInjection(field);
+            if (injection != null) {
+                return injection;
+            }
+        }
+
+        throw new IllegalStateException(
+                String.format("No dependency injector found for autowired " +
+                        "field '%s' in class '%s'. Injectors: %s",
+                        field.getName(), caller.getClass().getName(),
+                        injectors));
+    }
+
     private boolean isQualifiedPackage(String packageName) {
         if(packageName.startsWith("com.todoroo")) {
             return true;
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.service;
+
+/**
+ * Sets the {@link Autowired} fields declared by one class. Implementations
+ * are generated at compile time, named after the class they inject with an
+ * <code>$$Injector</code> suffix, so that {@link DependencyInjectionService}
+ * does not need to scan fields with reflection.
+ */
+public interface FieldInjector {
+
+    /** suffix of generated injector class names */
+    public static final String SUFFIX = "$$Injector"; //$NON-NLS-1$
+
+    /**
+     * Set every autowired field of the target that is still null
+     *
+     * @param target
+     *            object to inject, an instance of the generated class's target
+     * @param service
+     *            service to look injections up in
+     */
+    public void inject(Object target, DependencyInjectionService service);
+
+}
@@ -5,6 +5,9 @@
  */
 package com.todoroo.andlib.sql;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.todoroo.andlib.sql.SqlConstants.AND;
 import static com.todoroo.andlib.sql.SqlConstants.LEFT_PARENTHESIS;
 import static com.todoroo.andlib.sql.SqlConstants.NOT;
@@ -38,9 +41,15 @@ public abstract class Criterion {
 
             @Override
             protected void populate(StringBuilder sb) {
-                sb.append(criterion);
+                populate(sb, null);
+            }
+
+            @Override
+            protected void populate(StringBuilder sb, List<Object> args) {
+                criterion.appendTo(sb, args);
                 for (Criterion c : criterions) {
-                    sb.append(SPACE).append(AND).append(SPACE).append(c);
+                    sb.append(SPACE).append(AND).append(SPACE);
+                    c.appendTo(sb, args);
                 }
             }
         };
@@ -51,9 +60,15 @@ public abstract class Criterion {
 
             @Override
             protected void populate(StringBuilder sb) {
-                sb.append(criterion);
+                populate(sb, null);
+            }
+
+            @Override
+            protected void populate(StringBuilder sb, List<Object> args) {
+                criterion.appendTo(sb, args);
                 for (Criterion c : criterions) {
-                    sb.append(SPACE).append(OR).append(SPACE).append(c.toString());
+                    sb.append(SPACE).append(OR).append(SPACE);
+                    c.appendTo(sb, args);
                 }
             }
         };
@@ -64,19 +79,52 @@ public abstract class Criterion {
 
             @Override
             protected void populate(StringBuilder sb) {
+                populate(sb, null);
+            }
+
+            @Override
+            protected void populate(StringBuilder sb, List<Object> args) {
                 sb.append(NOT).append(SPACE);
-                criterion.populate(sb);
+                criterion.populate(sb, args);
             }
         };
     }
 
     protected abstract void populate(StringBuilder sb);
 
+    /**
+     * Populate this criterion, writing literal values as <code>?</code>
+     * placeholders and adding them to args. If args is null, values are
+     * written inline. Criteria that don't support binding write inline.
+     */
+    protected void populate(StringBuilder sb, List<Object> args) {
+        populate(sb);
+    }
+
+    /**
+     * Append this criterion in parentheses, binding values into args if
+     * it is not null
+     */
+    public void appendTo(StringBuilder sb, List<Object> args) {
+        sb.append(LEFT_PARENTHESIS);
+        populate(sb, args);
+        sb.append(RIGHT_PARENTHESIS);
+    }
+
+    /**
+     * @return this criterion as placeholder SQL and bind arguments
+     */
+    public PreparedSql prepare() {
+        ArrayList<Object> args = new ArrayList<Object>();
+        StringBuilder builder = new StringBuilder();
+        appendTo(builder, args);
+        return new PreparedSql(builder.toString(), PreparedSql.toArgs(args));
+    }
+
     @Override
     public String toString() {
-        StringBuilder builder = new StringBuilder(LEFT_PARENTHESIS);
-        populate(builder);
-        builder.append(RIGHT_PARENTHESIS);
+        StringBuilder builder = new StringBuilder();
+        appendTo(builder, null);
         return builder.toString();
     }
 
@@ -5,6 +5,8 @@
  */
 package com.todoroo.andlib.sql;
 
+import java.util.List;
+
 import static com.todoroo.andlib.sql.SqlConstants.COMMA;
 import static com.todoroo.andlib.sql.SqlConstants.LEFT_PARENTHESIS;
 import static com.todoroo.andlib.sql.SqlConstants.RIGHT_PARENTHESIS;
@@ -99,8 +101,14 @@ public class Field extends DBObject<Field> {
 
             @Override
             protected void populate(StringBuilder sb) {
-                sb.append(field).append(SPACE).append(Operator.in).append(SPACE).append(LEFT_PARENTHESIS).append(query)
-                        .append(RIGHT_PARENTHESIS);
+                populate(sb, null);
+            }
+
+            @Override
+            protected void populate(StringBuilder sb, List<Object> args) {
+                sb.append(field).append(SPACE).append(Operator.in).append(SPACE).append(LEFT_PARENTHESIS);
+                query.appendTo(sb, args);
+                sb.append(RIGHT_PARENTHESIS);
             }
         };
     }
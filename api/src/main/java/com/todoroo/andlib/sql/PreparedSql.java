@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.sql;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SQL text with <code>?</code> placeholders and the ordered arguments bound
+ * to them. Statements with the same shape produce the same SQL text, so
+ * SQLite's compiled statement cache can reuse them.
+ */
+public final class PreparedSql {
+
+    /** SQL with placeholders */
+    public final String sql;
+
+    /** arguments, in placeholder order */
+    public final String[] args;
+
+    public PreparedSql(String sql, String[] args) {
+        this.sql = sql;
+        this.args = args;
+    }
+
+    /**
+     * Convert collected bind values into the string arguments expected
+     * by the Android database api. Returns null if there are no arguments
+     */
+    public static String[] toArgs(List<Object> values) {
+        if(values.isEmpty()) {
+            return null;
+        }
+        String[] result = new String[values.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(sql);
+        if(args != null) {
+            builder.append(" ").append(Arrays.toString(args)); //$NON-NLS-1$
+        }
+        return builder.toString();
+    }
+}
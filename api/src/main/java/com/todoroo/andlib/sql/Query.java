@@ -8,6 +8,7 @@ package com.todoroo.andlib.sql;
 import com.todoroo.andlib.data.Property;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -95,14 +96,33 @@ public final class Query {
     @Override
     public String toString() {
         StringBuilder sql = new StringBuilder();
+        appendTo(sql, null);
+        return sql.toString();
+    }
+
+    /**
+     * @return this query as placeholder SQL and bind arguments. Queries of
+     * the same shape produce the same SQL, whatever values they compare to
+     */
+    public PreparedSql prepare() {
+        ArrayList<Object> args = new ArrayList<Object>();
+        StringBuilder sql = new StringBuilder();
+        appendTo(sql, args);
+        return new PreparedSql(sql.toString(), PreparedSql.toArgs(args));
+    }
+
+    /**
+     * Append this query, binding criterion values into args if it is not null
+     */
+    void appendTo(StringBuilder sql, List<Object> args) {
         visitSelectClause(sql);
         visitFromClause(sql);
 
-        visitJoinClause(sql);
+        visitJoinClause(sql, args);
         if(queryTemplate == null) {
-            visitWhereClause(sql);
-            visitGroupByClause(sql);
-            visitUnionClause(sql);
+            visitWhereClause(sql, args);
+            visitGroupByClause(sql, args);
+            visitUnionClause(sql, args);
             visitOrderByClause(sql);
             visitLimitClause(sql);
         } else {
@@ -112,8 +132,6 @@ public final class Query {
             }
             sql.append(queryTemplate);
         }
-
-        return sql.toString();
     }
 
     private void visitOrderByClause(StringBuilder sql) {
@@ -127,7 +145,7 @@ public final class Query {
         sql.deleteCharAt(sql.length() - 1).append(SPACE);
     }
 
-    private void visitGroupByClause(StringBuilder sql) {
+    private void visitGroupByClause(StringBuilder sql, List<Object> args) {
         if (groupBies.isEmpty()) {
             return;
         }
@@ -141,33 +159,40 @@ public final class Query {
         }
         sql.append("HAVING");
         for (Criterion havingCriterion : havings) {
-            sql.append(SPACE).append(havingCriterion).append(COMMA);
+            sql.append(SPACE);
+            havingCriterion.appendTo(sql, args);
+            sql.append(COMMA);
         }
         sql.deleteCharAt(sql.length() - 1).append(SPACE);
     }
 
-    private void visitUnionClause(StringBuilder sql) {
+    private void visitUnionClause(StringBuilder sql, List<Object> args) {
         if (unions.isEmpty()) {
             return;
         }
         for (Query query : unions) {
-            sql.append(UNION).append(SPACE).append(query).append(SPACE);
+            sql.append(UNION).append(SPACE);
+            query.appendTo(sql, args);
+            sql.append(SPACE);
         }
     }
 
-    private void visitWhereClause(StringBuilder sql) {
+    private void visitWhereClause(StringBuilder sql, List<Object> args) {
         if (criterions.isEmpty()) {
             return;
         }
         sql.append(WHERE);
         for (Criterion criterion : criterions) {
-            sql.append(SPACE).append(criterion).append(SPACE);
+            sql.append(SPACE);
+            criterion.appendTo(sql, args);
+            sql.append(SPACE);
         }
     }
 
-    private void visitJoinClause(StringBuilder sql) {
+    private void visitJoinClause(StringBuilder sql, List<Object> args) {
         for (Join join : joins) {
-            sql.append(join).append(SPACE);
+            join.appendTo(sql, args);
+            sql.append(SPACE);
         }
     }
 
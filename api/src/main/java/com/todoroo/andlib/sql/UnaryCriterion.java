@@ -5,6 +5,10 @@
  */
 package com.todoroo.andlib.sql;
 
+import com.todoroo.andlib.data.Property;
+
+import java.util.List;
+
 import static com.todoroo.andlib.sql.SqlConstants.SPACE;
 
 public class UnaryCriterion extends Criterion {
@@ -19,9 +23,14 @@ public class UnaryCriterion extends Criterion {
 
     @Override
     protected void populate(StringBuilder sb) {
+        populate(sb, null);
+    }
+
+    @Override
+    protected void populate(StringBuilder sb, List<Object> args) {
         beforePopulateOperator(sb);
         populateOperator(sb);
-        afterPopulateOperator(sb);
+        afterPopulateOperator(sb, args);
     }
 
     public static Criterion eq(Field expression, Object value) {
@@ -36,9 +45,12 @@ public class UnaryCriterion extends Criterion {
         sb.append(operator);
     }
 
-    protected void afterPopulateOperator(StringBuilder sb) {
+    protected void afterPopulateOperator(StringBuilder sb, List<Object> args) {
         if(value == null) {
             return;
+        } else if(args != null && isBindable()) {
+            sb.append('?');
+            args.add(value);
         } else if(value instanceof String) {
             sb.append("'").append(sanitize((String) value)).append("'");
         } else {
@@ -46,6 +58,20 @@ public class UnaryCriterion extends Criterion {
         }
     }
 
+    /**
+     * Android binds every argument as text. Strings can always be bound, and
+     * numbers can be bound when compared against a plain column, since the
+     * column's affinity converts the argument back. Functions and aliases
+     * have no affinity, so their numbers stay inline.
+     */
+    protected boolean isBindable() {
+        if(value instanceof String) {
+            return true;
+        }
+        return (value instanceof Long || value instanceof Integer) &&
+                expression instanceof Property<?> && !expression.hasAlias();
+    }
+
     /**
      * Sanitize the given input for SQL
      */
@@ -103,8 +129,8 @@ public class UnaryCriterion extends Criterion {
                 sb.append(SPACE).append(operator).append(SPACE);
             }
             @Override
-            protected void afterPopulateOperator(StringBuilder sb) {
-                super.afterPopulateOperator(sb);
+            protected void afterPopulateOperator(StringBuilder sb, List<Object> args) {
+                super.afterPopulateOperator(sb, args);
                 sb.append(SPACE).append("ESCAPE").append(" '").append(sanitize(escape)).append("'");
             }
         };
@@ -8,13 +8,21 @@ package com.todoroo.andlib.utility;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.content.res.Resources;
 import android.preference.PreferenceManager;
+import android.util.SparseArray;
 
 import com.todoroo.andlib.service.ContextManager;
 
+import java.util.HashMap;
+
 /**
- * Helper class for reading and writing SharedPreferences
+ * Helper class for reading and writing SharedPreferences.
+ * <p>
+ * Resource keys are resolved once, and typed values are parsed once and
+ * cached until the preference changes. Writes through this class update the
+ * cache right away; other writes are seen through a change listener.
  *
  * @author Tim Su <tim@todoroo.com>
  *
@@ -23,7 +31,8 @@ public class Preferences {
 
     /**
      * Helper to write to editor if key specified is null. Writes a String
-     * property with the given integer
+     * property with the given integer. Commit the editor with
+     * {@link #commit(Editor)}
      */
     public static void setIfUnset(SharedPreferences prefs, Editor editor, Resources r, int keyResource, int value) {
         String key = r.getString(keyResource);
@@ -33,7 +42,8 @@ public class Preferences {
     }
 
     /**
-     * Helper to write to editor if key specified is null
+     * Helper to write to editor if key specified is null. Commit the editor
+     * with {@link #commit(Editor)}
      */
     public static void setIfUnset(SharedPreferences prefs, Editor editor, Resources r, int keyResource, boolean value) {
         String key = r.getString(keyResource);
@@ -43,7 +53,8 @@ public class Preferences {
     }
 
     /**
-     * Helper to write to editor if key specified is null
+     * Helper to write to editor if key specified is null. Commit the editor
+     * with {@link #commit(Editor)}
      */
     public static void setIfUnset(SharedPreferences prefs, Editor editor, Resources r, int keyResource, String value) {
         String key = r.getString(keyResource);
@@ -52,12 +63,50 @@ public class Preferences {
         }
     }
 
+    /**
+     * Commit an editor filled by the setIfUnset helpers, then drop cached
+     * values so that the new defaults are read
+     */
+    public static void commit(Editor editor) {
+        editor.commit();
+        invalidate(null);
+    }
+
     /* ======================================================================
      * ======================================================= helper methods
      * ====================================================================== */
 
     private static SharedPreferences preferences = null;
 
+    /** preference keys by string resource id */
+    private static final SparseArray<String> keys = new SparseArray<String>();
+
+    /** marks a cached preference that is unset or can't be parsed */
+    private static final Object NOT_SET = new Object();
+
+    /**
+     * Incremented on every invalidation, so values read before it are not
+     * cached. Guarded by the class lock
+     */
+    private static int generation = 0;
+
+    /** parsed values by key, one map per type read */
+    private static final HashMap<String, Object> integersFromStrings = new HashMap<String, Object>();
+    private static final HashMap<String, Object> booleans = new HashMap<String, Object>();
+    private static final HashMap<String, Object> ints = new HashMap<String, Object>();
+    private static final HashMap<String, Object> longs = new HashMap<String, Object>();
+
+    /**
+     * Drops cached values of changed preferences. Preferences only keep weak
+     * references to their listeners, so this one is kept here
+     */
+    private static final OnSharedPreferenceChangeListener invalidator = new OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            invalidate(key);
+        }
+    };
+
     /** Get preferences object from the context */
     public static SharedPreferences getPrefs(Context context) {
         if(preferences != null) {
@@ -75,10 +124,53 @@ public class Preferences {
             String alternate = "preferences" + android.os.Process.myUid(); //$NON-NLS-1$
             preferences = context.getSharedPreferences(alternate, Context.MODE_PRIVATE);
         }
+        preferences.registerOnSharedPreferenceChangeListener(invalidator);
 
         return preferences;
     }
 
+    /** @return preference key for the given string resource */
+    public static String getKey(int keyResource) {
+        synchronized(keys) {
+            String key = keys.get(keyResource);
+            if(key == null) {
+                key = ContextManager.getContext().getResources().getString(keyResource);
+                keys.put(keyResource, key);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Drop the cached values of the given preference, or of every
+     * preference if the key is null
+     */
+    private static synchronized void invalidate(String key) {
+        generation++;
+        if(key == null) {
+            integersFromStrings.clear();
+            booleans.clear();
+            ints.clear();
+            longs.clear();
+        } else {
+            integersFromStrings.remove(key);
+            booleans.remove(key);
+            ints.remove(key);
+            longs.remove(key);
+        }
+    }
+
+    /**
+     * Cache a parsed value, unless the preferences were invalidated since
+     * the read that produced it started
+     */
+    private static synchronized void cache(HashMap<String, Object> values, String key,
+            Object value, int startGeneration) {
+        if(generation == startGeneration) {
+            values.put(key, value);
+        }
+    }
+
     /** @return true if given preference is set */
     public static boolean isSet(String key) {
         Context context = ContextManager.getContext();
@@ -101,8 +193,7 @@ public class Preferences {
      * @return integer value, or null on error
      */
     public static String getStringValue(int keyResource) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).getString(context.getResources().getString(keyResource), null);
+        return getStringValue(getKey(keyResource));
     }
 
     /** Gets an integer value from a string preference. Returns null
@@ -112,18 +203,23 @@ public class Preferences {
      * @return integer value, or null on error
      */
     public static int getIntegerFromString(int keyResource, int defaultValue) {
-        Context context = ContextManager.getContext();
-        Resources r = context.getResources();
-        String value = getPrefs(context).getString(r.getString(keyResource), null);
-        if(value == null) {
-            return defaultValue;
+        String key = getKey(keyResource);
+        Object cached;
+        int startGeneration;
+        synchronized(Preferences.class) {
+            cached = integersFromStrings.get(key);
+            startGeneration = generation;
         }
-
-        try {
-            return Integer.parseInt(value);
-        } catch (Exception e) {
-            return defaultValue;
+        if(cached == null) {
+            String value = getPrefs(ContextManager.getContext()).getString(key, null);
+            try {
+                cached = value == null ? NOT_SET : Integer.valueOf(value);
+            } catch (Exception e) {
+                cached = NOT_SET;
+            }
+            cache(integersFromStrings, key, cached, startGeneration);
         }
+        return cached == NOT_SET ? defaultValue : (Integer) cached;
     }
 
     /**
@@ -134,16 +230,14 @@ public class Preferences {
         Editor editor = getPrefs(context).edit();
         editor.putString(key, newValue);
         editor.commit();
+        invalidate(key);
     }
 
     /**
      * Sets string preference from integer value
      */
     public static void setStringFromInteger(int keyResource, int newValue) {
-        Context context = ContextManager.getContext();
-        Editor editor = getPrefs(context).edit();
-        editor.putString(context.getString(keyResource), Integer.toString(newValue));
-        editor.commit();
+        setString(getKey(keyResource), Integer.toString(newValue));
     }
 
     // --- preference fetching (boolean)
@@ -152,26 +246,36 @@ public class Preferences {
      * @return default if value is unset otherwise the value
      */
     public static boolean getBoolean(String key, boolean defValue) {
-        Context context = ContextManager.getContext();
-        try {
-            return getPrefs(context).getBoolean(key, defValue);
-        } catch (ClassCastException e) {
-            return defValue;
+        Object cached;
+        int startGeneration;
+        synchronized(Preferences.class) {
+            cached = booleans.get(key);
+            startGeneration = generation;
+        }
+        if(cached == null) {
+            SharedPreferences prefs = getPrefs(ContextManager.getContext());
+            try {
+                cached = prefs.contains(key) ? Boolean.valueOf(prefs.getBoolean(key, defValue)) : NOT_SET;
+            } catch (ClassCastException e) {
+                cached = NOT_SET;
+            }
+            cache(booleans, key, cached, startGeneration);
         }
+        return cached == NOT_SET ? defValue : (Boolean) cached;
     }
 
     /** Gets a boolean preference (e.g. a CheckBoxPreference setting)
      * @return default if value is unset otherwise the value
      */
     public static boolean getBoolean(int keyResources, boolean defValue) {
-        return getBoolean(ContextManager.getString(keyResources), defValue);
+        return getBoolean(getKey(keyResources), defValue);
     }
 
     /**
      * Sets boolean preference
      */
     public static void setBoolean(int keyResource, boolean value) {
-        setBoolean(ContextManager.getString(keyResource), value);
+        setBoolean(getKey(keyResource), value);
     }
 
     /**
@@ -182,6 +286,7 @@ public class Preferences {
         Editor editor = getPrefs(context).edit();
         editor.putBoolean(key, value);
         editor.commit();
+        invalidate(key);
     }
 
     // --- preference fetching (int)
@@ -190,8 +295,18 @@ public class Preferences {
      * @return default if value is unset otherwise the value
      */
     public static int getInt(String key, int defValue) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).getInt(key, defValue);
+        Object cached;
+        int startGeneration;
+        synchronized(Preferences.class) {
+            cached = ints.get(key);
+            startGeneration = generation;
+        }
+        if(cached == null) {
+            SharedPreferences prefs = getPrefs(ContextManager.getContext());
+            cached = prefs.contains(key) ? Integer.valueOf(prefs.getInt(key, defValue)) : NOT_SET;
+            cache(ints, key, cached, startGeneration);
+        }
+        return cached == NOT_SET ? defValue : (Integer) cached;
     }
 
     /**
@@ -202,6 +317,7 @@ public class Preferences {
         Editor editor = getPrefs(context).edit();
         editor.putInt(key, value);
         editor.commit();
+        invalidate(key);
     }
 
     // --- preference fetching (long)
@@ -210,8 +326,18 @@ public class Preferences {
      * @return default if value is unset otherwise the value
      */
     public static long getLong(String key, long defValue) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).getLong(key, defValue);
+        Object cached;
+        int startGeneration;
+        synchronized(Preferences.class) {
+            cached = longs.get(key);
+            startGeneration = generation;
+        }
+        if(cached == null) {
+            SharedPreferences prefs = getPrefs(ContextManager.getContext());
+            cached = prefs.contains(key) ? Long.valueOf(prefs.getLong(key, defValue)) : NOT_SET;
+            cache(longs, key, cached, startGeneration);
+        }
+        return cached == NOT_SET ? defValue : (Long) cached;
     }
 
     /**
@@ -222,6 +348,7 @@ public class Preferences {
         Editor editor = getPrefs(context).edit();
         editor.putLong(key, value);
         editor.commit();
+        invalidate(key);
     }
 
     /**
@@ -232,6 +359,7 @@ public class Preferences {
         Editor editor = getPrefs(context).edit();
         editor.remove(key);
         editor.commit();
+        invalidate(key);
     }
 
 }
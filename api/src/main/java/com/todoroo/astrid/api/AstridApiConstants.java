@@ -55,6 +55,11 @@ public class AstridApiConstants {
      */
     public static final String EXTRAS_TASK_ID = "task";
 
+    /**
+     * Extras name for an array of task ids
+     */
+    public static final String EXTRAS_TASK_IDS = "tasks";
+
     /**
      * Extras name for a response item broadcast to astrid
      */
@@ -118,7 +123,8 @@ public class AstridApiConstants {
      * Action name for broadcast intent requesting details for a task.
      * Extended details are displayed when a user presses on a task.
      *
-     * <li> EXTRAS_TASK_ID id of the task
+     * <li> EXTRAS_TASK_ID id of the task, or
+     * <li> EXTRAS_TASK_IDS ids of the tasks of a list, answered one task at a time
      * <li> EXTRAS_EXTENDED whether request is for standard or extended details
      */
     public static final String BROADCAST_REQUEST_DETAILS = API_PACKAGE + ".REQUEST_DETAILS";
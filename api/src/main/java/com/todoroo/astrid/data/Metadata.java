@@ -78,6 +78,10 @@ public class Metadata extends AbstractModel {
     public static final LongProperty CREATION_DATE = new LongProperty(
             TABLE, "created");
 
+    /** Unixtime Metadata was last changed */
+    public static final LongProperty MODIFICATION_DATE = new LongProperty(
+            TABLE, "modified");
+
     /** Unixtime metadata was deleted/tombstoned */
     public static final LongProperty DELETION_DATE = new LongProperty(
             TABLE, "deleted");
@@ -92,6 +96,7 @@ public class Metadata extends AbstractModel {
 
     static {
         defaultValues.put(DELETION_DATE.name, 0L);
+        defaultValues.put(MODIFICATION_DATE.name, 0L);
     }
 
     @Override
@@ -122,4 +127,15 @@ public class Metadata extends AbstractModel {
     // --- parcelable helpers
 
     private static final Creator<Metadata> CREATOR = new ModelCreator<Metadata>(Metadata.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(Metadata.class, new ModelFactory<Metadata>() {
+            @Override
+            public Metadata create() {
+                return new Metadata();
+            }
+        });
+    }
 }
@@ -5,7 +5,6 @@
  */
 package com.todoroo.astrid.data;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -60,24 +59,18 @@ abstract public class RemoteModel extends AbstractModel {
     }
 
     protected String getUuidHelper(StringProperty uuid) {
-        if(setValues != null && setValues.containsKey(uuid.name)) {
-            return setValues.getAsString(uuid.name);
-        } else if(values != null && values.containsKey(uuid.name)) {
-            return values.getAsString(uuid.name);
+        if(containsValue(uuid)) {
+            return getValue(uuid);
         } else {
             return NO_UUID;
         }
     }
 
     public void setUuid(String uuid) {
-        if (setValues == null) {
-            setValues = new ContentValues();
-        }
-
         if(NO_UUID.equals(uuid)) {
             clearValue(UUID_PROPERTY);
         } else {
-            setValues.put(UUID_PROPERTY_NAME, uuid);
+            putValue(UUID_PROPERTY_NAME, uuid);
         }
     }
 
@@ -96,4 +96,15 @@ public class StoreObject extends AbstractModel {
     // --- parcelable helpers
 
     private static final Creator<StoreObject> CREATOR = new ModelCreator<StoreObject>(StoreObject.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(StoreObject.class, new ModelFactory<StoreObject>() {
+            @Override
+            public StoreObject create() {
+                return new StoreObject();
+            }
+        });
+    }
 }
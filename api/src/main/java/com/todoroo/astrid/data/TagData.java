@@ -78,6 +78,10 @@ public final class TagData extends RemoteModel {
     public static final LongProperty DELETION_DATE = new LongProperty(
             TABLE, "deleted", Property.PROP_FLAG_DATE);
 
+    /** Unixtime Project was last changed */
+    public static final LongProperty MODIFICATION_DATE = new LongProperty(
+            TABLE, "modified", Property.PROP_FLAG_DATE);
+
     /** Project picture thumbnail */
     public static final StringProperty THUMB = new StringProperty(
             TABLE, "thumb");
@@ -151,6 +155,7 @@ public final class TagData extends RemoteModel {
         defaultValues.put(FLAGS.name, 0);
         defaultValues.put(COMPLETION_DATE.name, 0);
         defaultValues.put(DELETION_DATE.name, 0);
+        defaultValues.put(MODIFICATION_DATE.name, 0L);
         defaultValues.put(LAST_AUTOSYNC.name, 0);
 
         defaultValues.put(THUMB.name, "");
@@ -199,6 +204,17 @@ public final class TagData extends RemoteModel {
 
     public static final Creator<TagData> CREATOR = new ModelCreator<TagData>(TagData.class);
 
+    // --- model factory
+
+    static {
+        registerFactory(TagData.class, new ModelFactory<TagData>() {
+            @Override
+            public TagData create() {
+                return new TagData();
+            }
+        });
+    }
+
     // --- data access methods
 
     /** Checks whether task is deleted. Will return false if DELETION_DATE not read */
@@ -76,4 +76,15 @@ public class TagMetadata extends AbstractModel {
     // --- parcelable helpers
 
     private static final Creator<TagMetadata> CREATOR = new ModelCreator<TagMetadata>(TagMetadata.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(TagMetadata.class, new ModelFactory<TagMetadata>() {
+            @Override
+            public TagMetadata create() {
+                return new TagMetadata();
+            }
+        });
+    }
 }
@@ -135,6 +135,10 @@ public final class Task extends RemoteModel {
     public static final LongProperty REMINDER_SNOOZE = new LongProperty(
             TABLE, "snoozeTime", Property.PROP_FLAG_DATE);
 
+    /** Unixtime the next reminder is scheduled for (0 -> none) */
+    public static final LongProperty REMINDER_NEXT = new LongProperty(
+            TABLE, "nextReminder", Property.PROP_FLAG_DATE);
+
     public static final StringProperty RECURRENCE = new StringProperty(
             TABLE, "recurrence");
 
@@ -256,6 +260,7 @@ public final class Task extends RemoteModel {
         defaultValues.put(REMINDER_LAST.name, 0);
         defaultValues.put(SOCIAL_REMINDER.name, REMINDER_SOCIAL_UNSEEN);
         defaultValues.put(REMINDER_SNOOZE.name, 0);
+        defaultValues.put(REMINDER_NEXT.name, 0);
         defaultValues.put(ESTIMATED_SECONDS.name, 0);
         defaultValues.put(ELAPSED_SECONDS.name, 0);
         defaultValues.put(POSTPONE_COUNT.name, 0);
@@ -310,6 +315,17 @@ public final class Task extends RemoteModel {
 
     public static final Creator<Task> CREATOR = new ModelCreator<Task>(Task.class);
 
+    // --- model factory
+
+    static {
+        registerFactory(Task.class, new ModelFactory<Task>() {
+            @Override
+            public Task create() {
+                return new Task();
+            }
+        });
+    }
+
     // --- data access methods
 
     /** Checks whether task is done. Requires COMPLETION_DATE */
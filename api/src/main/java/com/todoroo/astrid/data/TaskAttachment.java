@@ -168,4 +168,15 @@ public final class TaskAttachment extends RemoteModel {
     // --- parcelable helpers
 
     public static final Creator<TaskAttachment> CREATOR = new ModelCreator<TaskAttachment>(TaskAttachment.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(TaskAttachment.class, new ModelFactory<TaskAttachment>() {
+            @Override
+            public TaskAttachment create() {
+                return new TaskAttachment();
+            }
+        });
+    }
 }
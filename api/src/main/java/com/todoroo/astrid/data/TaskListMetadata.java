@@ -119,4 +119,15 @@ public final class TaskListMetadata extends RemoteModel {
     // --- parcelable helpers
 
     public static final Creator<TaskListMetadata> CREATOR = new ModelCreator<TaskListMetadata>(TaskListMetadata.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(TaskListMetadata.class, new ModelFactory<TaskListMetadata>() {
+            @Override
+            public TaskListMetadata create() {
+                return new TaskListMetadata();
+            }
+        });
+    }
 }
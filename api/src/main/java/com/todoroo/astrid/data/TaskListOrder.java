@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.data;
+
+
+import android.content.ContentValues;
+
+import com.todoroo.andlib.data.AbstractModel;
+import com.todoroo.andlib.data.Property;
+import com.todoroo.andlib.data.Property.IntegerProperty;
+import com.todoroo.andlib.data.Property.LongProperty;
+import com.todoroo.andlib.data.Property.StringProperty;
+import com.todoroo.andlib.data.Table;
+import com.todoroo.andlib.data.TodorooCursor;
+
+/**
+ * Data Model which represents the position of a task in a manually ordered
+ * list. Positions are integer sort keys that increase in the order the
+ * tasks are shown, with gaps so a task can be moved without renumbering
+ * its neighbours. Rows are kept on the device only; the list's serialized
+ * tree is what gets synced and backed up.
+ */
+public class TaskListOrder extends AbstractModel {
+
+    // --- table
+
+    /** table for this model */
+    public static final Table TABLE = new Table("task_list_order", TaskListOrder.class);
+
+    // --- properties
+
+    /** ID */
+    public static final LongProperty ID = new LongProperty(
+            TABLE, ID_PROPERTY_NAME);
+
+    /** Associated Task */
+    public static final LongProperty TASK = new LongProperty(
+            TABLE, "task");
+
+    /** List id: tag uuid or one of the TaskListMetadata filter ids */
+    public static final StringProperty LIST_ID = new StringProperty(
+            TABLE, "list");
+
+    /** Sort key of the task in the list */
+    public static final LongProperty POSITION = new LongProperty(
+            TABLE, "position");
+
+    /** Indent of the task in the list */
+    public static final IntegerProperty INDENT = new IntegerProperty(
+            TABLE, "indent");
+
+    /** List of all properties for this model */
+    public static final Property<?>[] PROPERTIES = generateProperties(TaskListOrder.class);
+
+    // --- defaults
+
+    /** Default values container */
+    private static final ContentValues defaultValues = new ContentValues();
+
+    static {
+        defaultValues.put(POSITION.name, 0L);
+        defaultValues.put(INDENT.name, 0);
+    }
+
+    @Override
+    public ContentValues getDefaultValues() {
+        return defaultValues;
+    }
+
+    // --- data access boilerplate
+
+    public TaskListOrder() {
+        super();
+    }
+
+    public TaskListOrder(TodorooCursor<TaskListOrder> cursor) {
+        this();
+        readPropertiesFromCursor(cursor);
+    }
+
+    public void readFromCursor(TodorooCursor<TaskListOrder> cursor) {
+        super.readPropertiesFromCursor(cursor);
+    }
+
+    @Override
+    public long getId() {
+        return getIdHelper(ID);
+    };
+
+    // --- parcelable helpers
+
+    private static final Creator<TaskListOrder> CREATOR = new ModelCreator<TaskListOrder>(TaskListOrder.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(TaskListOrder.class, new ModelFactory<TaskListOrder>() {
+            @Override
+            public TaskListOrder create() {
+                return new TaskListOrder();
+            }
+        });
+    }
+}
@@ -140,4 +140,15 @@ public class Update extends RemoteModel {
     // --- parcelable helpers
 
     private static final Creator<Update> CREATOR = new ModelCreator<Update>(Update.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(Update.class, new ModelFactory<Update>() {
+            @Override
+            public Update create() {
+                return new Update();
+            }
+        });
+    }
 }
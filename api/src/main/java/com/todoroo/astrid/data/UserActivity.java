@@ -107,4 +107,15 @@ public class UserActivity extends RemoteModel {
     }
 
     private static final Creator<UserActivity> CREATOR = new ModelCreator<UserActivity>(UserActivity.class);
+
+    // --- model factory
+
+    static {
+        registerFactory(UserActivity.class, new ModelFactory<UserActivity>() {
+            @Override
+            public UserActivity create() {
+                return new UserActivity();
+            }
+        });
+    }
 }
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.service;
+
+import android.util.Log;
+
+import com.todoroo.andlib.test.TodorooTestCase;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.dao.MetadataDao;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.service.MetadataService;
+import com.todoroo.astrid.service.TagDataService;
+import com.todoroo.astrid.service.TaskService;
+
+/**
+ * Compares injecting with generated injectors against the reflective
+ * fallback, for a class shaped like the services and adapters built at
+ * startup
+ */
+public class DependencyInjectionBenchmarkTest extends TodorooTestCase {
+
+    private static final int ITERATIONS = 2000;
+
+    /** timed runs per mode, the fastest of which is compared */
+    private static final int RUNS = 3;
+
+    static class Injectee {
+        @Autowired Database database;
+        @Autowired TaskDao taskDao;
+        @Autowired MetadataDao metadataDao;
+        @Autowired ExceptionService exceptionService;
+    }
+
+    static class ChildInjectee extends Injectee {
+        @Autowired TaskService taskService;
+        @Autowired MetadataService metadataService;
+        @Autowired TagDataService tagDataService;
+    }
+
+    /** injected once per mode, to time first use of a class */
+    static class FirstGenerated extends ChildInjectee {
+        @Autowired TaskService firstTaskService;
+    }
+
+    static class FirstReflective extends ChildInjectee {
+        @Autowired TaskService firstTaskService;
+    }
+
+    public void testGeneratedMatchesReflective() {
+        DependencyInjectionService service = DependencyInjectionService.getInstance();
+        ChildInjectee generated = new ChildInjectee();
+        service.inject(generated);
+
+        ChildInjectee reflective = new ChildInjectee();
+        service.useGeneratedInjectors = false;
+        try {
+            service.inject(reflective);
+        } finally {
+            service.useGeneratedInjectors = true;
+        }
+
+        assertNotNull(generated.database);
+        assertSame(reflective.taskDao, generated.taskDao);
+        assertSame(reflective.taskService, generated.taskService);
+        assertSame(reflective.tagDataService, generated.tagDataService);
+    }
+
+    public void testInjectionSpeed() {
+        DependencyInjectionService service = DependencyInjectionService.getInstance();
+        assertTrue(service.hasGeneratedInjector(ChildInjectee.class));
+        assertTrue(service.hasGeneratedInjector(Injectee.class));
+
+        long firstGenerated = timeFirst(service, new FirstGenerated(), true);
+        long firstReflective = timeFirst(service, new FirstReflective(), false);
+        long generated = time(service, true);
+        long reflective = time(service, false);
+
+        Log.i("dependency-injection", String.format( //$NON-NLS-1$
+                "First injection: generated %d us, reflective %d us. " + //$NON-NLS-1$
+                "%d injections: generated %d us, reflective %d us", //$NON-NLS-1$
+                firstGenerated / 1000, firstReflective / 1000,
+                ITERATIONS, generated / 1000, reflective / 1000));
+        assertTrue(generated <= reflective);
+    }
+
+    private long timeFirst(DependencyInjectionService service, ChildInjectee injectee, boolean useGenerated) {
+        service.useGeneratedInjectors = useGenerated;
+        try {
+            long start = System.nanoTime();
+            service.inject(injectee);
+            return System.nanoTime() - start;
+        } finally {
+            service.useGeneratedInjectors = true;
+        }
+    }
+
+    private long time(DependencyInjectionService service, boolean useGenerated) {
+        service.useGeneratedInjectors = useGenerated;
+        try {
+            // warm up caches
+            service.inject(new ChildInjectee());
+
+            long fastest = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                ChildInjectee injectee = null;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    injectee = new ChildInjectee();
+                    service.inject(injectee);
+                }
+                fastest = Math.min(fastest, System.nanoTime() - start);
+                assertNotNull(injectee.tagDataService);
+            }
+            return fastest;
+        } finally {
+            service.useGeneratedInjectors = true;
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.adapter;
+
+import com.todoroo.andlib.data.AbstractDatabase;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.astrid.dao.TagDataDao;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.service.TaskService;
+import com.todoroo.astrid.tags.TagService;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+/**
+ * Checks that cached task details follow writes to the task and to the
+ * tables its details are read from
+ */
+@SuppressWarnings("nls")
+public class TaskDetailCacheTest extends DatabaseTestCase {
+
+    @Autowired private TaskService taskService;
+    @Autowired private TagDataDao tagDataDao;
+
+    private TaskDetailCache cache;
+    private Task task;
+
+    public void testHitWhileUnmodified() {
+        cache.put(task.getId(), modificationDate(), "details");
+
+        assertEquals("details", cache.get(task.getId(), modificationDate()));
+    }
+
+    public void testMissAfterTaskModified() {
+        long cachedAt = modificationDate();
+        cache.put(task.getId(), cachedAt, "details");
+
+        task.setValue(Task.MODIFICATION_DATE, cachedAt + 1000);
+        taskService.save(task);
+
+        assertNull(cache.get(task.getId(), modificationDate()));
+    }
+
+    public void testTagRenameEvicts() {
+        TagService.getInstance().createLink(task, "frogs");
+        long cachedAt = modificationDate();
+        cache.put(task.getId(), cachedAt, "frogs");
+
+        TagData tag = TagService.getInstance().getTagDataWithCase("frogs");
+        TagService.getInstance().rename(tag.getUuid(), "toads");
+
+        assertEquals(cachedAt, modificationDate());
+        assertNull(cache.get(task.getId(), cachedAt));
+    }
+
+    public void testNewTagLinkEvicts() {
+        long cachedAt = modificationDate();
+        cache.put(task.getId(), cachedAt, "details");
+
+        TagData tag = new TagData();
+        tag.setValue(TagData.NAME, "frogs");
+        tagDataDao.persist(tag);
+        TagService.getInstance().createLink(task, "frogs", tag.getUuid());
+
+        assertNull(cache.get(task.getId(), cachedAt));
+    }
+
+    public void testOtherTaskWriteKeepsEntries() {
+        cache.put(task.getId(), modificationDate(), "details");
+
+        Task other = new Task();
+        other.setValue(Task.TITLE, "other");
+        taskService.save(other);
+
+        assertEquals("details", cache.get(task.getId(), modificationDate()));
+    }
+
+    private long modificationDate() {
+        return taskService.fetchById(task.getId(), Task.MODIFICATION_DATE).getValue(Task.MODIFICATION_DATE);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        database.setNotificationDelay(0);
+        cache = new TaskDetailCache(10);
+        database.addListener(cache);
+
+        task = new Task();
+        task.setValue(Task.TITLE, "task");
+        taskService.save(task);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.setNotificationDelay(AbstractDatabase.DEFAULT_NOTIFICATION_DELAY);
+        super.tearDown();
+    }
+
+}
@@ -9,14 +9,18 @@ import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.utility.AndroidUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.backup.BackupService.BackupDirectorySetting;
+import com.todoroo.astrid.dao.MetadataDao;
 import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.test.DatabaseTestCase;
 
 import org.tasks.R;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -30,6 +34,11 @@ public class BackupServiceTests extends DatabaseTestCase {
     @Autowired
     private TaskDao taskDao;
 
+    @Autowired
+    private MetadataDao metadataDao;
+
+    private Task task;
+
     BackupDirectorySetting setting = new BackupDirectorySetting() {
         public File getBackupDirectory() {
             return temporaryDirectory;
@@ -48,7 +57,7 @@ public class BackupServiceTests extends DatabaseTestCase {
             throw new IOException("Could not create temp directory: " + temporaryDirectory.getAbsolutePath());
 
         // make a temporary task
-        Task task = new Task();
+        task = new Task();
         task.setValue(Task.TITLE, "helicopter");
         taskDao.createNew(task);
     }
@@ -180,4 +189,96 @@ public class BackupServiceTests extends DatabaseTestCase {
         }
     }
 
+
+    /** Test an in-place metadata change is in the next incremental backup */
+    public void testMetadataChangeInDelta() throws IOException {
+        boolean backupSetting = getBackupSetting();
+        try {
+            setBackupSetting(true);
+            Preferences.setLong(BackupPreferences.PREF_BACKUP_CHECKPOINT, 0);
+            Metadata metadata = new Metadata();
+            metadata.setValue(Metadata.TASK, task.getId());
+            metadata.setValue(Metadata.KEY, "key");
+            metadata.setValue(Metadata.VALUE1, "before");
+            metadataDao.persist(metadata);
+
+            BackupService service = new BackupService();
+            service.setBackupDirectorySetting(setting);
+            service.testBackup(getContext());
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+
+            Metadata template = new Metadata();
+            template.setValue(Metadata.VALUE1, "after");
+            metadataDao.update(Metadata.KEY.eq("key"), template);
+            service.testBackup(getContext());
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+
+            File[] chain = null;
+            for(File file : temporaryDirectory.listFiles()) {
+                if(file.getName().contains(".delta.")) {
+                    chain = BackupService.getRestoreChain(file);
+                }
+            }
+            assertNotNull(chain);
+            assertEquals(2, chain.length);
+            assertTrue(read(chain[1]).contains("\"after\""));
+        } finally {
+            setBackupSetting(backupSetting);
+        }
+    }
+
+    /** Test incremental backups are chained by checkpoint, not file date */
+    public void testRestoreChainFollowsCheckpoints() throws IOException {
+        File full = writeHeader("auto.0100.xml", 0, 100);
+        File first = writeHeader("auto.0200.delta.xml", 100, 200);
+        File second = writeHeader("auto.0300.delta.xml", 200, 300);
+        full.setLastModified(System.currentTimeMillis());
+        first.setLastModified(System.currentTimeMillis() - 20000);
+        second.setLastModified(System.currentTimeMillis() - 40000);
+
+        File[] chain = BackupService.getRestoreChain(second);
+
+        assertEquals(3, chain.length);
+        assertEquals(full, chain[0]);
+        assertEquals(first, chain[1]);
+        assertEquals(second, chain[2]);
+    }
+
+    /** Test a chain with a missing link is cut at the gap */
+    public void testRestoreChainStopsAtGap() throws IOException {
+        writeHeader("auto.0100.xml", 0, 100);
+        File orphan = writeHeader("auto.0300.delta.xml", 200, 300);
+
+        File[] chain = BackupService.getRestoreChain(orphan);
+
+        assertEquals(1, chain.length);
+        assertEquals(orphan, chain[0]);
+    }
+
+    private File writeHeader(String name, long since, long checkpoint) throws IOException {
+        File file = new File(temporaryDirectory, name);
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("<astrid format=\"3\"" + (since > 0 ? " since=\"" + since + "\"" : "") +
+                    " checkpoint=\"" + checkpoint + "\"></astrid>");
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private String read(File file) throws IOException {
+        Reader reader = TasksXmlImporter.openBackup(file.getAbsolutePath());
+        try {
+            StringBuilder contents = new StringBuilder();
+            char[] buffer = new char[4096];
+            for(int read = reader.read(buffer); read > 0; read = reader.read(buffer)) {
+                contents.append(buffer, 0, read);
+            }
+            return contents.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
 }
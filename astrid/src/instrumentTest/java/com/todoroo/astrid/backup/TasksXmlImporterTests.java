@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.backup;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.dao.TagDataDao;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.legacy.LegacyTaskModel;
+import com.todoroo.astrid.tags.TaskToTagMetadata;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Imports backups large enough to be written in several batches
+ */
+@SuppressWarnings("nls")
+public class TasksXmlImporterTests extends DatabaseTestCase {
+
+    private static final long CREATED = 1000000000000L;
+
+    @Autowired
+    private TaskDao taskDao;
+
+    @Autowired
+    private TagDataDao tagDataDao;
+
+    private File temporaryDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        temporaryDirectory = File.createTempFile("import", Long.toString(System.nanoTime()));
+        assertTrue(temporaryDirectory.delete());
+        assertTrue(temporaryDirectory.mkdir());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        for(File file : temporaryDirectory.listFiles()) {
+            file.delete();
+        }
+        temporaryDirectory.delete();
+    }
+
+    /**
+     * Test that tasks matching an earlier task by name and creation date are
+     * skipped, whether the earlier one is in the same batch, the previous
+     * batch, or already in the database
+     */
+    public void testDuplicatesAreSkipped() throws Exception {
+        ArrayList<Integer> entries = new ArrayList<Integer>();
+        for(int i = 0; i < 250; i++) {
+            entries.add(i);
+            if(i == 5) {
+                // same batch
+                entries.add(i);
+            }
+        }
+        // first of the second batch repeats the last of the first
+        int lastOfFirstBatch = entries.get(TasksXmlImporter.BATCH_SIZE - 1);
+        entries.add(TasksXmlImporter.BATCH_SIZE, lastOfFirstBatch);
+        // a later batch
+        entries.add(0);
+
+        StringBuilder tasks = new StringBuilder();
+        for(int i : entries) {
+            tasks.append(task("task " + i, CREATED + i, null));
+        }
+        File backup = write("full.xml", header(3, 0, 100), tasks);
+
+        importTasks(backup);
+        assertEquals(250, countTasks());
+        assertEquals(1, countTasks("task 5"));
+        assertEquals(1, countTasks("task " + lastOfFirstBatch));
+
+        // everything is in the database already
+        importTasks(backup);
+        assertEquals(250, countTasks());
+    }
+
+    /**
+     * Test that tasks of an incremental backup replace the task with the
+     * same uuid in every batch
+     */
+    public void testDeltaReplacesTasks() throws Exception {
+        StringBuilder original = new StringBuilder();
+        StringBuilder renamed = new StringBuilder();
+        for(int i = 0; i < 150; i++) {
+            original.append(task("task " + i, CREATED + i, "uuid-" + i));
+            renamed.append(task("renamed " + i, CREATED + i + 1, "uuid-" + i));
+        }
+        File full = write("full.xml", header(3, 0, 100), original);
+        File delta = write("delta.xml", header(3, 100, 200), renamed);
+
+        importTasks(full, delta);
+
+        assertEquals(150, countTasks());
+        assertEquals(1, countTasks("renamed 0"));
+        assertEquals(1, countTasks("renamed " + TasksXmlImporter.BATCH_SIZE));
+        assertEquals(1, countTasks("renamed 149"));
+        assertEquals(0, countTasks("task 0"));
+    }
+
+    /**
+     * Test that tags named by format 2 tag metadata get one TagData, even
+     * if tasks in several batches name them
+     */
+    public void testMissingTagDataCreatedOnce() throws Exception {
+        TagData existing = new TagData();
+        existing.setValue(TagData.NAME, "existing");
+        existing.setUuid("existing-uuid");
+        assertTrue(tagDataDao.persist(existing));
+
+        StringBuilder tasks = new StringBuilder();
+        for(int i = 0; i < 150; i++) {
+            tasks.append(task("task " + i, CREATED + i, null));
+            tasks.append(tag("shared", "shared-uuid"));
+            tasks.append(tag("existing", "existing-uuid"));
+        }
+        importTasks(write("full.xml", header(2, 0, 0), tasks));
+
+        assertEquals(150, countTasks());
+        assertEquals(1, countTagData("shared-uuid"));
+        assertEquals(1, countTagData("existing-uuid"));
+    }
+
+    /**
+     * Test that a legacy backup with a bad row imports nothing
+     */
+    public void testLegacyRestoreIsAllOrNothing() throws Exception {
+        StringBuilder tasks = new StringBuilder();
+        tasks.append(legacyTask("first", "LEVEL_2"));
+        tasks.append(legacyTask("second", "NOT_AN_IMPORTANCE"));
+        File backup = write("legacy.xml", "<" + BackupConstants.ASTRID_TAG + ">", tasks);
+
+        try {
+            importTasks(backup);
+            fail("bad row not reported");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(0, countTasks());
+    }
+
+    // --- helpers
+
+    private void importTasks(File... files) throws Exception {
+        String[] paths = new String[files.length];
+        for(int i = 0; i < files.length; i++) {
+            paths[i] = files[i].getAbsolutePath();
+        }
+        TasksXmlImporter.importTasksNow(getContext(), paths);
+    }
+
+    private int countTasks() {
+        return taskDao.count(Query.select(Task.ID));
+    }
+
+    private int countTasks(String title) {
+        return taskDao.count(Query.select(Task.ID).where(Task.TITLE.eq(title)));
+    }
+
+    private int countTagData(String uuid) {
+        return tagDataDao.count(Query.select(TagData.ID).where(TagData.UUID.eq(uuid)));
+    }
+
+    private String header(int format, long since, long checkpoint) {
+        StringBuilder header = new StringBuilder("<" + BackupConstants.ASTRID_TAG + " ");
+        header.append(BackupConstants.ASTRID_ATTR_FORMAT).append("=\"").append(format).append("\"");
+        if(since > 0) {
+            header.append(" ").append(BackupConstants.ASTRID_ATTR_SINCE).append("=\"").append(since).append("\"");
+        }
+        if(checkpoint > 0) {
+            header.append(" ").append(BackupConstants.ASTRID_ATTR_CHECKPOINT).append("=\"").append(checkpoint).append("\"");
+        }
+        return header.append(">").toString();
+    }
+
+    private String task(String title, long created, String uuid) {
+        return "<" + BackupConstants.TASK_TAG + " " + Task.TITLE.name + "=\"" + title + "\" " +
+                Task.CREATION_DATE.name + "=\"" + created + "\"" +
+                (uuid == null ? "" : " " + Task.UUID.name + "=\"" + uuid + "\"") + " />";
+    }
+
+    private String legacyTask(String name, String importance) {
+        return "<" + BackupConstants.TASK_TAG + " " + LegacyTaskModel.NAME + "=\"" + name + "\" " +
+                LegacyTaskModel.CREATION_DATE + "=\"2008-10-22T15:43:31GMT\" " +
+                LegacyTaskModel.IMPORTANCE + "=\"" + importance + "\"></" + BackupConstants.TASK_TAG + ">";
+    }
+
+    private String tag(String name, String uuid) {
+        return "<" + BackupConstants.METADATA_TAG + " " + Metadata.KEY.name + "=\"" + TaskToTagMetadata.KEY + "\" " +
+                Metadata.VALUE1.name + "=\"" + name + "\" " + Metadata.VALUE2.name + "=\"" + uuid + "\" />";
+    }
+
+    private File write(String name, String header, CharSequence body) throws IOException {
+        File file = new File(temporaryDirectory, name);
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>");
+            writer.write(header);
+            writer.write(body.toString());
+            writer.write("</" + BackupConstants.ASTRID_TAG + ">");
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+}
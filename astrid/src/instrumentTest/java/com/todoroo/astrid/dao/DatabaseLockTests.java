@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.dao;
+
+import android.content.ContentValues;
+
+import com.todoroo.andlib.data.AbstractDatabase;
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
+import com.todoroo.andlib.data.AbstractDatabase.LockStatistics;
+import com.todoroo.andlib.data.AbstractModel;
+import com.todoroo.andlib.data.ChangeSet;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.andlib.utility.AndroidUtilities;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DatabaseLockTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskDao taskDao;
+
+    private final List<ChangeSet> published = Collections.synchronizedList(new ArrayList<ChangeSet>());
+
+    private final DatabaseUpdateListener recorder = new DatabaseUpdateListener() {
+        @Override
+        public void onDatabaseUpdated(ChangeSet changes) {
+            published.add(changes);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // notify on the writing thread, so tests see changes right away
+        database.setNotificationDelay(0);
+        database.addListener(recorder);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.removeListener(recorder);
+        database.setNotificationDelay(AbstractDatabase.DEFAULT_NOTIFICATION_DELAY);
+        super.tearDown();
+    }
+
+    private long insertTask(String title) {
+        ContentValues values = new ContentValues();
+        values.put(Task.TITLE.name, title);
+        return database.insert(Task.TABLE.name, AbstractModel.ID_PROPERTY.name, values);
+    }
+
+    private int countTasks() {
+        return taskDao.count(Query.select(Task.ID));
+    }
+
+    /**
+     * Test that writes in a transaction are committed together and
+     * published once when it ends
+     */
+    public void testTransactionPublishesOnce() {
+        final long[] ids = new long[2];
+        database.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                ids[0] = insertTask("happy");
+                assertTrue(published.isEmpty());
+
+                // nested transactions end with the outer one
+                database.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        ids[1] = insertTask("sad");
+                    }
+                });
+                assertTrue(published.isEmpty());
+            }
+        });
+
+        assertEquals(2, countTasks());
+        assertEquals(1, published.size());
+        assertTrue(published.get(0).affects(Task.TABLE, ids[0]));
+        assertTrue(published.get(0).affects(Task.TABLE, ids[1]));
+    }
+
+    /**
+     * Test that a transaction that throws is rolled back, rethrown, and
+     * not published
+     */
+    public void testTransactionRollsBack() {
+        final RuntimeException failure = new RuntimeException("failed");
+        try {
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    insertTask("happy");
+                    throw failure;
+                }
+            });
+            fail("exception not rethrown");
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+
+        assertEquals(0, countTasks());
+        assertTrue(published.isEmpty());
+
+        // the write lock was released
+        insertTask("sad");
+        assertEquals(1, countTasks());
+    }
+
+    /**
+     * Test that writers blocked by a transaction get the lock in the order
+     * they asked for it
+     */
+    public void testWritersServedInArrivalOrder() throws Exception {
+        final LockStatistics before = database.getLockStatistics();
+        final long[] ids = new long[2];
+        final Thread[] writers = new Thread[2];
+
+        database.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < writers.length; i++) {
+                    final int writer = i;
+                    writers[i] = new Thread() {
+                        @Override
+                        public void run() {
+                            ids[writer] = insertTask("writer " + writer);
+                        }
+                    };
+                    writers[i].start();
+                    awaitBlocked(writers[i]);
+                }
+            }
+        });
+        for(Thread writer : writers) {
+            writer.join(5000);
+            assertFalse(writer.isAlive());
+        }
+
+        assertTrue(ids[0] > 0);
+        assertTrue(ids[1] > ids[0]);
+        LockStatistics after = database.getLockStatistics();
+        assertEquals(before.writes + 3, after.writes);
+        assertEquals(before.contendedWrites + 2, after.contendedWrites);
+    }
+
+    /**
+     * Test that queries don't wait for a transaction in progress
+     */
+    public void testReadsDuringTransaction() throws Exception {
+        if(AndroidUtilities.getSdkVersion() < 11) {
+            // without write-ahead logging, SQLite blocks readers itself
+            return;
+        }
+        insertTask("happy");
+        final LockStatistics before = database.getLockStatistics();
+        final int[] count = new int[] { -1 };
+
+        database.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                insertTask("sad");
+                Thread reader = new Thread() {
+                    @Override
+                    public void run() {
+                        count[0] = countTasks();
+                    }
+                };
+                reader.start();
+                try {
+                    reader.join(5000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                assertFalse(reader.isAlive());
+            }
+        });
+
+        // the reader sees the last committed state
+        assertEquals(1, count[0]);
+        assertTrue(database.getLockStatistics().readsDuringWrite > before.readsDuringWrite);
+    }
+
+    /** wait until the given thread is parked, e.g. waiting for the write lock */
+    private static void awaitBlocked(Thread thread) {
+        long end = System.currentTimeMillis() + 5000;
+        while(thread.getState() != Thread.State.WAITING) {
+            assertTrue("thread never blocked", System.currentTimeMillis() < end);
+            AndroidUtilities.sleepDeep(5);
+        }
+    }
+
+}
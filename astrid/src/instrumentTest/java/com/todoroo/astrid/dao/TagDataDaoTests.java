@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.dao;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.utility.AndroidUtilities;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+public class TagDataDaoTests extends DatabaseTestCase {
+
+    @Autowired
+    TagDataDao tagDataDao;
+
+    private long modified(long id) {
+        return tagDataDao.fetch(id, TagData.MODIFICATION_DATE).getValue(TagData.MODIFICATION_DATE);
+    }
+
+    /**
+     * Test that every kind of write stamps the modification date, which
+     * incremental backups select tag data by
+     */
+    public void testModificationDate() throws Exception {
+        TagData tagData = new TagData();
+        tagData.setValue(TagData.NAME, "happy");
+        assertTrue(tagDataDao.persist(tagData));
+        long created = modified(tagData.getId());
+        assertTrue(created > 0);
+
+        // saving without changes leaves it alone
+        AndroidUtilities.sleepDeep(10);
+        assertTrue(tagDataDao.saveExisting(tagData));
+        assertEquals(created, modified(tagData.getId()));
+
+        tagData.setValue(TagData.NAME, "sad");
+        assertTrue(tagDataDao.saveExisting(tagData));
+        long saved = modified(tagData.getId());
+        assertTrue(saved > created);
+
+        AndroidUtilities.sleepDeep(10);
+        TagData template = new TagData();
+        template.setValue(TagData.NAME, "melancholy");
+        assertTrue(tagDataDao.updateById(tagData.getId(), template));
+        assertTrue(modified(tagData.getId()) > saved);
+    }
+
+}
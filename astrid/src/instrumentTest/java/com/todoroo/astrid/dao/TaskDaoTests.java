@@ -185,6 +185,31 @@ public class TaskDaoTests extends DatabaseTestCase {
         cursor.close();
     }
 
+    /**
+     * Test saving changes to an existing task
+     */
+    public void testSaveExisting() throws Exception {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "before");
+        task.setValue(Task.MODIFICATION_DATE, 1L);
+        assertTrue(taskDao.save(task));
+
+        // no changes, nothing written
+        assertFalse(taskDao.saveExisting(task));
+
+        task.setValue(Task.TITLE, "after");
+        assertEquals("before", task.getDatabaseValues().getAsString(Task.TITLE.name));
+        assertEquals("after", task.getMergedValues().getAsString(Task.TITLE.name));
+        assertTrue(taskDao.saveExisting(task));
+        assertEquals(0, task.getSetValues().size());
+        assertEquals("after", task.getDatabaseValues().getAsString(Task.TITLE.name));
+
+        // the modification date set while saving is written too
+        Task saved = taskDao.fetch(task.getId(), Task.TITLE, Task.MODIFICATION_DATE);
+        assertEquals("after", saved.getValue(Task.TITLE));
+        assertTrue(saved.getValue(Task.MODIFICATION_DATE) > 1L);
+    }
+
     /**
      * Test save without prior create doesn't work
      */
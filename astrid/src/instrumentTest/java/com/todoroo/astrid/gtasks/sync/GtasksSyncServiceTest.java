@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.gtasks.sync;
+
+import android.content.ContentValues;
+
+import com.todoroo.andlib.data.AbstractDatabase;
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
+import com.todoroo.andlib.data.AbstractModel;
+import com.todoroo.andlib.data.ChangeSet;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.gtasks.GtasksMetadata;
+import com.todoroo.astrid.gtasks.sync.GtasksSyncService.PendingPush;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Checks how pushes queued by saves are merged and released, without
+ * starting the push thread
+ */
+@SuppressWarnings("nls")
+public class GtasksSyncServiceTest extends DatabaseTestCase {
+
+    private GtasksSyncService service;
+
+    private ChangeSet published;
+
+    private final DatabaseUpdateListener recorder = new DatabaseUpdateListener() {
+        @Override
+        public void onDatabaseUpdated(ChangeSet changes) {
+            published = changes;
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        service = new GtasksSyncService();
+        database.setNotificationDelay(0);
+        database.addListener(recorder);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.removeListener(recorder);
+        database.setNotificationDelay(AbstractDatabase.DEFAULT_NOTIFICATION_DELAY);
+        super.tearDown();
+    }
+
+    private long insertTask(String title) {
+        ContentValues values = new ContentValues();
+        values.put(Task.TITLE.name, title);
+        return database.insert(Task.TABLE.name, AbstractModel.ID_PROPERTY.name, values);
+    }
+
+    private Metadata insertMetadata(long taskId) {
+        ContentValues values = new ContentValues();
+        values.put(Metadata.TASK.name, taskId);
+        values.put(Metadata.KEY.name, GtasksMetadata.METADATA_KEY);
+        Metadata metadata = new Metadata();
+        metadata.setId(database.insert(Metadata.TABLE.name, AbstractModel.ID_PROPERTY.name, values));
+        metadata.setValue(Metadata.TASK, taskId);
+        return metadata;
+    }
+
+    /**
+     * Test that repeated saves of a task become one push, released once
+     * the task's row is published, in the order tasks were first queued
+     */
+    public void testSavesAreCoalesced() {
+        long first = insertTask("first");
+        long second = insertTask("second");
+        ChangeSet changes = published;
+
+        service.queueTaskPush(second);
+        service.queueTaskPush(first);
+        service.queueTaskPush(second);
+        long now = DateUtilities.now();
+        assertTrue(service.takeReadyPushes(now).isEmpty());
+
+        service.onChangesPublished(changes);
+        ArrayList<PendingPush> ready = service.takeReadyPushes(now);
+        assertEquals(2, ready.size());
+        assertEquals(second, ready.get(0).taskId);
+        assertEquals(first, ready.get(1).taskId);
+        assertTrue(ready.get(0).pushTask);
+        service.finishPushes();
+
+        assertTrue(service.takeReadyPushes(now).isEmpty());
+    }
+
+    /**
+     * Test that a move queued with a save waits for both rows and is
+     * pushed together with the task
+     */
+    public void testMoveWaitsForItsMetadata() {
+        long task = insertTask("task");
+        ChangeSet taskChanges = published;
+        Metadata metadata = insertMetadata(task);
+        ChangeSet metadataChanges = published;
+
+        service.queueTaskPush(task);
+        service.queueMove(metadata);
+        long now = DateUtilities.now();
+
+        service.onChangesPublished(taskChanges);
+        assertTrue(service.takeReadyPushes(now).isEmpty());
+
+        service.onChangesPublished(metadataChanges);
+        ArrayList<PendingPush> ready = service.takeReadyPushes(now);
+        assertEquals(1, ready.size());
+        assertTrue(ready.get(0).pushTask);
+        assertEquals(metadata.getId(), ready.get(0).moveMetadataId);
+        service.finishPushes();
+    }
+
+    /**
+     * Test that pushes whose rows are never published go out after the
+     * settle timeout anyway
+     */
+    public void testUnpublishedPushIsReleased() {
+        service.queueTaskPush(1);
+        long now = DateUtilities.now();
+        assertTrue(service.takeReadyPushes(now).isEmpty());
+        assertEquals(1, service.takeReadyPushes(now + DateUtilities.ONE_MINUTE).size());
+        service.finishPushes();
+    }
+
+    /**
+     * Test that a failed push is retried after a growing delay, merges with
+     * saves made in the meantime, and is dropped after the last attempt
+     */
+    public void testFailedPushIsRequeued() {
+        long task = insertTask("task");
+        service.queueTaskPush(task);
+        service.onChangesPublished(published);
+        long now = DateUtilities.now();
+        PendingPush push = service.takeReadyPushes(now).get(0);
+
+        assertTrue(service.requeue(push, now));
+        service.finishPushes();
+        assertTrue(service.takeReadyPushes(now).isEmpty());
+        assertTrue(service.takeReadyPushes(now + GtasksSyncService.RETRY_DELAY - 1).isEmpty());
+        assertSame(push, service.takeReadyPushes(now + GtasksSyncService.RETRY_DELAY).get(0));
+
+        // the second retry waits twice as long
+        assertTrue(service.requeue(push, now));
+        service.finishPushes();
+        assertTrue(service.takeReadyPushes(now + GtasksSyncService.RETRY_DELAY).isEmpty());
+        assertSame(push, service.takeReadyPushes(now + 2 * GtasksSyncService.RETRY_DELAY).get(0));
+
+        // out of attempts
+        assertFalse(service.requeue(push, now));
+        service.finishPushes();
+        assertTrue(service.takeReadyPushes(now + DateUtilities.ONE_HOUR).isEmpty());
+    }
+
+    /**
+     * Test that a push failing while the task is saved again is merged into
+     * the newer push instead of being queued twice
+     */
+    public void testFailedPushMergesWithNewSave() {
+        long task = insertTask("task");
+        Metadata metadata = insertMetadata(task);
+        service.queueMove(metadata);
+        service.onChangesPublished(published);
+        long now = DateUtilities.now();
+        PendingPush failed = service.takeReadyPushes(now).get(0);
+
+        service.queueTaskPush(task);
+        assertTrue(service.requeue(failed, now));
+        service.finishPushes();
+
+        ArrayList<PendingPush> ready = service.takeReadyPushes(now + DateUtilities.ONE_MINUTE);
+        assertEquals(1, ready.size());
+        assertNotSame(failed, ready.get(0));
+        assertTrue(ready.get(0).pushTask);
+        assertEquals(metadata.getId(), ready.get(0).moveMetadataId);
+        service.finishPushes();
+    }
+
+}
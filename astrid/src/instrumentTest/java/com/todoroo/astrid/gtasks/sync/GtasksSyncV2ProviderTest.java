@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.gtasks.sync;
+
+import com.google.api.services.tasks.model.TaskList;
+import com.google.api.services.tasks.model.TaskLists;
+import com.google.api.services.tasks.model.Tasks;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.astrid.data.StoreObject;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.gtasks.GtasksList;
+import com.todoroo.astrid.gtasks.GtasksListService;
+import com.todoroo.astrid.gtasks.GtasksMetadata;
+import com.todoroo.astrid.gtasks.GtasksMetadataService;
+import com.todoroo.astrid.gtasks.GtasksMetadataService.LocalTask;
+import com.todoroo.astrid.gtasks.api.GtasksInvoker;
+import com.todoroo.astrid.service.TaskService;
+import com.todoroo.astrid.sync.SyncResultCallbackAdapter;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Pulls a list through the provider's page-fetch and write path against an
+ * in-memory invoker
+ */
+@SuppressWarnings("nls")
+public class GtasksSyncV2ProviderTest extends DatabaseTestCase {
+
+    private static final String LIST_ID = "list";
+    private static final int PAGE_SIZE = 100;
+
+    @Autowired private GtasksListService gtasksListService;
+    @Autowired private GtasksMetadataService gtasksMetadataService;
+    @Autowired private TaskService taskService;
+
+    private StoreObject list;
+
+    public void testPullsEveryPage() {
+        PagedInvoker invoker = new PagedInvoker();
+        for (int i = 0; i < 250; i++) {
+            invoker.add("task " + i, null);
+        }
+
+        whenPulled(invoker);
+
+        assertEquals(3, invoker.requests);
+        HashMap<String, LocalTask> index = gtasksMetadataService.loadListIndex(LIST_ID);
+        assertEquals(250, index.size());
+        for (LocalTask local : index.values()) {
+            assertTrue(local.taskId != Task.NO_ID);
+        }
+        assertEquals(250, taskService.countTasks());
+    }
+
+    public void testParentOnEarlierPageIsLinked() {
+        PagedInvoker invoker = new PagedInvoker();
+        String parent = invoker.add("parent", null);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            invoker.add("filler " + i, null);
+        }
+        String child = invoker.add("child", parent);
+
+        whenPulled(invoker);
+
+        HashMap<String, LocalTask> index = gtasksMetadataService.loadListIndex(LIST_ID);
+        assertEquals(index.get(parent).taskId,
+                index.get(child).metadata.getValue(GtasksMetadata.PARENT_TASK).longValue());
+    }
+
+    public void testRepeatedPullUpdatesInPlace() {
+        PagedInvoker invoker = new PagedInvoker();
+        for (int i = 0; i < 150; i++) {
+            invoker.add("task " + i, null);
+        }
+
+        whenPulled(invoker);
+        invoker.tasks.get(120).setTitle("renamed");
+        whenPulled(invoker);
+
+        assertEquals(150, taskService.countTasks());
+        LocalTask renamed = gtasksMetadataService.loadListIndex(LIST_ID).get(invoker.tasks.get(120).getId());
+        assertEquals("renamed", taskService.fetchById(renamed.taskId, Task.TITLE).getValue(Task.TITLE));
+    }
+
+    private void whenPulled(GtasksInvoker invoker) {
+        new GtasksSyncV2Provider().synchronizeListHelper(list, invoker, true, null,
+                new SyncResultCallbackAdapter() { /* no progress */ }, false);
+        list = gtasksListService.getList(LIST_ID);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        TaskLists lists = new TaskLists();
+        List<TaskList> items = new ArrayList<TaskList>();
+        items.add(new TaskList().setId(LIST_ID).setTitle("List"));
+        lists.setItems(items);
+        gtasksListService.updateLists(lists);
+        list = gtasksListService.getList(LIST_ID);
+        assertEquals(LIST_ID, list.getValue(GtasksList.REMOTE_ID));
+    }
+
+    /** Serves one list's tasks in pages, the way the tasks API does */
+    private static class PagedInvoker extends GtasksInvoker {
+
+        final ArrayList<com.google.api.services.tasks.model.Task> tasks =
+            new ArrayList<com.google.api.services.tasks.model.Task>();
+        int requests = 0;
+
+        String add(String title, String parent) {
+            String id = "remote-" + tasks.size();
+            tasks.add(new com.google.api.services.tasks.model.Task().setId(id).setTitle(title).
+                    setParent(parent).setPosition(String.format("%020d", tasks.size())));
+            return id;
+        }
+
+        @Override
+        public synchronized Tasks getGtasksPage(String listId, boolean includeDeleted, boolean includeHidden,
+                long lastSyncDate, String pageToken) {
+            requests++;
+            int start = pageToken == null ? 0 : Integer.parseInt(pageToken);
+            int end = Math.min(tasks.size(), start + PAGE_SIZE);
+            Tasks page = new Tasks();
+            page.setItems(new ArrayList<com.google.api.services.tasks.model.Task>(tasks.subList(start, end)));
+            page.setNextPageToken(end < tasks.size() ? Integer.toString(end) : null);
+            return page;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import com.todoroo.astrid.test.DatabaseTestCase;
 import com.todoroo.astrid.utility.AstridPreferences;
 
 import java.util.Date;
+import java.util.HashSet;
 
 public class ReminderServiceTests extends DatabaseTestCase {
 
@@ -233,6 +234,36 @@ public class ReminderServiceTests extends DatabaseTestCase {
         assertTrue(((AlarmExpected)service.getScheduler()).alarmCreated);
     }
 
+    /** tests that scheduling at startup only looks at reminders coming up */
+    public void testScheduleAllWithinHorizon() {
+        Task soon = new Task();
+        soon.setValue(Task.TITLE, "soon");
+        soon.setValue(Task.DUE_DATE, DateUtilities.now() + DateUtilities.ONE_HOUR);
+        soon.setValue(Task.REMINDER_FLAGS, Task.NOTIFY_AT_DEADLINE);
+        taskDao.save(soon);
+
+        Task later = new Task();
+        later.setValue(Task.TITLE, "later");
+        later.setValue(Task.DUE_DATE, DateUtilities.now() + DateUtilities.ONE_WEEK);
+        later.setValue(Task.REMINDER_FLAGS, Task.NOTIFY_AT_DEADLINE);
+        taskDao.save(later);
+
+        // the first scan goes over every task and stores the next reminders
+        AlarmsRecorded recorded = new AlarmsRecorded();
+        service.setScheduler(recorded);
+        service.scheduleAllAlarms(DateUtilities.now() + DateUtilities.ONE_DAY);
+        assertEquals(soon.getValue(Task.DUE_DATE),
+                taskDao.fetch(soon.getId(), Task.REMINDER_NEXT).getValue(Task.REMINDER_NEXT));
+        assertEquals(later.getValue(Task.DUE_DATE),
+                taskDao.fetch(later.getId(), Task.REMINDER_NEXT).getValue(Task.REMINDER_NEXT));
+
+        // later scans only schedule tasks with reminders before the horizon
+        recorded = new AlarmsRecorded();
+        service.setScheduler(recorded);
+        service.scheduleAllAlarms(DateUtilities.now() + DateUtilities.ONE_DAY);
+        assertTrue(recorded.taskIds.contains(soon.getId()));
+        assertFalse(recorded.taskIds.contains(later.getId()));
+    }
 
     // --- helper classes
 
@@ -251,4 +282,13 @@ public class ReminderServiceTests extends DatabaseTestCase {
         }
     }
 
+    public class AlarmsRecorded implements AlarmScheduler {
+        public final HashSet<Long> taskIds = new HashSet<Long>();
+        public void createAlarm(Task task, long time, int type) {
+            if(time == 0 || time == Long.MAX_VALUE)
+                return;
+            taskIds.add(task.getId());
+        }
+    }
+
 }
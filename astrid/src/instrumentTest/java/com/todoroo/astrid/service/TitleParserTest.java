@@ -6,6 +6,8 @@
 package com.todoroo.astrid.service;
 
 
+import android.util.Log;
+
 import com.google.ical.values.Frequency;
 import com.google.ical.values.RRule;
 import com.todoroo.andlib.utility.Preferences;
@@ -578,5 +580,125 @@ public class TitleParserTest extends DatabaseTestCase {
 
     //----------------Priority end----------------//
 
+    //----------------Throughput begin----------------//
+    /** titles exercising every grammar the tests above cover */
+    private static final String[] CORPUS = {
+        "Jog",
+        "Jog on Jan. 12.",
+        "Jog on September 12.",
+        "Jog on 7/12/13",
+        "Jog 13:30",
+        "Jog 8 o'clock AM",
+        "Jog at 12:30 PM Friday",
+        "Jog breakfast tomorrow",
+        "Jog every other week",
+        "Jog daily",
+        "Jog lowest priority",
+        "Jog !!",
+        "Jog bang bang",
+        "Jog #(a cool tag) @home",
+        "Buy milk and eggs for the week ahead"
+    };
+
+    /**
+     * logs how many titles the parser handles per second. The first parse of
+     * each title is checked, and every timed parse has to match it.
+     */
+    public void testParseThroughput() throws Exception {
+        Task[] expected = new Task[CORPUS.length];
+        ArrayList<ArrayList<String>> expectedTags = new ArrayList<ArrayList<String>>();
+        for (int i = 0; i < CORPUS.length; i++) {
+            expected[i] = new Task();
+            expected[i].setValue(Task.TITLE, CORPUS[i]);
+            expectedTags.add(new ArrayList<String>());
+            TitleParser.parse(expected[i], expectedTags.get(i));
+        }
+        assertCorpusParsed(expected, expectedTags);
+
+        int iterations = 200;
+        int parses = iterations * CORPUS.length;
+        Task[] tasks = new Task[parses];
+        ArrayList<ArrayList<String>> tags = new ArrayList<ArrayList<String>>(parses);
+        for (int i = 0; i < parses; i++) {
+            tags.add(new ArrayList<String>());
+        }
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < parses; i++) {
+            Task task = new Task();
+            task.setValue(Task.TITLE, CORPUS[i % CORPUS.length]);
+            TitleParser.parse(task, tags.get(i));
+            tasks[i] = task;
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        Log.i("title-parser", String.format("Parsed %d titles in %d ms, %d titles/s", //$NON-NLS-1$ //$NON-NLS-2$
+                parses, elapsed, parses * 1000L / elapsed));
+
+        for (int i = 0; i < parses; i++) {
+            int j = i % CORPUS.length;
+            String title = CORPUS[j];
+            assertEquals(title, expected[j].getValue(Task.TITLE), tasks[i].getValue(Task.TITLE));
+            assertEquals(title, expected[j].getValue(Task.DUE_DATE), tasks[i].getValue(Task.DUE_DATE));
+            assertEquals(title, expected[j].getValue(Task.IMPORTANCE), tasks[i].getValue(Task.IMPORTANCE));
+            assertEquals(title, expected[j].getValue(Task.RECURRENCE), tasks[i].getValue(Task.RECURRENCE));
+            assertEquals(title, expectedTags.get(j), tags.get(i));
+        }
+    }
+
+    /** checks what each corpus title parses to, in corpus order */
+    private void assertCorpusParsed(Task[] tasks, ArrayList<ArrayList<String>> tags) {
+        assertFalse(tasks[0].hasDueDate());
+        assertEquals("", tasks[0].getValue(Task.RECURRENCE));
+
+        assertDueDate(tasks[1], 0, 12);
+        assertDueDate(tasks[2], 8, 12);
+        assertDueDate(tasks[3], 6, 12);
+
+        assertDueTime(tasks[4], 13, 30);
+        assertDueTime(tasks[5], 8, 0);
+        assertDueTime(tasks[6], 12, 30);
+        assertEquals(Calendar.FRIDAY - 1, new Date(tasks[6].getValue(Task.DUE_DATE)).getDay());
+        assertDueTime(tasks[7], 8, 0);
+
+        RRule rrule = new RRule();
+        rrule.setFreq(Frequency.WEEKLY);
+        rrule.setInterval(2);
+        assertEquals(rrule.toIcal(), tasks[8].getValue(Task.RECURRENCE));
+        rrule = new RRule();
+        rrule.setFreq(Frequency.DAILY);
+        rrule.setInterval(1);
+        assertEquals(rrule.toIcal(), tasks[9].getValue(Task.RECURRENCE));
+
+        assertEquals((int) Task.IMPORTANCE_LEAST, (int) tasks[10].getValue(Task.IMPORTANCE));
+        assertEquals((int) Task.IMPORTANCE_MUST_DO, (int) tasks[11].getValue(Task.IMPORTANCE));
+        assertEquals((int) Task.IMPORTANCE_MUST_DO, (int) tasks[12].getValue(Task.IMPORTANCE));
+
+        assertEquals(2, tags.get(13).size());
+        assertTrue(tags.get(13).contains("a cool tag"));
+        assertTrue(tags.get(13).contains("home"));
+
+        Task plain = tasks[14];
+        assertEquals(CORPUS[14], plain.getValue(Task.TITLE));
+        assertFalse(plain.hasDueDate());
+        assertEquals("", plain.getValue(Task.RECURRENCE));
+        assertTrue(tags.get(14).isEmpty());
+    }
+
+    private void assertDueDate(Task task, int month, int day) {
+        assertTrue(task.hasDueDate());
+        Date date = new Date(task.getValue(Task.DUE_DATE));
+        assertEquals(month, date.getMonth());
+        assertEquals(day, date.getDate());
+    }
+
+    private void assertDueTime(Task task, int hours, int minutes) {
+        assertTrue(task.hasDueTime());
+        Date date = new Date(task.getValue(Task.DUE_DATE));
+        assertEquals(hours, date.getHours());
+        assertEquals(minutes, date.getMinutes());
+    }
+
+    //----------------Throughput end----------------//
+
 
 }
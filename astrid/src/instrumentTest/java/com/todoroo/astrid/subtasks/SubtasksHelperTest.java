@@ -1,18 +1,31 @@
 package com.todoroo.astrid.subtasks;
 
+import com.todoroo.andlib.data.AbstractDatabase;
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Order;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.core.PluginServices;
+import com.todoroo.astrid.dao.TaskListOrderDao.TaskListOrderCriteria;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.TaskListMetadata;
+import com.todoroo.astrid.data.TaskListOrder;
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
+
+import java.util.HashMap;
 
 public class SubtasksHelperTest extends SubtasksTestCase {
 
+    private TaskListMetadata list;
+
     @Override
     protected void setUp() throws Exception {
         super.setUp();
         createTasks();
-        TaskListMetadata m = new TaskListMetadata();
-        m.setValue(TaskListMetadata.FILTER, TaskListMetadata.FILTER_ID_ALL);
-        updater.initializeFromSerializedTree(m, filter, SubtasksHelper.convertTreeToRemoteIds(DEFAULT_SERIALIZED_TREE));
+        list = new TaskListMetadata();
+        list.setValue(TaskListMetadata.FILTER, TaskListMetadata.FILTER_ID_ALL);
+        updater.initializeFromSerializedTree(list, filter, SubtasksHelper.convertTreeToRemoteIds(DEFAULT_SERIALIZED_TREE));
     }
 
     private void createTask(String title, String uuid) {
@@ -48,4 +61,110 @@ public class SubtasksHelperTest extends SubtasksTestCase {
         String mapped = SubtasksHelper.convertTreeToRemoteIds(DEFAULT_SERIALIZED_TREE).replaceAll("\\s", "");
         assertEquals(EXPECTED_REMOTE, mapped);
     }
+
+    private static final long[] EXPECTED_TASK_ORDER = { 1, 2, 3, 4, 5, 6 };
+    private static final int[] EXPECTED_INDENT = { 0, 1, 1, 2, 0, 0 };
+
+    private TodorooCursor<TaskListOrder> queryOrder() {
+        return PluginServices.getTaskListOrderDao().query(
+                Query.select(TaskListOrder.TASK, TaskListOrder.POSITION, TaskListOrder.INDENT).where(
+                        TaskListOrderCriteria.byList(TaskListMetadata.FILTER_ID_ALL)).orderBy(
+                                Order.asc(TaskListOrder.POSITION)));
+    }
+
+    private HashMap<Long, Long> readPositions() {
+        HashMap<Long, Long> positions = new HashMap<Long, Long>();
+        TodorooCursor<TaskListOrder> cursor = queryOrder();
+        try {
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                positions.put(cursor.get(TaskListOrder.TASK), cursor.get(TaskListOrder.POSITION));
+            }
+        } finally {
+            cursor.close();
+        }
+        return positions;
+    }
+
+    public void testWritesOrder() {
+        TodorooCursor<TaskListOrder> cursor = queryOrder();
+        try {
+            assertEquals(EXPECTED_TASK_ORDER.length, cursor.getCount());
+            int i = 0;
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext(), i++) {
+                assertEquals(EXPECTED_TASK_ORDER[i], cursor.get(TaskListOrder.TASK).longValue());
+                assertEquals(EXPECTED_INDENT[i], cursor.get(TaskListOrder.INDENT).intValue());
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testReadingUnchangedTreeKeepsStoredOrder() {
+        TaskListOrder template = new TaskListOrder();
+        template.setValue(TaskListOrder.POSITION, 99L);
+        Criterion firstTask = TaskListOrderCriteria.byListAndTask(TaskListMetadata.FILTER_ID_ALL, 1L);
+        PluginServices.getTaskListOrderDao().update(firstTask, template);
+
+        updater.initializeFromSerializedTree(list, filter, SubtasksHelper.convertTreeToRemoteIds(DEFAULT_SERIALIZED_TREE));
+
+        assertEquals(Long.valueOf(99L), readPositions().get(1L));
+    }
+
+    public void testMoveRewritesOnlyMovedTask() {
+        HashMap<Long, Long> before = readPositions();
+
+        // F (uuid 5) in front of A (uuid 6)
+        updater.moveTo(list, filter, "5", "6");
+
+        HashMap<Long, Long> after = readPositions();
+        assertEquals(before.size(), after.size());
+        for (long taskId = 1; taskId <= 5; taskId++) {
+            assertEquals(before.get(taskId), after.get(taskId));
+        }
+        assertTrue(after.get(6L) < after.get(1L));
+    }
+
+    private static final String REMOTE_TREE = SubtasksHelper.convertTreeToRemoteIds(DEFAULT_SERIALIZED_TREE);
+
+    public void testSerializedTreeWrittenOnFlush() {
+        String before = list.getValue(TaskListMetadata.TASK_IDS);
+
+        updater.moveTo(list, filter, "5", "6");
+        assertEquals(before, list.getValue(TaskListMetadata.TASK_IDS));
+
+        updater.flush(list);
+        assertEquals(updater.serializeTree(), list.getValue(TaskListMetadata.TASK_IDS));
+    }
+
+    public void testCachedTreeChecksChangedTasks() {
+        Node first = updater.findNodeForTask("6");
+        database.setNotificationDelay(0);
+        try {
+            createTask("G", "7");
+            Task completed = PluginServices.getTaskService().fetchByUuid("4", Task.ID);
+            completed.setValue(Task.COMPLETION_DATE, DateUtilities.now());
+            PluginServices.getTaskService().save(completed);
+        } finally {
+            database.setNotificationDelay(AbstractDatabase.DEFAULT_NOTIFICATION_DELAY);
+        }
+
+        updater.initializeFromSerializedTree(list, filter, REMOTE_TREE);
+
+        assertSame(first, updater.findNodeForTask("6"));
+        assertNotNull(updater.findNodeForTask("7"));
+        assertNull(updater.findNodeForTask("4"));
+    }
+
+    public void testUnwrittenMovesRecoveredFromPositions() {
+        // F (uuid 5) in front of A (uuid 6)
+        updater.moveTo(list, filter, "5", "6");
+        String expected = updater.serializeTree();
+
+        OrderedListTreeCache.getInstance().invalidate();
+        updater = new SubtasksFilterUpdater();
+        updater.initializeFromSerializedTree(list, filter, REMOTE_TREE);
+
+        assertEquals(expected, updater.serializeTree());
+        assertEquals(expected, list.getValue(TaskListMetadata.TASK_IDS));
+    }
 }
@@ -34,6 +34,7 @@ public class SubtasksTestCase extends DatabaseTestCase {
         super.setUp();
         filter = CoreFilterExposer.buildInboxFilter(getContext().getResources());
         Preferences.clear(SubtasksUpdater.ACTIVE_TASKS_ORDER);
+        Preferences.clear(AstridOrderedListUpdater.PREF_UNWRITTEN + TaskListMetadata.FILTER_ID_ALL);
         updater = new SubtasksFilterUpdater();
     }
 
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.tags;
+
+import android.content.ContentValues;
+
+import com.todoroo.andlib.data.AbstractDatabase;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.astrid.dao.TagDataDao;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+/**
+ * Checks that the tag data cache follows every kind of write, without
+ * waiting for change notifications
+ */
+@SuppressWarnings("nls")
+public class TagDataCacheTest extends DatabaseTestCase {
+
+    @Autowired private TagDataDao tagDataDao;
+
+    private TagDataCache cache;
+    private TagData tag;
+
+    public void testSaveIsVisibleRightAway() {
+        tag.setValue(TagData.NAME, "toads");
+        tagDataDao.persist(tag);
+
+        assertNull(cache.getByName("frogs"));
+        assertEquals("toads", cache.getByUuid(tag.getUuid()).getValue(TagData.NAME));
+    }
+
+    public void testCriteriaUpdateIsVisibleRightAway() {
+        TagData template = new TagData();
+        template.setValue(TagData.NAME, "toads");
+        tagDataDao.update(TagData.UUID.eq(tag.getUuid()), template);
+
+        assertNull(cache.getByName("frogs"));
+        assertEquals(tag.getId(), cache.getByName("TOADS").getId());
+    }
+
+    public void testDeleteIsVisibleRightAway() {
+        tagDataDao.delete(tag.getId());
+
+        assertNull(cache.getByName("frogs"));
+        assertNull(cache.getByUuid(tag.getUuid()));
+    }
+
+    public void testDeleteWhereIsVisibleRightAway() {
+        tagDataDao.deleteWhere(TagData.NAME.eq("frogs"));
+
+        assertNull(cache.getByName("frogs"));
+        assertTrue(cache.getAll().isEmpty());
+    }
+
+    public void testWritesAreVisibleWhileNotificationsAreHeld() {
+        database.holdNotifications();
+        try {
+            TagData template = new TagData();
+            template.setValue(TagData.NAME, "toads");
+            tagDataDao.update(TagData.UUID.eq(tag.getUuid()), template);
+
+            assertNotNull(cache.getByName("toads"));
+        } finally {
+            database.releaseNotifications();
+        }
+    }
+
+    public void testWriteOutsideDaoIsPickedUpFromNotifications() {
+        database.setNotificationDelay(0);
+        ContentValues values = new ContentValues();
+        values.put(TagData.NAME.name, "toads");
+        database.update(TagData.TABLE.name, values, TagData.UUID.name + " = ?",
+                new String[] { tag.getUuid() });
+
+        assertNotNull(cache.getByName("toads"));
+    }
+
+    public void testLookupsReturnCopies() {
+        cache.getByName("frogs").setValue(TagData.NAME, "toads");
+
+        assertEquals("frogs", cache.getByUuid(tag.getUuid()).getValue(TagData.NAME));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cache = TagDataCache.getInstance();
+
+        tag = new TagData();
+        tag.setValue(TagData.NAME, "frogs");
+        tagDataDao.persist(tag);
+
+        // load the cache before each write
+        assertEquals(tag.getId(), cache.getByName("Frogs").getId());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.setNotificationDelay(AbstractDatabase.DEFAULT_NOTIFICATION_DELAY);
+        super.tearDown();
+    }
+
+}
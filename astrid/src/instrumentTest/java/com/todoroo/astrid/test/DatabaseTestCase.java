@@ -10,6 +10,8 @@ import com.todoroo.andlib.test.TodorooTestCaseWithInjector;
 import com.todoroo.astrid.dao.Database;
 import com.todoroo.astrid.provider.ProviderTestUtilities;
 import com.todoroo.astrid.service.AstridDependencyInjector;
+import com.todoroo.astrid.subtasks.OrderedListTreeCache;
+import com.todoroo.astrid.tags.TagDataCache;
 
 /**
  * Test case that automatically sets up and tears down a test database
@@ -39,6 +41,8 @@ public class DatabaseTestCase extends TodorooTestCaseWithInjector {
 	    assertNotNull(ContextManager.getContext());
 	    database.clear();
 		database.openForWriting();
+		TagDataCache.getInstance().invalidate();
+		OrderedListTreeCache.getInstance().invalidate();
 
 		ProviderTestUtilities.setDatabaseOverride(database);
 	}
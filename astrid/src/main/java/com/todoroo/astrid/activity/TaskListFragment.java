@@ -34,6 +34,8 @@ import android.view.View.OnClickListener;
 import android.view.View.OnKeyListener;
 import android.view.View.OnTouchListener;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.AdapterView.OnItemClickListener;
@@ -49,9 +51,6 @@ import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.service.ExceptionService;
-import com.todoroo.andlib.sql.Criterion;
-import com.todoroo.andlib.sql.Field;
-import com.todoroo.andlib.sql.Join;
 import com.todoroo.andlib.utility.AndroidUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.activity.SortSelectionActivity.OnSortSelectedListener;
@@ -66,11 +65,9 @@ import com.todoroo.astrid.api.TaskDecoration;
 import com.todoroo.astrid.core.CoreFilterExposer;
 import com.todoroo.astrid.core.SortHelper;
 import com.todoroo.astrid.dao.TaskListMetadataDao;
-import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.RemoteModel;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
-import com.todoroo.astrid.data.TaskAttachment;
 import com.todoroo.astrid.data.TaskListMetadata;
 import com.todoroo.astrid.helper.SyncActionHelper;
 import com.todoroo.astrid.helper.TaskListContextMenuExtensionLoader;
@@ -84,7 +81,6 @@ import com.todoroo.astrid.subtasks.SubtasksHelper;
 import com.todoroo.astrid.subtasks.SubtasksListFragment;
 import com.todoroo.astrid.subtasks.SubtasksUpdater;
 import com.todoroo.astrid.sync.SyncProviderPreferences;
-import com.todoroo.astrid.tags.TaskToTagMetadata;
 import com.todoroo.astrid.timers.TimerPlugin;
 import com.todoroo.astrid.ui.QuickAddBar;
 import com.todoroo.astrid.utility.AstridPreferences;
@@ -794,10 +790,35 @@ public class TaskListFragment extends SherlockListFragment implements OnSortSele
                 });
     }
 
-    public static final String TAGS_METADATA_JOIN = "for_tags"; //$NON-NLS-1$
+    /** number of tasks the list window starts with */
+    private static final int WINDOW_SIZE = 50;
 
-    public  static final String FILE_METADATA_JOIN = "for_actions"; //$NON-NLS-1$
+    /** rows left below the screen when the next part of the list is loaded */
+    private static final int PREFETCH_MARGIN = 15;
 
+    private int windowSize = WINDOW_SIZE;
+
+    private final OnScrollListener windowScrollListener = new OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            // nothing to do
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                int totalItemCount) {
+            if (taskAdapter == null || taskAdapter.getCursor() == null) {
+                return;
+            }
+            int loaded = taskAdapter.getCursor().getCount();
+            if (loaded >= windowSize && firstVisibleItem + visibleItemCount + PREFETCH_MARGIN >= totalItemCount) {
+                // each growth re-reads the window from the start, so double it
+                // to keep the total rows read linear in the rows scrolled
+                windowSize = loaded * 2;
+                reconstructCursor();
+            }
+        }
+    };
 
     /**
      * Fill in the Task List with current items
@@ -807,6 +828,7 @@ public class TaskListFragment extends SherlockListFragment implements OnSortSele
             return;
         }
 
+        windowSize = WINDOW_SIZE;
         TodorooCursor<Task> currentCursor = constructCursor();
         if (currentCursor == null) {
             return;
@@ -817,6 +839,7 @@ public class TaskListFragment extends SherlockListFragment implements OnSortSele
 
         setListAdapter(taskAdapter);
         registerForContextMenu(getListView());
+        getListView().setOnScrollListener(windowScrollListener);
 
         loadTaskListContent(true);
     }
@@ -833,32 +856,12 @@ public class TaskListFragment extends SherlockListFragment implements OnSortSele
     }
 
     private TodorooCursor<Task> constructCursor() {
-        String tagName = null;
-        if (getActiveTagData() != null) {
-            tagName = getActiveTagData().getValue(TagData.NAME);
-        }
-
-        Criterion tagsJoinCriterion = Criterion.and(
-                Field.field(TAGS_METADATA_JOIN + "." + Metadata.KEY.name).eq(TaskToTagMetadata.KEY), //$NON-NLS-1$
-                Field.field(TAGS_METADATA_JOIN + "." + Metadata.DELETION_DATE.name).eq(0),
-                Task.ID.eq(Field.field(TAGS_METADATA_JOIN + "." + Metadata.TASK.name)));
-        if (tagName != null) {
-            tagsJoinCriterion = Criterion.and(tagsJoinCriterion, Field.field(TAGS_METADATA_JOIN + "." + TaskToTagMetadata.TAG_NAME.name).neq(tagName));
-        }
-
-        // TODO: For now, we'll modify the query to join and include the things like tag data here.
-        // Eventually, we might consider restructuring things so that this query is constructed elsewhere.
-        String joinedQuery =
-                Join.left(Metadata.TABLE.as(TAGS_METADATA_JOIN),
-                        tagsJoinCriterion).toString() //$NON-NLS-1$
-                + Join.left(TaskAttachment.TABLE.as(FILE_METADATA_JOIN), Task.UUID.eq(Field.field(FILE_METADATA_JOIN + "." + TaskAttachment.TASK_UUID.name)))
-                + filter.getSqlQuery();
-
         sqlQueryTemplate.set(SortHelper.adjustQueryForFlagsAndSort(
-                joinedQuery, sortFlags, sortSort));
+                filter.getSqlQuery(), sortFlags, sortSort));
 
+        // joins in the filter can match a task more than once
         String groupedQuery;
-        if (sqlQueryTemplate.get().contains("GROUP BY")) {
+        if (sqlQueryTemplate.get().contains("GROUP BY") || !sqlQueryTemplate.get().contains("JOIN")) { //$NON-NLS-1$ //$NON-NLS-2$
             groupedQuery = sqlQueryTemplate.get();
         } else if (sqlQueryTemplate.get().contains("ORDER BY")) //$NON-NLS-1$
         {
@@ -866,12 +869,21 @@ public class TaskListFragment extends SherlockListFragment implements OnSortSele
         } else {
             groupedQuery = sqlQueryTemplate.get() + " GROUP BY " + Task.ID;
         }
+
         sqlQueryTemplate.set(groupedQuery);
 
+        // only load the rows around what is on screen, more are loaded as
+        // the list is scrolled. The template stays unlimited for the others
+        // that query the list
+        String windowQuery = groupedQuery;
+        if (!windowQuery.contains("LIMIT")) { //$NON-NLS-1$
+            windowQuery = windowQuery + " LIMIT " + windowSize; //$NON-NLS-1$
+        }
+
         // Peform query
         try {
             return taskService.fetchFiltered(
-                sqlQueryTemplate.get(), null, taskProperties());
+                windowQuery, null, taskProperties());
         } catch (SQLiteException e) {
             // We don't show this error anymore--seems like this can get triggered
             // by a strange bug, but there seems to not be any negative side effect.
@@ -903,6 +915,25 @@ public class TaskListFragment extends SherlockListFragment implements OnSortSele
                 return;
             }
         }
+
+        // otherwise look for it past the loaded window
+        int position = -1;
+        TodorooCursor<Task> ids = taskService.fetchFiltered(sqlQueryTemplate.get(), null, Task.ID);
+        try {
+            for (ids.moveToFirst(); !ids.isAfterLast(); ids.moveToNext()) {
+                if (ids.getLong(0) == withCustomId) {
+                    position = ids.getPosition();
+                    break;
+                }
+            }
+        } finally {
+            ids.close();
+        }
+        if (position >= 0) {
+            windowSize = position + WINDOW_SIZE;
+            reconstructCursor();
+            getListView().setSelection(position);
+        }
     }
 
     /*
@@ -45,10 +45,11 @@ import com.todoroo.astrid.api.FilterCategoryWithNewButton;
 import com.todoroo.astrid.api.FilterListItem;
 import com.todoroo.astrid.api.FilterWithCustomIntent;
 import com.todoroo.astrid.api.FilterWithUpdate;
-import com.todoroo.astrid.service.TaskService;
+import com.todoroo.astrid.service.FilterCountService;
 
 import org.tasks.R;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -67,7 +68,7 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
     // --- instance variables
 
     @Autowired
-    private TaskService taskService;
+    private FilterCountService filterCountService;
 
     /** parent activity */
     protected final Activity activity;
@@ -98,6 +99,9 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
 
     private final HashMap<Filter, Integer> filterCounts;
 
+    /** filters waiting to be counted */
+    private final ArrayList<Filter> pendingFilters = new ArrayList<Filter>();
+
     // Previous solution involved a queue of filters and a filterSizeLoadingThread. The filterSizeLoadingThread had
     // a few problems: how to make sure that the thread is resumed when the controlling activity is resumed, and
     // how to make sure that the the filterQueue does not accumulate filters without being processed. I am replacing
@@ -135,35 +139,17 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
         if(selectable && selection == null) {
             setSelection(filter);
         }
+        synchronized(pendingFilters) {
+            pendingFilters.add(filter);
+            if(pendingFilters.size() > 1) {
+                return;
+            }
+        }
         filterExecutor.submit(new Runnable() {
             @Override
             public void run() {
                 try {
-                    int size = -1;
-                    Matcher m = countPattern.matcher(filter.listingTitle);
-                    if(m.find()) {
-                        String countString = m.group(1);
-                        try {
-                            size = Integer.parseInt(countString);
-                        } catch (NumberFormatException e) {
-                            // Count manually
-                            e.printStackTrace();
-                        }
-                    }
-
-                    if (size < 0) {
-                        size = taskService.countTasks(filter);
-                        filter.listingTitle = filter.listingTitle + (" (" + //$NON-NLS-1$
-                                size + ")"); //$NON-NLS-1$
-                    }
-
-                    filterCounts.put(filter, size);
-                    activity.runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            notifyDataSetChanged();
-                        }
-                    });
+                    loadFilterCounts();
                 } catch (Exception e) {
                     Log.e("astrid-filter-adapter", "Error loading filter size", e); //$NON-NLS-1$ //$NON-NLS-2$
                 }
@@ -171,6 +157,54 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
         });
     }
 
+    /**
+     * Count every filter offered since the last call, counting together
+     * the ones that can be, then update the list once
+     */
+    private void loadFilterCounts() {
+        ArrayList<Filter> filters;
+        synchronized(pendingFilters) {
+            filters = new ArrayList<Filter>(pendingFilters);
+            pendingFilters.clear();
+        }
+
+        ArrayList<Filter> uncounted = new ArrayList<Filter>();
+        for(Filter filter : filters) {
+            int size = -1;
+            Matcher m = countPattern.matcher(filter.listingTitle);
+            if(m.find()) {
+                String countString = m.group(1);
+                try {
+                    size = Integer.parseInt(countString);
+                } catch (NumberFormatException e) {
+                    // count it below
+                    Log.w("astrid-filter-adapter", "Unparseable count in: " + filter.listingTitle, e); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+
+            if(size < 0) {
+                uncounted.add(filter);
+            } else {
+                filterCounts.put(filter, size);
+            }
+        }
+
+        HashMap<Filter, Integer> counts = filterCountService.countTasks(uncounted);
+        for(Filter filter : uncounted) {
+            int size = counts.get(filter);
+            filter.listingTitle = filter.listingTitle + (" (" + //$NON-NLS-1$
+                    size + ")"); //$NON-NLS-1$
+            filterCounts.put(filter, size);
+        }
+
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                notifyDataSetChanged();
+            }
+        });
+    }
+
     @Override
     public boolean hasStableIds() {
         return true;
@@ -226,7 +260,7 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
         filterExecutor.submit(new Runnable() {
             @Override
             public void run() {
-                int size = taskService.countTasks(filter);
+                int size = filterCountService.recountTasks(filter);
                 filterCounts.put(filter, size);
                 activity.runOnUiThread(new Runnable() {
 
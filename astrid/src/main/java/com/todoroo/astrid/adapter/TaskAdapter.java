@@ -10,6 +10,7 @@ import android.app.Dialog;
 import android.app.PendingIntent.CanceledException;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ResolveInfo;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.database.Cursor;
@@ -45,40 +46,53 @@ import android.widget.TextView;
 
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.Property.IntegerProperty;
-import com.todoroo.andlib.data.Property.LongProperty;
-import com.todoroo.andlib.data.Property.StringProperty;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.AndroidUtilities;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Pair;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.activity.TaskListFragment;
+import com.todoroo.astrid.alarms.AlarmDetailExposer;
 import com.todoroo.astrid.api.AstridApiConstants;
 import com.todoroo.astrid.api.TaskAction;
 import com.todoroo.astrid.api.TaskDecoration;
+import com.todoroo.astrid.api.TaskDetailExposer;
 import com.todoroo.astrid.core.LinkActionExposer;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.RemoteModel;
+import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.TaskAttachment;
 import com.todoroo.astrid.files.FilesAction;
 import com.todoroo.astrid.files.FilesControlSet;
+import com.todoroo.astrid.gtasks.GtasksDetailExposer;
 import com.todoroo.astrid.helper.TaskAdapterAddOnManager;
 import com.todoroo.astrid.notes.NotesAction;
+import com.todoroo.astrid.notes.NotesDetailExposer;
+import com.todoroo.astrid.repeats.RepeatDetailExposer;
+import com.todoroo.astrid.service.MetadataService;
 import com.todoroo.astrid.service.TaskService;
 import com.todoroo.astrid.service.ThemeService;
+import com.todoroo.astrid.tags.TagDetailExposer;
 import com.todoroo.astrid.tags.TaskToTagMetadata;
 import com.todoroo.astrid.ui.CheckableImageView;
 import com.todoroo.astrid.utility.Constants;
 
 import org.tasks.R;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicReference;
@@ -97,8 +111,6 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
 
     public static final String DETAIL_SEPARATOR = " | "; //$NON-NLS-1$
 
-    private static final StringProperty TAGS = new StringProperty(null, "group_concat(nullif(" + TaskListFragment.TAGS_METADATA_JOIN + "." + TaskToTagMetadata.TAG_NAME.name + ", '')"+ ", '  |  ')").as("tags");
-    private static final LongProperty FILE_ID_PROPERTY = TaskAttachment.ID.cloneAs(TaskListFragment.FILE_METADATA_JOIN, "fileId");
     private static final IntegerProperty HAS_NOTES_PROPERTY = new IntegerProperty(null, "length(" + Task.NOTES + ") > 0").as("hasNotes");
 
     // --- other constants
@@ -117,15 +129,14 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         Task.HIDE_UNTIL,
         Task.DELETION_DATE,
         Task.DETAILS,
+        Task.DETAILS_DATE,
         Task.ELAPSED_SECONDS,
         Task.TIMER_START,
         Task.RECURRENCE,
         Task.USER_ID,
         Task.REMINDER_LAST,
         Task.SOCIAL_REMINDER,
-        HAS_NOTES_PROPERTY, // Whether or not the task has notes
-        TAGS, // Concatenated list of tags
-        FILE_ID_PROPERTY // File id
+        HAS_NOTES_PROPERTY // Whether or not the task has notes
     };
 
     public static final Property<?>[] BASIC_PROPERTIES = new Property<?>[] {
@@ -187,6 +198,12 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
     @Autowired
     protected TaskService taskService;
 
+    @Autowired
+    protected MetadataService metadataService;
+
+    @Autowired
+    protected Database database;
+
     protected final Context context;
     protected final TaskListFragment fragment;
     protected final Resources resources;
@@ -195,6 +212,9 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
     protected final int resource;
     protected final LayoutInflater inflater;
     private DetailLoaderThread detailLoader;
+
+    /** tasks whose details have been checked since the caches were flushed. UI thread only */
+    private final HashSet<Long> detailsChecked = new HashSet<Long>();
     private int fontSize;
     private long mostRecentlyMade = -1;
     private final ScaleAnimation scaleAnimation;
@@ -216,6 +236,15 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
 
     private final Map<Long, TaskAction> taskActionLoader = Collections.synchronizedMap(new HashMap<Long, TaskAction>());
 
+    // --- tags and attachments, loaded for a window of rows at a time
+
+    /** number of rows tags and attachments are loaded for at once */
+    private static final int TAGS_AND_FILES_WINDOW = 50;
+
+    private final HashSet<Long> tagsAndFilesLoaded = new HashSet<Long>();
+    private final HashMap<Long, String> tagsByTask = new HashMap<Long, String>();
+    private final HashSet<Long> tasksWithFiles = new HashSet<Long>();
+
     /**
      * Constructor
      *
@@ -233,6 +262,7 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
             OnCompletedTaskListener onCompletedTaskListener) {
         super(ContextManager.getContext(), c, autoRequery);
         DependencyInjectionService.getInstance().inject(this);
+        registerDetailCache(database);
 
         this.context = ContextManager.getContext();
         this.query = query;
@@ -296,11 +326,54 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         }
     }
 
+    /**
+     * Check the details of the rows not yet checked, as read by the list's
+     * cursor, in the background
+     */
     private void startDetailThread() {
         if (Preferences.getBoolean(R.string.p_showNotes, false) && !simpleLayout && !titleOnlyLayout) {
-            detailLoader = new DetailLoaderThread();
-            detailLoader.start();
+            ArrayList<Task> tasks = readUncheckedDetails(getCursor());
+            if (!tasks.isEmpty()) {
+                detailLoader = new DetailLoaderThread(tasks);
+                detailLoader.start();
+            }
+        }
+    }
+
+    /**
+     * Copy what the detail loader looks at out of the rows of the given
+     * cursor, so it doesn't have to run the list's query again
+     */
+    @SuppressWarnings("unchecked")
+    private ArrayList<Task> readUncheckedDetails(Cursor cursor) {
+        ArrayList<Task> tasks = new ArrayList<Task>();
+        if (cursor == null || cursor.isClosed() || cursor.getColumnIndex(Task.DETAILS_DATE.name) < 0) {
+            return tasks;
+        }
+        TodorooCursor<Task> taskCursor = (TodorooCursor<Task>) cursor;
+        int position = cursor.getPosition();
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            long id = taskCursor.get(Task.ID);
+            if (!detailsChecked.add(id)) {
+                continue;
+            }
+            Task task = new Task();
+            task.setId(id);
+            task.setValue(Task.DETAILS, taskCursor.get(Task.DETAILS));
+            task.setValue(Task.DETAILS_DATE, taskCursor.get(Task.DETAILS_DATE));
+            task.setValue(Task.MODIFICATION_DATE, taskCursor.get(Task.MODIFICATION_DATE));
+            task.setValue(Task.COMPLETION_DATE, taskCursor.get(Task.COMPLETION_DATE));
+            tasks.add(task);
         }
+        cursor.moveToPosition(position);
+        return tasks;
+    }
+
+    @Override
+    public void changeCursor(Cursor cursor) {
+        super.changeCursor(cursor);
+        // check the rows the list has grown by
+        startDetailThread();
     }
 
     /* ======================================================================
@@ -382,8 +455,12 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         ViewHolder viewHolder = ((ViewHolder)view.getTag());
 
         if (!titleOnlyLayout) {
-            viewHolder.tagsString = cursor.get(TAGS);
-            viewHolder.hasFiles = cursor.get(FILE_ID_PROPERTY) > 0;
+            long taskId = cursor.get(Task.ID);
+            if (!tagsAndFilesLoaded.contains(taskId)) {
+                loadTagsAndFiles(cursor);
+            }
+            viewHolder.tagsString = tagsByTask.get(taskId);
+            viewHolder.hasFiles = tasksWithFiles.contains(taskId);
             viewHolder.hasNotes = cursor.get(HAS_NOTES_PROPERTY) > 0;
         }
 
@@ -395,6 +472,64 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         setTaskAppearance(viewHolder, task);
     }
 
+    /**
+     * Load tags and attachment flags for a window of rows around the
+     * cursor's current row. The cursor is left on the same row
+     */
+    private void loadTagsAndFiles(TodorooCursor<Task> cursor) {
+        int position = cursor.getPosition();
+        int start = Math.max(0, position - TAGS_AND_FILES_WINDOW / 4);
+        int end = Math.min(cursor.getCount(), start + TAGS_AND_FILES_WINDOW);
+        ArrayList<Long> ids = new ArrayList<Long>(end - start);
+        for (int i = start; i < end; i++) {
+            if (cursor.moveToPosition(i)) {
+                long id = cursor.get(Task.ID);
+                if (tagsAndFilesLoaded.add(id)) {
+                    ids.add(id);
+                }
+            }
+        }
+        cursor.moveToPosition(position);
+        if (ids.isEmpty()) {
+            return;
+        }
+        Long[] idArray = ids.toArray(new Long[ids.size()]);
+
+        Criterion tagCriterion = Criterion.and(Metadata.KEY.eq(TaskToTagMetadata.KEY),
+                Metadata.DELETION_DATE.eq(0), Metadata.TASK.in(idArray));
+        TagData activeTag = fragment.getActiveTagData();
+        if (activeTag != null) {
+            tagCriterion = Criterion.and(tagCriterion,
+                    TaskToTagMetadata.TAG_NAME.neq(activeTag.getValue(TagData.NAME)));
+        }
+        TodorooCursor<Metadata> tags = metadataService.query(Query.select(
+                Metadata.TASK, TaskToTagMetadata.TAG_NAME).where(tagCriterion));
+        try {
+            for (tags.moveToFirst(); !tags.isAfterLast(); tags.moveToNext()) {
+                String name = tags.getString(1);
+                if (TextUtils.isEmpty(name)) {
+                    continue;
+                }
+                long taskId = tags.getLong(0);
+                String existing = tagsByTask.get(taskId);
+                tagsByTask.put(taskId, existing == null ? name : existing + "  |  " + name); //$NON-NLS-1$
+            }
+        } finally {
+            tags.close();
+        }
+
+        TodorooCursor<Task> files = taskService.query(Query.select(Task.ID).where(Criterion.and(
+                Task.ID.in(idArray), Task.UUID.in(Query.select(TaskAttachment.TASK_UUID).from(
+                        TaskAttachment.TABLE).where(TaskAttachment.DELETED_AT.eq(0))))));
+        try {
+            for (files.moveToFirst(); !files.isAfterLast(); files.moveToNext()) {
+                tasksWithFiles.add(files.getLong(0));
+            }
+        } finally {
+            files.close();
+        }
+    }
+
     public String getItemUuid(int position) {
         TodorooCursor<Task> c = (TodorooCursor<Task>) getCursor();
         if (c != null) {
@@ -426,8 +561,8 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         public LinearLayout taskRow;
         public View taskActionContainer;
         public ImageView taskActionIcon;
-        public String tagsString; // From join query, not part of the task model
-        public boolean hasFiles; // From join query, not part of the task model
+        public String tagsString; // From side query, not part of the task model
+        public boolean hasFiles; // From side query, not part of the task model
         public boolean hasNotes;
 
         public View[] decorations;
@@ -702,22 +837,49 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
     // it's best to do this, though, in order to append details to each other
     private final Map<Long, StringBuilder> taskDetailLoader = Collections.synchronizedMap(new HashMap<Long, StringBuilder>(0));
 
+    /** number of computed details kept across adapters */
+    private static final int DETAIL_CACHE_SIZE = 500;
+
+    /** details computed by the {@link TaskDetailExposer}s, shared by adapters */
+    private static final TaskDetailCache detailCache = new TaskDetailCache(DETAIL_CACHE_SIZE);
+
+    private static boolean detailCacheRegistered = false;
+
+    private static synchronized void registerDetailCache(Database database) {
+        if(!detailCacheRegistered) {
+            database.addListener(detailCache);
+            detailCacheRegistered = true;
+        }
+    }
+
+    /** Exposers consulted for task details, in the order details are shown */
+    private final TaskDetailExposer[] detailExposers = new TaskDetailExposer[] {
+            new TagDetailExposer(),
+            new AlarmDetailExposer(),
+            new GtasksDetailExposer(),
+            new RepeatDetailExposer(),
+            new NotesDetailExposer(),
+    };
+
     public class DetailLoaderThread extends Thread {
+
+        /** rows of the list to check, with their stored details */
+        private final ArrayList<Task> tasks;
+
+        public DetailLoaderThread(ArrayList<Task> tasks) {
+            this.tasks = tasks;
+        }
+
         @Override
         public void run() {
-            // for all of the tasks returned by our cursor, verify details
+            // for all of the tasks read by our cursor, verify details
             AndroidUtilities.sleepDeep(500L);
-            TodorooCursor<Task> fetchCursor = taskService.fetchFiltered(
-                    query.get(), null, Task.ID, Task.TITLE, Task.DETAILS, Task.DETAILS_DATE,
-                    Task.MODIFICATION_DATE, Task.COMPLETION_DATE);
+            final ArrayList<Task> updated = new ArrayList<Task>();
             try {
                 Random random = new Random();
+                ArrayList<Task> stale = new ArrayList<Task>();
 
-                Task task = new Task();
-
-                for(fetchCursor.moveToFirst(); !fetchCursor.isAfterLast(); fetchCursor.moveToNext()) {
-                    task.clear();
-                    task.readFromCursor(fetchCursor);
+                for(Task task : tasks) {
                     if(task.isCompleted()) {
                         continue;
                     }
@@ -725,42 +887,45 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
                     if(detailsAreRecentAndUpToDate(task)) {
                         // even if we are up to date, randomly load a fraction
                         if(random.nextFloat() < 0.1) {
-                            taskDetailLoader.put(task.getId(),
-                                    new StringBuilder(task.getValue(Task.DETAILS)));
-                            requestNewDetails(task);
-                            if(Constants.DEBUG) {
-                                System.err.println("Refreshing details: " + task.getId()); //$NON-NLS-1$
-                            }
+                            stale.add(task);
                         }
                         continue;
-                    } else if(Constants.DEBUG) {
-                        System.err.println("Forced loading of details: " + task.getId() + //$NON-NLS-1$
-                                "\n  details: " + new Date(task.getValue(Task.DETAILS_DATE)) + //$NON-NLS-1$
-                                "\n  modified: " + new Date(task.getValue(Task.MODIFICATION_DATE))); //$NON-NLS-1$
                     }
-                    addTaskToLoadingArray(task);
-
-                    task.setValue(Task.DETAILS, DETAIL_SEPARATOR);
-                    task.setValue(Task.DETAILS_DATE, DateUtilities.now());
-                    taskService.save(task);
 
-                    requestNewDetails(task);
-                }
-                if(taskDetailLoader.size() > 0) {
-                    Activity activity = fragment.getActivity();
-                    if (activity != null) {
-                        activity.runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                notifyDataSetChanged();
-                            }
-                        });
+                    String cached = detailCache.get(task.getId(), task.getValue(Task.MODIFICATION_DATE));
+                    if(cached != null) {
+                        setDetails(task, cached, updated);
+                    } else {
+                        stale.add(task);
                     }
                 }
+
+                if(!stale.isEmpty()) {
+                    loadDetails(stale, updated);
+                }
             } catch (Exception e) {
                 // suppress silently
-            } finally {
-                fetchCursor.close();
+            }
+
+            if(updated.isEmpty()) {
+                return;
+            }
+            taskService.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for(Task task : updated) {
+                        taskService.save(task);
+                    }
+                }
+            });
+            Activity activity = fragment.getActivity();
+            if (activity != null) {
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        notifyDataSetChanged();
+                    }
+                });
             }
         }
 
@@ -769,18 +934,87 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
             !TextUtils.isEmpty(task.getValue(Task.DETAILS));
         }
 
-        private void addTaskToLoadingArray(Task task) {
-            StringBuilder detailStringBuilder = new StringBuilder();
-            taskDetailLoader.put(task.getId(), detailStringBuilder);
+        /**
+         * Compute details for the given tasks, one call per exposer
+         */
+        private void loadDetails(ArrayList<Task> tasks, ArrayList<Task> updated) {
+            long[] ids = new long[tasks.size()];
+            for(int i = 0; i < ids.length; i++) {
+                ids[i] = tasks.get(i).getId();
+            }
+
+            StringBuilder[] details = new StringBuilder[ids.length];
+            for(int i = 0; i < ids.length; i++) {
+                details[i] = new StringBuilder();
+            }
+            for(TaskDetailExposer exposer : detailExposers) {
+                String[] exposed = exposer.getTaskDetails(context, ids);
+                for(int i = 0; i < ids.length; i++) {
+                    if(TextUtils.isEmpty(exposed[i])) {
+                        continue;
+                    }
+                    if(details[i].length() > 0) {
+                        details[i].append(DETAIL_SEPARATOR);
+                    }
+                    details[i].append(exposed[i]);
+                }
+            }
+
+            for(int i = 0; i < ids.length; i++) {
+                Task task = tasks.get(i);
+                String detail = details[i].length() == 0 ? DETAIL_SEPARATOR : details[i].toString();
+                detailCache.put(task.getId(), task.getValue(Task.MODIFICATION_DATE), detail);
+                setDetails(task, detail, updated);
+            }
+
+            requestExternalDetails(ids);
         }
 
-        private void requestNewDetails(Task task) {
-            Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_REQUEST_DETAILS);
-            broadcastIntent.putExtra(AstridApiConstants.EXTRAS_TASK_ID, task.getId());
+        /**
+         * Ask add-ons outside this package for details of the given tasks,
+         * with one broadcast per add-on. Their replies arrive through {@link TaskAdapter#addDetails(long, String)}
+         */
+        private void requestExternalDetails(long[] ids) {
+            Intent request = new Intent(AstridApiConstants.BROADCAST_REQUEST_DETAILS);
+            List<ResolveInfo> receivers = context.getPackageManager().queryBroadcastReceivers(request, 0);
+            HashSet<String> packages = new HashSet<String>();
+            for(ResolveInfo receiver : receivers) {
+                String packageName = receiver.activityInfo.packageName;
+                if(!context.getPackageName().equals(packageName)) {
+                    packages.add(packageName);
+                }
+            }
+            if(packages.isEmpty()) {
+                return;
+            }
+
             Activity activity = fragment.getActivity();
-            if (activity != null) {
-                activity.sendOrderedBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
+            if(activity == null) {
+                return;
+            }
+            for(String packageName : packages) {
+                Intent intent = new Intent(AstridApiConstants.BROADCAST_REQUEST_DETAILS);
+                intent.setPackage(packageName);
+                intent.putExtra(AstridApiConstants.EXTRAS_TASK_IDS, ids);
+                activity.sendOrderedBroadcast(intent, AstridApiConstants.PERMISSION_READ);
+            }
+        }
+
+        /**
+         * Show the given details for the task, and queue them to be saved
+         * if they differ from what is stored
+         */
+        private void setDetails(Task task, String detail, ArrayList<Task> updated) {
+            taskDetailLoader.put(task.getId(), new StringBuilder(detail));
+            if(detail.equals(task.getValue(Task.DETAILS)) &&
+                    task.getValue(Task.DETAILS_DATE) >= task.getValue(Task.MODIFICATION_DATE)) {
+                return;
             }
+            Task save = new Task();
+            save.setId(task.getId());
+            save.setValue(Task.DETAILS, detail);
+            save.setValue(Task.DETAILS_DATE, DateUtilities.now());
+            updated.add(save);
         }
     }
 
@@ -861,8 +1095,12 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
      */
     public void flushCaches() {
         completedItems.clear();
+        tagsAndFilesLoaded.clear();
+        tagsByTask.clear();
+        tasksWithFiles.clear();
         decorationManager.clearCache();
         taskDetailLoader.clear();
+        detailsChecked.clear();
         startDetailThread();
     }
 
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.adapter;
+
+import android.support.v4.util.LruCache;
+
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
+import com.todoroo.andlib.data.ChangeSet;
+import com.todoroo.andlib.data.Table;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.data.TaskListOrder;
+
+/**
+ * Details computed by the {@link com.todoroo.astrid.api.TaskDetailExposer}s,
+ * by task id. An entry is only used while the task's modification date is
+ * unchanged.
+ * <p>
+ * Tags, alarms and list names live outside the task table and change
+ * without bumping the task's modification date, so any write to another
+ * table empties the cache.
+ */
+class TaskDetailCache implements DatabaseUpdateListener {
+
+    private final LruCache<Long, CachedDetails> cache;
+
+    private static class CachedDetails {
+        final long modificationDate;
+        final String details;
+
+        CachedDetails(long modificationDate, String details) {
+            this.modificationDate = modificationDate;
+            this.details = details;
+        }
+    }
+
+    TaskDetailCache(int size) {
+        cache = new LruCache<Long, CachedDetails>(size);
+    }
+
+    /**
+     * @return cached details for the task, or null if there are none for
+     *         this modification date
+     */
+    String get(long taskId, long modificationDate) {
+        CachedDetails cached = cache.get(taskId);
+        if(cached == null || cached.modificationDate != modificationDate) {
+            return null;
+        }
+        return cached.details;
+    }
+
+    void put(long taskId, long modificationDate, String details) {
+        cache.put(taskId, new CachedDetails(modificationDate, details));
+    }
+
+    @Override
+    public void onDatabaseUpdated(ChangeSet changes) {
+        for(int i = 0; i < Database.TABLES.length; i++) {
+            Table table = Database.TABLES[i];
+            // list positions don't show up in the details
+            if(table != Task.TABLE && table != TaskListOrder.TABLE && changes.affects(table)) {
+                cache.evictAll();
+                return;
+            }
+        }
+    }
+
+}
@@ -14,6 +14,7 @@ import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.api.AstridApiConstants;
+import com.todoroo.astrid.api.TaskDetailExposer;
 import com.todoroo.astrid.data.Metadata;
 
 import java.util.Date;
@@ -24,7 +25,7 @@ import java.util.Date;
  * @author Tim Su <tim@todoroo.com>
  *
  */
-public class AlarmDetailExposer extends BroadcastReceiver {
+public class AlarmDetailExposer extends BroadcastReceiver implements TaskDetailExposer {
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -48,6 +49,16 @@ public class AlarmDetailExposer extends BroadcastReceiver {
         context.sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
     }
 
+
+    @Override
+    public String[] getTaskDetails(Context context, long[] ids) {
+        String[] details = new String[ids.length];
+        for(int i = 0; i < ids.length; i++) {
+            details[i] = getTaskDetails(context, ids[i]);
+        }
+        return details;
+    }
+
     public String getTaskDetails(Context context, long id) {
         TodorooCursor<Metadata> cursor = AlarmService.getInstance().getAlarms(id);
         long nextTime = -1;
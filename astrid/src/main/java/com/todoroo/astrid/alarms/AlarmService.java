@@ -5,14 +5,9 @@
  */
 package com.todoroo.astrid.alarms;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
 import android.util.Log;
 
 import com.todoroo.andlib.data.TodorooCursor;
-import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.sql.Criterion;
 import com.todoroo.andlib.sql.Join;
 import com.todoroo.andlib.sql.Order;
@@ -23,7 +18,7 @@ import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
 import com.todoroo.astrid.dao.TaskDao.TaskCriteria;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
-import com.todoroo.astrid.reminders.Notifications;
+import com.todoroo.astrid.reminders.ReminderQueue;
 import com.todoroo.astrid.reminders.ReminderService;
 import com.todoroo.astrid.service.MetadataService;
 import com.todoroo.astrid.service.MetadataService.SynchronizeMetadataCallback;
@@ -81,15 +76,11 @@ public class AlarmService {
             metadata.add(item);
         }
 
-        final Context context = ContextManager.getContext();
-        final AlarmManager am = (AlarmManager)context.getSystemService(Context.ALARM_SERVICE);
-
         boolean changed = service.synchronizeMetadata(taskId, metadata, Metadata.KEY.eq(AlarmFields.METADATA_KEY), new SynchronizeMetadataCallback() {
             @Override
             public void beforeDeleteMetadata(Metadata m) {
                 // Cancel the alarm before the metadata is deleted
-                PendingIntent pendingIntent = pendingIntentForAlarm(m, taskId);
-                am.cancel(pendingIntent);
+                ReminderQueue.getInstance().clearAlarm(m.getId());
             }
         }, true);
 
@@ -160,17 +151,6 @@ public class AlarmService {
         }
     }
 
-    private PendingIntent pendingIntentForAlarm(Metadata alarm, long taskId) {
-        Context context = ContextManager.getContext();
-        Intent intent = new Intent(context, Notifications.class);
-        intent.setAction("ALARM" + alarm.getId()); //$NON-NLS-1$
-        intent.putExtra(Notifications.ID_KEY, taskId);
-        intent.putExtra(Notifications.EXTRAS_TYPE, ReminderService.TYPE_ALARM);
-
-        return PendingIntent.getBroadcast(context, (int)alarm.getId(),
-                intent, PendingIntent.FLAG_UPDATE_CURRENT);
-    }
-
     /**
      * Schedules alarms for a single task
      */
@@ -181,19 +161,15 @@ public class AlarmService {
 
         long taskId = alarm.getValue(Metadata.TASK);
 
-        Context context = ContextManager.getContext();
-        AlarmManager am = (AlarmManager)context.getSystemService(Context.ALARM_SERVICE);
-        PendingIntent pendingIntent = pendingIntentForAlarm(alarm, taskId);
-
         long time = alarm.getValue(AlarmFields.TIME);
         if(time == 0 || time == NO_ALARM) {
-            am.cancel(pendingIntent);
+            ReminderQueue.getInstance().clearAlarm(alarm.getId());
         } else if(time > DateUtilities.now()) {
             if(Constants.DEBUG) {
                 Log.e("Astrid", "Alarm (" + taskId + ", " + ReminderService.TYPE_ALARM +
                         ", " + alarm.getId() + ") set for " + new Date(time));
             }
-            am.set(AlarmManager.RTC_WAKEUP, time, pendingIntent);
+            ReminderQueue.getInstance().setAlarm(alarm.getId(), taskId, time);
         }
     }
 }
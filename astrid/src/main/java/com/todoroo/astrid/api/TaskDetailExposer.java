@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.api;
+
+import android.content.Context;
+
+/**
+ * Internal API for exposing task details. Details are requested for a
+ * batch of tasks at once and computed in process, instead of through a
+ * {@link AstridApiConstants#BROADCAST_REQUEST_DETAILS} broadcast per task.
+ *
+ */
+public interface TaskDetailExposer {
+
+    /**
+     * @param ids tasks to compute details for
+     * @return detail for each task, at the same index as its id. Entries
+     *         are null for tasks without a detail
+     */
+    public String[] getTaskDetails(Context context, long[] ids);
+}
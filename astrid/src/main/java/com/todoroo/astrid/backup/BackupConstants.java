@@ -30,6 +30,19 @@ public class BackupConstants {
     /** Attribute indicating backup file format */
     public static final String ASTRID_ATTR_FORMAT = "format";
 
+    /**
+     * Attribute present on incremental backups, holding the time since which
+     * changes are included
+     */
+    public static final String ASTRID_ATTR_SINCE = "since";
+
+    /**
+     * Attribute present on automatic backups, holding the time changes are
+     * included up to. Incremental backups made later have it as their
+     * {@link #ASTRID_ATTR_SINCE}
+     */
+    public static final String ASTRID_ATTR_CHECKPOINT = "checkpoint";
+
     // --- format 2
 
     /** Tag containing a task */
@@ -57,10 +70,17 @@ public class BackupConstants {
 
     public static final String EXPORT_FILE_NAME = "user.%s.xml";
 
-    public static final String BACKUP_FILE_NAME = "auto.%s.xml";
+    /** date and checkpoint of an automatic backup */
+    public static final String BACKUP_FILE_NAME = "auto.%s.c%d.xml";
+
+    /** date, checkpoint and since of an incremental automatic backup */
+    public static final String BACKUP_DELTA_FILE_NAME = "auto.%s.c%d.s%d.delta.xml";
 
     public static final String UPGRADE_FILE_NAME = "upgradefrom.%s.xml";
 
+    /** appended to the names of gzip compressed backups */
+    public static final String COMPRESSED_SUFFIX = ".gz";
+
     // --- methods
 
     /**
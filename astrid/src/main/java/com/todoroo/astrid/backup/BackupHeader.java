@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.backup;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Attributes of a backup's &lt;astrid&gt; element that tie incremental
+ * backups to the backup they build on
+ */
+class BackupHeader {
+
+    final File file;
+
+    /** checkpoint of the backup this one builds on, or 0 for a full backup */
+    final long since;
+
+    /** time changes were taken up to, or 0 if not written by an automatic backup */
+    final long checkpoint;
+
+    private BackupHeader(File file, long since, long checkpoint) {
+        this.file = file;
+        this.since = since;
+        this.checkpoint = checkpoint;
+    }
+
+    boolean isDelta() {
+        return since > 0;
+    }
+
+    /**
+     * Header for a backup that could not be read, which is treated as a
+     * full backup without a checkpoint
+     */
+    static BackupHeader unreadable(File file) {
+        return new BackupHeader(file, 0, 0);
+    }
+
+    /** checkpoint and since as automatic backups put them in their name */
+    private static final Pattern NAME_PATTERN = Pattern.compile(
+            "auto\\.[-\\d]+\\.c(\\d+)\\.(?:s(\\d+)\\.delta\\.)?xml(?:\\.gz)?"); //$NON-NLS-1$
+
+    /**
+     * Header of the given backup as encoded in its file name
+     *
+     * @return null if the name holds no checkpoint, as with backups made
+     *         by older versions, whose header has to be read instead
+     */
+    static BackupHeader fromName(File file) {
+        Matcher matcher = NAME_PATTERN.matcher(file.getName());
+        if(!matcher.matches()) {
+            return null;
+        }
+        return new BackupHeader(file, parseLong(matcher.group(2)), parseLong(matcher.group(1)));
+    }
+
+    /**
+     * Read the header of the given backup, without reading its tasks
+     */
+    static BackupHeader read(File file) throws IOException {
+        Reader reader = TasksXmlImporter.openBackup(file.getAbsolutePath());
+        try {
+            XmlPullParser xpp = Xml.newPullParser();
+            xpp.setInput(reader);
+            while(xpp.next() != XmlPullParser.END_DOCUMENT) {
+                if(xpp.getEventType() == XmlPullParser.START_TAG &&
+                        BackupConstants.ASTRID_TAG.equals(xpp.getName())) {
+                    return new BackupHeader(file,
+                            parseLong(xpp.getAttributeValue(null, BackupConstants.ASTRID_ATTR_SINCE)),
+                            parseLong(xpp.getAttributeValue(null, BackupConstants.ASTRID_ATTR_CHECKPOINT)));
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException(file.getName() + ": " + e.getMessage()); //$NON-NLS-1$
+        } finally {
+            reader.close();
+        }
+        throw new IOException(file.getName() + " is not a backup"); //$NON-NLS-1$
+    }
+
+    private static long parseLong(String value) {
+        if(value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ import com.todoroo.astrid.utility.Flags;
 
 import org.tasks.R;
 
+import java.io.File;
 import java.util.Date;
 
 /**
@@ -37,6 +38,12 @@ public class BackupPreferences extends TodorooPreferenceActivity {
 
     static final String PREF_BACKUP_LAST_ERROR = "backupError"; //$NON-NLS-1$
 
+    /** start time of the last automatic backup, full or incremental */
+    static final String PREF_BACKUP_CHECKPOINT = "backupCheckpoint"; //$NON-NLS-1$
+
+    /** start time of the last full automatic backup */
+    static final String PREF_BACKUP_LAST_FULL = "backupLastFull"; //$NON-NLS-1$
+
     private int statusColor = Color.BLACK;
 
     @Override
@@ -145,7 +152,8 @@ public class BackupPreferences extends TodorooPreferenceActivity {
         FilePickerBuilder.OnFilePickedListener listener = new FilePickerBuilder.OnFilePickedListener() {
             @Override
             public void onFilePicked(String filePath) {
-                TasksXmlImporter.importTasks(BackupPreferences.this, filePath,
+                TasksXmlImporter.importTasks(BackupPreferences.this,
+                        BackupService.getRestoreChain(new File(filePath)),
                         new Runnable() {
                             @Override
                             public void run() {
@@ -22,8 +22,11 @@ import org.tasks.R;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 
 /**
  * Inspired heavily by SynchronizationService
@@ -42,8 +45,17 @@ public class BackupService extends Service {
      */
     private static final long BACKUP_INTERVAL = AlarmManager.INTERVAL_DAY;
     public static final String BACKUP_ACTION = "backup"; //$NON-NLS-1$
-    public static final String BACKUP_FILE_NAME_REGEX = "auto\\.[-\\d]+\\.xml"; //$NON-NLS-1$
-    private static final int DAYS_TO_KEEP_BACKUP = 7;
+    public static final String BACKUP_FILE_NAME_REGEX = "auto\\.[-\\d]+\\.(c\\d+\\.(s\\d+\\.)?)?(delta\\.)?xml(\\.gz)?"; //$NON-NLS-1$
+    private static final String DELTA_FILE_NAME_REGEX = "auto\\.[-\\d]+\\.(c\\d+\\.s\\d+\\.)?delta\\.xml(\\.gz)?"; //$NON-NLS-1$
+
+    /**
+     * how often to write a full backup. Backups in between only hold what
+     * changed since the previous backup
+     */
+    private static final long FULL_BACKUP_INTERVAL = 7 * DateUtilities.ONE_DAY;
+
+    /** number of full backups kept, along with the incremental backups after them */
+    private static final int FULL_BACKUPS_TO_KEEP = 2;
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -82,8 +94,16 @@ public class BackupService extends Service {
                 Log.e("error-deleting", "Error deleting old backups", e); //$NON-NLS-1$ //$NON-NLS-2$
             }
 
-            TasksXmlExporter.exportTasks(context, TasksXmlExporter.ExportType.EXPORT_TYPE_SERVICE,
-                    backupDirectorySetting.getBackupDirectory(), null);
+            File directory = backupDirectorySetting.getBackupDirectory();
+            long checkpoint = Preferences.getLong(BackupPreferences.PREF_BACKUP_CHECKPOINT, 0);
+            long lastFull = Preferences.getLong(BackupPreferences.PREF_BACKUP_LAST_FULL, 0);
+            if (checkpoint == 0 || DateUtilities.now() - lastFull > FULL_BACKUP_INTERVAL ||
+                    !hasCheckpoint(directory, checkpoint)) {
+                TasksXmlExporter.exportTasks(context, TasksXmlExporter.ExportType.EXPORT_TYPE_SERVICE,
+                        directory, null);
+            } else {
+                TasksXmlExporter.exportChanges(context, directory, checkpoint);
+            }
 
         } catch (Exception e) {
             Log.e("error-backup", "Error starting backups", e); //$NON-NLS-1$ //$NON-NLS-2$
@@ -109,36 +129,148 @@ public class BackupService extends Service {
         return intent;
     }
 
-    private void deleteOldBackups() {
-        FileFilter backupFileFilter = new FileFilter() {
-            @Override
-            public boolean accept(File file) {
-                if (file.getName().matches(BACKUP_FILE_NAME_REGEX)) {
-                    return true;
-                }
-                return false;
+    private static final FileFilter backupFileFilter = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.getName().matches(BACKUP_FILE_NAME_REGEX);
+        }
+    };
+
+    private static boolean isDelta(File file) {
+        return file.getName().matches(DELTA_FILE_NAME_REGEX);
+    }
+
+    /**
+     * headers read from backups whose name doesn't hold them, by path and
+     * modification time, so each is only parsed once
+     */
+    private static final HashMap<String, BackupHeader> readHeaders = new HashMap<String, BackupHeader>();
+
+    private static synchronized BackupHeader readHeader(File file) {
+        String key = file.getAbsolutePath() + ":" + file.lastModified(); //$NON-NLS-1$
+        BackupHeader header = readHeaders.get(key);
+        if(header == null) {
+            try {
+                header = BackupHeader.read(file);
+            } catch (IOException e) {
+                Log.w("astrid-backups", "Unreadable backup: " + file, e); //$NON-NLS-1$ //$NON-NLS-2$
+                header = BackupHeader.unreadable(file);
             }
-        };
-        File astridDir = backupDirectorySetting.getBackupDirectory();
-        if(astridDir == null) {
-            return;
+            readHeaders.put(key, header);
         }
+        return header;
+    }
 
-        // grab all backup files, sort by modified date, delete old ones
-        File[] files = astridDir.listFiles(backupFileFilter);
+    /**
+     * @return headers of the automatic backups in the directory, ordered by
+     *         checkpoint, or null if the directory can not be read. Backups
+     *         without a checkpoint come first, by date
+     */
+    private static ArrayList<BackupHeader> listBackups(File directory) {
+        if(directory == null) {
+            return null;
+        }
+        File[] files = directory.listFiles(backupFileFilter);
         if(files == null) {
-            return;
+            return null;
         }
 
-        Arrays.sort(files, new Comparator<File>() {
+        ArrayList<BackupHeader> backups = new ArrayList<BackupHeader>(files.length);
+        for(File file : files) {
+            BackupHeader header = BackupHeader.fromName(file);
+            backups.add(header != null ? header : readHeader(file));
+        }
+        Collections.sort(backups, new Comparator<BackupHeader>() {
             @Override
-            public int compare(File file1, File file2) {
-                return -Long.valueOf(file1.lastModified()).compareTo(Long.valueOf(file2.lastModified()));
+            public int compare(BackupHeader backup1, BackupHeader backup2) {
+                int byCheckpoint = Long.valueOf(backup1.checkpoint).compareTo(backup2.checkpoint);
+                if(byCheckpoint != 0) {
+                    return byCheckpoint;
+                }
+                return Long.valueOf(backup1.file.lastModified()).compareTo(backup2.file.lastModified());
             }
         });
-        for(int i = DAYS_TO_KEEP_BACKUP; i < files.length; i++) {
-            if(!files[i].delete()) {
-                Log.i("astrid-backups", "Unable to delete: " + files[i]); //$NON-NLS-1$ //$NON-NLS-2$
+        return backups;
+    }
+
+    /**
+     * @return whether the directory holds the backup with the given
+     *         checkpoint, so that an incremental backup can build on it
+     */
+    private boolean hasCheckpoint(File directory, long checkpoint) {
+        ArrayList<BackupHeader> backups = listBackups(directory);
+        if(backups == null) {
+            return false;
+        }
+        for(BackupHeader backup : backups) {
+            if(backup.checkpoint == checkpoint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the files to import to restore the given backup: the full backup
+     * it builds on followed by every incremental backup up to and including
+     * the given one. Each incremental backup is preceded by the backup whose
+     * checkpoint it was made since. If one is missing, the chain starts at
+     * the incremental backup after the gap, and importing it fails
+     */
+    public static File[] getRestoreChain(File backup) {
+        if(!isDelta(backup)) {
+            return new File[] { backup };
+        }
+        ArrayList<BackupHeader> backups = listBackups(backup.getParentFile());
+        if(backups == null) {
+            return new File[] { backup };
+        }
+
+        HashMap<Long, BackupHeader> byCheckpoint = new HashMap<Long, BackupHeader>();
+        BackupHeader current = null;
+        for(BackupHeader header : backups) {
+            if(header.checkpoint > 0) {
+                byCheckpoint.put(header.checkpoint, header);
+            }
+            if(header.file.equals(backup)) {
+                current = header;
+            }
+        }
+        if(current == null) {
+            return new File[] { backup };
+        }
+
+        ArrayList<File> chain = new ArrayList<File>();
+        chain.add(current.file);
+        while(current.isDelta()) {
+            current = byCheckpoint.get(current.since);
+            if(current == null || chain.contains(current.file)) {
+                break;
+            }
+            chain.add(0, current.file);
+        }
+        return chain.toArray(new File[chain.size()]);
+    }
+
+    /**
+     * Delete backups older than the last few full backups. Incremental
+     * backups are only kept while the full backup they build on is
+     */
+    private void deleteOldBackups() {
+        ArrayList<BackupHeader> backups = listBackups(backupDirectorySetting.getBackupDirectory());
+        if(backups == null) {
+            return;
+        }
+
+        int fullBackups = 0;
+        for(int i = backups.size() - 1; i >= 0; i--) {
+            File file = backups.get(i).file;
+            if(fullBackups >= FULL_BACKUPS_TO_KEEP) {
+                if(!file.delete()) {
+                    Log.i("astrid-backups", "Unable to delete: " + file); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            } else if(!backups.get(i).isDelta()) {
+                fullBackups++;
             }
         }
     }
@@ -18,13 +18,13 @@ import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.Property.PropertyVisitor;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.ExceptionService;
+import com.todoroo.andlib.sql.Criterion;
 import com.todoroo.andlib.sql.Order;
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.DialogUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.core.PluginServices;
-import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
@@ -36,9 +36,12 @@ import com.todoroo.astrid.utility.AstridPreferences;
 import org.tasks.R;
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class TasksXmlExporter {
 
@@ -53,11 +56,25 @@ public class TasksXmlExporter {
      */
     public static void exportTasks(Context context, ExportType exportType,
             File backupDirectoryOverride, String versionName) {
-        new TasksXmlExporter(context, exportType, backupDirectoryOverride, versionName);
+        new TasksXmlExporter(context, exportType, backupDirectoryOverride, versionName, 0);
+    }
+
+    /**
+     * Export tasks changed since the given time, along with their metadata
+     * and all tag data, as an incremental automatic backup
+     *
+     * @param context context
+     * @param backupDirectoryOverride new backupdirectory, or null to use default
+     * @param since start time of the backup the changes build on
+     */
+    public static void exportChanges(Context context, File backupDirectoryOverride, long since) {
+        new TasksXmlExporter(context, ExportType.EXPORT_TYPE_SERVICE_DELTA, backupDirectoryOverride,
+                null, since);
     }
 
     public static enum ExportType {
         EXPORT_TYPE_SERVICE,
+        EXPORT_TYPE_SERVICE_DELTA,
         EXPORT_TYPE_MANUAL,
         EXPORT_TYPE_ON_UPGRADE
     }
@@ -67,8 +84,15 @@ public class TasksXmlExporter {
     // 3 is started on Version 4.6.10
     private static final int FORMAT = 3;
 
+    /** size of the output buffers */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** number of tasks written between progress updates */
+    private static final int PROGRESS_INTERVAL = 50;
+
     private final Context context;
     private int exportCount = 0;
+    private int metadataCount = 0;
     private XmlSerializer xml;
     private final TaskService taskService = PluginServices.getTaskService();
     private final TagDataService tagdataService = PluginServices.getTagDataService();
@@ -80,6 +104,9 @@ public class TasksXmlExporter {
     private final File backupDirectory;
     private final String latestSetVersionName;
 
+    /** changes since this time are exported, or everything if zero */
+    private final long since;
+
     private void setProgress(final int taskNumber, final int total) {
         handler.post(new Runnable() {
             @Override
@@ -91,8 +118,9 @@ public class TasksXmlExporter {
     }
 
     private TasksXmlExporter(final Context context, final ExportType exportType,
-            File backupDirectoryOverride, String versionName) {
+            File backupDirectoryOverride, String versionName, long since) {
         this.context = context;
+        this.since = since;
         this.exportCount = 0;
         this.backupDirectory = backupDirectoryOverride == null ?
                 BackupConstants.defaultExportDirectory() : backupDirectoryOverride;
@@ -117,12 +145,26 @@ public class TasksXmlExporter {
             @Override
             public void run() {
                 try {
+                    long start = DateUtilities.now();
+                    boolean automatic = exportType == ExportType.EXPORT_TYPE_SERVICE ||
+                        exportType == ExportType.EXPORT_TYPE_SERVICE_DELTA;
                     String output = setupFile(backupDirectory,
-                            exportType);
-                    int tasks = taskService.countTasks();
+                            exportType, automatic ? start : 0);
+                    int tasks = taskService.count(Query.select(Task.ID).where(exportedTasks()));
+                    boolean changed = tasks > 0 || (since > 0 && countExportedTagDatas() > 0);
+
+                    if(changed) {
+                        doTasksExport(output, automatic, automatic ? start : 0);
+                    }
 
-                    if(tasks > 0) {
-                        doTasksExport(output);
+                    // later incremental backups build on this one. When
+                    // nothing changed no file is written, so the next
+                    // incremental backup covers this one's changes too
+                    if(automatic && changed) {
+                        Preferences.setLong(BackupPreferences.PREF_BACKUP_CHECKPOINT, start);
+                        if(since == 0) {
+                            Preferences.setLong(BackupPreferences.PREF_BACKUP_LAST_FULL, start);
+                        }
                     }
 
                     Preferences.setLong(BackupPreferences.PREF_BACKUP_LAST_DATE, DateUtilities.now());
@@ -138,6 +180,7 @@ public class TasksXmlExporter {
                             context.getString(R.string.backup_TXI_error), e);
                         break;
                     case EXPORT_TYPE_SERVICE:
+                    case EXPORT_TYPE_SERVICE_DELTA:
                         exceptionService.reportError("background-backup", e); //$NON-NLS-1$
                         Preferences.setString(BackupPreferences.PREF_BACKUP_LAST_ERROR, e.toString());
                         break;
@@ -161,21 +204,37 @@ public class TasksXmlExporter {
     }
 
 
-    private void doTasksExport(String output) throws IOException {
+    /**
+     * @param checkpoint time the exported changes are taken up to, written
+     *        on automatic backups so incremental backups can be chained
+     */
+    private void doTasksExport(String output, boolean compress, long checkpoint) throws IOException {
+        long start = DateUtilities.now();
         File xmlFile = new File(output);
         xmlFile.createNewFile();
-        FileOutputStream fos = new FileOutputStream(xmlFile);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(xmlFile), BUFFER_SIZE);
+        if(compress) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
         xml = Xml.newSerializer();
-        xml.setOutput(fos, BackupConstants.XML_ENCODING);
+        xml.setOutput(out, BackupConstants.XML_ENCODING);
 
         xml.startDocument(null, null);
-        xml.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+        // whitespace only helps people reading the file, which they will not
+        // do with compressed backups
+        xml.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", !compress);
 
         xml.startTag(null, BackupConstants.ASTRID_TAG);
         xml.attribute(null, BackupConstants.ASTRID_ATTR_VERSION,
                 Integer.toString(AstridPreferences.getCurrentVersion()));
         xml.attribute(null, BackupConstants.ASTRID_ATTR_FORMAT,
                 Integer.toString(FORMAT));
+        if(since > 0) {
+            xml.attribute(null, BackupConstants.ASTRID_ATTR_SINCE, Long.toString(since));
+        }
+        if(checkpoint > 0) {
+            xml.attribute(null, BackupConstants.ASTRID_ATTR_CHECKPOINT, Long.toString(checkpoint));
+        }
 
         serializeTasks();
         serializeTagDatas();
@@ -183,13 +242,18 @@ public class TasksXmlExporter {
         xml.endTag(null, BackupConstants.ASTRID_TAG);
         xml.endDocument();
         xml.flush();
-        fos.close();
+        out.close();
+
+        long elapsed = Math.max(1, DateUtilities.now() - start);
+        Log.i("astrid-exporter", String.format("Exported %d tasks and %d metadata in %d ms, " + //$NON-NLS-1$ //$NON-NLS-2$
+                "%d rows/s, %d bytes", exportCount, metadataCount, elapsed, //$NON-NLS-1$
+                (exportCount + metadataCount) * 1000L / elapsed, xmlFile.length()));
     }
 
     private void  serializeTagDatas() throws IOException {
         TodorooCursor<TagData> cursor;
         cursor = tagdataService.query(Query.select(
-                TagData.PROPERTIES).orderBy(Order.asc(TagData.ID)));
+                TagData.PROPERTIES).where(exportedTagDatas()).orderBy(Order.asc(TagData.ID)));
 
         try {
             TagData tag = new TagData();
@@ -210,44 +274,93 @@ public class TasksXmlExporter {
         }
     }
 
+    /**
+     * @return criterion for the tasks to export. Incremental backups take
+     *         tasks modified or deleted since the checkpoint, and tasks whose
+     *         metadata was added, changed or deleted since then
+     */
+    private Criterion exportedTasks() {
+        if(since == 0) {
+            return Criterion.all;
+        }
+        return Criterion.or(Task.MODIFICATION_DATE.gt(since),
+                Task.DELETION_DATE.gt(since),
+                Task.ID.in(Query.select(Metadata.TASK).from(Metadata.TABLE).where(
+                        Criterion.or(Metadata.CREATION_DATE.gt(since), Metadata.MODIFICATION_DATE.gt(since),
+                                Metadata.DELETION_DATE.gt(since)))));
+    }
+
+    /**
+     * @return criterion for the tag data to export: all of it, or the tag
+     *         data changed or deleted since the backup this one builds on
+     */
+    private Criterion exportedTagDatas() {
+        if(since == 0) {
+            return Criterion.all;
+        }
+        return Criterion.or(TagData.MODIFICATION_DATE.gt(since),
+                TagData.DELETION_DATE.gt(since));
+    }
+
+    private int countExportedTagDatas() {
+        TodorooCursor<TagData> cursor = tagdataService.query(Query.select(
+                TagData.ID).where(exportedTagDatas()));
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Write every task followed by its metadata. Tasks and metadata are read
+     * from two cursors ordered by task id and merged while walking them, so
+     * the export takes two queries however many tasks there are
+     */
     private void serializeTasks() throws IOException {
-        TodorooCursor<Task> cursor;
-        cursor = taskService.query(Query.select(
-                Task.PROPERTIES).orderBy(Order.asc(Task.ID)));
+        Criterion tasks = exportedTasks();
+        Criterion metadata = since == 0 ? Criterion.all :
+            Metadata.TASK.in(Query.select(Task.ID).from(Task.TABLE).where(tasks));
+        TodorooCursor<Task> cursor = taskService.query(Query.select(
+                Task.PROPERTIES).where(tasks).orderBy(Order.asc(Task.ID)));
+        TodorooCursor<Metadata> metadataCursor = metadataService.query(Query.select(
+                Metadata.PROPERTIES).where(metadata).orderBy(Order.asc(Metadata.TASK), Order.asc(Metadata.ID)));
         try {
             Task task = new Task();
+            Metadata item = new Metadata();
+            metadataCursor.moveToFirst();
             int length = cursor.getCount();
             for(int i = 0; i < length; i++) {
                 cursor.moveToNext();
                 task.readFromCursor(cursor);
 
-                setProgress(i, length);
+                if(i % PROGRESS_INTERVAL == 0) {
+                    setProgress(i, length);
+                }
 
                 xml.startTag(null, BackupConstants.TASK_TAG);
                 serializeModel(task, Task.PROPERTIES, Task.ID);
-                serializeMetadata(task);
-                xml.endTag(null, BackupConstants.TASK_TAG);
-                this.exportCount++;
-            }
-        } finally {
-            cursor.close();
-        }
-    }
 
-    private synchronized void serializeMetadata(Task task) throws IOException {
-        TodorooCursor<Metadata> cursor = metadataService.query(Query.select(
-                Metadata.PROPERTIES).where(MetadataCriteria.byTask(task.getId())));
-        try {
-            Metadata metadata = new Metadata();
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                metadata.readFromCursor(cursor);
+                // skip metadata of tasks that no longer exist
+                long taskId = task.getId();
+                while(!metadataCursor.isAfterLast() && metadataCursor.get(Metadata.TASK) < taskId) {
+                    metadataCursor.moveToNext();
+                }
+                for(; !metadataCursor.isAfterLast() && metadataCursor.get(Metadata.TASK) == taskId;
+                        metadataCursor.moveToNext()) {
+                    item.readFromCursor(metadataCursor);
+                    xml.startTag(null, BackupConstants.METADATA_TAG);
+                    serializeModel(item, Metadata.PROPERTIES, Metadata.ID, Metadata.TASK);
+                    xml.endTag(null, BackupConstants.METADATA_TAG);
+                    metadataCount++;
+                }
 
-                xml.startTag(null, BackupConstants.METADATA_TAG);
-                serializeModel(metadata, Metadata.PROPERTIES, Metadata.ID, Metadata.TASK);
-                xml.endTag(null, BackupConstants.METADATA_TAG);
+                xml.endTag(null, BackupConstants.TASK_TAG);
+                this.exportCount++;
             }
         } finally {
             cursor.close();
+            metadataCursor.close();
         }
     }
 
@@ -355,7 +468,7 @@ public class TasksXmlExporter {
      * @return output file name
      * @throws IOException
      */
-    private String setupFile(File directory, ExportType exportType) throws IOException {
+    private String setupFile(File directory, ExportType exportType, long checkpoint) throws IOException {
         File astridDir = directory;
         if (astridDir != null) {
             // Check for /sdcard/astrid directory. If it doesn't exist, make it.
@@ -363,7 +476,14 @@ public class TasksXmlExporter {
                 String fileName = ""; //$NON-NLS-1$
                 switch(exportType) {
                 case EXPORT_TYPE_SERVICE:
-                    fileName = String.format(BackupConstants.BACKUP_FILE_NAME, BackupDateUtilities.getDateForExport());
+                    fileName = String.format(BackupConstants.BACKUP_FILE_NAME, BackupDateUtilities.getDateForExport(),
+                            checkpoint) +
+                        BackupConstants.COMPRESSED_SUFFIX;
+                    break;
+                case EXPORT_TYPE_SERVICE_DELTA:
+                    fileName = String.format(BackupConstants.BACKUP_DELTA_FILE_NAME, BackupDateUtilities.getDateForExport(),
+                            checkpoint, since) +
+                        BackupConstants.COMPRESSED_SUFFIX;
                     break;
                 case EXPORT_TYPE_MANUAL:
                     fileName = String.format(BackupConstants.EXPORT_FILE_NAME, BackupDateUtilities.getDateForExport());
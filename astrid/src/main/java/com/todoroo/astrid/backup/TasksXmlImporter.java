@@ -22,7 +22,9 @@ import com.todoroo.andlib.data.AbstractModel;
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.Property.PropertyVisitor;
 import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
+import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.service.ExceptionService;
 import com.todoroo.andlib.sql.Criterion;
 import com.todoroo.andlib.sql.Query;
@@ -30,6 +32,9 @@ import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.DialogUtilities;
 import com.todoroo.astrid.api.AstridApiConstants;
 import com.todoroo.astrid.core.PluginServices;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
+import com.todoroo.astrid.dao.TaskDao;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
@@ -48,11 +53,21 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 
 public class TasksXmlImporter {
 
@@ -62,7 +77,27 @@ public class TasksXmlImporter {
      * Import tasks from the given file
      */
     public static void importTasks(Context context, String input, Runnable runAfterImport) {
-        new TasksXmlImporter(context, input, runAfterImport);
+        new TasksXmlImporter(context, new String[] { input }, runAfterImport);
+    }
+
+    /**
+     * Import tasks from the given files in order, such as a full backup
+     * followed by the incremental backups made after it
+     */
+    public static void importTasks(Context context, File[] inputs, Runnable runAfterImport) {
+        String[] paths = new String[inputs.length];
+        for(int i = 0; i < inputs.length; i++) {
+            paths[i] = inputs[i].getAbsolutePath();
+        }
+        new TasksXmlImporter(context, paths, runAfterImport);
+    }
+
+    /**
+     * Import tasks from the given files on the calling thread, without
+     * progress or summary dialogs
+     */
+    static void importTasksNow(Context context, String[] inputs) throws IOException, XmlPullParserException {
+        new TasksXmlImporter(context, inputs, null, false).performImport();
     }
 
     // --- implementation
@@ -72,17 +107,29 @@ public class TasksXmlImporter {
     private int importCount = 0;
     private int skipCount = 0;
     private int errorCount = 0;
+    private int metadataCount = 0;
+    private final String[] inputs;
     private final String input;
 
+    /** whether the document being read is an incremental backup */
+    private boolean isDelta;
+
     private final Context context;
     private final TaskService taskService = PluginServices.getTaskService();
     private final MetadataService metadataService = PluginServices.getMetadataService();
     private final TagDataService tagdataService = PluginServices.getTagDataService();
     private final ExceptionService exceptionService = PluginServices.getExceptionService();
     private final ProgressDialog progressDialog;
+
+    @Autowired
+    private Database database;
+
     private final Runnable runAfterImport;
 
     private void setProgressMessage(final String message) {
+        if(handler == null) {
+            return;
+        }
         handler.post(new Runnable() {
             @Override
             public void run() {
@@ -95,10 +142,27 @@ public class TasksXmlImporter {
      * Import tasks.
      * @param runAfterImport optional runnable after import
      */
-    private TasksXmlImporter(final Context context, String input, Runnable runAfterImport) {
-        this.input = input;
+    private TasksXmlImporter(final Context context, String[] inputs, Runnable runAfterImport) {
+        this(context, inputs, runAfterImport, true);
+    }
+
+    /**
+     * @param interactive whether to show progress and a summary and import
+     *        on a new thread. Otherwise the caller runs the import
+     */
+    private TasksXmlImporter(final Context context, String[] inputs, Runnable runAfterImport,
+            boolean interactive) {
+        this.inputs = inputs;
+        this.input = inputs[inputs.length - 1];
         this.context = context;
         this.runAfterImport = runAfterImport;
+        DependencyInjectionService.getInstance().inject(this);
+
+        if(!interactive) {
+            handler = null;
+            progressDialog = null;
+            return;
+        }
 
         handler = new Handler();
         progressDialog = new ProgressDialog(context);
@@ -133,48 +197,144 @@ public class TasksXmlImporter {
     }
 
     private void performImport() throws IOException, XmlPullParserException {
-        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-        XmlPullParser xpp = factory.newPullParser();
-        xpp.setInput(new FileReader(input));
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
 
+        // widgets are refreshed once, after the last batch is written
+        database.holdNotifications();
+        TaskDao.beginDefaultsBatch();
+        long start = DateUtilities.now();
         try {
-            while (xpp.next() != XmlPullParser.END_DOCUMENT) {
-                String tag = xpp.getName();
-                if (xpp.getEventType() == XmlPullParser.END_TAG) {
-                    // Ignore end tags
-                    continue;
-                }
-                if (tag != null) {
-                    // Process <astrid ... >
-                    if (tag.equals(BackupConstants.ASTRID_TAG)) {
-                        String format = xpp.getAttributeValue(null, BackupConstants.ASTRID_ATTR_FORMAT);
-                        if(TextUtils.equals(format, FORMAT1)) {
-                            new Format1TaskImporter(xpp);
-                        } else if(TextUtils.equals(format, FORMAT2)) {
-                            new Format2TaskImporter(xpp);
-                        } else if(TextUtils.equals(format, FORMAT3)) {
-                            new Format3TaskImporter(xpp);
-                        } else {
-                            throw new UnsupportedOperationException(
-                                    "Did not know how to import tasks with xml format '" +
-                                            format + "'");
-                        }
-                    }
-                }
+            checkChain();
+            for(String file : inputs) {
+                XmlPullParser xpp = factory.newPullParser();
+                xpp.setInput(openBackup(file));
+                parseDocument(xpp);
             }
         } finally {
+            TaskDao.endDefaultsBatch();
+            database.releaseNotifications();
+            long elapsed = Math.max(1, DateUtilities.now() - start);
+            Log.i("astrid-importer", String.format("Imported %d tasks and %d metadata in %d ms, " + //$NON-NLS-1$ //$NON-NLS-2$
+                    "%d rows/s", importCount, metadataCount, elapsed, //$NON-NLS-1$
+                    (importCount + metadataCount) * 1000L / elapsed));
+
             Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_EVENT_REFRESH);
             ContextManager.getContext().sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
-            handler.post(new Runnable() {
+            if(handler != null) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(progressDialog.isShowing() && context instanceof Activity) {
+                            DialogUtilities.dismissDialog((Activity) context, progressDialog);
+                        }
+                        showSummary();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Make sure every incremental backup is imported right after the backup
+     * it builds on, before anything is imported
+     */
+    private void checkChain() throws IOException {
+        long checkpoint = 0;
+        for(String file : inputs) {
+            BackupHeader header = BackupHeader.read(new File(file));
+            if(header.isDelta() && (checkpoint == 0 || header.since != checkpoint)) {
+                throw new IOException("Missing the backup " + header.file.getName() + //$NON-NLS-1$
+                        " builds on"); //$NON-NLS-1$
+            }
+            checkpoint = header.checkpoint;
+        }
+    }
+
+    /**
+     * Open a backup for reading. Backups starting with the gzip magic number
+     * are decompressed while they are read
+     */
+    static Reader openBackup(String input) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(input));
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if(first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            in = new GZIPInputStream(in);
+        }
+        return new InputStreamReader(in, BackupConstants.XML_ENCODING);
+    }
+
+    private void parseDocument(XmlPullParser xpp) throws IOException, XmlPullParserException {
+        while (xpp.next() != XmlPullParser.END_DOCUMENT) {
+            String tag = xpp.getName();
+            if (xpp.getEventType() == XmlPullParser.END_TAG) {
+                // Ignore end tags
+                continue;
+            }
+            if (tag != null) {
+                // Process <astrid ... >
+                if (tag.equals(BackupConstants.ASTRID_TAG)) {
+                    String format = xpp.getAttributeValue(null, BackupConstants.ASTRID_ATTR_FORMAT);
+                    isDelta = xpp.getAttributeValue(null, BackupConstants.ASTRID_ATTR_SINCE) != null;
+                    if(TextUtils.equals(format, FORMAT1)) {
+                        importFormat1(xpp);
+                    } else if(TextUtils.equals(format, FORMAT2)) {
+                        new Format2TaskImporter(xpp);
+                    } else if(TextUtils.equals(format, FORMAT3)) {
+                        new Format3TaskImporter(xpp);
+                    } else {
+                        throw new UnsupportedOperationException(
+                                "Did not know how to import tasks with xml format '" +
+                                        format + "'");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Legacy backups are small and written row by row, so import them in a
+     * single transaction. If any row fails, nothing is imported
+     */
+    private void importFormat1(final XmlPullParser xpp) throws IOException, XmlPullParserException {
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        int imported = importCount;
+        try {
+            taskService.runInTransaction(new Runnable() {
                 @Override
                 public void run() {
-                    if(progressDialog.isShowing() && context instanceof Activity) {
-                        DialogUtilities.dismissDialog((Activity) context, progressDialog);
+                    try {
+                        new Format1TaskImporter(xpp);
+                    } catch (Exception e) {
+                        failure.set(e);
+                        // leaving by exception rolls the transaction back
+                        throw new RuntimeException(e);
                     }
-                    showSummary();
                 }
             });
+        } catch (RuntimeException e) {
+            if(failure.get() == null) {
+                failure.set(e);
+            }
         }
+
+        Exception e = failure.get();
+        if(e == null) {
+            return;
+        }
+        importCount = imported;
+        errorCount++;
+        if(e instanceof IOException) {
+            throw (IOException) e;
+        } else if(e instanceof XmlPullParserException) {
+            throw (XmlPullParserException) e;
+        }
+        IOException rolledBack = new IOException("Error reading " + input + //$NON-NLS-1$
+                " at line " + xpp.getLineNumber() + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+        rolledBack.initCause(e);
+        throw rolledBack;
     }
 
     private void showSummary() {
@@ -206,17 +366,28 @@ public class TasksXmlImporter {
 
     // =============================================================== FORMAT2
 
+    /** number of tasks parsed before they are written in one transaction */
+    static final int BATCH_SIZE = 100;
+
+    /** a parsed task waiting to be written with the rest of its batch */
+    private static class PendingTask {
+        final Task task = new Task();
+        final ArrayList<Metadata> metadata = new ArrayList<Metadata>();
+    }
+
     private static final String FORMAT2 = "2"; //$NON-NLS-1$
     private class Format2TaskImporter {
 
         protected XmlPullParser xpp;
-        protected Task currentTask = new Task();
-        protected Metadata metadata = new Metadata();
-        protected TagData tagdata = new TagData();
+        protected final ArrayList<PendingTask> batch = new ArrayList<PendingTask>();
+        protected final ArrayList<TagData> pendingTagData = new ArrayList<TagData>();
+        protected PendingTask currentTask = null;
+        protected int format;
 
         public Format2TaskImporter() { }
         public Format2TaskImporter(XmlPullParser xpp) throws XmlPullParserException, IOException {
             this.xpp = xpp;
+            this.format = 2;
 
             while (xpp.next() != XmlPullParser.END_DOCUMENT) {
                 String tag = xpp.getName();
@@ -230,7 +401,7 @@ public class TasksXmlImporter {
                         parseTask();
                     } else if (tag.equals(BackupConstants.METADATA_TAG)) {
                         // Process <metadata ... >
-                        parseMetadata(2);
+                        parseMetadata();
                     }
                 } catch (Exception e) {
                     errorCount++;
@@ -239,18 +410,15 @@ public class TasksXmlImporter {
                             xpp.getText(), e);
                 }
             }
+            flush();
         }
 
         protected void parseTask() {
             taskCount++;
-            setProgressMessage(context.getString(R.string.import_progress_read,
-                    taskCount));
-            currentTask.clear();
+            currentTask = null;
 
             String title = xpp.getAttributeValue(null, Task.TITLE.name);
             String created = xpp.getAttributeValue(null, Task.CREATION_DATE.name);
-            String deletionDate = xpp.getAttributeValue(null, Task.DELETION_DATE.name);
-            String completionDate = xpp.getAttributeValue(null, Task.COMPLETION_DATE.name);
 
             // if we don't have task name or creation date, skip
             if (created == null || title == null) {
@@ -258,72 +426,193 @@ public class TasksXmlImporter {
                 return;
             }
 
-            // if the task's name and creation date match an existing task, skip
-            long existingTask = 0;
-            TodorooCursor<Task> cursor = taskService.query(Query.select(Task.ID,
-                        Task.COMPLETION_DATE, Task.DELETION_DATE).
-                    where(Criterion.and(Task.TITLE.eq(title), Task.CREATION_DATE.eq(created))));
-            try {
-                if(cursor.getCount() > 0) {
-                    cursor.moveToNext();
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+            currentTask = new PendingTask();
+            deserializeModel(currentTask.task, Task.PROPERTIES);
+            batch.add(currentTask);
+        }
+
+        protected void parseMetadata() {
+            if(currentTask == null) {
+                return;
+            }
+            Metadata metadata = new Metadata();
+            deserializeModel(metadata, Metadata.PROPERTIES);
+            currentTask.metadata.add(metadata);
+        }
 
-                    if(existingTask == 0) {
-                        skipCount++;
-                        return;
+        /**
+         * Write the parsed tasks and their metadata in one transaction.
+         * Tasks whose name and creation date match an existing task are
+         * skipped; in incremental backups, tasks with a known uuid replace
+         * the existing task
+         */
+        protected void flush() {
+            if(batch.isEmpty() && pendingTagData.isEmpty()) {
+                return;
+            }
+
+            final HashSet<String> existing = findExistingTasks();
+            final HashMap<String, Long> replaced = isDelta ? findTasksByUuid() :
+                new HashMap<String, Long>();
+            final HashSet<String> tagsToCreate = format == 2 ? findMissingTagData() :
+                new HashSet<String>();
+
+            taskService.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for(PendingTask pending : batch) {
+                        try {
+                            writeTask(pending, existing, replaced, tagsToCreate);
+                        } catch (Exception e) {
+                            errorCount++;
+                            Log.e("astrid-importer", //$NON-NLS-1$
+                                    "Caught exception while writing " + //$NON-NLS-1$
+                                    pending.task.getValue(Task.TITLE), e);
+                        }
+                    }
+                    for(TagData tagData : pendingTagData) {
+                        tagdataService.save(tagData);
                     }
                 }
-            } finally {
-                cursor.close();
-            }
+            });
 
-            // else, make a new task model and add away.
-            deserializeModel(currentTask, Task.PROPERTIES);
+            batch.clear();
+            pendingTagData.clear();
+            currentTask = null;
+            setProgressMessage(context.getString(R.string.import_progress_read,
+                    taskCount));
+        }
 
-            if(existingTask > 0) {
-                currentTask.setId(existingTask);
+        private void writeTask(PendingTask pending, HashSet<String> existing,
+                HashMap<String, Long> replaced, HashSet<String> tagsToCreate) {
+            Task task = pending.task;
+            Long replacedId = replaced.get(task.getUuid());
+            if(replacedId != null) {
+                // incremental backups replace the task they were taken from
+                task.setId(replacedId);
+                taskService.save(task);
+                metadataService.deleteWhere(MetadataCriteria.byTask(replacedId));
+            } else if(!existing.add(duplicateKey(task.getValue(Task.TITLE),
+                    task.getValue(Task.CREATION_DATE)))) {
+                // if the task's name and creation date match an existing task, skip
+                skipCount++;
+                return;
             } else {
-                currentTask.setId(Task.NO_ID);
+                task.setId(Task.NO_ID);
+                taskService.save(task);
             }
-
-            // Save the task to the database.
-            taskService.save(currentTask);
             importCount++;
+
+            for(Metadata metadata : pending.metadata) {
+                metadata.setId(Metadata.NO_ID);
+                metadata.setValue(Metadata.TASK, task.getId());
+                metadataService.save(metadata);
+                metadataCount++;
+
+                // Construct the TagData from Metadata
+                // Fix for failed backup, Version before 4.6.10
+                String uuid = metadata.getValue(Metadata.VALUE2);
+                if(TaskToTagMetadata.KEY.equals(metadata.getValue(Metadata.KEY)) &&
+                        tagsToCreate.remove(uuid)) {
+                    TagData tagData = new TagData();
+                    tagData.setUuid(uuid);
+                    tagData.setValue(TagData.NAME, metadata.getValue(Metadata.VALUE1));
+                    tagdataService.save(tagData);
+                }
+            }
         }
 
-        protected void parseMetadata(int format) {
-            if(!currentTask.isSaved()) {
-                return;
+        /**
+         * @return keys of existing tasks sharing a creation date with a task
+         *         in the batch
+         */
+        private HashSet<String> findExistingTasks() {
+            HashSet<String> existing = new HashSet<String>();
+            if(batch.isEmpty()) {
+                return existing;
+            }
+            LinkedHashSet<Long> created = new LinkedHashSet<Long>();
+            for(PendingTask pending : batch) {
+                created.add(pending.task.getValue(Task.CREATION_DATE));
+            }
+            TodorooCursor<Task> cursor = taskService.query(Query.select(Task.TITLE,
+                    Task.CREATION_DATE).where(Task.CREATION_DATE.in(
+                            created.toArray(new Long[created.size()]))));
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    existing.add(duplicateKey(cursor.get(Task.TITLE), cursor.get(Task.CREATION_DATE)));
+                }
+            } finally {
+                cursor.close();
             }
-            metadata.clear();
-            deserializeModel(metadata, Metadata.PROPERTIES);
-            metadata.setId(Metadata.NO_ID);
-            metadata.setValue(Metadata.TASK, currentTask.getId());
-            metadataService.save(metadata);
-
-            // Construct the TagData from Metadata
-            // Fix for failed backup, Version before 4.6.10
-            if (format == 2) {
-                String key = metadata.getValue(Metadata.KEY);
-                String name = metadata.getValue(Metadata.VALUE1);
-                String uuid = metadata.getValue(Metadata.VALUE2);
-                long deletionDate = metadata.getValue(Metadata.DELETION_DATE);
-                // UUID is uniquely for every TagData, so we don't need to test the name
-                TodorooCursor<TagData> cursor = tagdataService.query(Query.select(TagData.ID).
-                        where(TagData.UUID.eq(uuid)));
-                try {
-                    //If you sync with Google tasks it adds some Google task metadata.
-                    //For this metadata we don't create a list!
-                    if(key.equals(TaskToTagMetadata.KEY) && cursor.getCount() == 0 && deletionDate == 0) {
-                        tagdata.clear();
-                        tagdata.setId(TagData.NO_ID);
-                        tagdata.setUuid(uuid);
-                        tagdata.setValue(TagData.NAME, name);
-                        tagdataService.save(tagdata);
+            return existing;
+        }
+
+        /**
+         * @return ids of existing tasks by uuid, for tasks in the batch
+         */
+        private HashMap<String, Long> findTasksByUuid() {
+            HashMap<String, Long> ids = new HashMap<String, Long>();
+            LinkedHashSet<String> uuids = new LinkedHashSet<String>();
+            for(PendingTask pending : batch) {
+                String uuid = pending.task.getUuid();
+                if(!TextUtils.isEmpty(uuid) && !Task.NO_UUID.equals(uuid)) {
+                    uuids.add(uuid);
+                }
+            }
+            if(uuids.isEmpty()) {
+                return ids;
+            }
+            TodorooCursor<Task> cursor = taskService.query(Query.select(Task.ID, Task.UUID).where(
+                    Task.UUID.in(uuids.toArray(new String[uuids.size()]))));
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    ids.put(cursor.get(Task.UUID), cursor.get(Task.ID));
+                }
+            } finally {
+                cursor.close();
+            }
+            return ids;
+        }
+
+        /**
+         * @return uuids of tags referenced by the batch's tag metadata that
+         *         have no TagData yet
+         */
+        private HashSet<String> findMissingTagData() {
+            HashSet<String> missing = new HashSet<String>();
+            for(PendingTask pending : batch) {
+                for(Metadata metadata : pending.metadata) {
+                    // If you sync with Google tasks it adds some Google task metadata.
+                    // For this metadata we don't create a list!
+                    String uuid = metadata.getValue(Metadata.VALUE2);
+                    if(TaskToTagMetadata.KEY.equals(metadata.getValue(Metadata.KEY)) &&
+                            metadata.getValue(Metadata.DELETION_DATE) == 0 && !TextUtils.isEmpty(uuid)) {
+                        missing.add(uuid);
                     }
-                } finally {
-                    cursor.close();
                 }
             }
+            if(missing.isEmpty()) {
+                return missing;
+            }
+            // UUID is uniquely for every TagData, so we don't need to test the name
+            TodorooCursor<TagData> cursor = tagdataService.query(Query.select(TagData.UUID).where(
+                    TagData.UUID.in(missing.toArray(new String[missing.size()]))));
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    missing.remove(cursor.get(TagData.UUID));
+                }
+            } finally {
+                cursor.close();
+            }
+            return missing;
+        }
+
+        private String duplicateKey(String title, Long created) {
+            return created + "|" + title; //$NON-NLS-1$
         }
 
         /**
@@ -386,6 +675,7 @@ public class TasksXmlImporter {
 
         public Format3TaskImporter(XmlPullParser xpp) throws XmlPullParserException, IOException {
             this.xpp = xpp;
+            this.format = 3;
             while (xpp.next() != XmlPullParser.END_DOCUMENT) {
                 String tag = xpp.getName();
                 if (tag == null || xpp.getEventType() == XmlPullParser.END_TAG) {
@@ -396,7 +686,7 @@ public class TasksXmlImporter {
                     if (tag.equals(BackupConstants.TASK_TAG)) {
                         parseTask();
                     } else if (tag.equals(BackupConstants.METADATA_TAG)) {
-                        parseMetadata(3);
+                        parseMetadata();
                     } else if (tag.equals(BackupConstants.TAGDATA_TAG)) {
                         parseTagdata();
                     }
@@ -407,12 +697,17 @@ public class TasksXmlImporter {
                                     xpp.getText(), e);
                 }
             }
+            flush();
         }
 
         private void parseTagdata() {
-            tagdata.clear();
+            currentTask = null;
+            TagData tagdata = new TagData();
             deserializeModel(tagdata, TagData.PROPERTIES);
-            tagdataService.save(tagdata);
+            pendingTagData.add(tagdata);
+            if (pendingTagData.size() >= BATCH_SIZE) {
+                flush();
+            }
         }
     }
 
@@ -431,33 +726,27 @@ public class TasksXmlImporter {
         public Format1TaskImporter(XmlPullParser xpp) throws XmlPullParserException, IOException {
             this.xpp = xpp;
 
+            // errors are not caught per row: the whole import is rolled back
             while (xpp.next() != XmlPullParser.END_DOCUMENT) {
                 String tag = xpp.getName();
 
-                try {
-                    if(BackupConstants.TASK_TAG.equals(tag) && xpp.getEventType() == XmlPullParser.END_TAG) {
-                        saveTags();
-                    } else if (tag == null || xpp.getEventType() == XmlPullParser.END_TAG) {
-                        continue;
-                    } else if (tag.equals(BackupConstants.TASK_TAG)) {
-                        // Parse <task ... >
-                        currentTask = parseTask();
-                    } else if (currentTask != null) {
-                        // These tags all require that we have a task to associate
-                        // them with.
-                        if (tag.equals(BackupConstants.TAG_TAG)) {
-                            // Process <tag ... >
-                            parseTag();
-                        } else if (tag.equals(BackupConstants.SYNC_TAG)) {
-                            // Process <sync ... >
-                            parseSync();
-                        }
+                if(BackupConstants.TASK_TAG.equals(tag) && xpp.getEventType() == XmlPullParser.END_TAG) {
+                    saveTags();
+                } else if (tag == null || xpp.getEventType() == XmlPullParser.END_TAG) {
+                    continue;
+                } else if (tag.equals(BackupConstants.TASK_TAG)) {
+                    // Parse <task ... >
+                    currentTask = parseTask();
+                } else if (currentTask != null) {
+                    // These tags all require that we have a task to associate
+                    // them with.
+                    if (tag.equals(BackupConstants.TAG_TAG)) {
+                        // Process <tag ... >
+                        parseTag();
+                    } else if (tag.equals(BackupConstants.SYNC_TAG)) {
+                        // Process <sync ... >
+                        parseSync();
                     }
-                } catch (Exception e) {
-                    errorCount++;
-                    Log.e("astrid-importer", //$NON-NLS-1$
-                            "Caught exception while reading from " + //$NON-NLS-1$
-                            xpp.getText(), e);
                 }
             }
         }
@@ -11,7 +11,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.graphics.drawable.BitmapDrawable;
 import android.os.Bundle;
 import android.os.Parcelable;
@@ -29,7 +28,6 @@ import android.widget.TextView;
 import com.actionbarsherlock.app.ActionBar;
 import com.actionbarsherlock.app.SherlockFragmentActivity;
 import com.actionbarsherlock.view.MenuItem;
-import com.todoroo.andlib.data.Property.CountProperty;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
@@ -59,6 +57,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Activity that allows users to build custom filters
@@ -132,6 +133,21 @@ public class CustomFilterActivity extends SherlockFragmentActivity {
             }
             throw new UnsupportedOperationException("Unknown criterion type"); //$NON-NLS-1$
         }
+
+        /**
+         * @return sub-query selecting the ids of tasks matching this
+         *         criterion, or null for the active tasks universe
+         */
+        public String getSubSqlFromCriterion() {
+            if(criterion.sql == null) {
+                return null;
+            }
+            String value = getValueFromCriterion();
+            if(value == null) {
+                value = "";
+            }
+            return criterion.sql.replace("?", UnaryCriterion.sanitize(value));
+        }
     }
 
     private ListView listView;
@@ -143,6 +159,14 @@ public class CustomFilterActivity extends SherlockFragmentActivity {
 
     private final FilterCriteriaReceiver filterCriteriaReceiver = new FilterCriteriaReceiver();
 
+    private CustomFilterCounter counter;
+
+    /** counts criteria off the UI thread, one update at a time */
+    private final ThreadPoolExecutor countExecutor = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    /** incremented on every update, so stale counts are dropped */
+    private volatile int updateGeneration = 0;
+
     // --- activity
 
     @Autowired
@@ -166,6 +190,7 @@ public class CustomFilterActivity extends SherlockFragmentActivity {
 
         DependencyInjectionService.getInstance().inject(this);
         database.openForReading();
+        counter = new CustomFilterCounter(database);
         populateCriteria();
 
         filterName = (TextView)findViewById(R.id.filterName);
@@ -409,10 +434,10 @@ public class CustomFilterActivity extends SherlockFragmentActivity {
 
 
             // special code for all tasks universe
-            if(instance.criterion.sql == null) {
+            String subSql = instance.getSubSqlFromCriterion();
+            if(subSql == null) {
                 sql.append(TaskCriteria.activeVisibleMine()).append(' ');
             } else {
-                String subSql = instance.criterion.sql.replace("?", UnaryCriterion.sanitize(value));
                 sql.append(Task.ID).append(" IN (").append(subSql).append(") ");
             }
 
@@ -442,60 +467,57 @@ public class CustomFilterActivity extends SherlockFragmentActivity {
     }
 
     /**
-     * Recalculate all sizes
+     * Recalculate all sizes in the background
      */
     void updateList() {
-        int max = 0, last = -1;
-
-        StringBuilder sql = new StringBuilder(Query.select(new CountProperty()).from(Task.TABLE).toString()).
-            append(" WHERE ");
-
-        for(int i = 0; i < adapter.getCount(); i++) {
-            CriterionInstance instance = adapter.getItem(i);
-            String value = instance.getValueFromCriterion();
-            if(value == null && instance.criterion.sql != null && instance.criterion.sql.contains("?")) {
-                value = "";
-            }
-
-            switch(instance.type) {
-            case CriterionInstance.TYPE_ADD:
-                sql.append("OR ");
-                break;
-            case CriterionInstance.TYPE_SUBTRACT:
-                sql.append("AND NOT ");
-                break;
-            case CriterionInstance.TYPE_INTERSECT:
-                sql.append("AND ");
-                break;
-            case CriterionInstance.TYPE_UNIVERSE:
-            }
+        int count = adapter.getCount();
+        final CriterionInstance[] instances = new CriterionInstance[count];
+        final int[] types = new int[count];
+        final String[] sqls = new String[count];
+        for(int i = 0; i < count; i++) {
+            instances[i] = adapter.getItem(i);
+            types[i] = instances[i].type;
+            String subSql = instances[i].getSubSqlFromCriterion();
+            sqls[i] = subSql == null ? null : PermaSql.replacePlaceholders(subSql);
+        }
 
-            // special code for all tasks universe
-            if(instance.criterion.sql == null) {
-                sql.append(TaskCriteria.activeVisibleMine()).append(' ');
-            } else {
-                String subSql = instance.criterion.sql.replace("?", UnaryCriterion.sanitize(value));
-                subSql = PermaSql.replacePlaceholders(subSql);
-                sql.append(Task.ID).append(" IN (").append(subSql).append(") ");
+        final int generation = ++updateGeneration;
+        countExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if(generation != updateGeneration) {
+                    return;
+                }
+                final int[] counts;
+                try {
+                    counts = counter.count(types, sqls);
+                } catch (Exception e) {
+                    Log.e("custom-filter-counts", "Error counting criteria", e); //$NON-NLS-1$ //$NON-NLS-2$
+                    return;
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(generation != updateGeneration) {
+                            return;
+                        }
+                        showCounts(instances, counts);
+                    }
+                });
             }
+        });
+    }
 
-            Cursor cursor = database.getDatabase().rawQuery(sql.toString(), null);
-            try {
-                cursor.moveToNext();
-                instance.start = last == -1 ? cursor.getInt(0) : last;
-                instance.end = cursor.getInt(0);
-                last = instance.end;
-                max = Math.max(max, last);
-            } finally {
-                cursor.close();
-            }
+    private void showCounts(CriterionInstance[] instances, int[] counts) {
+        int max = 0;
+        for(int count : counts) {
+            max = Math.max(max, count);
         }
-
-        for(int i = 0; i < adapter.getCount(); i++) {
-            CriterionInstance instance = adapter.getItem(i);
-            instance.max = max;
+        for(int i = 0; i < instances.length; i++) {
+            instances[i].start = i == 0 ? counts[0] : counts[i - 1];
+            instances[i].end = counts[i];
+            instances[i].max = max;
         }
-
         adapter.notifyDataSetInvalidated();
     }
 
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.core;
+
+import android.database.Cursor;
+
+import com.todoroo.astrid.core.CustomFilterActivity.CriterionInstance;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.dao.TaskDao.TaskCriteria;
+import com.todoroo.astrid.data.Task;
+
+import java.util.HashMap;
+
+/**
+ * Counts the tasks matched after each criterion of a custom filter. Each
+ * criterion's tasks are read once into a sorted id array, which is kept while
+ * the criterion stays in the filter, so an edit only queries the criterion
+ * that changed. The running counts are set operations on those arrays.
+ */
+class CustomFilterCounter {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final Database database;
+
+    /** sorted task ids by criterion sql */
+    private HashMap<String, long[]> idSets = new HashMap<String, long[]>();
+
+    CustomFilterCounter(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * @param types join type of each criterion
+     * @param sqls sub-query selecting task ids for each criterion, with
+     *        placeholders replaced, or null for the active tasks universe
+     * @return number of tasks the filter matches after each criterion
+     */
+    synchronized int[] count(int[] types, String[] sqls) {
+        HashMap<String, long[]> used = new HashMap<String, long[]>();
+        long[][] sets = new long[sqls.length][];
+        for(int i = 0; i < sqls.length; i++) {
+            String sql = idSql(sqls[i]);
+            long[] ids = used.get(sql);
+            if(ids == null) {
+                ids = idSets.get(sql);
+            }
+            if(ids == null) {
+                ids = readIds(sql);
+            }
+            used.put(sql, ids);
+            sets[i] = ids;
+        }
+        idSets = used;
+        return combine(types, sets);
+    }
+
+    private static String idSql(String subSql) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(Task.ID). //$NON-NLS-1$
+            append(" FROM ").append(Task.TABLE.name).append(" WHERE "); //$NON-NLS-1$ //$NON-NLS-2$
+        if(subSql == null) {
+            sql.append(TaskCriteria.activeVisibleMine());
+        } else {
+            sql.append(Task.ID).append(" IN (").append(subSql).append(')'); //$NON-NLS-1$
+        }
+        return sql.append(" ORDER BY ").append(Task.ID).toString(); //$NON-NLS-1$
+    }
+
+    private long[] readIds(String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for(int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // --- set operations
+
+    /**
+     * Evaluate the criteria the way the saved filter's SQL does: AND binds
+     * tighter than OR, so each added criterion starts a new group that
+     * later intersections and subtractions apply to
+     */
+    static int[] combine(int[] types, long[][] sets) {
+        int[] counts = new int[types.length];
+        long[] done = EMPTY;
+        long[] group = EMPTY;
+        for(int i = 0; i < types.length; i++) {
+            switch(types[i]) {
+            case CriterionInstance.TYPE_ADD:
+                done = union(done, group);
+                group = sets[i];
+                break;
+            case CriterionInstance.TYPE_SUBTRACT:
+                group = subtract(group, sets[i]);
+                break;
+            case CriterionInstance.TYPE_INTERSECT:
+                group = intersect(group, sets[i]);
+                break;
+            case CriterionInstance.TYPE_UNIVERSE:
+                group = sets[i];
+            }
+            counts[i] = unionSize(done, group);
+        }
+        return counts;
+    }
+
+    static long[] union(long[] a, long[] b) {
+        long[] result = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while(i < a.length && j < b.length) {
+            if(a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if(a[i] > b[j]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        while(i < a.length) {
+            result[n++] = a[i++];
+        }
+        while(j < b.length) {
+            result[n++] = b[j++];
+        }
+        return trim(result, n);
+    }
+
+    static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while(i < a.length && j < b.length) {
+            if(a[i] < b[j]) {
+                i++;
+            } else if(a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        return trim(result, n);
+    }
+
+    static long[] subtract(long[] a, long[] b) {
+        long[] result = new long[a.length];
+        int i = 0, j = 0, n = 0;
+        while(i < a.length) {
+            if(j >= b.length || a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if(a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return trim(result, n);
+    }
+
+    private static int unionSize(long[] a, long[] b) {
+        int i = 0, j = 0, n = 0;
+        while(i < a.length && j < b.length) {
+            if(a[i] < b[j]) {
+                i++;
+            } else if(a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+            n++;
+        }
+        return n + (a.length - i) + (b.length - j);
+    }
+
+    private static long[] trim(long[] array, int length) {
+        if(length == array.length) {
+            return array;
+        }
+        long[] result = new long[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+}
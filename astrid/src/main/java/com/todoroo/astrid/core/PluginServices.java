@@ -12,6 +12,7 @@ import com.todoroo.astrid.dao.Database;
 import com.todoroo.astrid.dao.StoreObjectDao;
 import com.todoroo.astrid.dao.TagDataDao;
 import com.todoroo.astrid.dao.TaskListMetadataDao;
+import com.todoroo.astrid.dao.TaskListOrderDao;
 import com.todoroo.astrid.service.AstridDependencyInjector;
 import com.todoroo.astrid.service.MetadataService;
 import com.todoroo.astrid.service.TagDataService;
@@ -49,6 +50,9 @@ public final class PluginServices {
     @Autowired
     TaskListMetadataDao taskListMetadataDao;
 
+    @Autowired
+    TaskListOrderDao taskListOrderDao;
+
     private static volatile PluginServices instance;
 
     static {
@@ -99,4 +103,8 @@ public final class PluginServices {
     public static TaskListMetadataDao getTaskListMetadataDao() {
         return getInstance().taskListMetadataDao;
     }
+
+    public static TaskListOrderDao getTaskListOrderDao() {
+        return getInstance().taskListOrderDao;
+    }
 }
@@ -5,28 +5,37 @@
  */
 package com.todoroo.astrid.dao;
 
+import android.content.ContentValues;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.todoroo.andlib.data.AbstractDatabase;
 import com.todoroo.andlib.data.AbstractModel;
+import com.todoroo.andlib.data.ChangeSet;
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.Table;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.RemoteModel;
 import com.todoroo.astrid.data.StoreObject;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.TagMetadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.TaskAttachment;
 import com.todoroo.astrid.data.TaskListMetadata;
+import com.todoroo.astrid.data.TaskListOrder;
 import com.todoroo.astrid.data.Update;
 import com.todoroo.astrid.data.UserActivity;
 import com.todoroo.astrid.provider.Astrid2TaskProvider;
 import com.todoroo.astrid.provider.Astrid3ContentProvider;
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater;
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
 import com.todoroo.astrid.widget.TasksWidget;
 
+import java.util.HashMap;
+
 /**
  * Database wrapper
  *
@@ -41,7 +50,7 @@ public class Database extends AbstractDatabase {
      * Database version number. This variable must be updated when database
      * tables are updated, as it determines whether a database needs updating.
      */
-    public static final int VERSION = 35;
+    public static final int VERSION = 39;
 
     /**
      * Database name (must be unique)
@@ -62,6 +71,7 @@ public class Database extends AbstractDatabase {
         TagMetadata.TABLE,
         TaskAttachment.TABLE,
         TaskListMetadata.TABLE,
+        TaskListOrder.TABLE,
     };
 
     // --- listeners
@@ -70,10 +80,22 @@ public class Database extends AbstractDatabase {
         super();
         addListener(new DatabaseUpdateListener() {
             @Override
-            public void onDatabaseUpdated() {
-                Astrid2TaskProvider.notifyDatabaseModification();
-                Astrid3ContentProvider.notifyDatabaseModification();
-                TasksWidget.updateWidgets(ContextManager.getContext());
+            public void onDatabaseUpdated(ChangeSet changes) {
+                if (changes.affects(Task.TABLE) || changes.affects(Metadata.TABLE)) {
+                    Astrid2TaskProvider.notifyDatabaseModification();
+                    Astrid3ContentProvider.notifyDatabaseModification();
+                }
+            }
+        });
+        // widgets refresh once a sync is done
+        addDeferrableListener(new DatabaseUpdateListener() {
+            @Override
+            public void onDatabaseUpdated(ChangeSet changes) {
+                // widgets also show tag names and manual task order
+                if (changes.affects(Task.TABLE) || changes.affects(Metadata.TABLE) ||
+                        changes.affects(TagData.TABLE) || changes.affects(TaskListOrder.TABLE)) {
+                    TasksWidget.updateWidgets(ContextManager.getContext());
+                }
             }
         });
     }
@@ -130,6 +152,80 @@ public class Database extends AbstractDatabase {
         append(')');
         database.execSQL(sql.toString());
         sql.setLength(0);
+
+        database.execSQL(nextReminderIndexSql());
+        database.execSQL(listOrderTaskIndexSql());
+        database.execSQL(listOrderPositionIndexSql());
+    }
+
+    private static String nextReminderIndexSql() {
+        return "CREATE INDEX IF NOT EXISTS t_nrmd ON " + Task.TABLE + //$NON-NLS-1$
+                "(" + Task.REMINDER_NEXT.name + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /** looks up a task's position when a list is joined on its positions */
+    private static String listOrderTaskIndexSql() {
+        return "CREATE UNIQUE INDEX IF NOT EXISTS tlo_lt ON " + TaskListOrder.TABLE + //$NON-NLS-1$
+                "(" + TaskListOrder.LIST_ID.name + "," + TaskListOrder.TASK.name + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /** reads a list's positions in order */
+    private static String listOrderPositionIndexSql() {
+        return "CREATE INDEX IF NOT EXISTS tlo_lp ON " + TaskListOrder.TABLE + //$NON-NLS-1$
+                "(" + TaskListOrder.LIST_ID.name + "," + TaskListOrder.POSITION.name + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * Store the position of each task of the manually ordered lists, read
+     * from their serialized trees. Runs inside the upgrade transaction, so
+     * it works on the database directly
+     */
+    private void populateTaskListOrder() {
+        HashMap<String, Long> taskIds = new HashMap<String, Long>();
+        Cursor tasks = database.query(Task.TABLE.name, new String[] { Task.ID.name, Task.UUID.name },
+                null, null, null, null, null);
+        try {
+            for (tasks.moveToFirst(); !tasks.isAfterLast(); tasks.moveToNext()) {
+                if (!tasks.isNull(1)) {
+                    taskIds.put(tasks.getString(1), tasks.getLong(0));
+                }
+            }
+        } finally {
+            tasks.close();
+        }
+
+        Cursor lists = database.query(TaskListMetadata.TABLE.name, new String[] { TaskListMetadata.TAG_UUID.name,
+                TaskListMetadata.FILTER.name, TaskListMetadata.TASK_IDS.name }, null, null, null, null, null);
+        ContentValues values = new ContentValues();
+        try {
+            for (lists.moveToFirst(); !lists.isAfterLast(); lists.moveToNext()) {
+                String listId = lists.getString(0);
+                if (RemoteModel.isUuidEmpty(listId)) {
+                    listId = lists.getString(1);
+                }
+                String tree = lists.getString(2);
+                if (TextUtils.isEmpty(listId) || TextUtils.isEmpty(tree) || "null".equals(tree)) { //$NON-NLS-1$
+                    continue;
+                }
+
+                long position = 0;
+                for (Node node : AstridOrderedListUpdater.inOrder(AstridOrderedListUpdater.buildTreeModel(tree, null))) {
+                    Long taskId = taskIds.get(node.uuid);
+                    if (taskId == null) {
+                        continue;
+                    }
+                    position += AstridOrderedListUpdater.POSITION_STEP;
+                    values.clear();
+                    values.put(TaskListOrder.TASK.name, taskId);
+                    values.put(TaskListOrder.LIST_ID.name, listId);
+                    values.put(TaskListOrder.POSITION.name, position);
+                    values.put(TaskListOrder.INDENT.name, node.indent);
+                    database.insert(TaskListOrder.TABLE.name, null, values);
+                }
+            }
+        } finally {
+            lists.close();
+        }
     }
 
     @Override
@@ -333,6 +429,29 @@ public class Database extends AbstractDatabase {
         case 34:
             tryExecSQL(addColumnSql(TagData.TABLE, TagData.IS_FOLDER, visitor, null));
 
+        case 35:
+            tryExecSQL(addColumnSql(Task.TABLE, Task.REMINDER_NEXT, visitor, "0"));
+            tryExecSQL(nextReminderIndexSql());
+
+        case 36:
+            tryExecSQL(addColumnSql(Metadata.TABLE, Metadata.MODIFICATION_DATE, visitor, "0"));
+
+        case 37:
+            tryExecSQL(createTableSql(visitor, TaskListOrder.TABLE.name, TaskListOrder.PROPERTIES));
+            tryExecSQL(listOrderTaskIndexSql());
+            tryExecSQL(listOrderPositionIndexSql());
+            // positions used to be kept as metadata rows
+            tryExecSQL("DELETE FROM " + Metadata.TABLE.name + " WHERE " + //$NON-NLS-1$ //$NON-NLS-2$
+                    Metadata.KEY.name + " = 'subtasks-order'"); //$NON-NLS-1$
+            try {
+                populateTaskListOrder();
+            } catch (SQLiteException e) {
+                Log.e("astrid", "db-upgrade-" + oldVersion + "-" + newVersion, e);
+            }
+
+        case 38:
+            tryExecSQL(addColumnSql(TagData.TABLE, TagData.MODIFICATION_DATE, visitor, "0"));
+
         return true;
         }
 
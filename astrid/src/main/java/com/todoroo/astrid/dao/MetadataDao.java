@@ -20,7 +20,6 @@ import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
-import com.todoroo.astrid.provider.Astrid2TaskProvider;
 import com.todoroo.astrid.tags.TaskToTagMetadata;
 import com.todoroo.astrid.utility.AstridPreferences;
 
@@ -83,6 +82,7 @@ public class MetadataDao extends DatabaseDao<Metadata> {
         for(Metadata metadatum : metadata) {
             metadatum.setValue(Metadata.TASK, taskId);
             metadatum.clearValue(Metadata.ID);
+            metadatum.clearValue(Metadata.MODIFICATION_DATE);
             newMetadataValues.add(metadatum.getMergedValues());
         }
 
@@ -97,6 +97,7 @@ public class MetadataDao extends DatabaseDao<Metadata> {
 
                 // clear item id when matching with incoming values
                 item.clearValue(Metadata.ID);
+                item.clearValue(Metadata.MODIFICATION_DATE);
                 ContentValues itemMergedValues = item.getMergedValues();
                 if(newMetadataValues.contains(itemMergedValues)) {
                     newMetadataValues.remove(itemMergedValues);
@@ -131,17 +132,45 @@ public class MetadataDao extends DatabaseDao<Metadata> {
                 Preferences.setBoolean(AstridPreferences.P_FIRST_LIST, false);
             }
         }
-        Astrid2TaskProvider.notifyDatabaseModification();
         return state;
     }
 
+    // --- modification dates, which incremental backups select changed metadata by
+
+    @Override
+    public boolean createNew(Metadata item) {
+        item.setValue(Metadata.MODIFICATION_DATE, DateUtilities.now());
+        return super.createNew(item);
+    }
+
+    @Override
+    public boolean saveExisting(Metadata item) {
+        if(item.getSetValues().size() == 0) {
+            return true;
+        }
+        item.setValue(Metadata.MODIFICATION_DATE, DateUtilities.now());
+        return super.saveExisting(item);
+    }
+
+    @Override
+    public int update(Criterion where, Metadata template) {
+        template.setValue(Metadata.MODIFICATION_DATE, DateUtilities.now());
+        return super.update(where, template);
+    }
+
+    @Override
+    public boolean updateById(long id, Metadata template) {
+        template.setValue(Metadata.MODIFICATION_DATE, DateUtilities.now());
+        return super.updateById(id, template);
+    }
+
     /**
      * Fetch all metadata that are unattached to the task
      */
     public TodorooCursor<Metadata> fetchDangling(Property<?>... properties) {
         Query sql = Query.select(properties).from(Metadata.TABLE).join(Join.left(Task.TABLE,
                 Metadata.TASK.eq(Task.ID))).where(Task.TITLE.isNull());
-        Cursor cursor = database.rawQuery(sql.toString(), null);
+        Cursor cursor = database.rawQuery(sql.prepare());
         return new TodorooCursor<Metadata>(cursor, properties);
     }
 }
@@ -7,7 +7,10 @@ package com.todoroo.astrid.dao;
 
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.tags.TagDataCache;
 
 /**
  * Data Access layer for {@link TagData}-related operations.
@@ -24,5 +27,63 @@ public class TagDataDao extends RemoteModelDao<TagData> {
         DependencyInjectionService.getInstance().inject(this);
         setDatabase(database);
     }
+
+    // --- modification dates, which incremental backups select changed tag data by
+
+    @Override
+    public boolean createNew(TagData item) {
+        item.setValue(TagData.MODIFICATION_DATE, DateUtilities.now());
+        return super.createNew(item);
+    }
+
+    @Override
+    public boolean saveExisting(TagData item) {
+        if(item.getSetValues().size() == 0) {
+            return true;
+        }
+        item.setValue(TagData.MODIFICATION_DATE, DateUtilities.now());
+        return super.saveExisting(item);
+    }
+
+    // --- writes that skip model listeners invalidate the tag data cache right
+    // --- away, and stamp the modification date too
+
+    @Override
+    public int update(Criterion where, TagData template) {
+        template.setValue(TagData.MODIFICATION_DATE, DateUtilities.now());
+        int result = super.update(where, template);
+        if(result > 0) {
+            TagDataCache.getInstance().invalidate();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean updateById(long id, TagData template) {
+        template.setValue(TagData.MODIFICATION_DATE, DateUtilities.now());
+        boolean result = super.updateById(id, template);
+        if(result) {
+            TagDataCache.getInstance().invalidate();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean delete(long id) {
+        boolean result = super.delete(id);
+        if(result) {
+            TagDataCache.getInstance().invalidate();
+        }
+        return result;
+    }
+
+    @Override
+    public int deleteWhere(Criterion where) {
+        int result = super.deleteWhere(where);
+        if(result > 0) {
+            TagDataCache.getInstance().invalidate();
+        }
+        return result;
+    }
 }
 
@@ -40,6 +40,9 @@ public class TaskDao extends RemoteModelDao<Task> {
     @Autowired
     private MetadataDao metadataDao;
 
+    @Autowired
+    TaskListOrderDao taskListOrderDao;
+
     @Autowired
     private Database database;
 
@@ -145,6 +148,7 @@ public class TaskDao extends RemoteModelDao<Task> {
 
         // delete all metadata
         metadataDao.deleteWhere(MetadataCriteria.byTask(id));
+        taskListOrderDao.deleteByTask(id);
 
         broadcastTaskChanged();
 
@@ -193,18 +197,14 @@ public class TaskDao extends RemoteModelDao<Task> {
         item.setValue(Task.MODIFICATION_DATE, DateUtilities.now());
 
         // set up task defaults
-        if(!item.containsValue(Task.IMPORTANCE)) {
-            item.setValue(Task.IMPORTANCE, Preferences.getIntegerFromString(
-                    R.string.p_default_importance_key, Task.IMPORTANCE_SHOULD_DO));
-        }
+        TaskDefaults defaults = getDefaults();
+        setDefaultImportance(item, defaults);
         if(!item.containsValue(Task.DUE_DATE)) {
-            int setting = Preferences.getIntegerFromString(R.string.p_default_urgency_key,
-                    Task.URGENCY_NONE);
-            item.setValue(Task.DUE_DATE, Task.createDueDate(setting, 0));
+            item.setValue(Task.DUE_DATE, Task.createDueDate(defaults.urgency, 0));
         }
-        createDefaultHideUntil(item);
+        createDefaultHideUntil(item, defaults);
 
-        setDefaultReminders(item);
+        setDefaultReminders(item, defaults);
 
         ContentValues values = item.getSetValues();
         boolean result = super.createNew(item);
@@ -216,10 +216,25 @@ public class TaskDao extends RemoteModelDao<Task> {
     }
 
     public static void createDefaultHideUntil(Task item) {
+        createDefaultHideUntil(item, getDefaults());
+    }
+
+    private static void createDefaultHideUntil(Task item, TaskDefaults defaults) {
         if(!item.containsValue(Task.HIDE_UNTIL)) {
-            int setting = Preferences.getIntegerFromString(R.string.p_default_hideUntil_key,
-                    Task.HIDE_UNTIL_NONE);
-            item.setValue(Task.HIDE_UNTIL, item.createHideUntil(setting, 0));
+            item.setValue(Task.HIDE_UNTIL, item.createHideUntil(defaults.hideUntil, 0));
+        }
+    }
+
+    /**
+     * Sets default importance for the given task if importance is not set
+     */
+    public static void setDefaultImportance(Task item) {
+        setDefaultImportance(item, getDefaults());
+    }
+
+    private static void setDefaultImportance(Task item, TaskDefaults defaults) {
+        if(!item.containsValue(Task.IMPORTANCE)) {
+            item.setValue(Task.IMPORTANCE, defaults.importance);
         }
     }
 
@@ -227,19 +242,66 @@ public class TaskDao extends RemoteModelDao<Task> {
      * Sets default reminders for the given task if reminders are not set
      */
     public static void setDefaultReminders(Task item) {
+        setDefaultReminders(item, getDefaults());
+    }
+
+    private static void setDefaultReminders(Task item, TaskDefaults defaults) {
         if(!item.containsValue(Task.REMINDER_PERIOD)) {
-            item.setValue(Task.REMINDER_PERIOD, DateUtilities.ONE_HOUR *
-                    Preferences.getIntegerFromString(R.string.p_rmd_default_random_hours,
-                            0));
+            item.setValue(Task.REMINDER_PERIOD, defaults.reminderPeriod);
         }
         if(!item.containsValue(Task.REMINDER_FLAGS)) {
-            int reminder_flags = Preferences.getIntegerFromString(R.string.p_default_reminders_key,
+            item.setValue(Task.REMINDER_FLAGS, defaults.reminderFlags);
+        }
+    }
+
+    // --- new task defaults
+
+    /**
+     * Defaults for new tasks, read from preferences together
+     */
+    private static final class TaskDefaults {
+        final int importance;
+        final int urgency;
+        final int hideUntil;
+        final long reminderPeriod;
+        final int reminderFlags;
+
+        TaskDefaults() {
+            importance = Preferences.getIntegerFromString(R.string.p_default_importance_key,
+                    Task.IMPORTANCE_SHOULD_DO);
+            urgency = Preferences.getIntegerFromString(R.string.p_default_urgency_key,
+                    Task.URGENCY_NONE);
+            hideUntil = Preferences.getIntegerFromString(R.string.p_default_hideUntil_key,
+                    Task.HIDE_UNTIL_NONE);
+            reminderPeriod = DateUtilities.ONE_HOUR *
+                    Preferences.getIntegerFromString(R.string.p_rmd_default_random_hours, 0);
+            reminderFlags = Preferences.getIntegerFromString(R.string.p_default_reminders_key,
                     Task.NOTIFY_AT_DEADLINE | Task.NOTIFY_AFTER_DEADLINE) |
                     Preferences.getIntegerFromString(R.string.p_default_reminders_mode_key, 0);
-            item.setValue(Task.REMINDER_FLAGS, reminder_flags);
         }
     }
 
+    /** defaults shared by the tasks a thread creates in a batch */
+    private static final ThreadLocal<TaskDefaults> batchDefaults = new ThreadLocal<TaskDefaults>();
+
+    /**
+     * Read new task defaults once for every task this thread creates until
+     * {@link #endDefaultsBatch()}, for imports and syncs that create many
+     * tasks at once
+     */
+    public static void beginDefaultsBatch() {
+        batchDefaults.set(new TaskDefaults());
+    }
+
+    public static void endDefaultsBatch() {
+        batchDefaults.remove();
+    }
+
+    private static TaskDefaults getDefaults() {
+        TaskDefaults defaults = batchDefaults.get();
+        return defaults == null ? new TaskDefaults() : defaults;
+    }
+
     @Override
     public boolean saveExisting(Task item) {
         ContentValues values = item.getSetValues();
@@ -251,8 +313,10 @@ public class TaskDao extends RemoteModelDao<Task> {
             if(!values.containsKey(Task.MODIFICATION_DATE.name)) {
                 item.setValue(Task.MODIFICATION_DATE, DateUtilities.now());
             }
+            // getSetValues returns a copy, so read the values set above
+            values = item.getSetValues();
         }
-        boolean result = super.saveExisting(item);
+        boolean result = super.saveExisting(item, values);
         if(result) {
             afterSave(item, values);
         }
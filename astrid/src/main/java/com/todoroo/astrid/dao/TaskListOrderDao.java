@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.dao;
+
+import com.todoroo.andlib.data.DatabaseDao;
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.data.TaskListOrder;
+
+import java.util.Collection;
+
+/**
+ * Data Access layer for {@link TaskListOrder}-related operations.
+ *
+ * @author Tim Su <tim@todoroo.com>
+ *
+ */
+public class TaskListOrderDao extends DatabaseDao<TaskListOrder> {
+
+    @Autowired
+    Database database;
+
+    public TaskListOrderDao() {
+        super(TaskListOrder.class);
+        DependencyInjectionService.getInstance().inject(this);
+        setDatabase(database);
+    }
+
+    // --- SQL clause generators
+
+    /**
+     * Generates SQL clauses
+     */
+    public static class TaskListOrderCriteria {
+
+        /** Returns the positions stored for the given list */
+        public static Criterion byList(String listId) {
+            return TaskListOrder.LIST_ID.eq(listId);
+        }
+
+        /** Returns the position of the given task in the given list */
+        public static Criterion byListAndTask(String listId, long taskId) {
+            return Criterion.and(TaskListOrder.LIST_ID.eq(listId), TaskListOrder.TASK.eq(taskId));
+        }
+    }
+
+    /**
+     * @return cursor over the task, position and indent of every task stored
+     *         for the given list
+     */
+    public TodorooCursor<TaskListOrder> fetchByList(String listId) {
+        return query(Query.select(TaskListOrder.TASK, TaskListOrder.POSITION, TaskListOrder.INDENT).where(
+                TaskListOrderCriteria.byList(listId)));
+    }
+
+    /**
+     * Store the position and indent of a task in a list, replacing the ones
+     * stored before
+     */
+    public void setPosition(String listId, long taskId, long position, int indent) {
+        TaskListOrder order = new TaskListOrder();
+        order.setValue(TaskListOrder.POSITION, position);
+        order.setValue(TaskListOrder.INDENT, indent);
+        if(update(TaskListOrderCriteria.byListAndTask(listId, taskId), order) > 0) {
+            return;
+        }
+        order.setValue(TaskListOrder.TASK, taskId);
+        order.setValue(TaskListOrder.LIST_ID, listId);
+        createNew(order);
+    }
+
+    /**
+     * Drop the positions of the given tasks from a list
+     */
+    public void removeFromList(String listId, Collection<Long> taskIds) {
+        if(taskIds.isEmpty()) {
+            return;
+        }
+        deleteWhere(Criterion.and(TaskListOrderCriteria.byList(listId),
+                TaskListOrder.TASK.in(taskIds.toArray(new Long[taskIds.size()]))));
+    }
+
+    /**
+     * Drop the positions of a task from every list
+     */
+    public void deleteByTask(long taskId) {
+        deleteWhere(TaskListOrder.TASK.eq(taskId));
+    }
+
+}
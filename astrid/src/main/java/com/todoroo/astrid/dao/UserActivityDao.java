@@ -32,6 +32,6 @@ public class UserActivityDao extends RemoteModelDao<UserActivity> {
         if(values == null || values.size() == 0) {
             return false;
         }
-        return super.saveExisting(item);
+        return super.saveExisting(item, values);
     }
 }
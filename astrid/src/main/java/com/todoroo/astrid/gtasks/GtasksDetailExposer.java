@@ -14,9 +14,12 @@ import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.api.AstridApiConstants;
+import com.todoroo.astrid.api.TaskDetailExposer;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.service.AstridDependencyInjector;
 
+import java.util.HashMap;
+
 /**
  * Exposes Task Details for Google TAsks:
  * - list
@@ -24,7 +27,7 @@ import com.todoroo.astrid.service.AstridDependencyInjector;
  * @author Tim Su <tim@todoroo.com>
  *
  */
-public class GtasksDetailExposer extends BroadcastReceiver {
+public class GtasksDetailExposer extends BroadcastReceiver implements TaskDetailExposer {
 
     @Autowired private GtasksMetadataService gtasksMetadataService;
     @Autowired private GtasksListService gtasksListService;
@@ -47,21 +50,51 @@ public class GtasksDetailExposer extends BroadcastReceiver {
             return;
         }
 
-        long taskId = intent.getLongExtra(AstridApiConstants.EXTRAS_TASK_ID, -1);
-        if(taskId == -1) {
-            return;
+        long[] taskIds = intent.getLongArrayExtra(AstridApiConstants.EXTRAS_TASK_IDS);
+        if(taskIds == null) {
+            long taskId = intent.getLongExtra(AstridApiConstants.EXTRAS_TASK_ID, -1);
+            if(taskId == -1) {
+                return;
+            }
+            taskIds = new long[] { taskId };
         }
 
-        String taskDetail = getTaskDetails(taskId);
-        if(taskDetail == null) {
-            return;
+        String[] taskDetails = getTaskDetails(context, taskIds);
+        for(int i = 0; i < taskIds.length; i++) {
+            if(taskDetails[i] == null) {
+                continue;
+            }
+            Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_SEND_DETAILS);
+            broadcastIntent.putExtra(AstridApiConstants.EXTRAS_ADDON, GtasksPreferenceService.IDENTIFIER);
+            broadcastIntent.putExtra(AstridApiConstants.EXTRAS_TASK_ID, taskIds[i]);
+            broadcastIntent.putExtra(AstridApiConstants.EXTRAS_RESPONSE, taskDetails[i]);
+            context.sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
         }
+    }
+
 
-        Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_SEND_DETAILS);
-        broadcastIntent.putExtra(AstridApiConstants.EXTRAS_ADDON, GtasksPreferenceService.IDENTIFIER);
-        broadcastIntent.putExtra(AstridApiConstants.EXTRAS_TASK_ID, taskId);
-        broadcastIntent.putExtra(AstridApiConstants.EXTRAS_RESPONSE, taskDetail);
-        context.sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
+    /**
+     * Details of many tasks, with one query for their lists
+     */
+    @Override
+    public String[] getTaskDetails(Context context, long[] ids) {
+        String[] details = new String[ids.length];
+        if(!gtasksPreferenceService.isLoggedIn()) {
+            return details;
+        }
+        HashMap<Long, String> listIds = gtasksMetadataService.getListIds(ids);
+        HashMap<String, String> listNames = new HashMap<String, String>();
+        for(int i = 0; i < ids.length; i++) {
+            String listId = listIds.get(ids[i]);
+            if(listId == null) {
+                continue;
+            }
+            if(!listNames.containsKey(listId)) {
+                listNames.put(listId, listDetail(listId));
+            }
+            details[i] = listNames.get(listId);
+        }
+        return details;
     }
 
     public String getTaskDetails(long id) {
@@ -69,10 +102,14 @@ public class GtasksDetailExposer extends BroadcastReceiver {
         if(metadata == null) {
             return null;
         }
+        return listDetail(metadata.getValue(GtasksMetadata.LIST_ID));
+    }
 
-        StringBuilder builder = new StringBuilder();
-
-        String listId = metadata.getValue(GtasksMetadata.LIST_ID);
+    /**
+     * @return detail shown for tasks in the given list, or null for the
+     *         default list and lists that aren't known
+     */
+    private String listDetail(String listId) {
         if(listId == null || listId.equals(Preferences.getStringValue(GtasksPreferenceService.PREF_DEFAULT_LIST))) {
             return null;
         }
@@ -81,9 +118,7 @@ public class GtasksDetailExposer extends BroadcastReceiver {
             return null;
         }
 
-        builder.append("<img src='gtasks_detail'/> ").append(listName); //$NON-NLS-1$
-
-        return builder.toString();
+        return "<img src='gtasks_detail'/> " + listName; //$NON-NLS-1$
     }
 
 }
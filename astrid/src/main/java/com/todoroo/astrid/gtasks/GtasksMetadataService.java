@@ -26,7 +26,9 @@ import com.todoroo.astrid.subtasks.OrderedMetadataListUpdater.OrderedListIterato
 import com.todoroo.astrid.sync.SyncProviderUtilities;
 import com.todoroo.astrid.utility.SyncMetadataService;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -70,26 +72,6 @@ public final class GtasksMetadataService extends SyncMetadataService<GtasksTaskC
         return GtasksMetadata.ID.neq(""); //$NON-NLS-1$
     }
 
-    public synchronized void findLocalMatch(GtasksTaskContainer remoteTask) {
-        if(remoteTask.task.getId() != Task.NO_ID) {
-            return;
-        }
-        TodorooCursor<Metadata> cursor = metadataDao.query(Query.select(Metadata.PROPERTIES).
-                where(Criterion.and(MetadataCriteria.withKey(getMetadataKey()),
-                        getLocalMatchCriteria(remoteTask))));
-        try {
-            if(cursor.getCount() == 0) {
-                return;
-            }
-            cursor.moveToFirst();
-            remoteTask.task.setId(cursor.get(Metadata.TASK));
-            remoteTask.task.setUuid(taskDao.uuidFromLocalId(remoteTask.task.getId()));
-            remoteTask.gtaskMetadata = new Metadata(cursor);
-        } finally {
-            cursor.close();
-        }
-    }
-
     public long localIdForGtasksId(String gtasksId) {
         TodorooCursor<Metadata> metadata = metadataDao.query(Query.select(Metadata.TASK).where(
                 Criterion.and(Metadata.KEY.eq(GtasksMetadata.METADATA_KEY), GtasksMetadata.ID.eq(gtasksId))));
@@ -105,6 +87,139 @@ public final class GtasksMetadataService extends SyncMetadataService<GtasksTaskC
         }
     }
 
+    /**
+     * Read the lists of the given tasks with one query
+     *
+     * @return list id by task id. Tasks without gtasks metadata are left out
+     */
+    public HashMap<Long, String> getListIds(long[] taskIds) {
+        HashMap<Long, String> listIds = new HashMap<Long, String>();
+        if(taskIds.length == 0) {
+            return listIds;
+        }
+        Long[] ids = new Long[taskIds.length];
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = taskIds[i];
+        }
+        TodorooCursor<Metadata> cursor = metadataDao.query(Query.select(Metadata.TASK, GtasksMetadata.LIST_ID).where(
+                Criterion.and(MetadataCriteria.withKey(GtasksMetadata.METADATA_KEY), Metadata.TASK.in(ids))));
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                listIds.put(cursor.get(Metadata.TASK), cursor.get(GtasksMetadata.LIST_ID));
+            }
+        } finally {
+            cursor.close();
+        }
+        return listIds;
+    }
+
+    // --- bulk matching for pull sync
+
+    /** number of remote ids matched per query when looking outside a list */
+    private static final int MATCH_BATCH_SIZE = 100;
+
+    /**
+     * Local state of a task synchronized with Google Tasks
+     */
+    public static final class LocalTask {
+        /** gtasks metadata as stored */
+        public final Metadata metadata;
+
+        /** local task id, or NO_ID if the metadata refers to a missing task */
+        public long taskId = Task.NO_ID;
+        public String uuid;
+        public long dueDate;
+        public long completionDate;
+
+        public LocalTask(Metadata metadata) {
+            this.metadata = metadata;
+        }
+    }
+
+    /**
+     * Load the metadata and local task state of every task in the given list,
+     * keyed by remote id. Uses two queries regardless of the list's size
+     */
+    public HashMap<String, LocalTask> loadListIndex(String listId) {
+        HashMap<String, LocalTask> index = new HashMap<String, LocalTask>();
+        readIndex(Criterion.and(MetadataCriteria.withKey(GtasksMetadata.METADATA_KEY),
+                GtasksMetadata.LIST_ID.eq(listId)), index);
+        return index;
+    }
+
+    /**
+     * Add the given remote ids to the index when they are stored locally
+     * under another list, as happens when a task is moved remotely
+     */
+    public void addLocalMatches(List<String> gtasksIds, HashMap<String, LocalTask> index) {
+        for(int start = 0; start < gtasksIds.size(); start += MATCH_BATCH_SIZE) {
+            List<String> batch = gtasksIds.subList(start, Math.min(gtasksIds.size(), start + MATCH_BATCH_SIZE));
+            Criterion[] others = new Criterion[batch.size() - 1];
+            for(int i = 0; i < others.length; i++) {
+                others[i] = GtasksMetadata.ID.eq(batch.get(i + 1));
+            }
+            readIndex(Criterion.and(MetadataCriteria.withKey(GtasksMetadata.METADATA_KEY),
+                    Criterion.or(GtasksMetadata.ID.eq(batch.get(0)), others)), index);
+        }
+    }
+
+    private void readIndex(Criterion metadataCriterion, HashMap<String, LocalTask> index) {
+        HashMap<Long, LocalTask> byTaskId = new HashMap<Long, LocalTask>();
+        TodorooCursor<Metadata> cursor = metadataDao.query(Query.select(Metadata.PROPERTIES).
+                where(metadataCriterion));
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                Metadata metadata = new Metadata(cursor);
+                String gtasksId = metadata.getValue(GtasksMetadata.ID);
+                if(TextUtils.isEmpty(gtasksId) || index.containsKey(gtasksId)) {
+                    continue;
+                }
+                LocalTask local = new LocalTask(metadata);
+                index.put(gtasksId, local);
+                byTaskId.put(metadata.getValue(Metadata.TASK), local);
+            }
+        } finally {
+            cursor.close();
+        }
+        if(byTaskId.isEmpty()) {
+            return;
+        }
+
+        TodorooCursor<Task> tasks = taskDao.query(Query.select(Task.ID, Task.UUID,
+                Task.DUE_DATE, Task.COMPLETION_DATE).where(Task.ID.in(
+                        Query.select(Metadata.TASK).from(Metadata.TABLE).where(metadataCriterion))));
+        try {
+            for(tasks.moveToFirst(); !tasks.isAfterLast(); tasks.moveToNext()) {
+                LocalTask local = byTaskId.get(tasks.get(Task.ID));
+                if(local == null) {
+                    continue;
+                }
+                local.taskId = tasks.get(Task.ID);
+                local.uuid = tasks.get(Task.UUID);
+                local.dueDate = tasks.get(Task.DUE_DATE);
+                local.completionDate = tasks.get(Task.COMPLETION_DATE);
+            }
+        } finally {
+            tasks.close();
+        }
+    }
+
+    /**
+     * Save a task pulled from Google Tasks. Gtasks metadata read from the
+     * database or created for a new task is written directly, skipping the
+     * metadata diff of {@link #saveTaskAndMetadata}
+     */
+    public void saveSyncedTask(GtasksTaskContainer container) {
+        Metadata gtasksMetadata = container.gtaskMetadata;
+        if(!container.metadata.isEmpty() || (container.task.isSaved() && !gtasksMetadata.isSaved())) {
+            saveTaskAndMetadata(container);
+            return;
+        }
+        taskDao.save(container.task);
+        gtasksMetadata.setValue(Metadata.TASK, container.task.getId());
+        metadataDao.persist(gtasksMetadata);
+    }
+
     @Override
     protected TodorooCursor<Task> filterLocallyUpdated(TodorooCursor<Task> tasks, long lastSyncDate) {
         HashSet<Long> taskIds = new HashSet<Long>();
@@ -145,12 +260,8 @@ public final class GtasksMetadataService extends SyncMetadataService<GtasksTaskC
         TodorooCursor<Metadata> cursor = PluginServices.getMetadataService().query(query);
         try {
             for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long taskId = cursor.get(Metadata.TASK);
-                Metadata metadata = getTaskMetadata(taskId);
-                if(metadata == null) {
-                    continue;
-                }
-                iterator.processTask(taskId, metadata);
+                Metadata metadata = new Metadata(cursor);
+                iterator.processTask(metadata.getValue(Metadata.TASK), metadata);
             }
 
         } finally {
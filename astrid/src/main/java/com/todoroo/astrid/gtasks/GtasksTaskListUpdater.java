@@ -24,6 +24,7 @@ import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.gtasks.sync.GtasksSyncService;
 import com.todoroo.astrid.subtasks.OrderedMetadataListUpdater;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -114,6 +115,16 @@ public class GtasksTaskListUpdater extends OrderedMetadataListUpdater<StoreObjec
 
         updateParentSiblingMapsFor(list);
 
+        final StoreObject listToCorrect = list;
+        metadataDao.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                correctMetadataHelper(listToCorrect);
+            }
+        });
+    }
+
+    private void correctMetadataHelper(StoreObject list) {
         final AtomicLong order = new AtomicLong(0);
         final AtomicInteger previousIndent = new AtomicInteger(-1);
 
@@ -133,42 +144,69 @@ public class GtasksTaskListUpdater extends OrderedMetadataListUpdater<StoreObjec
                 }
                 metadata.setValue(GtasksMetadata.PARENT_TASK, parent);
 
-                PluginServices.getMetadataService().save(metadata);
+                if(metadata.getSetValues().size() > 0) {
+                    PluginServices.getMetadataService().save(metadata);
+                }
                 previousIndent.set(indent);
             }
         });
     }
 
+    /**
+     * Recompute order and indent of every task in the list from the parent
+     * and position reported by Google Tasks. Reads the list in one query and
+     * writes back only the rows that changed
+     */
     public void correctOrderAndIndentForList(String listId) {
-        orderAndIndentHelper(listId, new AtomicLong(0L), Task.NO_ID, 0,
-                new HashSet<Long>());
-    }
-
-    private void orderAndIndentHelper(String listId, AtomicLong order, long parent, int indentLevel,
-            HashSet<Long> alreadyChecked) {
-        TodorooCursor<Metadata> metadata = metadataDao.query(Query.select(Metadata.PROPERTIES)
+        final HashMap<Long, ArrayList<Metadata>> children = new HashMap<Long, ArrayList<Metadata>>();
+        TodorooCursor<Metadata> cursor = metadataDao.query(Query.select(Metadata.PROPERTIES)
                 .where(Criterion.and(Metadata.KEY.eq(GtasksMetadata.METADATA_KEY),
-                        GtasksMetadata.LIST_ID.eq(listId), GtasksMetadata.PARENT_TASK.eq(parent)))
+                        GtasksMetadata.LIST_ID.eq(listId)))
                 .orderBy(Order.asc(Functions.cast(GtasksMetadata.GTASKS_ORDER, "INTEGER")))); //$NON-NLS-1$
         try {
-            if (metadata.getCount() > 0) {
-                Metadata curr = new Metadata();
-                for (metadata.moveToFirst(); !metadata.isAfterLast(); metadata.moveToNext()) {
-                    curr.readFromCursor(metadata);
-                    if(alreadyChecked.contains(curr.getValue(Metadata.TASK))) {
-                        continue;
-                    }
-
-                    curr.setValue(GtasksMetadata.INDENT, indentLevel);
-                    curr.setValue(GtasksMetadata.ORDER, order.getAndIncrement());
-                    metadataDao.saveExisting(curr);
-                    alreadyChecked.add(curr.getValue(Metadata.TASK));
-
-                    orderAndIndentHelper(listId, order, curr.getValue(Metadata.TASK), indentLevel + 1, alreadyChecked);
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                Metadata metadata = new Metadata(cursor);
+                Long parent = metadata.getValue(GtasksMetadata.PARENT_TASK);
+                ArrayList<Metadata> siblings = children.get(parent);
+                if (siblings == null) {
+                    siblings = new ArrayList<Metadata>();
+                    children.put(parent, siblings);
                 }
+                siblings.add(metadata);
             }
         } finally {
-            metadata.close();
+            cursor.close();
+        }
+
+        metadataDao.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                orderAndIndentHelper(children, new AtomicLong(0L), Task.NO_ID, 0,
+                        new HashSet<Long>());
+            }
+        });
+    }
+
+    private void orderAndIndentHelper(HashMap<Long, ArrayList<Metadata>> children, AtomicLong order,
+            long parent, int indentLevel, HashSet<Long> alreadyChecked) {
+        ArrayList<Metadata> siblings = children.get(parent);
+        if (siblings == null) {
+            return;
+        }
+        for (Metadata curr : siblings) {
+            long taskId = curr.getValue(Metadata.TASK);
+            if(alreadyChecked.contains(taskId)) {
+                continue;
+            }
+
+            curr.setValue(GtasksMetadata.INDENT, indentLevel);
+            curr.setValue(GtasksMetadata.ORDER, order.getAndIncrement());
+            if (curr.getSetValues().size() > 0) {
+                metadataDao.saveExisting(curr);
+            }
+            alreadyChecked.add(taskId);
+
+            orderAndIndentHelper(children, order, taskId, indentLevel + 1, alreadyChecked);
         }
     }
 
@@ -23,6 +23,7 @@ import com.todoroo.astrid.gtasks.auth.GtasksTokenValidator;
 import org.tasks.R;
 
 import java.io.IOException;
+import java.util.ArrayList;
 
 /**
  * Wrapper around the official Google Tasks API to simplify common operations. In the case
@@ -40,11 +41,22 @@ public class GtasksInvoker {
 
     public static final String AUTH_TOKEN_TYPE = "Manage your tasks"; //"oauth2:https://www.googleapis.com/auth/tasks";
 
+    /** largest page the tasks list call will return */
+    public static final long MAX_PAGE_SIZE = 100;
+
     public GtasksInvoker(String authToken) {
         DependencyInjectionService.getInstance().inject(this);
         authenticate(authToken);
     }
 
+    /**
+     * Constructor for implementations that do not talk to Google, such as
+     * test stubs. They must override every request method they use
+     */
+    protected GtasksInvoker() {
+        // no service
+    }
+
     public void authenticate(String authToken) {
         this.token = authToken;
         accessProtectedResource = new GoogleAccessProtectedResource(authToken);
@@ -96,15 +108,40 @@ public class GtasksInvoker {
         service.tasklists().get("@default").execute();
     }
 
+    /**
+     * Fetch every task list, following page tokens until the last page
+     */
     public TaskLists allGtaskLists() throws IOException {
+        TaskLists toReturn = getGtaskListsPage(null);
+        java.util.List<TaskList> items = toReturn.getItems();
+        String pageToken = toReturn.getNextPageToken();
+        while (pageToken != null) {
+            TaskLists page = getGtaskListsPage(pageToken);
+            if (page.getItems() != null) {
+                if (items == null) {
+                    items = new ArrayList<TaskList>();
+                }
+                items.addAll(page.getItems());
+            }
+            pageToken = page.getNextPageToken();
+        }
+        toReturn.setItems(items);
+        toReturn.setNextPageToken(null);
+        return toReturn;
+    }
+
+    protected TaskLists getGtaskListsPage(String pageToken) throws IOException {
+        Tasks.Tasklists.List request = service.tasklists().list();
+        request.setMaxResults(MAX_PAGE_SIZE);
+        request.setPageToken(pageToken);
         TaskLists toReturn = null;
         try {
-            toReturn = service.tasklists().list().execute();
+            toReturn = request.execute();
         } catch (IOException e) {
             handleException(e);
-            toReturn = service.tasklists().list().execute();
+            toReturn = request.execute();
         } finally {
-            log("All gtasks lists", toReturn);
+            log("All gtasks lists, page: " + pageToken, toReturn);
         }
         return toReturn;
     }
@@ -137,19 +174,51 @@ public class GtasksInvoker {
         return toReturn;
     }
 
+    /**
+     * Fetch every task in the list updated since the given date, following
+     * page tokens until the last page
+     */
     public com.google.api.services.tasks.model.Tasks getAllGtasksFromListId(String listId, boolean includeDeleted, boolean includeHidden, long lastSyncDate) throws IOException {
+        com.google.api.services.tasks.model.Tasks toReturn = getGtasksPage(listId,
+                includeDeleted, includeHidden, lastSyncDate, null);
+        java.util.List<Task> items = toReturn.getItems();
+        String pageToken = toReturn.getNextPageToken();
+        while (pageToken != null) {
+            com.google.api.services.tasks.model.Tasks page = getGtasksPage(listId,
+                    includeDeleted, includeHidden, lastSyncDate, pageToken);
+            if (page.getItems() != null) {
+                if (items == null) {
+                    items = new ArrayList<Task>();
+                }
+                items.addAll(page.getItems());
+            }
+            pageToken = page.getNextPageToken();
+        }
+        toReturn.setItems(items);
+        toReturn.setNextPageToken(null);
+        return toReturn;
+    }
+
+    /**
+     * Fetch one page of the tasks in the list updated since the given date
+     * @param pageToken next page token of the previous page, or null for the first page
+     */
+    public com.google.api.services.tasks.model.Tasks getGtasksPage(String listId, boolean includeDeleted, boolean includeHidden,
+            long lastSyncDate, String pageToken) throws IOException {
         com.google.api.services.tasks.model.Tasks toReturn = null;
         List request = service.tasks().list(listId);
         request.setShowDeleted(includeDeleted);
         request.setShowHidden(includeHidden);
         request.setUpdatedMin(GtasksApiUtilities.unixTimeToGtasksCompletionTime(lastSyncDate).toStringRfc3339());
+        request.setMaxResults(MAX_PAGE_SIZE);
+        request.setPageToken(pageToken);
         try {
             toReturn = request.execute();
         } catch (IOException e) {
             handleException(e);
             toReturn = request.execute();
         } finally {
-            log("Get all tasks, list: " + listId + ", include deleted: " + includeDeleted, toReturn);
+            log("Get tasks, list: " + listId + ", include deleted: " + includeDeleted + ", page: " + pageToken, toReturn);
         }
         return toReturn;
     }
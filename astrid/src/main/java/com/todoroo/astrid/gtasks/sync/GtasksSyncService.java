@@ -9,13 +9,15 @@ import android.content.ContentValues;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
+import com.todoroo.andlib.data.ChangeSet;
 import com.todoroo.andlib.data.DatabaseDao.ModelUpdateListener;
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
-import com.todoroo.andlib.utility.AndroidUtilities;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
+import com.todoroo.astrid.dao.Database;
 import com.todoroo.astrid.dao.MetadataDao;
 import com.todoroo.astrid.dao.TaskDao;
 import com.todoroo.astrid.data.Metadata;
@@ -32,8 +34,9 @@ import com.todoroo.astrid.service.MetadataService;
 import com.todoroo.astrid.service.TaskService;
 
 import java.io.IOException;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 public final class GtasksSyncService {
 
@@ -43,63 +46,217 @@ public final class GtasksSyncService {
     @Autowired GtasksMetadataService gtasksMetadataService;
     @Autowired TaskDao taskDao;
     @Autowired GtasksPreferenceService gtasksPreferenceService;
+    @Autowired Database database;
 
     public GtasksSyncService() {
         DependencyInjectionService.getInstance().inject(this);
     }
 
-    private final LinkedBlockingQueue<SyncOnSaveOperation> operationQueue = new LinkedBlockingQueue<SyncOnSaveOperation>();
+    /** longest time a push waits for the writes that queued it to be published */
+    private static final long SETTLE_TIMEOUT = 5000L;
 
-    private abstract class SyncOnSaveOperation {
-        abstract public void op(GtasksInvoker invoker) throws IOException;
-    }
+    /** attempts made for each push before giving up */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** delay before the first retry, doubled for each one after it */
+    static final long RETRY_DELAY = 2000L;
+
+    /**
+     * Pushes waiting for a task, in the order the tasks were first queued.
+     * Repeated saves of a task while it waits are merged into one push
+     */
+    private final LinkedHashMap<Long, PendingPush> pending = new LinkedHashMap<Long, PendingPush>();
+
+    /** number of pushes taken off the queue and not yet finished */
+    private int inFlight = 0;
+
+    private GtasksInvoker invoker;
+    private String invokerToken;
+
+    static class PendingPush {
+        final long taskId;
+        final long queuedAt = DateUtilities.now();
+
+        /** failed attempts so far */
+        int failures = 0;
+
+        /** time before which a failed push is not retried */
+        long retryAt = 0;
 
-    private class TaskPushOp extends SyncOnSaveOperation {
-        protected Task model;
-        protected long creationDate = DateUtilities.now();
+        /** push the task's synced properties */
+        boolean pushTask;
 
-        public TaskPushOp(Task model) {
-            this.model = model;
+        /** gtasks metadata row to move, or NO_ID */
+        long moveMetadataId = Metadata.NO_ID;
+
+        /** whether the task row that queued the push has been published */
+        boolean taskCommitted = true;
+
+        /** whether the metadata row that queued the move has been published */
+        boolean moveCommitted = true;
+
+        PendingPush(long taskId) {
+            this.taskId = taskId;
         }
 
-        @Override
-        public void op(GtasksInvoker invoker) throws IOException {
-            if(DateUtilities.now() - creationDate < 1000) {
-                AndroidUtilities.sleepDeep(1000 - (DateUtilities.now() - creationDate));
+        boolean isReady(long now) {
+            if (now < retryAt) {
+                return false;
             }
-            pushTaskOnSave(model, model.getMergedValues(), invoker, false);
+            return (taskCommitted && moveCommitted) || now - queuedAt > SETTLE_TIMEOUT;
         }
-    }
 
-    private class MoveOp extends SyncOnSaveOperation {
-        protected Metadata metadata;
+        /**
+         * @return time by which the push is ready even if its rows are
+         *         never published
+         */
+        long readyBy() {
+            if (taskCommitted && moveCommitted) {
+                return retryAt;
+            }
+            return Math.max(retryAt, queuedAt + SETTLE_TIMEOUT + 1);
+        }
+    }
 
-        public MoveOp(Metadata metadata) {
-            this.metadata = metadata;
+    private synchronized PendingPush pendingFor(long taskId) {
+        PendingPush push = pending.get(taskId);
+        if (push == null) {
+            push = new PendingPush(taskId);
+            pending.put(taskId, push);
         }
+        return push;
+    }
 
-        @Override
-        public void op(GtasksInvoker invoker) throws IOException {
-            pushMetadataOnSave(metadata, invoker);
+    synchronized void queueTaskPush(long taskId) {
+        PendingPush push = pendingFor(taskId);
+        push.pushTask = true;
+        push.taskCommitted = false;
+        notifyAll();
+    }
+
+    synchronized void queueMove(Metadata metadata) {
+        PendingPush push = pendingFor(metadata.getValue(Metadata.TASK));
+        push.moveMetadataId = metadata.getId();
+        push.moveCommitted = false;
+        notifyAll();
+    }
+
+    /**
+     * Mark pushes whose rows were part of the published changes as ready.
+     * Pushes wait for this instead of sleeping, so metadata written along
+     * with a task is in the database before the task is pushed
+     */
+    synchronized void onChangesPublished(ChangeSet changes) {
+        boolean ready = false;
+        for (PendingPush push : pending.values()) {
+            if (!push.taskCommitted && changes.affects(Task.TABLE, push.taskId)) {
+                push.taskCommitted = true;
+                ready = true;
+            }
+            if (!push.moveCommitted && changes.affects(Metadata.TABLE, push.moveMetadataId)) {
+                push.moveCommitted = true;
+                ready = true;
+            }
+        }
+        if (ready) {
+            notifyAll();
         }
     }
 
-    private class NotifyOp extends SyncOnSaveOperation {
-        private final Semaphore sema;
+    /**
+     * Wait for pushes that are ready and take all of them off the queue
+     */
+    private synchronized ArrayList<PendingPush> takeReadyPushes() throws InterruptedException {
+        while (true) {
+            long now = DateUtilities.now();
+            ArrayList<PendingPush> ready = takeReadyPushes(now);
+            if (!ready.isEmpty()) {
+                return ready;
+            }
+            long readyBy = Long.MAX_VALUE;
+            for (PendingPush push : pending.values()) {
+                readyBy = Math.min(readyBy, push.readyBy());
+            }
+            if (readyBy == Long.MAX_VALUE) {
+                wait();
+            } else {
+                wait(Math.max(1, readyBy - now));
+            }
+        }
+    }
 
-        public NotifyOp(Semaphore sema) {
-            this.sema = sema;
+    /**
+     * Take the pushes that are ready at the given time off the queue
+     *
+     * @return the pushes, in the order they were queued, possibly none
+     */
+    synchronized ArrayList<PendingPush> takeReadyPushes(long now) {
+        ArrayList<PendingPush> ready = new ArrayList<PendingPush>();
+        for (Iterator<PendingPush> i = pending.values().iterator(); i.hasNext(); ) {
+            PendingPush push = i.next();
+            if (push.isReady(now)) {
+                ready.add(push);
+                i.remove();
+            }
         }
+        if (!ready.isEmpty()) {
+            inFlight = ready.size();
+        }
+        return ready;
+    }
 
-        @Override
-        public void op(GtasksInvoker invoker) throws IOException {
-            sema.release();
+    /**
+     * Put a push that failed back on the queue, to be taken again once its
+     * retry delay has passed. If the task was saved again in the meantime,
+     * the failed work is merged into the push already waiting
+     *
+     * @return false if the push has failed too often and was dropped
+     */
+    synchronized boolean requeue(PendingPush push, long now) {
+        push.failures++;
+        if (push.failures >= MAX_ATTEMPTS) {
+            return false;
         }
+        PendingPush waiting = pending.get(push.taskId);
+        if (waiting != null) {
+            waiting.pushTask |= push.pushTask;
+            if (waiting.moveMetadataId == Metadata.NO_ID) {
+                waiting.moveMetadataId = push.moveMetadataId;
+            }
+        } else {
+            push.retryAt = now + (RETRY_DELAY << (push.failures - 1));
+            pending.put(push.taskId, push);
+        }
+        notifyAll();
+        return true;
     }
 
+    synchronized void finishPushes() {
+        inFlight = 0;
+        notifyAll();
+    }
+
+    /**
+     * @return invoker for the current token, reused across pushes
+     */
+    private GtasksInvoker getInvoker() {
+        String token = gtasksPreferenceService.getToken();
+        if (invoker == null || !TextUtils.equals(token, invokerToken)) {
+            invoker = new GtasksInvoker(token);
+            invokerToken = token;
+        }
+        return invoker;
+    }
 
     public void initialize() {
-        new OperationPushThread(operationQueue).start();
+        new OperationPushThread().start();
+
+        database.addListener(new DatabaseUpdateListener() {
+            @Override
+            public void onDatabaseUpdated(ChangeSet changes) {
+                onChangesPublished(changes);
+            }
+        });
 
         taskDao.addListener(new ModelUpdateListener<Task>() {
             @Override
@@ -120,45 +277,73 @@ public final class GtasksSyncService {
                     return;
                 }
 
-                Task toPush = taskDao.fetch(model.getId(), TASK_PROPERTIES);
-                operationQueue.offer(new TaskPushOp(toPush));
+                queueTaskPush(model.getId());
             }
         });
     }
 
     private class OperationPushThread extends Thread {
-        private final LinkedBlockingQueue<SyncOnSaveOperation> queue;
-
-        public OperationPushThread(LinkedBlockingQueue<SyncOnSaveOperation> queue) {
-            this.queue = queue;
-        }
 
         @Override
         public void run() {
             while (true) {
-                SyncOnSaveOperation op;
+                ArrayList<PendingPush> pushes;
                 try {
-                    op = queue.take();
+                    pushes = takeReadyPushes();
                 } catch (InterruptedException e) {
                     continue;
                 }
                 try {
-                    GtasksInvoker invoker = new GtasksInvoker(gtasksPreferenceService.getToken());
-                    op.op(invoker);
-                } catch (IOException e) {
-                    Log.w("gtasks-sync-error", "Sync on save failed", e);
+                    GtasksInvoker pushInvoker = getInvoker();
+                    for (PendingPush push : pushes) {
+                        push(push, pushInvoker);
+                    }
+                } finally {
+                    finishPushes();
                 }
             }
         }
     }
 
-    public void waitUntilEmpty() {
-        Semaphore sema = new Semaphore(0);
-        operationQueue.offer(new NotifyOp(sema));
+    /**
+     * Push the task and move of the given push. If the network fails, the
+     * work not yet done is queued again to be retried later, so one failing
+     * task doesn't hold up the pushes behind it
+     */
+    private void push(PendingPush push, GtasksInvoker pushInvoker) {
         try {
-            sema.acquire();
-        } catch (InterruptedException e) {
-            // Ignored
+            if (push.pushTask) {
+                // read the task now so merged saves push their latest values
+                Task task = taskDao.fetch(push.taskId, TASK_PROPERTIES);
+                if (task != null) {
+                    pushTaskOnSave(task, task.getMergedValues(), pushInvoker);
+                }
+                push.pushTask = false;
+            }
+            if (push.moveMetadataId != Metadata.NO_ID) {
+                Metadata metadata = metadataDao.fetch(push.moveMetadataId, Metadata.PROPERTIES);
+                if (metadata != null) {
+                    pushMetadataOnSave(metadata, pushInvoker);
+                }
+                push.moveMetadataId = Metadata.NO_ID;
+            }
+        } catch (IOException e) {
+            if (!requeue(push, DateUtilities.now())) {
+                Log.w("gtasks-sync-error", "Sync on save failed", e); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
+    /**
+     * Wait until every push queued so far has been sent
+     */
+    public synchronized void waitUntilEmpty() {
+        while (!pending.isEmpty() || inFlight > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return;
+            }
         }
     }
 
@@ -198,17 +383,13 @@ public final class GtasksSyncService {
             return;
         }
 
-        operationQueue.offer(new MoveOp(metadata));
+        queueMove(metadata);
     }
 
     /**
      * Synchronize with server when data changes
      */
-    public void pushTaskOnSave(Task task, ContentValues values, GtasksInvoker invoker, boolean sleep) throws IOException {
-        if (sleep) {
-            AndroidUtilities.sleepDeep(1000L); //Wait for metadata to be saved
-        }
-
+    public void pushTaskOnSave(Task task, ContentValues values, GtasksInvoker invoker) throws IOException {
         Metadata gtasksMetadata = gtasksMetadataService.getTaskMetadata(task.getId());
         com.google.api.services.tasks.model.Task remoteModel = null;
         boolean newlyCreated = false;
@@ -313,8 +494,6 @@ public final class GtasksSyncService {
     }
 
     public void pushMetadataOnSave(Metadata model, GtasksInvoker invoker) throws IOException {
-        AndroidUtilities.sleepDeep(1000L);
-
         String taskId = model.getValue(GtasksMetadata.ID);
         String listId = model.getValue(GtasksMetadata.LIST_ID);
         String parent = gtasksMetadataService.getRemoteParentId(model);
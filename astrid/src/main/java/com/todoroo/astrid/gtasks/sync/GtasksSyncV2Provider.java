@@ -17,7 +17,6 @@ import com.todoroo.andlib.sql.Join;
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
-import com.todoroo.astrid.core.PluginServices;
 import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
 import com.todoroo.astrid.dao.StoreObjectDao;
 import com.todoroo.astrid.dao.TaskDao;
@@ -29,6 +28,7 @@ import com.todoroo.astrid.gtasks.GtasksList;
 import com.todoroo.astrid.gtasks.GtasksListService;
 import com.todoroo.astrid.gtasks.GtasksMetadata;
 import com.todoroo.astrid.gtasks.GtasksMetadataService;
+import com.todoroo.astrid.gtasks.GtasksMetadataService.LocalTask;
 import com.todoroo.astrid.gtasks.GtasksPreferenceService;
 import com.todoroo.astrid.gtasks.GtasksTaskListUpdater;
 import com.todoroo.astrid.gtasks.api.GoogleTasksException;
@@ -46,8 +46,15 @@ import org.tasks.R;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class GtasksSyncV2Provider extends SyncV2Provider {
@@ -67,6 +74,9 @@ public class GtasksSyncV2Provider extends SyncV2Provider {
 
     private static GtasksSyncV2Provider instance = null;
 
+    /** number of lists pulled at the same time */
+    private static final int MAX_CONCURRENT_LISTS = 3;
+
     protected GtasksSyncV2Provider() {
         // prevent multiple sync providers
     }
@@ -133,18 +143,28 @@ public class GtasksSyncV2Provider extends SyncV2Provider {
                 callback.incrementMax(25 * lists.length);
                 final AtomicInteger finisher = new AtomicInteger(lists.length);
 
-                for (final StoreObject list : lists) {
-                    new Thread(new Runnable() {
-                        @Override
-                        public void run() {
-                            synchronizeListHelper(list, invoker, manual, handler, callback, isImport);
-                            callback.incrementProgress(25);
-                            if (finisher.decrementAndGet() == 0) {
-                                pushUpdated(invoker, callback);
-                                finishSync(callback);
+                // pull a few lists at a time. The pool's threads exit once
+                // every list submitted before shutdown has been pulled
+                ExecutorService listExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_LISTS);
+                try {
+                    for (final StoreObject list : lists) {
+                        listExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    synchronizeListHelper(list, invoker, manual, handler, callback, isImport);
+                                } finally {
+                                    callback.incrementProgress(25);
+                                    if (finisher.decrementAndGet() == 0) {
+                                        pushUpdated(invoker, callback);
+                                        finishSync(callback);
+                                    }
+                                }
                             }
-                        }
-                    }).start();
+                        });
+                    }
+                } finally {
+                    listExecutor.shutdown();
                 }
 
             }
@@ -163,7 +183,7 @@ public class GtasksSyncV2Provider extends SyncV2Provider {
             for (queued.moveToFirst(); !queued.isAfterLast(); queued.moveToNext()) {
                 task.readFromCursor(queued);
                 try {
-                    gtasksSyncService.pushTaskOnSave(task, task.getMergedValues(), invoker, false);
+                    gtasksSyncService.pushTaskOnSave(task, task.getMergedValues(), invoker);
                 } catch (GoogleTasksException e) {
                     handler.handleException("gtasks-sync-io", e, e.getType()); //$NON-NLS-1$
                 } catch (IOException e) {
@@ -226,51 +246,78 @@ public class GtasksSyncV2Provider extends SyncV2Provider {
     }
 
 
-    private synchronized void synchronizeListHelper(StoreObject list, GtasksInvoker invoker,
-            boolean manual, SyncExceptionHandler errorHandler, SyncResultCallback callback, boolean isImport) {
-        String listId = list.getValue(GtasksList.REMOTE_ID);
-        long lastSyncDate;
+    /** one lock per list, so different lists are pulled in parallel */
+    private final ConcurrentHashMap<String, Object> listLocks = new ConcurrentHashMap<String, Object>();
+
+    private Object lockForList(String listId) {
+        Object lock = listLocks.get(listId);
+        if(lock == null) {
+            lock = new Object();
+            Object existing = listLocks.putIfAbsent(listId, lock);
+            if(existing != null) {
+                lock = existing;
+            }
+        }
+        return lock;
+    }
+
+    void synchronizeListHelper(final StoreObject list, GtasksInvoker invoker,
+            boolean manual, SyncExceptionHandler errorHandler, final SyncResultCallback callback, final boolean isImport) {
+        final String listId = list.getValue(GtasksList.REMOTE_ID);
+        synchronized(lockForList(listId)) {
+            synchronizeListLocked(list, listId, invoker, manual, errorHandler, callback, isImport);
+        }
+    }
+
+    private void synchronizeListLocked(final StoreObject list, final String listId, GtasksInvoker invoker,
+            boolean manual, SyncExceptionHandler errorHandler, final SyncResultCallback callback, final boolean isImport) {
+        final long lastSyncDate;
         if (!manual && list.containsNonNullValue(GtasksList.LAST_SYNC)) {
             lastSyncDate = list.getValue(GtasksList.LAST_SYNC);
         } else {
             lastSyncDate = 0;
         }
         boolean includeDeletedAndHidden = lastSyncDate != 0;
+
+        // tasks changed remotely while the pull runs are fetched again next time
+        final long checkpoint = DateUtilities.now();
+
+        // fetches the next page of the list while the current one is written
+        ExecutorService pageExecutor = Executors.newSingleThreadExecutor();
         try {
-            Tasks taskList = invoker.getAllGtasksFromListId(listId, includeDeletedAndHidden,
-                    includeDeletedAndHidden, lastSyncDate);
-            List<com.google.api.services.tasks.model.Task> tasks = taskList.getItems();
-            if (tasks != null) {
-                callback.incrementMax(tasks.size() * 10);
-                HashSet<Long> localIds = new HashSet<Long>(tasks.size());
-                for (com.google.api.services.tasks.model.Task t : tasks) {
-                    GtasksTaskContainer container = parseRemoteTask(t, listId);
-                    gtasksMetadataService.findLocalMatch(container);
-                    container.gtaskMetadata.setValue(GtasksMetadata.GTASKS_ORDER,
-                            Long.parseLong(t.getPosition()));
-                    container.gtaskMetadata.setValue(GtasksMetadata.PARENT_TASK,
-                            gtasksMetadataService.localIdForGtasksId(t.getParent()));
-                    container.gtaskMetadata.setValue(GtasksMetadata.LAST_SYNC,
-                            DateUtilities.now() + 1000L);
-                    write(container);
-                    localIds.add(container.task.getId());
-                    callback.incrementProgress(10);
-                }
-                list.setValue(GtasksList.LAST_SYNC, DateUtilities.now());
-                storeObjectDao.persist(list);
-
-                if(lastSyncDate == 0 && !isImport) {
-                    Long[] localIdArray = localIds.toArray(new Long[localIds.size()]);
-                    Criterion delete = Criterion.and(Metadata.KEY.eq(GtasksMetadata.METADATA_KEY),
-                            GtasksMetadata.LIST_ID.eq(listId),
-                            Criterion.not(Metadata.TASK.in(localIdArray)));
-                    taskService.deleteWhere(
-                            Task.ID.in(Query.select(Metadata.TASK).from(Metadata.TABLE).
-                                    where(delete)));
-                    metadataService.deleteWhere(delete);
+            final HashMap<String, LocalTask> index = gtasksMetadataService.loadListIndex(listId);
+            final HashSet<Long> localIds = new HashSet<Long>();
+            Future<Tasks> fetch = fetchPage(pageExecutor, invoker, listId, includeDeletedAndHidden, lastSyncDate, null);
+            while (fetch != null) {
+                Tasks page = awaitPage(fetch);
+                fetch = page.getNextPageToken() == null ? null :
+                    fetchPage(pageExecutor, invoker, listId, includeDeletedAndHidden, lastSyncDate, page.getNextPageToken());
+
+                final List<com.google.api.services.tasks.model.Task> tasks = page.getItems();
+                if (tasks != null) {
+                    callback.incrementMax(tasks.size() * 10);
+                    // write each page in one transaction, notifying listeners once
+                    taskService.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            TaskDao.beginDefaultsBatch();
+                            try {
+                                writePage(listId, tasks, index, localIds, callback);
+                            } finally {
+                                TaskDao.endDefaultsBatch();
+                            }
+                        }
+                    });
                 }
+            }
 
-                gtasksTaskListUpdater.correctOrderAndIndentForList(listId);
+            if (!localIds.isEmpty()) {
+                taskService.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishList(list, listId, lastSyncDate, checkpoint, isImport, localIds);
+                    }
+                });
             }
         } catch (GoogleTasksException e) {
             if (errorHandler != null) {
@@ -280,9 +327,108 @@ public class GtasksSyncV2Provider extends SyncV2Provider {
             if (errorHandler != null) {
                 errorHandler.handleException("gtasks-sync-io", e, e.toString()); //$NON-NLS-1$
             }
+        } finally {
+            // also stops a prefetch left running by a failed write
+            pageExecutor.shutdownNow();
+        }
+    }
+
+    private Future<Tasks> fetchPage(ExecutorService pageExecutor, final GtasksInvoker invoker, final String listId, final boolean includeDeletedAndHidden,
+            final long lastSyncDate, final String pageToken) {
+        return pageExecutor.submit(new Callable<Tasks>() {
+            @Override
+            public Tasks call() throws IOException {
+                return invoker.getGtasksPage(listId, includeDeletedAndHidden, includeDeletedAndHidden,
+                        lastSyncDate, pageToken);
+            }
+        });
+    }
+
+    private Tasks awaitPage(Future<Tasks> fetch) throws IOException {
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            // report any other failure of the fetch like a network error
+            IOException failure = new IOException("Error fetching tasks: " + e.getCause()); //$NON-NLS-1$
+            failure.initCause(e.getCause());
+            throw failure;
+        } catch (InterruptedException e) {
+            fetch.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching tasks"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Write one page of remote tasks, matching them against the list's
+     * local index in memory
+     */
+    private void writePage(String listId, List<com.google.api.services.tasks.model.Task> tasks,
+            HashMap<String, LocalTask> index, HashSet<Long> localIds, SyncResultCallback callback) {
+        ArrayList<String> unmatched = new ArrayList<String>();
+        for (com.google.api.services.tasks.model.Task t : tasks) {
+            if (!index.containsKey(t.getId())) {
+                unmatched.add(t.getId());
+            }
+        }
+        gtasksMetadataService.addLocalMatches(unmatched, index);
+
+        for (com.google.api.services.tasks.model.Task t : tasks) {
+            GtasksTaskContainer container = parseRemoteTask(t, listId);
+            LocalTask local = index.get(t.getId());
+            if (local != null) {
+                container.gtaskMetadata = local.metadata;
+                if (local.taskId != Task.NO_ID) {
+                    container.task.setId(local.taskId);
+                    container.task.setUuid(local.uuid);
+                }
+            }
+            container.gtaskMetadata.setValue(GtasksMetadata.GTASKS_ORDER,
+                    Long.parseLong(t.getPosition()));
+            container.gtaskMetadata.setValue(GtasksMetadata.PARENT_TASK,
+                    localIdForParent(t.getParent(), index));
+            container.gtaskMetadata.setValue(GtasksMetadata.LAST_SYNC,
+                    DateUtilities.now() + 1000L);
+            write(container, local);
+            localIds.add(container.task.getId());
+            if (container.task.isSaved()) {
+                // so children later in the list find their parent
+                if (local == null) {
+                    local = new LocalTask(container.gtaskMetadata);
+                    index.put(t.getId(), local);
+                }
+                local.taskId = container.task.getId();
+            }
+            callback.incrementProgress(10);
         }
     }
 
+    /**
+     * Record the list's checkpoint, drop local tasks missing from a full
+     * pull and fix up order and indent once every page is written
+     */
+    private void finishList(StoreObject list, String listId, long lastSyncDate, long checkpoint,
+            boolean isImport, HashSet<Long> localIds) {
+        list.setValue(GtasksList.LAST_SYNC, checkpoint);
+        storeObjectDao.persist(list);
+
+        if(lastSyncDate == 0 && !isImport) {
+            Long[] localIdArray = localIds.toArray(new Long[localIds.size()]);
+            Criterion delete = Criterion.and(Metadata.KEY.eq(GtasksMetadata.METADATA_KEY),
+                    GtasksMetadata.LIST_ID.eq(listId),
+                    Criterion.not(Metadata.TASK.in(localIdArray)));
+            taskService.deleteWhere(
+                    Task.ID.in(Query.select(Metadata.TASK).from(Metadata.TABLE).
+                            where(delete)));
+            metadataService.deleteWhere(delete);
+        }
+
+        gtasksTaskListUpdater.correctOrderAndIndentForList(listId);
+    }
+
     /** Create a task container for the given remote task */
     private GtasksTaskContainer parseRemoteTask(com.google.api.services.tasks.model.Task remoteTask, String listId) {
         Task task = new Task();
@@ -315,27 +461,36 @@ public class GtasksSyncV2Provider extends SyncV2Provider {
         return container;
     }
 
-    private void write(GtasksTaskContainer task) {
+    /**
+     * @return local id of the given remote parent, looked up in the index
+     *         first, or NO_ID for top level tasks
+     */
+    private long localIdForParent(String parent, HashMap<String, LocalTask> index) {
+        if (parent == null) {
+            return AbstractModel.NO_ID;
+        }
+        LocalTask local = index.get(parent);
+        if (local != null) {
+            return local.taskId;
+        }
+        return gtasksMetadataService.localIdForGtasksId(parent);
+    }
+
+    private void write(GtasksTaskContainer task, LocalTask localTask) {
         //  merge astrid dates with google dates
 
         if(task.task.isSaved()) {
-            Task local = PluginServices.getTaskService().fetchById(task.task.getId(), Task.DUE_DATE, Task.COMPLETION_DATE);
-            if (local == null) {
-                task.task.clearValue(Task.ID);
-                task.task.clearValue(Task.UUID);
-            } else {
-                mergeDates(task.task, local);
-                if(task.task.isCompleted() && !local.isCompleted()) {
-                }
-            }
+            Task local = new Task();
+            local.setValue(Task.DUE_DATE, localTask.dueDate);
+            local.setValue(Task.COMPLETION_DATE, localTask.completionDate);
+            mergeDates(task.task, local);
         } else { // Set default importance and reminders for remotely created tasks
-            task.task.setValue(Task.IMPORTANCE, Preferences.getIntegerFromString(
-                    R.string.p_default_importance_key, Task.IMPORTANCE_SHOULD_DO));
+            TaskDao.setDefaultImportance(task.task);
             TaskDao.setDefaultReminders(task.task);
         }
         if (!TextUtils.isEmpty(task.task.getValue(Task.TITLE))) {
             task.task.putTransitory(SyncFlags.GTASKS_SUPPRESS_SYNC, true);
-            gtasksMetadataService.saveTaskAndMetadata(task);
+            gtasksMetadataService.saveSyncedTask(task);
         }
     }
 
@@ -16,6 +16,7 @@ import com.todoroo.andlib.sql.Order;
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.api.AstridApiConstants;
+import com.todoroo.astrid.api.TaskDetailExposer;
 import com.todoroo.astrid.core.PluginServices;
 import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
 import com.todoroo.astrid.data.Metadata;
@@ -29,7 +30,7 @@ import org.tasks.R;
  * @author Tim Su <tim@todoroo.com>
  *
  */
-public class NotesDetailExposer extends BroadcastReceiver {
+public class NotesDetailExposer extends BroadcastReceiver implements TaskDetailExposer {
 
     private static final int NOTE_MAX = 200;
 
@@ -54,6 +55,19 @@ public class NotesDetailExposer extends BroadcastReceiver {
         context.sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
     }
 
+
+    @Override
+    public String[] getTaskDetails(Context context, long[] ids) {
+        String[] details = new String[ids.length];
+        if(!Preferences.getBoolean(R.string.p_showNotes, false)) {
+            return details;
+        }
+        for(int i = 0; i < ids.length; i++) {
+            details[i] = getTaskDetails(ids[i]);
+        }
+        return details;
+    }
+
     public String getTaskDetails(long id) {
         if(!Preferences.getBoolean(R.string.p_showNotes, false)) {
             return null;
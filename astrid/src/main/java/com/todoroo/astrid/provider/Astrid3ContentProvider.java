@@ -35,9 +35,7 @@ import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.UserActivity;
 import com.todoroo.astrid.service.AstridDependencyInjector;
 
-import java.util.HashSet;
 import java.util.Map.Entry;
-import java.util.Set;
 
 /**
  * Astrid 3 Content Provider. There are two ways to use this content provider:
@@ -356,21 +354,12 @@ public class Astrid3ContentProvider extends ContentProvider {
 
     private void readTransitoriesFromModelContentValues(AbstractModel model) {
         ContentValues setValues = model.getSetValues();
-        if (setValues != null) {
-            Set<Entry<String, Object>> entries = setValues.valueSet();
-            Set<String> keysToRemove = new HashSet<String>();
-            for (Entry<String, Object> entry: entries) {
-                String key = entry.getKey();
-                if (key.startsWith(AbstractModel.RETAIN_TRANSITORY_PREFIX)) {
-                    String newKey = key.substring(AbstractModel.RETAIN_TRANSITORY_PREFIX.length());
-                    Object value = setValues.get(key);
-                    model.putTransitory(newKey, value);
-                    keysToRemove.add(key);
-                }
-            }
-
-            for (String key : keysToRemove) {
-                setValues.remove(key);
+        for (Entry<String, Object> entry: setValues.valueSet()) {
+            String key = entry.getKey();
+            if (key.startsWith(AbstractModel.RETAIN_TRANSITORY_PREFIX)) {
+                String newKey = key.substring(AbstractModel.RETAIN_TRANSITORY_PREFIX.length());
+                model.putTransitory(newKey, entry.getValue());
+                model.clearValue(key);
             }
         }
     }
@@ -101,9 +101,28 @@ public class Notifications extends BroadcastReceiver {
     public void onReceive(Context context, Intent intent) {
         ContextManager.setContext(context);
 
+        if(ReminderQueue.ACTION_NEXT_REMINDER.equals(intent.getAction())) {
+            showDueReminders(context);
+            return;
+        }
+
         long id = intent.getLongExtra(ID_KEY, 0);
         int type = intent.getIntExtra(EXTRAS_TYPE, (byte) 0);
+        showReminder(context, id, type);
+    }
+
+    /**
+     * Show every queued reminder that is due. The queue arms the next one
+     */
+    private void showDueReminders(Context context) {
+        ReminderQueue queue = ReminderQueue.getInstance();
+        queue.loadIfNecessary();
+        for(ReminderQueue.Reminder reminder : queue.takeDueReminders(DateUtilities.now())) {
+            showReminder(context, reminder.taskId, reminder.type);
+        }
+    }
 
+    private void showReminder(Context context, long id, int type) {
         Resources r = context.getResources();
         String reminder;
 
@@ -0,0 +1,330 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.reminders;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.todoroo.andlib.service.ContextManager;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.andlib.utility.Preferences;
+import com.todoroo.astrid.alarms.AlarmService;
+import com.todoroo.astrid.utility.Constants;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Time-ordered index of the next reminder of tasks with reminders coming up,
+ * and of every alarm. Only the earliest entry is registered with the {@link AlarmManager}; when
+ * it goes off, everything that is due is shown and the next entry is armed.
+ */
+public final class ReminderQueue {
+
+    /** action of the single system alarm */
+    public static final String ACTION_NEXT_REMINDER = Constants.PACKAGE + ".NEXT_REMINDER"; //$NON-NLS-1$
+
+    /** time the system alarm was last armed for, kept across processes */
+    private static final String PREF_ARMED_FOR = "reminderArmedFor"; //$NON-NLS-1$
+
+    /** delay for reminders whose time has already passed */
+    private static final long PAST_DUE_DELAY = 5000L;
+
+    /**
+     * how far ahead task reminders are loaded. The queue wakes up at the end
+     * of this window to load the next one
+     */
+    private static final long HORIZON = DateUtilities.ONE_DAY;
+
+    // --- singleton
+
+    private static ReminderQueue instance = null;
+
+    public static synchronized ReminderQueue getInstance() {
+        if(instance == null) {
+            instance = new ReminderQueue();
+        }
+        return instance;
+    }
+
+    // --- entries
+
+    /** a reminder or alarm waiting to go off */
+    static final class Reminder implements Comparable<Reminder> {
+        final long time;
+        final long taskId;
+        final int type;
+        /** alarm metadata id, or 0 for task reminders */
+        final long alarmId;
+
+        Reminder(long time, long taskId, int type, long alarmId) {
+            this.time = time;
+            this.taskId = taskId;
+            this.type = type;
+            this.alarmId = alarmId;
+        }
+
+        @Override
+        public int compareTo(Reminder other) {
+            if(time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            if(taskId != other.taskId) {
+                return taskId < other.taskId ? -1 : 1;
+            }
+            if(alarmId != other.alarmId) {
+                return alarmId < other.alarmId ? -1 : 1;
+            }
+            return type - other.type;
+        }
+    }
+
+    private final TreeSet<Reminder> queue = new TreeSet<Reminder>();
+
+    /** next reminder by task id. Tasks have at most one pending reminder */
+    private final HashMap<Long, Reminder> taskReminders = new HashMap<Long, Reminder>();
+
+    /** pending alarms by alarm metadata id */
+    private final HashMap<Long, Reminder> alarms = new HashMap<Long, Reminder>();
+
+    /**
+     * Whether the queue holds every reminder. Until it does, the armed alarm
+     * may belong to a reminder that isn't queued, so it is only ever moved
+     * earlier
+     */
+    private boolean loaded = false;
+
+    /** time until which every task reminder has been loaded */
+    private long horizon = 0;
+
+    /** time the system alarm is armed for, as of the latest queue change */
+    private long armedFor;
+
+    /** incremented whenever armedFor changes, so only the latest time is armed */
+    private long armSequence = 0;
+
+    /** held while talking to the alarm manager, so arming happens in order */
+    private final Object systemAlarmLock = new Object();
+
+    /**
+     * Interface for testing
+     */
+    interface Loader {
+        /** queue task reminders up to the given time, and every alarm */
+        public void load(long horizon);
+    }
+
+    private Loader loader = new Loader() {
+        @Override
+        public void load(long until) {
+            ReminderService.getInstance().scheduleAllAlarms(until);
+            AlarmService.getInstance().scheduleAllAlarms();
+        }
+    };
+
+    ReminderQueue() {
+        armedFor = Preferences.getLong(PREF_ARMED_FOR, ReminderService.NO_ALARM);
+    }
+
+    void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    // --- loading
+
+    /**
+     * Rebuild the queue from the database, loading task reminders up to a
+     * day ahead
+     */
+    public void reload() {
+        long until = DateUtilities.now() + HORIZON;
+        synchronized(this) {
+            loaded = false;
+            horizon = until;
+            queue.clear();
+            taskReminders.clear();
+            alarms.clear();
+        }
+
+        // the scans add entries one at a time, so saves can be queued meanwhile
+        loader.load(until);
+
+        long sequence;
+        synchronized(this) {
+            loaded = true;
+            sequence = updateArmedFor();
+        }
+        arm(sequence);
+    }
+
+    /**
+     * Load the queue if this process hasn't yet, or if the loaded window has
+     * passed
+     */
+    public void loadIfNecessary() {
+        synchronized(this) {
+            if(loaded && DateUtilities.now() < horizon) {
+                return;
+            }
+        }
+        reload();
+    }
+
+    // --- updates
+
+    /**
+     * Set the next reminder for the given task, replacing any other
+     */
+    public void setReminder(long taskId, long time, int type) {
+        long sequence;
+        synchronized(this) {
+            remove(taskReminders.remove(taskId));
+            Reminder reminder = new Reminder(time, taskId, type, 0);
+            taskReminders.put(taskId, reminder);
+            queue.add(reminder);
+            sequence = updateArmedFor();
+        }
+        arm(sequence);
+    }
+
+    /**
+     * Clear the given task's reminder if it is of the given type
+     */
+    public void clearReminder(long taskId, int type) {
+        long sequence;
+        synchronized(this) {
+            Reminder reminder = taskReminders.get(taskId);
+            if(reminder == null || reminder.type != type) {
+                return;
+            }
+            remove(taskReminders.remove(taskId));
+            sequence = updateArmedFor();
+        }
+        arm(sequence);
+    }
+
+    public void setAlarm(long alarmId, long taskId, long time) {
+        long sequence;
+        synchronized(this) {
+            remove(alarms.remove(alarmId));
+            Reminder alarm = new Reminder(time, taskId, ReminderService.TYPE_ALARM, alarmId);
+            alarms.put(alarmId, alarm);
+            queue.add(alarm);
+            sequence = updateArmedFor();
+        }
+        arm(sequence);
+    }
+
+    public void clearAlarm(long alarmId) {
+        long sequence;
+        synchronized(this) {
+            Reminder alarm = alarms.remove(alarmId);
+            if(alarm == null) {
+                return;
+            }
+            remove(alarm);
+            sequence = updateArmedFor();
+        }
+        arm(sequence);
+    }
+
+    /**
+     * Remove and return every reminder that is due, then arm the next one
+     */
+    ArrayList<Reminder> takeDueReminders(long now) {
+        ArrayList<Reminder> due = new ArrayList<Reminder>();
+        long sequence;
+        synchronized(this) {
+            while(!queue.isEmpty() && queue.first().time <= now) {
+                Reminder reminder = queue.first();
+                queue.remove(reminder);
+                if(reminder.alarmId > 0) {
+                    alarms.remove(reminder.alarmId);
+                } else {
+                    taskReminders.remove(reminder.taskId);
+                }
+                due.add(reminder);
+            }
+            sequence = updateArmedFor();
+        }
+        arm(sequence);
+        return due;
+    }
+
+    // --- system alarm
+
+    private void remove(Reminder reminder) {
+        if(reminder != null) {
+            queue.remove(reminder);
+        }
+    }
+
+    /**
+     * Work out when the system alarm should go off: at the earliest queued
+     * reminder or the end of the loaded window. Call with the queue locked
+     *
+     * @return number to pass to {@link #arm(long)}, or 0 if the alarm
+     *         doesn't have to move
+     */
+    private long updateArmedFor() {
+        long next = queue.isEmpty() ? ReminderService.NO_ALARM : queue.first().time;
+        if(loaded) {
+            next = Math.min(next, horizon);
+        }
+        if(next == armedFor || (!loaded && next > armedFor)) {
+            return 0;
+        }
+        armedFor = next;
+        return ++armSequence;
+    }
+
+    /**
+     * Point the system alarm at the time worked out by the given update,
+     * unless a later update has changed it since. Call without the queue
+     * locked, as this talks to the alarm manager
+     */
+    private void arm(long sequence) {
+        if(sequence == 0) {
+            return;
+        }
+        synchronized(systemAlarmLock) {
+            long next;
+            int queued;
+            synchronized(this) {
+                if(sequence != armSequence) {
+                    // the later update arms the alarm
+                    return;
+                }
+                next = armedFor;
+                queued = queue.size();
+            }
+
+            Context context = ContextManager.getContext();
+            AlarmManager am = (AlarmManager)context.getSystemService(Context.ALARM_SERVICE);
+            Intent intent = new Intent(context, Notifications.class);
+            intent.setAction(ACTION_NEXT_REMINDER);
+            PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, 0);
+
+            if(next == ReminderService.NO_ALARM) {
+                am.cancel(pendingIntent);
+            } else {
+                long time = Math.max(next, DateUtilities.now() + PAST_DUE_DELAY);
+                if(Constants.DEBUG) {
+                    Log.e("Astrid", "Next reminder set for " + new Date(time) + //$NON-NLS-1$ //$NON-NLS-2$
+                            " (" + queued + " queued)"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                am.set(AlarmManager.RTC_WAKEUP, time, pendingIntent);
+            }
+            Preferences.setLong(PREF_ARMED_FOR, next);
+        }
+    }
+
+}
@@ -12,7 +12,6 @@ import android.util.Log;
 
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.utility.AndroidUtilities;
-import com.todoroo.astrid.alarms.AlarmService;
 
 /**
  * Schedules reminders in the background to prevent ANR's
@@ -42,8 +41,7 @@ public class ReminderSchedulingService extends Service {
 
     private void scheduleReminders() {
         try {
-            ReminderService.getInstance().scheduleAllAlarms();
-            AlarmService.getInstance().scheduleAllAlarms();
+            ReminderQueue.getInstance().reload();
         } catch (Exception e) {
             Log.e("reminder-scheduling", "reminder-startup", e);
         }
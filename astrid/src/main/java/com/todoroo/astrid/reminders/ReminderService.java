@@ -5,10 +5,7 @@
  */
 package com.todoroo.astrid.reminders;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.content.res.Resources;
@@ -31,7 +28,10 @@ import com.todoroo.astrid.utility.Constants;
 import org.tasks.R;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -54,6 +54,7 @@ public final class ReminderService  {
         Task.REMINDER_PERIOD,
         Task.REMINDER_LAST,
         Task.REMINDER_SNOOZE,
+        Task.REMINDER_NEXT,
         Task.IMPORTANCE
     };
 
@@ -70,6 +71,12 @@ public final class ReminderService  {
 
     static final Random random = new Random();
 
+    /** set once every task's next reminder time has been stored */
+    private static final String PREF_NEXT_REMINDERS_STORED = "nextRemindersStored"; //$NON-NLS-1$
+
+    /** number of next reminder times written per transaction by a scan */
+    private static final int STORE_BATCH_SIZE = 50;
+
     // --- instance variables
 
     @Autowired
@@ -79,9 +86,47 @@ public final class ReminderService  {
 
     private long now = -1; // For tracking when reminders might be scheduled all at once
 
+    /** incremented whenever the stored next reminder times become stale */
+    private final AtomicInteger invalidations = new AtomicInteger();
+
     private ReminderService() {
         DependencyInjectionService.getInstance().inject(this);
         setPreferenceDefaults();
+        Preferences.getPrefs(ContextManager.getContext()).registerOnSharedPreferenceChangeListener(
+                reminderTimeListener);
+    }
+
+    /**
+     * Reminder time and quiet hours change when due date reminders go off,
+     * so every stored next reminder is recomputed when they change. Held
+     * here because preferences only keep weak references to listeners
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener reminderTimeListener =
+        new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                Resources r = ContextManager.getContext().getResources();
+                if(r.getString(R.string.p_rmd_time).equals(key) ||
+                        r.getString(R.string.p_rmd_quietStart).equals(key) ||
+                        r.getString(R.string.p_rmd_quietEnd).equals(key)) {
+                    invalidateStoredReminders();
+                }
+            }
+        };
+
+    /**
+     * Recompute and store the next reminder of every task with reminders,
+     * in the background
+     */
+    public void invalidateStoredReminders() {
+        invalidations.incrementAndGet();
+        Preferences.setBoolean(PREF_NEXT_REMINDERS_STORED, false);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ReminderQueue.getInstance().reload();
+            }
+        }).start();
     }
 
     // --- singleton
@@ -116,32 +161,71 @@ public final class ReminderService  {
         Preferences.setIfUnset(prefs, editor, r, R.string.p_rmd_time, 18);
         Preferences.setIfUnset(prefs, editor, r, R.string.p_rmd_persistent, true);
 
-        editor.commit();
+        Preferences.commit(editor);
         preferencesInitialized = true;
     }
 
     // --- reminder scheduling logic
 
     /**
-     * Schedules all alarms
+     * Schedules alarms of tasks whose next reminder is before the given
+     * time, including reminders that were missed. The first time this runs,
+     * every task with reminders is scheduled so its next reminder is stored.
+     * Next reminder times are written in small transactions as the scan goes,
+     * and alarms are queued outside of them
      */
-    public void scheduleAllAlarms() {
-        TodorooCursor<Task> cursor = getTasksWithReminders(NOTIFICATION_PROPERTIES);
+    public void scheduleAllAlarms(long horizon) {
+        int startInvalidations = invalidations.get();
+        boolean stored = Preferences.getBoolean(PREF_NEXT_REMINDERS_STORED, false);
+        TodorooCursor<Task> cursor = stored ? getTasksWithRemindersBefore(horizon) :
+            getTasksWithReminders(NOTIFICATION_PROPERTIES);
         try {
-            Task task = new Task();
             now = DateUtilities.now(); // Before mass scheduling, initialize now variable
+            HashMap<Long, Long> nextReminders = new HashMap<Long, Long>();
+            Task task = new Task();
             for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
                 task.readFromCursor(cursor);
-                scheduleAlarm(task, false);
+                scheduleAlarm(task, false, nextReminders);
+                if(nextReminders.size() >= STORE_BATCH_SIZE) {
+                    storeNextReminders(nextReminders);
+                    nextReminders.clear();
+                }
+            }
+            storeNextReminders(nextReminders);
+
+            // a scan started before the reminder times changed stored stale times
+            if(!stored && invalidations.get() == startInvalidations) {
+                Preferences.setBoolean(PREF_NEXT_REMINDERS_STORED, true);
             }
         } catch (Exception e) {
-            // suppress
+            // times not stored yet are computed again on the next full scan
+            Log.e("astrid-reminders", "Error scheduling reminders", e); //$NON-NLS-1$ //$NON-NLS-2$
         } finally {
             cursor.close();
             now = -1; // Signal done with now variable
         }
     }
 
+    /**
+     * Write next reminder times collected by a scan, by task id, in one
+     * transaction
+     */
+    private void storeNextReminders(final HashMap<Long, Long> nextReminders) {
+        if(nextReminders.isEmpty()) {
+            return;
+        }
+        taskDao.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                Task template = new Task();
+                for(Entry<Long, Long> entry : nextReminders.entrySet()) {
+                    template.setValue(Task.REMINDER_NEXT, entry.getValue());
+                    taskDao.updateById(entry.getKey(), template);
+                }
+            }
+        });
+    }
+
     private long getNowValue() {
         // If we're in the midst of mass scheduling, use the prestored now var
         return (now == -1 ? DateUtilities.now() : now);
@@ -153,7 +237,7 @@ public final class ReminderService  {
      * Schedules alarms for a single task
      */
     public void scheduleAlarm(Task task) {
-        scheduleAlarm(task, true);
+        scheduleAlarm(task, true, null);
     }
 
     public void clearAllAlarms(Task task) {
@@ -168,8 +252,12 @@ public final class ReminderService  {
      *
      * @param shouldPerformPropertyCheck
      *            whether to check if task has requisite properties
+     * @param nextReminders
+     *            where to collect the next reminder time for writing
+     *            later, or null to write it right away
      */
-    private void scheduleAlarm(Task task, boolean shouldPerformPropertyCheck) {
+    private void scheduleAlarm(Task task, boolean shouldPerformPropertyCheck,
+            HashMap<Long, Long> nextReminders) {
         if(task == null || !task.isSaved()) {
             return;
         }
@@ -191,6 +279,7 @@ public final class ReminderService  {
         // will schedule the next one after it, and so on and so forth.
         clearAllAlarms(task);
         if(task.isCompleted() || task.isDeleted() || !Task.USER_ID_SELF.equals(task.getValue(Task.USER_ID))) {
+            storeNextReminder(task, 0, nextReminders);
             return;
         }
 
@@ -220,13 +309,17 @@ public final class ReminderService  {
         }
 
         // snooze trumps all
+        long next = whenOverdue;
         if(whenSnooze != NO_ALARM) {
+            next = whenSnooze;
             scheduler.createAlarm(task, whenSnooze, TYPE_SNOOZE);
         }
         else if(whenRandom < whenDueDate && whenRandom < whenOverdue) {
+            next = whenRandom;
             scheduler.createAlarm(task, whenRandom, TYPE_RANDOM);
         }
         else if(whenDueDate < whenOverdue) {
+            next = whenDueDate;
             scheduler.createAlarm(task, whenDueDate, TYPE_DUE);
         }
         else if(whenOverdue != NO_ALARM) {
@@ -235,6 +328,27 @@ public final class ReminderService  {
         else {
             scheduler.createAlarm(task, 0, 0);
         }
+        storeNextReminder(task, next == NO_ALARM ? 0 : next, nextReminders);
+    }
+
+    /**
+     * Store the time of the task's next reminder, so scheduling at startup
+     * only needs to look at tasks with reminders coming up. This is written
+     * by id, which skips model listeners and doesn't count as a change to
+     * the task. Only the reminder column is recorded as written, so filter
+     * counts that don't read it are kept
+     */
+    private void storeNextReminder(Task task, long next, HashMap<Long, Long> nextReminders) {
+        if(task.containsValue(Task.REMINDER_NEXT) && task.getValue(Task.REMINDER_NEXT) == next) {
+            return;
+        }
+        if(nextReminders != null) {
+            nextReminders.put(task.getId(), next);
+            return;
+        }
+        Task template = new Task();
+        template.setValue(Task.REMINDER_NEXT, next);
+        taskDao.updateById(task.getId(), template);
     }
 
     /**
@@ -443,44 +557,22 @@ public final class ReminderService  {
 
     private static class ReminderAlarmScheduler implements AlarmScheduler {
         /**
-         * Create an alarm for the given task at the given type
+         * Queue the reminder for the given task at the given type. Only the
+         * earliest queued reminder is registered with the system
          */
         @Override
         public void createAlarm(Task task, long time, int type) {
             if(task.getId() == Task.NO_ID) {
                 return;
             }
-            Context context = ContextManager.getContext();
-            Intent intent = new Intent(context, Notifications.class);
-            intent.setType(Long.toString(task.getId()));
-            intent.setAction(Integer.toString(type));
-            intent.putExtra(Notifications.ID_KEY, task.getId());
-            intent.putExtra(Notifications.EXTRAS_TYPE, type);
-
-            // calculate the unique requestCode as a combination of the task-id and alarm-type:
-            // concatenate id+type to keep the combo unique
-            String rc = String.format("%d%d", task.getId(), type);
-            int requestCode;
-            try {
-                requestCode = Integer.parseInt(rc);
-            } catch (Exception e) {
-                requestCode = type;
-            }
-            AlarmManager am = (AlarmManager)context.getSystemService(Context.ALARM_SERVICE);
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(context, requestCode,
-                    intent, 0);
 
             if (time == 0 || time == NO_ALARM) {
-                am.cancel(pendingIntent);
+                ReminderQueue.getInstance().clearReminder(task.getId(), type);
             } else {
-                if(time < DateUtilities.now()) {
-                    time = DateUtilities.now() + 5000L;
-                }
-
                if(Constants.DEBUG) {
                    Log.e("Astrid", "Reminder set for " + new Date(time) + " for (\"" + task.getValue(Task.TITLE) + "\" (" + task.getId() + "), " + type + ")");
                }
-                am.set(AlarmManager.RTC_WAKEUP, time, pendingIntent);
+                ReminderQueue.getInstance().setReminder(task.getId(), time, type);
             }
         }
     }
@@ -498,5 +590,18 @@ public final class ReminderService  {
                 Criterion.or(Task.REMINDER_FLAGS.gt(0), Task.REMINDER_PERIOD.gt(0)))));
     }
 
+    /**
+     * Gets active tasks whose stored next reminder is before the given time,
+     * using the index on that column
+     * @return todoroo cursor. PLEASE CLOSE THIS CURSOR!
+     */
+    private TodorooCursor<Task> getTasksWithRemindersBefore(long horizon) {
+        return taskDao.query(Query.select(NOTIFICATION_PROPERTIES).where(Criterion.and(
+                Task.REMINDER_NEXT.gt(0),
+                Task.REMINDER_NEXT.lt(horizon),
+                TaskCriteria.isActive(),
+                TaskCriteria.ownedByMe())));
+    }
+
 
 }
@@ -14,6 +14,7 @@ import com.google.ical.values.Frequency;
 import com.google.ical.values.RRule;
 import com.google.ical.values.WeekdayNum;
 import com.todoroo.astrid.api.AstridApiConstants;
+import com.todoroo.astrid.api.TaskDetailExposer;
 import com.todoroo.astrid.core.PluginServices;
 import com.todoroo.astrid.data.Task;
 
@@ -29,7 +30,7 @@ import java.util.List;
  * @author Tim Su <tim@todoroo.com>
  *
  */
-public class RepeatDetailExposer extends BroadcastReceiver {
+public class RepeatDetailExposer extends BroadcastReceiver implements TaskDetailExposer {
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -52,6 +53,16 @@ public class RepeatDetailExposer extends BroadcastReceiver {
         context.sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
     }
 
+
+    @Override
+    public String[] getTaskDetails(Context context, long[] ids) {
+        String[] details = new String[ids.length];
+        for(int i = 0; i < ids.length; i++) {
+            details[i] = getTaskDetails(context, ids[i]);
+        }
+        return details;
+    }
+
     public String getTaskDetails(Context context, long id) {
         Task task = PluginServices.getTaskService().fetchById(id, Task.RECURRENCE);
         if(task == null) {
@@ -17,6 +17,7 @@ import com.todoroo.astrid.dao.TagMetadataDao;
 import com.todoroo.astrid.dao.TaskAttachmentDao;
 import com.todoroo.astrid.dao.TaskDao;
 import com.todoroo.astrid.dao.TaskListMetadataDao;
+import com.todoroo.astrid.dao.TaskListOrderDao;
 import com.todoroo.astrid.dao.UserActivityDao;
 import com.todoroo.astrid.gtasks.GtasksListService;
 import com.todoroo.astrid.gtasks.GtasksMetadataService;
@@ -64,6 +65,7 @@ public class AstridDependencyInjector extends AbstractDependencyInjector {
         injectables.put("userActivityDao", UserActivityDao.class);
         injectables.put("taskAttachmentDao", TaskAttachmentDao.class);
         injectables.put("taskListMetadataDao", TaskListMetadataDao.class);
+        injectables.put("taskListOrderDao", TaskListOrderDao.class);
 
         // com.todoroo.astrid.service
         injectables.put("taskService", TaskService.class);
@@ -71,6 +73,7 @@ public class AstridDependencyInjector extends AbstractDependencyInjector {
         injectables.put("tagDataService", TagDataService.class);
         injectables.put("upgradeService", UpgradeService.class);
         injectables.put("syncService", SyncV2Service.class);
+        injectables.put("filterCountService", FilterCountService.class);
 
         // com.todoroo.astrid.gtasks
         injectables.put("gtasksPreferenceService", GtasksPreferenceService.class);
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.service;
+
+import android.database.Cursor;
+import android.support.v4.util.LruCache;
+
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
+import com.todoroo.andlib.data.ChangeSet;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.api.Filter;
+import com.todoroo.astrid.api.PermaSql;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the tasks in filters for the filter list. Filters that are a plain
+ * condition on the task table are counted together in one scan; the others
+ * get a COUNT(*) query each. Counts are cached until a write to a column
+ * they read is published
+ */
+public class FilterCountService {
+
+    /** number of counts cached. Filters with dates in them change key daily */
+    private static final int CACHE_SIZE = 200;
+
+    /** number of filters counted by one scan of the task table */
+    private static final int MAX_FILTERS_PER_SCAN = 50;
+
+    @Autowired
+    private Database database;
+
+    @Autowired
+    private TaskService taskService;
+
+    /** counts by filter sql, with placeholders replaced */
+    private final LruCache<String, Integer> counts = new LruCache<String, Integer>(CACHE_SIZE);
+
+    /** incremented on every invalidation, so counts started before it are not cached */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public FilterCountService() {
+        DependencyInjectionService.getInstance().inject(this);
+        database.addListener(new DatabaseUpdateListener() {
+            @Override
+            public void onDatabaseUpdated(ChangeSet changes) {
+                invalidate(changes);
+            }
+        });
+    }
+
+    // --- counting
+
+    /**
+     * @return number of tasks in the given filter
+     */
+    public int countTasks(Filter filter) {
+        String sql = PermaSql.replacePlaceholders(filter.getSqlQuery());
+        Integer count = counts.get(sql);
+        if(count != null) {
+            return count;
+        }
+        int startGeneration = generation.get();
+        count = taskService.count(Query.select(Task.ID).withQueryTemplate(sql));
+        cache(sql, count, startGeneration);
+        return count;
+    }
+
+    /**
+     * @return number of tasks in the given filter, ignoring cached counts
+     */
+    public int recountTasks(Filter filter) {
+        counts.remove(PermaSql.replacePlaceholders(filter.getSqlQuery()));
+        return countTasks(filter);
+    }
+
+    /**
+     * Count the tasks in each of the given filters
+     */
+    public HashMap<Filter, Integer> countTasks(List<Filter> filters) {
+        HashMap<Filter, Integer> result = new HashMap<Filter, Integer>();
+        ArrayList<Filter> scanned = new ArrayList<Filter>();
+        ArrayList<String> conditions = new ArrayList<String>();
+        ArrayList<String> keys = new ArrayList<String>();
+
+        for(Filter filter : filters) {
+            String sql = PermaSql.replacePlaceholders(filter.getSqlQuery());
+            Integer count = counts.get(sql);
+            if(count != null) {
+                result.put(filter, count);
+                continue;
+            }
+            String condition = taskCondition(sql);
+            if(condition == null) {
+                result.put(filter, countTasks(filter));
+            } else {
+                scanned.add(filter);
+                conditions.add(condition);
+                keys.add(sql);
+            }
+        }
+
+        for(int start = 0; start < scanned.size(); start += MAX_FILTERS_PER_SCAN) {
+            int end = Math.min(scanned.size(), start + MAX_FILTERS_PER_SCAN);
+            int startGeneration = generation.get();
+            int[] scanCounts = countConditions(conditions.subList(start, end));
+            for(int i = start; i < end; i++) {
+                result.put(scanned.get(i), scanCounts[i - start]);
+                cache(keys.get(i), scanCounts[i - start], startGeneration);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Count rows of the task table matching each condition with one scan
+     */
+    private int[] countConditions(List<String> conditions) {
+        StringBuilder sql = new StringBuilder("SELECT "); //$NON-NLS-1$
+        for(int i = 0; i < conditions.size(); i++) {
+            if(i > 0) {
+                sql.append(", "); //$NON-NLS-1$
+            }
+            sql.append("SUM(CASE WHEN (").append(conditions.get(i)).append(") THEN 1 ELSE 0 END)"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        sql.append(" FROM ").append(Task.TABLE.name); //$NON-NLS-1$
+
+        int[] result = new int[conditions.size()];
+        Cursor cursor = database.rawQuery(sql.toString(), null);
+        try {
+            if(cursor.moveToFirst()) {
+                for(int i = 0; i < result.length; i++) {
+                    result[i] = cursor.getInt(i);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * @return the condition of a filter that only reads the task table, or
+     *         null if the filter joins, groups or limits
+     */
+    private static String taskCondition(String sql) {
+        String trimmed = sql.trim();
+        String upper = trimmed.toUpperCase(Locale.US);
+        if(!upper.startsWith("WHERE ")) { //$NON-NLS-1$
+            return null;
+        }
+
+        // order doesn't change the count
+        int orderBy = upper.lastIndexOf("ORDER BY"); //$NON-NLS-1$
+        if(orderBy > 0 && upper.indexOf(')', orderBy) < 0) {
+            trimmed = trimmed.substring(0, orderBy);
+            upper = upper.substring(0, orderBy);
+        }
+        if(upper.contains("JOIN ") || upper.contains("GROUP BY") || //$NON-NLS-1$ //$NON-NLS-2$
+                upper.contains("ORDER BY") || upper.contains("LIMIT ")) { //$NON-NLS-1$ //$NON-NLS-2$
+            return null;
+        }
+        return trimmed.substring("WHERE ".length()); //$NON-NLS-1$
+    }
+
+    // --- cache
+
+    private void cache(String sql, int count, int startGeneration) {
+        if(generation.get() == startGeneration) {
+            counts.put(sql, count);
+        }
+    }
+
+    /**
+     * Drop counts that the given changes may have affected: those of filters
+     * whose query names a written column. Every filter reads the task table;
+     * only some read metadata
+     */
+    private void invalidate(ChangeSet changes) {
+        if(changes.affects(Task.TABLE)) {
+            evict(null, changes.getChangedColumns(Task.TABLE));
+        }
+        if(changes.affects(Metadata.TABLE)) {
+            evict(Metadata.TABLE.name, changes.getChangedColumns(Metadata.TABLE));
+        }
+    }
+
+    /**
+     * @param table only drop counts of filters reading this table, or null
+     *        for filters reading the task table, which all do
+     * @param columns written columns, or null if rows were inserted or
+     *        deleted and every count reading the table is dropped
+     */
+    private void evict(String table, Set<String> columns) {
+        generation.incrementAndGet();
+        if(table == null && columns == null) {
+            counts.evictAll();
+            return;
+        }
+        for(String sql : counts.snapshot().keySet()) {
+            if(table != null && !sql.contains(table)) {
+                continue;
+            }
+            if(columns == null || mentionsAny(sql, columns)) {
+                counts.remove(sql);
+            }
+        }
+    }
+
+    private static boolean mentionsAny(String sql, Set<String> columns) {
+        for(String column : columns) {
+            if(sql.contains(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -20,6 +20,7 @@ import com.todoroo.astrid.data.Metadata;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service layer for {@link Metadata}-centered activities.
@@ -46,21 +47,34 @@ public class MetadataService {
      * Clean up metadata. Typically called on startup
      */
     public void cleanup() {
-        TodorooCursor<Metadata> cursor = metadataDao.fetchDangling(Metadata.ID);
+        final TodorooCursor<Metadata> cursor = metadataDao.fetchDangling(Metadata.ID);
         try {
             if(cursor.getCount() == 0) {
                 return;
             }
 
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long id = cursor.getLong(0);
-                metadataDao.delete(id);
-            }
+            runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                        long id = cursor.getLong(0);
+                        metadataDao.delete(id);
+                    }
+                }
+            });
         } finally {
             cursor.close();
         }
     }
 
+    /**
+     * Run the given operation in a single database transaction, notifying
+     * listeners once when it completes
+     */
+    public void runInTransaction(Runnable operation) {
+        metadataDao.runInTransaction(operation);
+    }
+
     /**
      * Query underlying database
      */
@@ -99,7 +113,20 @@ public class MetadataService {
      * Synchronize metadata for given task id
      * @return true if there were changes
      */
-    public boolean synchronizeMetadata(long taskId, ArrayList<Metadata> metadata,
+    public boolean synchronizeMetadata(final long taskId, final ArrayList<Metadata> metadata,
+            final Criterion metadataCriterion, final SynchronizeMetadataCallback callback, final boolean hardDelete) {
+        final AtomicBoolean dirty = new AtomicBoolean(false);
+        runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                dirty.set(synchronizeMetadataHelper(taskId, metadata, metadataCriterion,
+                        callback, hardDelete));
+            }
+        });
+        return dirty.get();
+    }
+
+    private boolean synchronizeMetadataHelper(long taskId, ArrayList<Metadata> metadata,
             Criterion metadataCriterion, SynchronizeMetadataCallback callback, boolean hardDelete) {
         boolean dirty = false;
         HashSet<ContentValues> newMetadataValues = new HashSet<ContentValues>();
@@ -275,7 +275,7 @@ public class StartupService {
                 File[] children = directory.listFiles();
                 AndroidUtilities.sortFilesByDateDesc(children);
                 if(children.length > 0) {
-                    TasksXmlImporter.importTasks(context, children[0].getAbsolutePath(), null);
+                    TasksXmlImporter.importTasks(context, BackupService.getRestoreChain(children[0]), null);
                 }
             }
         } catch (Exception e) {
@@ -1,9 +1,9 @@
 package com.todoroo.astrid.service;
 
-import com.todoroo.andlib.service.ContextManager;
-import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.astrid.dao.Database;
 import com.todoroo.astrid.sync.SyncResultCallback;
-import com.todoroo.astrid.widget.TasksWidget;
 
 public class SyncResultCallbackWrapper implements SyncResultCallback {
     private final SyncResultCallback wrapped;
@@ -29,21 +29,27 @@ public class SyncResultCallbackWrapper implements SyncResultCallback {
 
     public static class WidgetUpdatingCallbackWrapper extends SyncResultCallbackWrapper {
 
+        @Autowired Database database;
+
         public WidgetUpdatingCallbackWrapper(SyncResultCallback wrap) {
             super(wrap);
+            DependencyInjectionService.getInstance().inject(this);
         }
 
+        /**
+         * Widgets are notified once with everything the sync changed, when
+         * it finishes
+         */
         @Override
         public void started() {
             super.started();
-            TasksWidget.suppressUpdateFlag = DateUtilities.now();
+            database.holdNotifications();
         }
 
         @Override
         public void finished() {
             super.finished();
-            TasksWidget.suppressUpdateFlag = 0L;
-            TasksWidget.updateWidgets(ContextManager.getContext());
+            database.releaseNotifications();
         }
 
     }
@@ -85,6 +85,14 @@ public class TaskService {
         return taskDao.query(query);
     }
 
+    /**
+     * Run the given operation in a single database transaction, notifying
+     * listeners once when it completes
+     */
+    public void runInTransaction(Runnable operation) {
+        taskDao.runInTransaction(operation);
+    }
+
     /**
      * @return item, or null if it doesn't exist
      */
@@ -92,6 +100,13 @@ public class TaskService {
         return taskDao.fetch(id, properties);
     }
 
+    /**
+     * @return item, or null if it doesn't exist
+     */
+    public Task fetchByUuid(String uuid, Property<?>... properties) {
+        return taskDao.fetch(uuid, properties);
+    }
+
     /**
      * Mark the given task as completed and save it.
      */
@@ -130,35 +145,40 @@ public class TaskService {
      * @return the new task
      */
     public Task clone(Task task) {
-        Task newTask = fetchById(task.getId(), Task.PROPERTIES);
+        final Task newTask = fetchById(task.getId(), Task.PROPERTIES);
         if(newTask == null) {
             return new Task();
         }
         newTask.clearValue(Task.ID);
         newTask.clearValue(Task.UUID);
-        TodorooCursor<Metadata> cursor = metadataDao.query(
+        final TodorooCursor<Metadata> cursor = metadataDao.query(
                 Query.select(Metadata.PROPERTIES).where(MetadataCriteria.byTask(task.getId())));
         try {
             if(cursor.getCount() > 0) {
-                Metadata metadata = new Metadata();
-                newTask.putTransitory(SyncFlags.GTASKS_SUPPRESS_SYNC, true);
-                taskDao.save(newTask);
-                long newId = newTask.getId();
-                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                    metadata.readFromCursor(cursor);
-
-                    if(!metadata.containsNonNullValue(Metadata.KEY)) {
-                        continue;
-                    }
-
-                    if(GtasksMetadata.METADATA_KEY.equals(metadata.getValue(Metadata.KEY))) {
-                        metadata.setValue(GtasksMetadata.ID, ""); //$NON-NLS-1$
+                runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        Metadata metadata = new Metadata();
+                        newTask.putTransitory(SyncFlags.GTASKS_SUPPRESS_SYNC, true);
+                        taskDao.save(newTask);
+                        long newId = newTask.getId();
+                        for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                            metadata.readFromCursor(cursor);
+
+                            if(!metadata.containsNonNullValue(Metadata.KEY)) {
+                                continue;
+                            }
+
+                            if(GtasksMetadata.METADATA_KEY.equals(metadata.getValue(Metadata.KEY))) {
+                                metadata.setValue(GtasksMetadata.ID, ""); //$NON-NLS-1$
+                            }
+
+                            metadata.setValue(Metadata.TASK, newId);
+                            metadata.clearValue(Metadata.ID);
+                            metadataDao.createNew(metadata);
+                        }
                     }
-
-                    metadata.setValue(Metadata.TASK, newId);
-                    metadata.clearValue(Metadata.ID);
-                    metadataDao.createNew(metadata);
-                }
+                });
             }
         } finally {
             cursor.close();
@@ -197,17 +217,22 @@ public class TaskService {
      * Clean up tasks. Typically called on startup
      */
     public void cleanup() {
-        TodorooCursor<Task> cursor = taskDao.query(
+        final TodorooCursor<Task> cursor = taskDao.query(
                 Query.select(Task.ID).where(TaskCriteria.hasNoTitle()));
         try {
             if(cursor.getCount() == 0) {
                 return;
             }
 
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long id = cursor.getLong(0);
-                taskDao.delete(id);
-            }
+            runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                        long id = cursor.getLong(0);
+                        taskDao.delete(id);
+                    }
+                }
+            });
         } finally {
             cursor.close();
         }
@@ -270,13 +295,18 @@ public class TaskService {
      * Update database based on selection and values
      */
     public int updateBySelection(String selection, String[] selectionArgs,
-            Task taskValues) {
-        TodorooCursor<Task> cursor = taskDao.rawQuery(selection, selectionArgs, Task.ID);
+            final Task taskValues) {
+        final TodorooCursor<Task> cursor = taskDao.rawQuery(selection, selectionArgs, Task.ID);
         try {
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                taskValues.setValue(Task.ID, cursor.get(Task.ID));
-                taskDao.save(taskValues);
-            }
+            runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                        taskValues.setValue(Task.ID, cursor.get(Task.ID));
+                        taskDao.save(taskValues);
+                    }
+                }
+            });
             return cursor.getCount();
         } finally {
             cursor.close();
@@ -304,24 +334,13 @@ public class TaskService {
      * Count tasks overall
      */
     public int countTasks() {
-        TodorooCursor<Task> cursor = query(Query.select(Task.ID));
-        try {
-            return cursor.getCount();
-        } finally {
-            cursor.close();
-        }
+        return count(Query.select(Task.ID));
     }
 
     /** count tasks in a given filter */
     public int countTasks(Filter filter) {
         String queryTemplate = PermaSql.replacePlaceholders(filter.getSqlQuery());
-        TodorooCursor<Task> cursor = query(Query.select(Task.ID).withQueryTemplate(
-                queryTemplate));
-        try {
-            return cursor.getCount();
-        } finally {
-            cursor.close();
-        }
+        return count(Query.select(Task.ID).withQueryTemplate(queryTemplate));
     }
 
     /**
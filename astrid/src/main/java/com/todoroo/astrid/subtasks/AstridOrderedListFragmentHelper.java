@@ -296,7 +296,7 @@ public class AstridOrderedListFragmentHelper<LIST> implements OrderedListFragmen
                 }
 
                 if (madeChanges) {
-                    updater.writeSerialization(list, updater.serializeTree(), true);
+                    updater.writeTree(list, true);
                 }
             } finally {
                 recurring.close();
@@ -331,5 +331,10 @@ public class AstridOrderedListFragmentHelper<LIST> implements OrderedListFragmen
         taskAdapter.notifyDataSetInvalidated();
     }
 
+    @Override
+    public void onPause() {
+        updater.flush(list);
+    }
+
 
 }
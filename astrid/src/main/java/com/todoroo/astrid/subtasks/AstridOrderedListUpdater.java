@@ -5,18 +5,23 @@ import android.util.Log;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.api.Filter;
+import com.todoroo.astrid.dao.Database;
 import com.todoroo.astrid.data.RemoteModel;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.service.TaskService;
+import com.todoroo.astrid.subtasks.OrderedListTreeCache.ListTree;
 
-import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 
 public abstract class AstridOrderedListUpdater<LIST> {
@@ -24,9 +29,12 @@ public abstract class AstridOrderedListUpdater<LIST> {
     @Autowired
     private TaskService taskService;
 
+    @Autowired
+    Database database;
+
     public AstridOrderedListUpdater() {
         DependencyInjectionService.getInstance().inject(this);
-        idToNode = new HashMap<String, Node>();
+        OrderedListTreeCache.getInstance().track(database);
     }
 
     public interface OrderedListNodeVisitor {
@@ -39,6 +47,13 @@ public abstract class AstridOrderedListUpdater<LIST> {
         public int indent;
         public final ArrayList<Node> children = new ArrayList<Node>();
 
+        /** sort key of the task in the list, see {@link OrderedListPositions} */
+        long position = OrderedListPositions.NONE;
+
+        /** position and indent as last stored */
+        long storedPosition = OrderedListPositions.NONE;
+        int storedIndent = -1;
+
         public Node(String uuid, Node parent, int indent) {
             this.uuid = uuid;
             this.parent = parent;
@@ -46,16 +61,192 @@ public abstract class AstridOrderedListUpdater<LIST> {
         }
     }
 
-    private Node treeRoot;
+    /** gap between the positions first handed out to a list's tasks */
+    public static final long POSITION_STEP = OrderedListPositions.STEP;
+
+    /** changes kept only as task positions before the tree is serialized again */
+    private static final int MAX_UNWRITTEN_CHANGES = 20;
+
+    /** how long a tree is trusted to match a filter that can change with time */
+    private static final long VERIFY_INTERVAL = DateUtilities.ONE_MINUTE;
 
-    private final HashMap<String, Node> idToNode;
+    /** preference prefix marking lists whose serialized tree is behind their task positions */
+    static final String PREF_UNWRITTEN = "ordered_list_unwritten_"; //$NON-NLS-1$
+
+    /** tree of lists that aren't cached, see {@link #getCacheKey(Object)} */
+    private final ListTree uncachedTree = new ListTree();
+
+    /** tree of the list last initialized, and that list */
+    private ListTree tree = uncachedTree;
+    private LIST treeList;
 
     protected abstract String getSerializedTree(LIST list, Filter filter);
     protected abstract void writeSerialization(LIST list, String serialized, boolean shouldQueueSync);
-    protected abstract void applyToFilter(Filter filter);
+    protected abstract void applyToFilter(LIST list, Filter filter);
+
+    /**
+     * @return id the task order of the given list is stored under, or null
+     */
+    protected abstract String getListId(LIST list);
+
+    /**
+     * @return id the list's tree is cached under, or null if it shouldn't
+     *         be kept once another list is shown
+     */
+    protected String getCacheKey(LIST list) {
+        return getListId(list);
+    }
+
+    /**
+     * Read the stored position and indent of the list's tasks into
+     * {@link Node#position}, {@link Node#storedPosition} and
+     * {@link Node#storedIndent}. Positions stored for tasks that aren't in
+     * the tree should be dropped. Called when the tree is built
+     *
+     * @param nodes nodes of the tree by local task id
+     */
+    protected void readOrder(LIST list, HashMap<Long, Node> nodes) {
+        // Hook
+    }
+
+    /**
+     * Read the list's tasks in the order of their stored positions, with
+     * their uuid, indent and stored position and indent set. Used to rebuild
+     * a tree whose serialized form was not written before the app stopped
+     *
+     * @param nodes filled with a node for each task, not yet linked
+     * @param taskIds filled with the local task ids by uuid
+     * @return false if the list's order can't be read
+     */
+    protected boolean readOrderedTasks(LIST list, ArrayList<Node> nodes, HashMap<String, Long> taskIds) {
+        return false;
+    }
+
+    /**
+     * Store the position and indent of the given tasks so the list can be
+     * sorted by them, and drop the ones of removed tasks. Called with only
+     * the tasks whose position or indent changed
+     *
+     * @param taskIds local task ids by uuid
+     */
+    protected void writeOrder(LIST list, ArrayList<Node> changed, HashMap<String, Long> taskIds, Set<Long> removed) {
+        // Hook
+    }
+
+    /**
+     * Persist the tree after a change. The positions of the tasks that
+     * moved are written right away; the serialized tree, which is what gets
+     * synced, is only written every {@link #MAX_UNWRITTEN_CHANGES} changes
+     * and when {@link #flush(Object)} is called
+     */
+    protected void writeTree(LIST list, boolean shouldQueueSync) {
+        persistOrder(list);
+        if (tree.unwrittenChanges == 0) {
+            String key = getCacheKey(list);
+            if (key != null) {
+                Preferences.setInt(PREF_UNWRITTEN + key, tree.serialized.hashCode());
+            }
+        }
+        tree.unwrittenChanges++;
+        tree.queueSync |= shouldQueueSync;
+        if (tree.unwrittenChanges >= MAX_UNWRITTEN_CHANGES) {
+            flush(list);
+        }
+    }
+
+    /**
+     * Write the serialized tree if it is behind the task positions. Called
+     * when the list is left
+     */
+    public void flush(LIST list) {
+        if (tree.unwrittenChanges > 0 && tree.root != null) {
+            writeSerializedTree(list, tree.queueSync);
+        }
+    }
+
+    /**
+     * Hand out positions to tasks that are out of order and write the ones
+     * that changed
+     */
+    private void persistOrder(LIST list) {
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        collectTasks(tree.root, nodes);
+        OrderedListPositions.assign(nodes);
+
+        ArrayList<Node> changed = new ArrayList<Node>();
+        for (Node node : nodes) {
+            if (node.position != node.storedPosition || node.indent != node.storedIndent) {
+                changed.add(node);
+            }
+        }
+        if (changed.isEmpty() && tree.removedTaskIds.isEmpty()) {
+            return;
+        }
+        writeOrder(list, changed, tree.uuidToId, tree.removedTaskIds);
+        for (Node node : changed) {
+            node.storedPosition = node.position;
+            node.storedIndent = node.indent;
+        }
+        tree.removedTaskIds.clear();
+    }
+
+    /**
+     * Collect the nodes of tasks with a local id, in the order they're shown
+     */
+    private void collectTasks(Node node, ArrayList<Node> nodes) {
+        for (Node child : node.children) {
+            if (tree.uuidToId.containsKey(child.uuid)) {
+                nodes.add(child);
+            }
+            collectTasks(child, nodes);
+        }
+    }
+
+    /**
+     * @return the nodes below root, in the order they're shown
+     */
+    public static ArrayList<Node> inOrder(Node root) {
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        addInOrder(root, nodes);
+        return nodes;
+    }
+
+    private static void addInOrder(Node node, ArrayList<Node> nodes) {
+        for (Node child : node.children) {
+            nodes.add(child);
+            addInOrder(child, nodes);
+        }
+    }
+
+    /**
+     * Read the stored positions of the tasks in a newly built tree
+     */
+    private void readStoredOrder(LIST list) {
+        HashMap<Long, Node> nodes = new HashMap<Long, Node>();
+        for (Node node : tree.idToNode.values()) {
+            Long taskId = tree.uuidToId.get(node.uuid);
+            if (taskId != null) {
+                nodes.put(taskId, node);
+            }
+        }
+        readOrder(list, nodes);
+    }
+
+    private void writeSerializedTree(LIST list, boolean shouldQueueSync) {
+        tree.serialized = serializeTree();
+        writeSerialization(list, tree.serialized, shouldQueueSync);
+        if (tree.unwrittenChanges > 0) {
+            tree.unwrittenChanges = 0;
+            tree.queueSync = false;
+            String key = getCacheKey(list);
+            if (key != null) {
+                Preferences.clear(PREF_UNWRITTEN + key);
+            }
+        }
+    }
 
     public int getIndentForTask(String targetTaskId) {
-        Node n = idToNode.get(targetTaskId);
+        Node n = tree.idToNode.get(targetTaskId);
         if (n == null) {
             return 0;
         }
@@ -66,40 +257,161 @@ public abstract class AstridOrderedListUpdater<LIST> {
         initializeFromSerializedTree(list, filter, getSerializedTree(list, filter));
     }
 
+    /**
+     * Build the tree from its serialized form and reconcile it with the
+     * tasks in the filter. Trees are cached per list: if the serialized
+     * form is the one last read or written, the cached tree is kept and only
+     * the tasks written since it was last checked are looked up. Task
+     * positions are only written for tasks that are missing one or are out
+     * of order
+     */
     public void initializeFromSerializedTree(LIST list, Filter filter, String serializedTree) {
-        idToNode.clear();
-        treeRoot = buildTreeModel(serializedTree, new JSONTreeModelBuilder() {
+        String key = getCacheKey(list);
+        String query = filter.getSqlQuery().replaceAll("ORDER BY .*", ""); //$NON-NLS-1$ //$NON-NLS-2$
+
+        OrderedListTreeCache cache = OrderedListTreeCache.getInstance();
+        ListTree listTree = key == null ? uncachedTree : cache.get(key);
+        if (listTree != tree) {
+            flush(treeList);
+            tree = listTree;
+        }
+        treeList = list;
+
+        if (tree.root != null && serializedTree.equals(tree.serialized) && query.equals(tree.query)) {
+            if (key == null || DateUtilities.now() - tree.verifiedAt > VERIFY_INTERVAL) {
+                cache.changedAll(tree);
+            }
+            if (verifyTreeModel(query, cache.takeChanges(tree))) {
+                writeTree(list, false);
+            }
+            return;
+        }
+
+        if (tree.unwrittenChanges > 0 && serializedTree.equals(tree.serialized)) {
+            // same list shown through another filter
+            flush(list);
+        }
+        cache.takeChanges(tree);
+        tree.idToNode.clear();
+        tree.uuidToId.clear();
+        tree.removedTaskIds.clear();
+        tree.unwrittenChanges = 0;
+        tree.queueSync = false;
+        tree.query = query;
+        tree.serialized = serializedTree;
+
+        if (isBehindTaskPositions(key, serializedTree) && buildFromOrder(list)) {
+            // the task positions hold changes the serialized tree is missing
+            verifyTreeModel(query, null);
+            persistOrder(list);
+            tree.unwrittenChanges = 1;
+            tree.queueSync = true;
+            flush(list);
+            return;
+        }
+        if (key != null) {
+            Preferences.clear(PREF_UNWRITTEN + key);
+        }
+
+        tree.root = buildTreeModel(serializedTree, new JSONTreeModelBuilder() {
             @Override
             public void afterAddNode(Node node) {
-                idToNode.put(node.uuid, node);
+                tree.idToNode.put(node.uuid, node);
             }
         });
-        verifyTreeModel(list, filter);
-    }
 
-    private void verifyTreeModel(LIST list, Filter filter) {
+        boolean changed = verifyTreeModel(query, null);
+        readStoredOrder(list);
+        persistOrder(list);
+        if (changed) {
+            writeSerializedTree(list, false);
+        }
+    }
+
+    /**
+     * @return true if the list's serialized tree is the one its task
+     *         positions were last changed from, without being written since
+     */
+    private static boolean isBehindTaskPositions(String key, String serializedTree) {
+        return key != null && Preferences.isSet(PREF_UNWRITTEN + key) &&
+                Preferences.getInt(PREF_UNWRITTEN + key, 0) == serializedTree.hashCode();
+    }
+
+    /**
+     * Rebuild the tree from the stored task positions and indents
+     *
+     * @return false if they can't be read
+     */
+    private boolean buildFromOrder(LIST list) {
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        if (!readOrderedTasks(list, nodes, tree.uuidToId)) {
+            tree.uuidToId.clear();
+            return false;
+        }
+        tree.root = new Node("-1", null, -1); //$NON-NLS-1$
+        Node last = tree.root;
+        for (Node node : nodes) {
+            Node parent = last;
+            while (parent.indent >= node.indent && parent != tree.root) {
+                parent = parent.parent;
+            }
+            node.parent = parent;
+            node.indent = parent.indent + 1;
+            parent.children.add(node);
+            tree.idToNode.put(node.uuid, node);
+            last = node;
+        }
+        return true;
+    }
+
+    /**
+     * Add tasks in the filter that are missing from the tree and remove the
+     * ones no longer in it. When only some tasks were written since the tree
+     * was last checked, only those are looked up in the filter; otherwise
+     * the tree's ids are compared with the whole filter's. Nothing is
+     * written; that's up to the caller
+     *
+     * @param changedTaskIds tasks written since the last check, or null to
+     *        check the whole filter
+     * @return true if the tree changed
+     */
+    private boolean verifyTreeModel(String query, Set<Long> changedTaskIds) {
+        if (changedTaskIds != null && changedTaskIds.isEmpty()) {
+            return false;
+        }
+
         boolean changedThings = false;
-        Set<String> keySet = idToNode.keySet();
         Set<String> currentIds = new HashSet<String>();
-        for (String id : keySet) {
-            currentIds.add(id);
+        String sql;
+        if (changedTaskIds == null) {
+            currentIds.addAll(tree.idToNode.keySet());
+            sql = query + String.format(" ORDER BY %s", Task.CREATION_DATE); //$NON-NLS-1$
+        } else {
+            for (Entry<String, Long> entry : tree.uuidToId.entrySet()) {
+                if (changedTaskIds.contains(entry.getValue())) {
+                    currentIds.add(entry.getKey());
+                }
+            }
+            Long[] ids = changedTaskIds.toArray(new Long[changedTaskIds.size()]);
+            sql = String.format("WHERE %s AND %s IN (SELECT %s FROM %s %s) ORDER BY %s", //$NON-NLS-1$
+                    Task.ID.in(ids), Task.ID, Task.ID, Task.TABLE, query, Task.CREATION_DATE);
         }
+
         Set<String> idsInQuery = new HashSet<String>();
-        String sql = filter.getSqlQuery().replaceAll("ORDER BY .*", "");  //$NON-NLS-1$//$NON-NLS-2$
-        sql = sql + String.format(" ORDER BY %s", Task.CREATION_DATE); //$NON-NLS-1$
-        TodorooCursor<Task> tasks = taskService.fetchFiltered(sql, null, Task.UUID);
+        TodorooCursor<Task> tasks = taskService.fetchFiltered(sql, null, Task.ID, Task.UUID);
         try {
             for (tasks.moveToFirst(); !tasks.isAfterLast(); tasks.moveToNext()) {
-                String id = tasks.getString(0);
+                String id = tasks.getString(1);
+                tree.uuidToId.put(id, tasks.getLong(0));
                 idsInQuery.add(id);
-                if (idToNode.containsKey(id)) {
+                if (tree.idToNode.containsKey(id)) {
                     continue;
                 }
 
                 changedThings = true;
-                Node newNode = new Node(id, treeRoot, 0);
-                treeRoot.children.add(0, newNode);
-                idToNode.put(id, newNode);
+                Node newNode = new Node(id, tree.root, 0);
+                tree.root.children.add(0, newNode);
+                tree.idToNode.put(id, newNode);
             }
 
             currentIds.removeAll(idsInQuery);
@@ -110,19 +422,22 @@ public abstract class AstridOrderedListUpdater<LIST> {
         } finally {
             tasks.close();
         }
-        if (changedThings) {
-            writeSerialization(list, serializeTree(), false);
+        if (changedTaskIds == null) {
+            tree.verifiedAt = DateUtilities.now();
         }
+        return changedThings;
     }
 
     private void removeNodes(Set<String> idsToRemove) {
         for (String id : idsToRemove) {
-            Node node = idToNode.get(id);
+            Node node = tree.idToNode.get(id);
             if (node == null) {
                 continue;
             }
 
             // Remove node from tree, put all children under parent
+            tree.idToNode.remove(id);
+            forgetTask(id);
             Node parent = node.parent;
             parent.children.remove(node);
             for (Node child : node.children) {
@@ -133,47 +448,30 @@ public abstract class AstridOrderedListUpdater<LIST> {
         }
     }
 
-    public Node findNodeForTask(String taskId) {
-        return idToNode.get(taskId);
-    }
-
-    private String[] getOrderedIds() {
-        ArrayList<String> ids = new ArrayList<String>();
-        orderedIdHelper(treeRoot, ids);
-        return ids.toArray(new String[ids.size()]);
+    /**
+     * Drop a task that was removed from the tree, so its position is
+     * dropped with the next write
+     */
+    private void forgetTask(String uuid) {
+        Long taskId = tree.uuidToId.remove(uuid);
+        if (taskId != null) {
+            tree.removedTaskIds.add(taskId);
+        }
     }
 
-    public String getOrderString() {
-        String[] ids = getOrderedIds();
-        return buildOrderString(ids);
+    public Node findNodeForTask(String taskId) {
+        return tree.idToNode.get(taskId);
     }
 
-    public static String buildOrderString(String[] ids) {
-        StringBuilder builder = new StringBuilder();
-        if (ids.length == 0) {
-            return "(1)"; //$NON-NLS-1$
-        }
-        for (int i = ids.length - 1; i >= 0; i--) {
-            builder.append(Task.UUID.eq(ids[i]).toString());
-            if (i > 0) {
-                builder.append(", "); //$NON-NLS-1$
-            }
-        }
-        return builder.toString();
-    }
-
-    private void orderedIdHelper(Node node, List<String> ids) {
-        if (node != treeRoot) {
-            ids.add(node.uuid);
-        }
-
-        for (Node child : node.children) {
-            orderedIdHelper(child, ids);
-        }
+    /**
+     * @return true if there are no tasks in the tree
+     */
+    public boolean isTreeEmpty() {
+        return tree.root == null || tree.root.children.isEmpty();
     }
 
     public void applyToDescendants(String taskId, OrderedListNodeVisitor visitor) {
-        Node n = idToNode.get(taskId);
+        Node n = tree.idToNode.get(taskId);
         if (n == null) {
             return;
         }
@@ -189,7 +487,7 @@ public abstract class AstridOrderedListUpdater<LIST> {
     }
 
     public void indent(LIST list, Filter filter, String targetTaskId, int delta) {
-        Node node = idToNode.get(targetTaskId);
+        Node node = tree.idToNode.get(targetTaskId);
         indentHelper(list, filter, node, delta);
     }
 
@@ -218,7 +516,7 @@ public abstract class AstridOrderedListUpdater<LIST> {
             newParent.children.add(node);
             setNodeIndent(node, newParent.indent + 1);
         } else if (delta < 0) {
-            if (parent == treeRoot) // Can't deindent a top level item
+            if (parent == tree.root) // Can't deindent a top level item
             {
                 return;
             }
@@ -238,8 +536,8 @@ public abstract class AstridOrderedListUpdater<LIST> {
             newSiblings.add(insertAfter + 1, node);
         }
 
-        writeSerialization(list, serializeTree(), true);
-        applyToFilter(filter);
+        writeTree(list, true);
+        applyToFilter(list, filter);
     }
 
     private void setNodeIndent(Node node, int indent) {
@@ -255,7 +553,7 @@ public abstract class AstridOrderedListUpdater<LIST> {
     }
 
     public void moveTo(LIST list, Filter filter, String targetTaskId, String beforeTaskId) {
-        Node target = idToNode.get(targetTaskId);
+        Node target = tree.idToNode.get(targetTaskId);
         if (target == null) {
             return;
         }
@@ -265,7 +563,7 @@ public abstract class AstridOrderedListUpdater<LIST> {
             return;
         }
 
-        Node before = idToNode.get(beforeTaskId);
+        Node before = tree.idToNode.get(beforeTaskId);
 
         if (before == null) {
             return;
@@ -279,12 +577,12 @@ public abstract class AstridOrderedListUpdater<LIST> {
     }
 
     public void moveToParentOf(String moveThis, String toParentOfThis) {
-        Node target = idToNode.get(toParentOfThis);
+        Node target = tree.idToNode.get(toParentOfThis);
         if (target == null) {
             return;
         }
 
-        Node toMove = idToNode.get(moveThis);
+        Node toMove = tree.idToNode.get(moveThis);
         if (toMove == null) {
             return;
         }
@@ -323,14 +621,14 @@ public abstract class AstridOrderedListUpdater<LIST> {
             beforeIndex--;
         }
         newSiblings.add(beforeIndex, moveThis);
-        writeSerialization(list, serializeTree(), true);
-        applyToFilter(filter);
+        writeTree(list, true);
+        applyToFilter(list, filter);
     }
 
     // Returns true if desc is a descendant of parent
     private boolean isDescendantOf(Node desc, Node parent) {
         Node curr = desc;
-        while (curr != treeRoot) {
+        while (curr != tree.root) {
             if (curr == parent) {
                 return true;
             }
@@ -342,27 +640,31 @@ public abstract class AstridOrderedListUpdater<LIST> {
     private void moveToEndOfList(LIST list, Filter filter, Node moveThis) {
         Node parent = moveThis.parent;
         parent.children.remove(moveThis);
-        treeRoot.children.add(moveThis);
-        moveThis.parent = treeRoot;
+        tree.root.children.add(moveThis);
+        moveThis.parent = tree.root;
         setNodeIndent(moveThis, 0);
-        writeSerialization(list, serializeTree(), true);
-        applyToFilter(filter);
+        writeTree(list, true);
+        applyToFilter(list, filter);
     }
 
     public void onCreateTask(LIST list, Filter filter, String uuid) {
-        if (idToNode.containsKey(uuid) || !RemoteModel.isValidUuid(uuid)) {
+        if (tree.idToNode.containsKey(uuid) || !RemoteModel.isValidUuid(uuid)) {
             return;
         }
 
-        Node newNode = new Node(uuid, treeRoot, 0);
-        treeRoot.children.add(0, newNode);
-        idToNode.put(uuid, newNode);
-        writeSerialization(list, serializeTree(), true);
-        applyToFilter(filter);
+        Node newNode = new Node(uuid, tree.root, 0);
+        tree.root.children.add(0, newNode);
+        tree.idToNode.put(uuid, newNode);
+        Task task = taskService.fetchByUuid(uuid, Task.ID);
+        if (task != null) {
+            tree.uuidToId.put(uuid, task.getId());
+        }
+        writeTree(list, true);
+        applyToFilter(list, filter);
     }
 
     public void onDeleteTask(LIST list, Filter filter, String taskId) {
-        Node task = idToNode.get(taskId);
+        Node task = tree.idToNode.get(taskId);
         if (task == null) {
             return;
         }
@@ -380,73 +682,101 @@ public abstract class AstridOrderedListUpdater<LIST> {
             setNodeIndent(child, parent.indent + 1);
             index++;
         }
-        idToNode.remove(taskId);
+        tree.idToNode.remove(taskId);
+        forgetTask(taskId);
 
-        writeSerialization(list, serializeTree(), true);
-        applyToFilter(filter);
+        writeTree(list, true);
+        applyToFilter(list, filter);
     }
 
     private interface JSONTreeModelBuilder {
         void afterAddNode(Node node);
     }
 
+    /**
+     * Build a tree from its JSON form, an array holding the node's uuid
+     * followed by its children. Leaves are written as plain uuids. The JSON
+     * is read token by token so no intermediate arrays are built
+     */
     public static Node buildTreeModel(String serializedTree, JSONTreeModelBuilder callback) {
         Node root = new Node("-1", null, -1); //$NON-NLS-1$
         try {
-            JSONArray tree = new JSONArray(serializedTree);
-            recursivelyBuildChildren(root, tree, callback);
+            JSONTokener tokener = new JSONTokener(serializedTree);
+            if (tokener.nextClean() != '[') {
+                throw tokener.syntaxError("Expected ["); //$NON-NLS-1$
+            }
+            char c = tokener.nextClean();
+            if (c != ']') {
+                readValue(tokener, c);
+                recursivelyBuildChildren(root, tokener, callback);
+            }
         } catch (JSONException e) {
             Log.e("OrderedListUpdater", "Error building tree model", e);  //$NON-NLS-1$//$NON-NLS-2$
         }
         return root;
     }
 
-    private static void recursivelyBuildChildren(Node node, JSONArray children, JSONTreeModelBuilder callback) throws JSONException {
-        for (int i = 1; i < children.length(); i++) {
-            JSONArray subarray = children.optJSONArray(i);
-            String uuid = RemoteModel.NO_UUID;
-            if (subarray == null) {
-                uuid = children.getString(i);
+    /**
+     * Read the children of a node whose array and uuid have been read, up to
+     * and including the closing bracket
+     */
+    private static void recursivelyBuildChildren(Node node, JSONTokener tokener, JSONTreeModelBuilder callback) throws JSONException {
+        char c;
+        while ((c = tokener.nextClean()) == ',') {
+            c = tokener.nextClean();
+            Node child;
+            if (c == '[') {
+                child = new Node(readValue(tokener, tokener.nextClean()), node, node.indent + 1);
+                recursivelyBuildChildren(child, tokener, callback);
             } else {
-                uuid = subarray.getString(0);
-            }
-
-            Node child = new Node(uuid, node, node.indent + 1);
-            if (subarray != null) {
-                recursivelyBuildChildren(child, subarray, callback);
+                child = new Node(readValue(tokener, c), node, node.indent + 1);
             }
             node.children.add(child);
             if (callback != null) {
                 callback.afterAddNode(child);
             }
         }
+        if (c != ']') {
+            throw tokener.syntaxError("Expected ]"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Read a uuid, either quoted or a bare number as written by old versions
+     */
+    private static String readValue(JSONTokener tokener, char first) throws JSONException {
+        if (first == '"' || first == '\'') {
+            return tokener.nextString(first);
+        }
+        tokener.back();
+        return tokener.nextTo(",]").trim(); //$NON-NLS-1$
     }
 
     protected String serializeTree() {
-        return serializeTree(treeRoot);
+        return serializeTree(tree.root);
     }
 
     public static String serializeTree(Node root) {
-        JSONArray tree = new JSONArray();
         if (root == null) {
-            return tree.toString();
+            return "[]"; //$NON-NLS-1$
         }
 
+        StringBuilder tree = new StringBuilder();
         recursivelySerialize(root, tree);
         return tree.toString();
     }
 
-    private static void recursivelySerialize(Node node, JSONArray serializeTo) {
+    private static void recursivelySerialize(Node node, StringBuilder serializeTo) {
         ArrayList<Node> children = node.children;
-        serializeTo.put(node.uuid);
+        serializeTo.append('[').append(JSONObject.quote(node.uuid));
         for (Node child : children) {
+            serializeTo.append(',');
             if (child.children.size() > 0) {
-                JSONArray branch = new JSONArray();
-                recursivelySerialize(child, branch);
-                serializeTo.put(branch);
+                recursivelySerialize(child, serializeTo);
             } else {
-                serializeTo.put(child.uuid);
+                serializeTo.append(JSONObject.quote(child.uuid));
             }
         }
+        serializeTo.append(']');
     }
 }
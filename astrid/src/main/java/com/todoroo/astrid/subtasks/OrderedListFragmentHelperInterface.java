@@ -14,6 +14,7 @@ public interface OrderedListFragmentHelperInterface<T> {
     void beforeSetUpTaskList(Filter filter);
     void onCreateTask(Task task);
     void onDeleteTask(Task task);
+    void onPause();
     TaskAdapter createTaskAdapter(TodorooCursor<Task> cursor, AtomicReference<String> queryTemplate);
     Property<?>[] taskProperties();
 
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.subtasks;
+
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
+
+import java.util.ArrayList;
+
+/**
+ * Hands out the sort keys stored for the tasks of a manually ordered list.
+ * Keys have to increase in the order the tasks are shown. After the tree
+ * changes, the largest set of tasks whose keys are still in that order keeps
+ * them, and the others get new keys between their neighbours. Moving a task
+ * past a hundred others rewrites the one task, not the hundred.
+ */
+final class OrderedListPositions {
+
+    /** key of a task that has none yet */
+    static final long NONE = Long.MIN_VALUE;
+
+    /** gap left between neighbouring keys, so tasks can be put between them */
+    static final long STEP = 1 << 16;
+
+    private OrderedListPositions() {
+        // static helpers
+    }
+
+    /**
+     * Give every node a {@link Node#position} greater than the one of the
+     * node before it, changing as few of them as possible
+     *
+     * @param nodes nodes in the order they are shown
+     */
+    static void assign(ArrayList<Node> nodes) {
+        boolean[] keep = longestIncreasing(nodes);
+        int count = nodes.size();
+        for (int start = 0; start < count; ) {
+            if (keep[start]) {
+                start++;
+                continue;
+            }
+            int end = start;
+            while (end < count && !keep[end]) {
+                end++;
+            }
+            long before = start > 0 ? nodes.get(start - 1).position : NONE;
+            long after = end < count ? nodes.get(end).position : NONE;
+            if (before != NONE && after != NONE && after - before <= end - start) {
+                renumber(nodes);
+                return;
+            }
+            fill(nodes, start, end, before, after);
+            start = end;
+        }
+    }
+
+    /**
+     * Give the nodes from start to end keys between before and after, either
+     * of which may be {@link #NONE} at the ends of the list
+     */
+    private static void fill(ArrayList<Node> nodes, int start, int end, long before, long after) {
+        int run = end - start;
+        for (int i = 0; i < run; i++) {
+            long position;
+            if (before == NONE && after == NONE) {
+                position = (i + 1) * STEP;
+            } else if (after == NONE) {
+                position = before + (i + 1) * STEP;
+            } else if (before == NONE) {
+                position = after - (run - i) * STEP;
+            } else {
+                position = before + (after - before) / (run + 1) * (i + 1);
+            }
+            nodes.get(start + i).position = position;
+        }
+    }
+
+    /**
+     * Space all keys out again, once two neighbours have no key left
+     * between them
+     */
+    private static void renumber(ArrayList<Node> nodes) {
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).position = (i + 1) * STEP;
+        }
+    }
+
+    /**
+     * @return which nodes are part of the longest run, not necessarily
+     *         contiguous, of strictly increasing keys
+     */
+    private static boolean[] longestIncreasing(ArrayList<Node> nodes) {
+        int count = nodes.size();
+        // tails[k] is the node ending the best run of length k + 1 so far
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            long position = nodes.get(i).position;
+            if (position == NONE) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (nodes.get(tails[middle]).position < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        boolean[] keep = new boolean[count];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            keep[i] = true;
+        }
+        return keep;
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.subtasks;
+
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
+import com.todoroo.andlib.data.ChangeSet;
+import com.todoroo.andlib.data.Table;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.data.TaskListMetadata;
+import com.todoroo.astrid.data.TaskListOrder;
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Parsed trees of the manually ordered lists, by list id, so a list isn't
+ * parsed and checked against its filter every time it's shown. Each tree
+ * collects the tasks written since it was last checked from the database's
+ * change notifications, so only those tasks have to be looked up again
+ */
+public final class OrderedListTreeCache {
+
+    // --- singleton
+
+    private static OrderedListTreeCache instance = null;
+
+    public static synchronized OrderedListTreeCache getInstance() {
+        if(instance == null) {
+            instance = new OrderedListTreeCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Tree of one list and what has changed since it was checked against
+     * the list's filter. The tree itself is only used from the UI thread;
+     * the pending changes are guarded by the cache
+     */
+    static final class ListTree {
+        Node root;
+
+        /** serialized form as last read or written */
+        String serialized;
+
+        /** filter query the tree was checked against */
+        String query;
+
+        /** when the tree was last checked against the whole filter */
+        long verifiedAt;
+
+        final HashMap<String, Node> idToNode = new HashMap<String, Node>();
+
+        /** local task ids of the tasks in the tree, by uuid */
+        final HashMap<String, Long> uuidToId = new HashMap<String, Long>();
+
+        /** local ids of tasks removed from the tree since the order was last written */
+        final HashSet<Long> removedTaskIds = new HashSet<Long>();
+
+        /** changes to the tree not yet in its serialized form */
+        int unwrittenChanges;
+
+        /** whether any of the unwritten changes should be synced */
+        boolean queueSync;
+
+        /** tasks written since the tree was last checked */
+        private final HashSet<Long> changedTaskIds = new HashSet<Long>();
+
+        /** set when a write may have moved any task in or out of the filter */
+        private boolean changedAll = true;
+    }
+
+    // --- implementation details
+
+    private final HashMap<String, ListTree> trees = new HashMap<String, ListTree>();
+
+    private Database trackedDatabase;
+
+    private final DatabaseUpdateListener changeTracker = new DatabaseUpdateListener() {
+        @Override
+        public void onDatabaseUpdated(ChangeSet changes) {
+            synchronized(OrderedListTreeCache.this) {
+                for(ListTree tree : trees.values()) {
+                    recordChanges(tree, changes);
+                }
+            }
+        }
+    };
+
+    private OrderedListTreeCache() {
+        // singleton
+    }
+
+    /**
+     * Start recording changes made to the given database, if it isn't
+     * already being followed
+     */
+    synchronized void track(Database database) {
+        if(database != trackedDatabase) {
+            database.addListener(changeTracker);
+            trackedDatabase = database;
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the tree of the given list, empty if it hasn't been built yet
+     */
+    synchronized ListTree get(String listId) {
+        ListTree tree = trees.get(listId);
+        if(tree == null) {
+            tree = new ListTree();
+            trees.put(listId, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Take the tasks written since the tree was last checked
+     *
+     * @return their ids, or null if the whole filter has to be checked
+     */
+    synchronized Set<Long> takeChanges(ListTree tree) {
+        Set<Long> changed = tree.changedAll ? null : new HashSet<Long>(tree.changedTaskIds);
+        tree.changedTaskIds.clear();
+        tree.changedAll = false;
+        return changed;
+    }
+
+    /**
+     * Make the next check of the tree go over the whole filter
+     */
+    synchronized void changedAll(ListTree tree) {
+        tree.changedAll = true;
+        tree.changedTaskIds.clear();
+    }
+
+    /**
+     * Drop every tree. They are built again the next time their list is shown
+     */
+    public synchronized void invalidate() {
+        trees.clear();
+    }
+
+    private static void recordChanges(ListTree tree, ChangeSet changes) {
+        if(tree.changedAll) {
+            return;
+        }
+        for(Table table : Database.TABLES) {
+            // the lists' own writes don't change which tasks are in them
+            if(table == Task.TABLE || table == TaskListOrder.TABLE || table == TaskListMetadata.TABLE) {
+                continue;
+            }
+            if(changes.affects(table)) {
+                tree.changedAll = true;
+                tree.changedTaskIds.clear();
+                return;
+            }
+        }
+        if(changes.affects(Task.TABLE)) {
+            Set<Long> ids = changes.getChangedIds(Task.TABLE);
+            if(ids == null) {
+                tree.changedAll = true;
+                tree.changedTaskIds.clear();
+            } else {
+                tree.changedTaskIds.addAll(ids);
+            }
+        }
+    }
+
+}
@@ -318,4 +318,9 @@ public class OrderedMetadataListFragmentHelper<LIST> implements OrderedListFragm
         taskAdapter.notifyDataSetInvalidated();
     }
 
+    @Override
+    public void onPause() {
+        //
+    }
+
 }
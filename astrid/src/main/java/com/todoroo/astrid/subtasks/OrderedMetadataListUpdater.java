@@ -13,7 +13,7 @@ import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -62,11 +62,25 @@ abstract public class OrderedMetadataListUpdater<LIST> {
 
         beforeIndent(list);
 
+        PluginServices.getMetadataService().runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                indentHelper(list, targetTaskId, delta);
+            }
+        });
+        onMovedOrIndented(getTaskMetadata(targetTaskId));
+    }
+
+    private void indentHelper(final LIST list, final long targetTaskId, final int delta) {
         final AtomicInteger targetTaskIndent = new AtomicInteger(-1);
         final AtomicInteger previousIndent = new AtomicInteger(-1);
         final AtomicLong previousTask = new AtomicLong(Task.NO_ID);
         final AtomicLong globalOrder = new AtomicLong(-1);
 
+        // last task seen at each indent, for picking the new parent without
+        // walking the list again
+        final HashMap<Integer, Long> lastTaskAtIndent = new HashMap<Integer, Long>();
+
         iterateThroughList(list, new OrderedListIterator() {
             @Override
             public void processTask(long taskId, Metadata metadata) {
@@ -86,9 +100,8 @@ abstract public class OrderedMetadataListUpdater<LIST> {
                         metadata.setValue(indentProperty(), indent + delta);
 
                         if(parentProperty() != null) {
-                            long newParent = computeNewParent(list,
-                                    taskId, indent + delta - 1);
-                            if (newParent == taskId) {
+                            Long newParent = lastTaskAtIndent.get(indent + delta - 1);
+                            if (newParent == null || newParent == taskId) {
                                 metadata.setValue(parentProperty(), Task.NO_ID);
                             } else {
                                 metadata.setValue(parentProperty(), newParent);
@@ -107,6 +120,7 @@ abstract public class OrderedMetadataListUpdater<LIST> {
                 } else {
                     previousIndent.set(indent);
                     previousTask.set(taskId);
+                    lastTaskAtIndent.put(indent, taskId);
                 }
 
                 if(!metadata.isSaved()) {
@@ -115,37 +129,6 @@ abstract public class OrderedMetadataListUpdater<LIST> {
             }
 
         });
-        onMovedOrIndented(getTaskMetadata(targetTaskId));
-    }
-
-    /**
-     * Helper function to iterate through a list and compute a new parent for the target task
-     * based on the target parent's indent
-     */
-    private long computeNewParent(LIST list, long targetTaskId, int targetParentIndent) {
-        final AtomicInteger desiredParentIndent = new AtomicInteger(targetParentIndent);
-        final AtomicLong targetTask = new AtomicLong(targetTaskId);
-        final AtomicLong lastPotentialParent = new AtomicLong(Task.NO_ID);
-        final AtomicBoolean computedParent = new AtomicBoolean(false);
-
-        iterateThroughList(list, new OrderedListIterator() {
-            @Override
-            public void processTask(long taskId, Metadata metadata) {
-                if (targetTask.get() == taskId) {
-                    computedParent.set(true);
-                }
-
-                int indent = metadata.getValue(indentProperty());
-                if (!computedParent.get() && indent == desiredParentIndent.get()) {
-                    lastPotentialParent.set(taskId);
-                }
-            }
-        });
-
-        if (lastPotentialParent.get() == Task.NO_ID) {
-            return Task.NO_ID;
-        }
-        return lastPotentialParent.get();
     }
 
     // --- task moving
@@ -185,7 +168,7 @@ abstract public class OrderedMetadataListUpdater<LIST> {
             }
         }
 
-        traverseTreeAndWriteValues(list, root, new AtomicLong(0), -1);
+        writeTree(list, root);
         onMovedOrIndented(getTaskMetadata(targetTaskId));
     }
 
@@ -204,15 +187,34 @@ abstract public class OrderedMetadataListUpdater<LIST> {
         public Node parent;
         public final ArrayList<Node> children = new ArrayList<Node>();
 
+        /** metadata read while building the tree, if any */
+        Metadata metadata;
+
         public Node(long taskId, Node parent) {
             this.taskId = taskId;
             this.parent = parent;
         }
     }
 
+    /**
+     * Write order, indent and parent of every node in one transaction.
+     * Rows whose values did not change are not written
+     */
+    private void writeTree(final LIST list, final Node root) {
+        PluginServices.getMetadataService().runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                traverseTreeAndWriteValues(list, root, new AtomicLong(0), -1);
+            }
+        });
+    }
+
     protected void traverseTreeAndWriteValues(LIST list, Node node, AtomicLong order, int indent) {
         if(node.taskId != Task.NO_ID) {
-            Metadata metadata = getTaskMetadata(node.taskId);
+            Metadata metadata = node.metadata;
+            if(metadata == null) {
+                metadata = getTaskMetadata(node.taskId);
+            }
             if(metadata == null) {
                 metadata = createEmptyMetadata(list, node.taskId);
             }
@@ -279,6 +281,9 @@ abstract public class OrderedMetadataListUpdater<LIST> {
                     currentNode.set(new Node(taskId, node));
                     node.children.add(currentNode.get());
                 }
+                if(metadata.isSaved()) {
+                    currentNode.get().metadata = metadata;
+                }
 
                 previoustIndent.set(indent);
             }
@@ -342,6 +347,6 @@ abstract public class OrderedMetadataListUpdater<LIST> {
             }
         }
 
-        traverseTreeAndWriteValues(list, root, new AtomicLong(0), -1);
+        writeTree(list, root);
     }
 }
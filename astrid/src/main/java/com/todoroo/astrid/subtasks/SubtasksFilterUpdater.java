@@ -2,9 +2,21 @@ package com.todoroo.astrid.subtasks;
 
 import android.text.TextUtils;
 
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.sql.Join;
+import com.todoroo.andlib.sql.Order;
+import com.todoroo.andlib.sql.Query;
 import com.todoroo.astrid.api.Filter;
+import com.todoroo.astrid.dao.TaskListOrderDao.TaskListOrderCriteria;
 import com.todoroo.astrid.data.SyncFlags;
+import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.TaskListMetadata;
+import com.todoroo.astrid.data.TaskListOrder;
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
 
 public class SubtasksFilterUpdater extends SubtasksUpdater<TaskListMetadata> {
 
@@ -35,4 +47,79 @@ public class SubtasksFilterUpdater extends SubtasksUpdater<TaskListMetadata> {
             taskListMetadataDao.saveExisting(list);
         }
     }
+
+    @Override
+    protected String getListId(TaskListMetadata list) {
+        return SubtasksHelper.getListId(list);
+    }
+
+    @Override
+    protected void readOrder(TaskListMetadata list, HashMap<Long, Node> nodes) {
+        String listId = getListId(list);
+        if (listId == null) {
+            return;
+        }
+        ArrayList<Long> stale = new ArrayList<Long>();
+        TodorooCursor<TaskListOrder> cursor = taskListOrderDao.fetchByList(listId);
+        try {
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                Long taskId = cursor.get(TaskListOrder.TASK);
+                Node node = nodes.get(taskId);
+                if (node == null) {
+                    stale.add(taskId);
+                    continue;
+                }
+                node.position = cursor.get(TaskListOrder.POSITION);
+                node.storedPosition = node.position;
+                node.storedIndent = cursor.get(TaskListOrder.INDENT);
+            }
+        } finally {
+            cursor.close();
+        }
+        taskListOrderDao.removeFromList(listId, stale);
+    }
+
+    @Override
+    protected boolean readOrderedTasks(TaskListMetadata list, ArrayList<Node> nodes, HashMap<String, Long> taskIds) {
+        String listId = getListId(list);
+        if (listId == null) {
+            return false;
+        }
+        TodorooCursor<Task> cursor = taskService.query(Query.select(Task.ID, Task.UUID,
+                TaskListOrder.POSITION, TaskListOrder.INDENT).join(
+                        Join.inner(TaskListOrder.TABLE, TaskListOrder.TASK.eq(Task.ID))).where(
+                                TaskListOrderCriteria.byList(listId)).orderBy(Order.asc(TaskListOrder.POSITION)));
+        try {
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                String uuid = cursor.get(Task.UUID);
+                Node node = new Node(uuid, null, cursor.get(TaskListOrder.INDENT));
+                node.position = cursor.get(TaskListOrder.POSITION);
+                node.storedPosition = node.position;
+                node.storedIndent = node.indent;
+                nodes.add(node);
+                taskIds.put(uuid, cursor.get(Task.ID));
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
+    }
+
+    @Override
+    protected void writeOrder(TaskListMetadata list, final ArrayList<Node> changed,
+            final HashMap<String, Long> taskIds, final Set<Long> removed) {
+        final String listId = getListId(list);
+        if (listId == null) {
+            return;
+        }
+        taskListOrderDao.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                taskListOrderDao.removeFromList(listId, removed);
+                for (Node node : changed) {
+                    taskListOrderDao.setPosition(listId, taskIds.get(node.uuid), node.position, node.indent);
+                }
+            }
+        });
+    }
 }
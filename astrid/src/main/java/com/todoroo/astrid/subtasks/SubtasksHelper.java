@@ -8,6 +8,8 @@ import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Field;
+import com.todoroo.andlib.sql.Join;
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.astrid.actfm.TagViewFragment;
 import com.todoroo.astrid.api.Filter;
@@ -16,11 +18,11 @@ import com.todoroo.astrid.core.CoreFilterExposer;
 import com.todoroo.astrid.core.PluginServices;
 import com.todoroo.astrid.core.SortHelper;
 import com.todoroo.astrid.dao.TaskDao.TaskCriteria;
-import com.todoroo.astrid.dao.TaskListMetadataDao;
 import com.todoroo.astrid.data.RemoteModel;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.TaskListMetadata;
+import com.todoroo.astrid.data.TaskListOrder;
 import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
 import com.todoroo.astrid.utility.AstridPreferences;
 
@@ -62,43 +64,72 @@ public class SubtasksHelper {
     public static String applySubtasksToWidgetFilter(Filter filter, String query, String tagName, int limit) {
         if (SubtasksHelper.shouldUseSubtasksFragmentForFilter(filter)) {
             // care for manual ordering
-            TagData tagData = PluginServices.getTagDataService().getTagByName(tagName, TagData.UUID, TagData.TAG_ORDERING);
-            TaskListMetadataDao tlmd = PluginServices.getTaskListMetadataDao();
-            TaskListMetadata tlm = null;
+            TagData tagData = PluginServices.getTagDataService().getTagByName(tagName, TagData.UUID);
+            String listId = null;
             if (tagData != null) {
-                tlm = tlmd.fetchByTagId(tagData.getUuid(), TaskListMetadata.TASK_IDS);
+                listId = tagData.getUuid();
             } else if (CoreFilterExposer.isInbox(filter)) {
-                tlm = tlmd.fetchByTagId(TaskListMetadata.FILTER_ID_ALL, TaskListMetadata.TASK_IDS);
+                listId = TaskListMetadata.FILTER_ID_ALL;
             } else if (CoreFilterExposer.isTodayFilter(filter)) {
-                tlm = tlmd.fetchByTagId(TaskListMetadata.FILTER_ID_TODAY, TaskListMetadata.TASK_IDS);
+                listId = TaskListMetadata.FILTER_ID_TODAY;
             }
 
             query = query.replaceAll("ORDER BY .*", "");
+            query = query.replace(TaskCriteria.isVisible().toString(),
+                    Criterion.all.toString());
+            String orderString = "(1)"; //$NON-NLS-1$
+            if (listId != null) {
+                query = joinListOrder(query, listId);
+                orderString = LIST_ORDER_POSITION.toString();
+            }
             query = query + String.format(" ORDER BY %s, %s, %s, %s",
                     Task.DELETION_DATE, Task.COMPLETION_DATE,
-                    getOrderString(tagData, tlm), Task.CREATION_DATE);
+                    orderString, Task.CREATION_DATE);
             if (limit > 0) {
                 query = query + " LIMIT " + limit;
             }
-            query = query.replace(TaskCriteria.isVisible().toString(),
-                    Criterion.all.toString());
 
             filter.setFilterQueryOverride(query);
         }
         return query;
     }
 
-    private static String getOrderString(TagData tagData, TaskListMetadata tlm) {
-        String serialized;
-        if (tlm != null) {
-            serialized = tlm.getValue(TaskListMetadata.TASK_IDS);
-        } else if (tagData != null) {
-            serialized = convertTreeToRemoteIds(tagData.getValue(TagData.TAG_ORDERING));
-        } else {
-            serialized = "[]"; //$NON-NLS-1$
+    /** alias the list's task positions are joined under */
+    private static final String LIST_ORDER_ALIAS = "lorder"; //$NON-NLS-1$
+
+    /** stored position of each task in the joined list, null for tasks without one */
+    static final Field LIST_ORDER_POSITION = Field.field(LIST_ORDER_ALIAS + "." + TaskListOrder.POSITION.name); //$NON-NLS-1$
+
+    /**
+     * @return the query with a join on the given list's stored task
+     *         positions in front of it, so it can be sorted by
+     *         {@link #LIST_ORDER_POSITION}. The join is looked up through the
+     *         (list, task) index and matches at most one row per task
+     */
+    static String joinListOrder(String query, String listId) {
+        String join = Join.left(TaskListOrder.TABLE.as(LIST_ORDER_ALIAS),
+                Field.field(LIST_ORDER_ALIAS + "." + TaskListOrder.LIST_ID.name).eq(listId), //$NON-NLS-1$
+                Field.field(LIST_ORDER_ALIAS + "." + TaskListOrder.TASK.name).eq(Task.ID)).toString(); //$NON-NLS-1$
+        if (query.startsWith(join)) {
+            return query;
         }
+        return join + " " + query; //$NON-NLS-1$
+    }
 
-        return AstridOrderedListUpdater.buildOrderString(getStringIdArray(serialized));
+    /**
+     * @return id the manual order of the given list is stored under, or
+     *         null if the list has neither a tag nor a filter id
+     */
+    public static String getListId(TaskListMetadata list) {
+        if (list == null) {
+            return null;
+        }
+        String tagUuid = list.getValue(TaskListMetadata.TAG_UUID);
+        if (!RemoteModel.isUuidEmpty(tagUuid)) {
+            return tagUuid;
+        }
+        String filterId = list.getValue(TaskListMetadata.FILTER);
+        return TextUtils.isEmpty(filterId) ? null : filterId;
     }
 
     @Deprecated
@@ -69,6 +69,7 @@ public class SubtasksListFragment extends TaskListFragment {
     public void onPause() {
         super.onPause();
         lastVisibleIndex = getListView().getFirstVisiblePosition();
+        helper.onPause();
     }
 
     @Override
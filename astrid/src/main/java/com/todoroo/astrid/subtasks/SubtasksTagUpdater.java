@@ -2,7 +2,11 @@ package com.todoroo.astrid.subtasks;
 
 import com.todoroo.astrid.api.Filter;
 import com.todoroo.astrid.data.TaskListMetadata;
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SubtasksTagUpdater extends SubtasksFilterUpdater {
@@ -28,6 +32,38 @@ public class SubtasksTagUpdater extends SubtasksFilterUpdater {
         }
     }
 
+    @Override
+    protected String getCacheKey(TaskListMetadata list) {
+        // a filtered view holds only some of the tasks
+        if (isBeingFiltered.get()) {
+            return null;
+        }
+        return super.getCacheKey(list);
+    }
+
+    @Override
+    protected boolean readOrderedTasks(TaskListMetadata list, ArrayList<Node> nodes, HashMap<String, Long> taskIds) {
+        if (isBeingFiltered.get()) {
+            return false;
+        }
+        return super.readOrderedTasks(list, nodes, taskIds);
+    }
+
+    @Override
+    protected void readOrder(TaskListMetadata list, HashMap<Long, Node> nodes) {
+        if (!isBeingFiltered.get()) {
+            super.readOrder(list, nodes);
+        }
+    }
+
+    @Override
+    protected void writeOrder(TaskListMetadata list, ArrayList<Node> changed,
+            HashMap<String, Long> taskIds, Set<Long> removed) {
+        if (!isBeingFiltered.get()) {
+            super.writeOrder(list, changed, taskIds, removed);
+        }
+    }
+
     @Override
     public int getIndentForTask(String targetTaskId) {
         if (isBeingFiltered.get()) {
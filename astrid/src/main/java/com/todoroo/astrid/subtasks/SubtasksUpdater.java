@@ -10,11 +10,13 @@ import com.todoroo.andlib.sql.Criterion;
 import com.todoroo.astrid.api.Filter;
 import com.todoroo.astrid.dao.TaskDao.TaskCriteria;
 import com.todoroo.astrid.dao.TaskListMetadataDao;
+import com.todoroo.astrid.dao.TaskListOrderDao;
 import com.todoroo.astrid.data.Task;
 
 public abstract class SubtasksUpdater<T> extends AstridOrderedListUpdater<T> {
 
     @Autowired TaskListMetadataDao taskListMetadataDao;
+    @Autowired TaskListOrderDao taskListOrderDao;
 
     public static final String ACTIVE_TASKS_ORDER = "active_tasks_order"; //$NON-NLS-1$
     public static final String TODAY_TASKS_ORDER = "today_tasks_order"; //$NON-NLS-1$
@@ -22,17 +24,26 @@ public abstract class SubtasksUpdater<T> extends AstridOrderedListUpdater<T> {
     @Override
     public void initialize(T list, Filter filter) {
         super.initialize(list, filter);
-        applyToFilter(filter);
+        applyToFilter(list, filter);
     }
 
     @Override
-    public void applyToFilter(Filter filter) {
+    public void applyToFilter(T list, Filter filter) {
+        // start from the filter's own query, not the one applied last time
+        filter.setFilterQueryOverride(null);
         String query = filter.getSqlQuery();
 
         query = query.replaceAll("ORDER BY .*", "");
+        String listId = getListId(list);
+        String orderString = "(1)"; //$NON-NLS-1$
+        if (listId != null && !isTreeEmpty()) {
+            query = SubtasksHelper.joinListOrder(query, listId);
+            orderString = SubtasksHelper.LIST_ORDER_POSITION.toString();
+        }
+
         query = query + String.format(" ORDER BY %s, %s, %s, %s",
                 Task.DELETION_DATE, Task.COMPLETION_DATE,
-                getOrderString(), Task.CREATION_DATE);
+                orderString, Task.CREATION_DATE);
         query = query.replace(TaskCriteria.isVisible().toString(),
                 Criterion.all.toString());
 
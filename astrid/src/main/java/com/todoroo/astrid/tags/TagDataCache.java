@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.tags;
+
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
+import com.todoroo.andlib.data.ChangeSet;
+import com.todoroo.andlib.data.DatabaseDao.ModelUpdateListener;
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.dao.TagDataDao;
+import com.todoroo.astrid.data.TagData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory copy of the {@link TagData} table, indexed by id, uuid and
+ * case-insensitive name. Every write through the {@link TagDataDao}
+ * invalidates it before the write returns; writes that bypass the dao are
+ * picked up from the database's change notifications. Lookups return copies, so callers
+ * are free to modify and save them
+ */
+public final class TagDataCache {
+
+    // --- singleton
+
+    private static TagDataCache instance = null;
+
+    public static synchronized TagDataCache getInstance() {
+        if(instance == null) {
+            instance = new TagDataCache();
+        }
+        return instance;
+    }
+
+    // --- implementation details
+
+    @Autowired TagDataDao tagDataDao;
+
+    @Autowired Database database;
+
+    private final HashMap<Long, TagData> byId = new HashMap<Long, TagData>();
+
+    private final HashMap<String, TagData> byUuid = new HashMap<String, TagData>();
+
+    /** lowest id row for each lower-cased name */
+    private final HashMap<String, TagData> byName = new HashMap<String, TagData>();
+
+    /**
+     * Bumped by {@link #invalidate()}. The maps are current while it matches
+     * the generation they were loaded at. Invalidating doesn't take the
+     * cache's lock, so writers inside a transaction never wait for a reader
+     * that is waiting for them
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private int loadedGeneration = -1;
+
+    private TagDataCache() {
+        DependencyInjectionService.getInstance().inject(this);
+
+        tagDataDao.addListener(new ModelUpdateListener<TagData>() {
+            @Override
+            public void onModelUpdated(TagData model) {
+                invalidate();
+            }
+        });
+        database.addListener(new DatabaseUpdateListener() {
+            @Override
+            public void onDatabaseUpdated(ChangeSet changes) {
+                if(!changes.affects(TagData.TABLE)) {
+                    return;
+                }
+                Set<Long> ids = changes.getChangedIds(TagData.TABLE);
+                if(ids == null) {
+                    invalidate();
+                } else {
+                    for(Long id : ids) {
+                        refresh(id);
+                    }
+                }
+            }
+        });
+    }
+
+    // --- lookups
+
+    /**
+     * @return copy of the tag with the given uuid, or null
+     */
+    public synchronized TagData getByUuid(String uuid) {
+        loadIfNecessary();
+        return copy(byUuid.get(uuid));
+    }
+
+    /**
+     * @return copy of the tag whose name case-insensitively matches the
+     *         given name, or null
+     */
+    public synchronized TagData getByName(String name) {
+        loadIfNecessary();
+        return copy(byName.get(nameKey(name)));
+    }
+
+    /**
+     * @return copies of every tag, deleted ones included
+     */
+    public synchronized ArrayList<TagData> getAll() {
+        loadIfNecessary();
+        ArrayList<TagData> result = new ArrayList<TagData>(byId.size());
+        for(TagData tagData : byId.values()) {
+            result.add(copy(tagData));
+        }
+        return result;
+    }
+
+    // --- updates
+
+    /**
+     * Reload the tag with the given id from the database
+     */
+    public synchronized void refresh(long id) {
+        if(!isLoaded()) {
+            return;
+        }
+        remove(id);
+        TagData tagData = tagDataDao.fetch(id, TagData.PROPERTIES);
+        if(tagData != null) {
+            add(tagData);
+        }
+    }
+
+    /**
+     * Drop every cached tag. They are loaded again on the next lookup
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    // --- helpers
+
+    private boolean isLoaded() {
+        return loadedGeneration == generation.get();
+    }
+
+    private void loadIfNecessary() {
+        int current = generation.get();
+        if(loadedGeneration == current) {
+            return;
+        }
+        byId.clear();
+        byUuid.clear();
+        byName.clear();
+        TodorooCursor<TagData> cursor = tagDataDao.query(Query.select(TagData.PROPERTIES));
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                add(new TagData(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        loadedGeneration = current;
+    }
+
+    private void add(TagData tagData) {
+        byId.put(tagData.getId(), tagData);
+        String uuid = tagData.getValue(TagData.UUID);
+        if(uuid != null) {
+            byUuid.put(uuid, tagData);
+        }
+        String name = nameKey(tagData.getValue(TagData.NAME));
+        if(name != null) {
+            TagData existing = byName.get(name);
+            if(existing == null || existing.getId() > tagData.getId()) {
+                byName.put(name, tagData);
+            }
+        }
+    }
+
+    private void remove(long id) {
+        TagData tagData = byId.remove(id);
+        if(tagData == null) {
+            return;
+        }
+        String uuid = tagData.getValue(TagData.UUID);
+        if(uuid != null && byUuid.get(uuid) == tagData) {
+            byUuid.remove(uuid);
+        }
+        String name = nameKey(tagData.getValue(TagData.NAME));
+        if(name != null && byName.get(name) == tagData) {
+            byName.remove(name);
+            for(TagData other : byId.values()) {
+                if(name.equals(nameKey(other.getValue(TagData.NAME))) &&
+                        (byName.get(name) == null || byName.get(name).getId() > other.getId())) {
+                    byName.put(name, other);
+                }
+            }
+        }
+    }
+
+    private static String nameKey(String name) {
+        return name == null ? null : name.toLowerCase(Locale.US);
+    }
+
+    private static TagData copy(TagData tagData) {
+        return tagData == null ? null : (TagData) tagData.clone();
+    }
+
+}
@@ -9,7 +9,18 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Functions;
+import com.todoroo.andlib.sql.Order;
+import com.todoroo.andlib.sql.Query;
 import com.todoroo.astrid.api.AstridApiConstants;
+import com.todoroo.astrid.api.TaskDetailExposer;
+import com.todoroo.astrid.core.PluginServices;
+import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
+import com.todoroo.astrid.data.Metadata;
+
+import java.util.HashMap;
 
 /**
  * Exposes Task Detail for tags, i.e. "Tags: frogs, animals"
@@ -17,7 +28,7 @@ import com.todoroo.astrid.api.AstridApiConstants;
  * @author Tim Su <tim@todoroo.com>
  *
  */
-public class TagDetailExposer extends BroadcastReceiver {
+public class TagDetailExposer extends BroadcastReceiver implements TaskDetailExposer {
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -40,6 +51,36 @@ public class TagDetailExposer extends BroadcastReceiver {
         context.sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
     }
 
+
+    @Override
+    public String[] getTaskDetails(Context context, long[] ids) {
+        String[] details = new String[ids.length];
+        HashMap<Long, Integer> indices = new HashMap<Long, Integer>(ids.length);
+        Long[] idArray = new Long[ids.length];
+        for(int i = 0; i < ids.length; i++) {
+            indices.put(ids[i], i);
+            idArray[i] = ids[i];
+        }
+
+        TodorooCursor<Metadata> tags = PluginServices.getMetadataService().query(Query.select(
+                Metadata.TASK, TaskToTagMetadata.TAG_NAME).where(Criterion.and(
+                        MetadataCriteria.withKey(TaskToTagMetadata.KEY), Metadata.DELETION_DATE.eq(0),
+                        Metadata.TASK.in(idArray))).orderBy(Order.asc(Functions.upper(TaskToTagMetadata.TAG_NAME))));
+        try {
+            for(tags.moveToFirst(); !tags.isAfterLast(); tags.moveToNext()) {
+                Integer index = indices.get(tags.getLong(0));
+                if(index == null) {
+                    continue;
+                }
+                String tag = tags.getString(1);
+                details[index] = details[index] == null ? tag : details[index] + ", " + tag; //$NON-NLS-1$
+            }
+        } finally {
+            tags.close();
+        }
+        return details;
+    }
+
     public String getTaskDetails(long id) {
         String tagList = TagService.getInstance().getTagsAsString(id);
         if(tagList.length() == 0) {
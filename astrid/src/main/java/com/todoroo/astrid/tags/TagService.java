@@ -41,6 +41,8 @@ import com.todoroo.astrid.service.TagDataService;
 import org.tasks.R;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -101,18 +103,8 @@ public final class TagService {
         public String image;
 
         public static Tag tagFromUUID(String uuid) {
-            TodorooCursor<TagData> tagData = PluginServices.getTagDataService().query(Query.select(TagData.PROPERTIES).where(TagData.UUID.eq(uuid)));
-            try {
-                if (tagData.getCount() > 0) {
-                    tagData.moveToFirst();
-                    return new Tag(new TagData(tagData));
-                } else {
-                    return null;
-                }
-            } finally {
-                tagData.close();
-            }
-
+            TagData tagData = TagDataCache.getInstance().getByUuid(uuid);
+            return tagData == null ? null : new Tag(tagData);
         }
 
         public Tag(TagData tagData) {
@@ -166,19 +158,21 @@ public final class TagService {
      */
     public Tag[] getGroupedTags(Order order, Criterion activeStatus) {
         Criterion criterion = Criterion.and(activeStatus, MetadataCriteria.withKey(TaskToTagMetadata.KEY));
-        Query query = Query.select(TaskToTagMetadata.TAG_NAME, TaskToTagMetadata.TAG_UUID, COUNT).
+        Property<?>[] properties = new Property<?>[TagData.PROPERTIES.length + 1];
+        System.arraycopy(TagData.PROPERTIES, 0, properties, 0, TagData.PROPERTIES.length);
+        properties[TagData.PROPERTIES.length] = COUNT;
+        Query query = Query.select(properties).
+            join(Join.inner(Metadata.TABLE, TaskToTagMetadata.TAG_UUID.eq(TagData.UUID))).
             join(Join.inner(Task.TABLE, Metadata.TASK.eq(Task.ID))).
             where(criterion).
             orderBy(order).groupBy(TaskToTagMetadata.TAG_NAME);
-        TodorooCursor<Metadata> cursor = metadataDao.query(query);
+        TodorooCursor<TagData> cursor = tagDataDao.query(query);
         try {
             ArrayList<Tag> array = new ArrayList<Tag>();
-            for (int i = 0; i < cursor.getCount(); i++) {
-                cursor.moveToNext();
-                Tag tag = Tag.tagFromUUID(cursor.get(TaskToTagMetadata.TAG_UUID));
-                if (tag != null) {
-                    array.add(tag);
-                }
+            TagData tagData = new TagData();
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                tagData.readFromCursor(cursor);
+                array.add(new Tag(tagData));
             }
             return array.toArray(new Tag[array.size()]);
         } finally {
@@ -187,22 +181,13 @@ public final class TagService {
     }
 
     public void createLink(Task task, String tagName) {
-        TodorooCursor<TagData> existingTag = tagDataService.query(Query.select(TagData.NAME, TagData.UUID)
-                .where(TagData.NAME.eqCaseInsensitive(tagName)));
-        try {
-            TagData tagData;
-            if (existingTag.getCount() == 0) {
-                tagData = new TagData();
-                tagData.setValue(TagData.NAME, tagName);
-                tagDataService.save(tagData);
-            } else {
-                existingTag.moveToFirst();
-                tagData = new TagData(existingTag);
-            }
-            createLink(task, tagData.getValue(TagData.NAME), tagData.getValue(TagData.UUID));
-        } finally {
-            existingTag.close();
+        TagData tagData = getTagDataWithCase(tagName);
+        if (tagData == null) {
+            tagData = new TagData();
+            tagData.setValue(TagData.NAME, tagName);
+            tagDataService.save(tagData);
         }
+        createLink(task, tagData.getValue(TagData.NAME), tagData.getValue(TagData.UUID));
     }
 
     public void createLink(Task task, String tagName, String tagUuid) {
@@ -298,21 +283,22 @@ public final class TagService {
      */
     public ArrayList<Tag> getTagList() {
         ArrayList<Tag> tagList = new ArrayList<Tag>();
-        TodorooCursor<TagData> cursor = tagDataService.query(Query.select(TagData.PROPERTIES).where(Criterion.and(TagData.DELETION_DATE.eq(0), Criterion.or(TagData.IS_FOLDER.isNull(),
-                TagData.IS_FOLDER.neq(1)), TagData.NAME.isNotNull())).orderBy(Order.asc(Functions.upper(TagData.NAME))));
-        try {
-            TagData tagData = new TagData();
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                tagData.readFromCursor(cursor);
-                Tag tag = new Tag(tagData);
-                if(TextUtils.isEmpty(tag.tag)) {
-                    continue;
-                }
-                tagList.add(tag);
+        for(TagData tagData : TagDataCache.getInstance().getAll()) {
+            if(tagData.isDeleted() || Integer.valueOf(1).equals(tagData.getValue(TagData.IS_FOLDER))) {
+                continue;
             }
-        } finally {
-            cursor.close();
+            Tag tag = new Tag(tagData);
+            if(TextUtils.isEmpty(tag.tag)) {
+                continue;
+            }
+            tagList.add(tag);
         }
+        Collections.sort(tagList, new Comparator<Tag>() {
+            @Override
+            public int compare(Tag left, Tag right) {
+                return left.tag.compareToIgnoreCase(right.tag);
+            }
+        });
         return tagList;
     }
 
@@ -333,7 +319,7 @@ public final class TagService {
         }
 
         for (String tag : tags) {
-            TagData tagData = getTagDataWithCase(tag, TagData.NAME, TagData.UUID);
+            TagData tagData = getTagDataWithCase(tag);
             if (tagData == null) {
                 tagData = new TagData();
                 tagData.setValue(TagData.NAME, tag);
@@ -356,6 +342,12 @@ public final class TagService {
      * given tag, return that. Otherwise, return the argument
      */
     public String getTagWithCase(String tag) {
+        TagData tagData = TagDataCache.getInstance().getByName(tag);
+        if (tagData != null) {
+            return tagData.getValue(TagData.NAME);
+        }
+
+        // links can outlive their tag data
         MetadataService service = PluginServices.getMetadataService();
         String tagWithCase = tag;
         TodorooCursor<Metadata> tagMetadata = service.query(Query.select(TaskToTagMetadata.TAG_NAME).where(TagService.tagEqIgnoreCase(tag, Criterion.all)).limit(1));
@@ -364,16 +356,6 @@ public final class TagService {
                 tagMetadata.moveToFirst();
                 Metadata tagMatch = new Metadata(tagMetadata);
                 tagWithCase = tagMatch.getValue(TaskToTagMetadata.TAG_NAME);
-            } else {
-                TodorooCursor<TagData> tagData = tagDataService.query(Query.select(TagData.NAME).where(TagData.NAME.eqCaseInsensitive(tag)));
-                try {
-                    if (tagData.getCount() > 0) {
-                        tagData.moveToFirst();
-                        tagWithCase = new TagData(tagData).getValue(TagData.NAME);
-                    }
-                } finally {
-                    tagData.close();
-                }
             }
         } finally {
             tagMetadata.close();
@@ -381,17 +363,12 @@ public final class TagService {
         return tagWithCase;
     }
 
-    public TagData getTagDataWithCase(String tag, Property<?>... properties) {
-        TodorooCursor<TagData> tagData = tagDataService.query(Query.select(properties).where(TagData.NAME.eqCaseInsensitive(tag)));
-        try {
-            if (tagData.getCount() > 0) {
-                tagData.moveToFirst();
-                return new TagData(tagData);
-            }
-        } finally {
-            tagData.close();
-        }
-        return null;
+    /**
+     * @return tag data whose name case-insensitively matches the given tag,
+     *         with every property read, or null
+     */
+    public TagData getTagDataWithCase(String tag) {
+        return TagDataCache.getInstance().getByName(tag);
     }
 
     public int deleteTagMetadata(String uuid) {
@@ -99,6 +99,6 @@ public class AstridDefaultPreferenceSpec extends AstridPreferenceSpec {
 
         extras.setExtras(context, prefs, editor, r, ifUnset);
 
-        editor.commit();
+        Preferences.commit(editor);
     }
 }
@@ -18,12 +18,49 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Parses quick-add markup out of task titles. Every pattern is compiled
+ * once, and patterns are only run when the title contains the keyword they
+ * need, so most titles are handled with a few substring checks. The parser
+ * keeps no state between calls and can be used from any thread.
+ */
 public class TitleParser {
 
+    /** a compiled pattern, the keyword a match requires, and its value */
+    private static final class Token<T> {
+        final Pattern pattern;
+        final String hint;
+        final T value;
+
+        Token(String regex, String hint, T value) {
+            this.pattern = Pattern.compile(regex);
+            this.hint = hint;
+            this.value = value;
+        }
+
+        /** @return a matcher, or null if the title can't match */
+        Matcher matcher(String inputText, String lowerCase) {
+            if (hint != null && !lowerCase.contains(hint)) {
+                return null;
+            }
+            return pattern.matcher(inputText);
+        }
+    }
+
+    private static String lowerCase(String inputText) {
+        return inputText.toLowerCase(Locale.US);
+    }
+
+    /** @return hint for patterns of the form (?i)\bword\b */
+    private static String wordHint(String regex) {
+        return regex.replace("(?i)", "").replace("\\b", "");
+    }
+
     public static boolean parse(Task task, ArrayList<String> tags) {
         boolean markup = false;
         markup = repeatHelper(task) || markup;
@@ -43,10 +80,15 @@ public class TitleParser {
         }
         return pattern;
     }
+    private static final Pattern tagPattern = Pattern.compile("(\\s|^)#(\\(.*\\)|[^\\s]+)");
+    private static final Pattern contextPattern = Pattern.compile("(\\s|^)@(\\(.*\\)|[^\\s]+)");
+
     public static void listHelper(Task task, ArrayList<String> tags) {
         String inputText = task.getValue(Task.TITLE);
-        Pattern tagPattern = Pattern.compile("(\\s|^)#(\\(.*\\)|[^\\s]+)");
-        Pattern contextPattern = Pattern.compile("(\\s|^)@(\\(.*\\)|[^\\s]+)");
+        if (inputText.indexOf('#') < 0 && inputText.indexOf('@') < 0) {
+            task.setValue(Task.TITLE, inputText.trim());
+            return;
+        }
 
         Set<String> addedTags = new HashSet<String>();
         TagService tagService = TagService.getInstance();
@@ -96,22 +138,23 @@ public class TitleParser {
         return priority;
     }
 
+    @SuppressWarnings("unchecked")
+    private static final Token<Void>[] importanceTokens = new Token[] {
+        new Token<Void>("()((^|[^\\w!])!+|(^|[^\\w!])!\\d)($|[^\\w!])", "!", null),
+        new Token<Void>("()(?i)((\\s?bang){1,})$", "bang", null),
+        new Token<Void>("(?i)(\\spriority\\s?(\\d)$)", "priority", null),
+        new Token<Void>("(?i)(\\sbang\\s?(\\d)$)", "bang", null),
+        new Token<Void>("(?i)()(\\shigh(est)?|\\slow(est)?|\\stop|\\sleast) ?priority$", "priority", null)
+    };
+
     //priorityHelper parses the string and sets the Task's importance
     private static boolean priorityHelper(Task task) {
         String inputText = task.getValue(Task.TITLE);
-        String[] importanceStrings = {
-                "()((^|[^\\w!])!+|(^|[^\\w!])!\\d)($|[^\\w!])",
-                "()(?i)((\\s?bang){1,})$",
-                "(?i)(\\spriority\\s?(\\d)$)",
-                "(?i)(\\sbang\\s?(\\d)$)",
-                "(?i)()(\\shigh(est)?|\\slow(est)?|\\stop|\\sleast) ?priority$"
-        };
         boolean result = false;
-        for (String importanceString:importanceStrings){
-            Pattern importancePattern = Pattern.compile(importanceString);
+        for (Token<Void> token : importanceTokens){
             while (true){
-                Matcher m = importancePattern.matcher(inputText);
-                if(m.find()) {
+                Matcher m = token.matcher(inputText, lowerCase(inputText));
+                if(m != null && m.find()) {
                     result = true;
                     task.setValue(Task.IMPORTANCE, strToPriority(m.group(2).trim()));
                     int start = m.start() == 0 ? 0 : m.start() + 1;
@@ -161,6 +204,98 @@ public class TitleParser {
     }
 
     //---------------------DATE--------------------------
+    @SuppressWarnings("unchecked")
+    private static final Token<Void>[] dayOfWeekTokens = new Token[] {
+        new Token<Void>("(?i)(\\(|\\b)today(\\)|\\b)", "today", null),
+        new Token<Void>("(?i)(\\(|\\b)tomorrow(\\)|\\b)", "tomorrow", null),
+        new Token<Void>("(?i)(\\(|\\b)mon(day(\\)|\\b)|(\\)|\\.))", "mon", null),
+        new Token<Void>("(?i)(\\(|\\b)tue(sday(\\)|\\b)|(\\)|\\.))", "tue", null),
+        new Token<Void>("(?i)(\\(|\\b)wed(nesday(\\)|\\b)|(\\)|\\.))", "wed", null),
+        new Token<Void>("(?i)(\\(|\\b)thu(rsday(\\)|\\b)|(\\)|\\.))", "thu", null),
+        new Token<Void>("(?i)(\\(|\\b)fri(day(\\)|\\b)|(\\)|\\.))", "fri", null),
+        new Token<Void>("(?i)(\\(|\\b)sat(urday(\\)|\\b)|(\\)|\\.))", "sat", null),
+        new Token<Void>("(?i)(\\(|\\b)sun(day(\\)|\\b)|(\\)|\\.))", "sun", null)
+    };
+
+    @SuppressWarnings("unchecked")
+    private static final Token<Void>[] dateTokens = new Token[] {
+        monthToken("jan(\\.|uary)", "jan"),
+        monthToken("feb(\\.|ruary)", "feb"),
+        monthToken("mar(\\.|ch)", "mar"),
+        monthToken("apr(\\.|il)", "apr"),
+        monthToken("may()", "may"),
+        monthToken("jun(\\.|e)", "jun"),
+        monthToken("jul(\\.|y)", "jul"),
+        monthToken("aug(\\.|ust)", "aug"),
+        monthToken("sep(\\.|tember)", "sep"),
+        monthToken("oct(\\.|ober)", "oct"),
+        monthToken("nov(\\.|ember)", "nov"),
+        monthToken("dec(\\.|ember)", "dec")
+    };
+
+    private static Token<Void> monthToken(String month, String hint) {
+        return new Token<Void>("(?i)(\\(|\\b)(" + month + ")(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
+                hint, null);
+    }
+
+    // for dates in the format MM/DD
+    private static final Pattern monthSlashDayPattern = Pattern.compile(
+            "(?i)(\\(|\\b)(1[0-2]|0?[1-9])(\\/|-)(3[0-1]|[0-2]?[0-9])(\\/|-)?(\\d{4}|\\d{2})?(\\)|\\b)");
+
+    private static final Token<Integer>[] dayTimeTokens;
+    static {
+        HashMap<String, Integer> dayTimes = new HashMap<String, Integer>();
+        dayTimes.put("(?i)\\bbreakfast\\b", 8);
+        dayTimes.put("(?i)\\blunch\\b", 12);
+        dayTimes.put("(?i)\\bsupper\\b", 18);
+        dayTimes.put("(?i)\\bdinner\\b", 18);
+        dayTimes.put("(?i)\\bbrunch\\b", 10);
+        dayTimes.put("(?i)\\bmorning\\b", 8);
+        dayTimes.put("(?i)\\bafternoon\\b", 15);
+        dayTimes.put("(?i)\\bevening\\b", 19);
+        dayTimes.put("(?i)\\bnight\\b", 19);
+        dayTimes.put("(?i)\\bmidnight\\b", 0);
+        dayTimes.put("(?i)\\bnoon\\b", 12);
+
+        // the last match wins, so keep the order the map has always had
+        ArrayList<Token<Integer>> tokens = new ArrayList<Token<Integer>>();
+        for (String dayTime : dayTimes.keySet()) {
+            tokens.add(new Token<Integer>(dayTime, wordHint(dayTime), dayTimes.get(dayTime)));
+        }
+        dayTimeTokens = tokens.toArray(TitleParser.<Integer>newTokenArray(tokens.size()));
+    }
+
+    private static final Pattern[] timePatterns = {
+        //[time] am/pm
+        Pattern.compile("(?i)(\\b)([01]?\\d):?([0-5]\\d)? ?([ap]\\.?m?\\.?)\\b"),
+        //army time
+        Pattern.compile("(?i)\\b(([0-2]?[0-9]):([0-5][0-9]))(\\b)"),
+        //[int] o'clock
+        Pattern.compile("(?i)\\b(([01]?\\d)() ?o'? ?clock) ?([ap]\\.?m\\.?)?\\b"),
+        //at [int]
+        Pattern.compile("(?i)(\\bat) ([01]?\\d)()($|\\D($|\\D))")
+
+        //m.group(2) holds the hour
+        //m.group(3) holds the minutes
+        //m.group(4) holds am/pm
+    };
+
+    private static final Pattern[] NO_PATTERNS = new Pattern[0];
+
+    private static boolean hasDigit(String inputText) {
+        for (int i = 0; i < inputText.length(); i++) {
+            if (Character.isDigit(inputText.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Token<T>[] newTokenArray(int size) {
+        return new Token[size];
+    }
+
     //Handles setting the task's date.
     //Day of week (e.g. Monday, Tuesday,..) is overridden by a set date (e.g. October 23 2013).
     //Vague times (e.g. breakfast, night) are overridden by a set time (9 am, at 10, 17:00)
@@ -169,24 +304,13 @@ public class TitleParser {
             return false;
         }
         String inputText = task.getValue(Task.TITLE);
+        String lowerCase = lowerCase(inputText);
         Calendar cal = null;
         Boolean containsSpecificTime = false;
-        String[] daysOfWeek = {
-                "(?i)(\\(|\\b)today(\\)|\\b)",
-                "(?i)(\\(|\\b)tomorrow(\\)|\\b)",
-                "(?i)(\\(|\\b)mon(day(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)tue(sday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)wed(nesday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)thu(rsday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)fri(day(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)sat(urday(\\)|\\b)|(\\)|\\.))",
-                "(?i)(\\(|\\b)sun(day(\\)|\\b)|(\\)|\\.))"
-        };
 
-        for (String date : daysOfWeek){
-            Pattern pattern = Pattern.compile(date);
-            Matcher m = pattern.matcher(inputText);
-            if (m.find()) {
+        for (Token<Void> date : dayOfWeekTokens){
+            Matcher m = date.matcher(inputText, lowerCase);
+            if (m != null && m.find()) {
                 String toParse = stripParens(m.group(0));
                 Calendar dayCal = AstridChronic.parse(toParse).getBeginCalendar();
                 cal = dayCal;
@@ -195,28 +319,12 @@ public class TitleParser {
             }
         }
 
-        String[] dates = {
-                "(?i)(\\(|\\b)(jan(\\.|uary))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(feb(\\.|ruary))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(mar(\\.|ch))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(apr(\\.|il))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(may())(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(jun(\\.|e))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(jul(\\.|y))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(aug(\\.|ust))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(sep(\\.|tember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(oct(\\.|ober))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(nov(\\.|ember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)",
-                "(?i)(\\(|\\b)(dec(\\.|ember))(\\s(3[0-1]|[0-2]?[0-9])),?( (\\d{4}|\\d{2}))?(\\)|\\b)"
-        };
-
         // m.group(2) = "month"
         //m.group(5) = "day"
-        for (String date: dates) {
-            Pattern pattern = Pattern.compile(date);
-            Matcher m = pattern.matcher(inputText);
+        for (Token<Void> date : dateTokens) {
+            Matcher m = date.matcher(inputText, lowerCase);
 
-            if (m.find()){
+            if (m != null && m.find()){
                 Calendar dateCal = Chronic.parse(m.group(2)).getBeginCalendar();
                 if (m.group(5) != null) {
                     dateCal.set(Calendar.DAY_OF_MONTH, Integer.parseInt(m.group(5)));
@@ -239,9 +347,8 @@ public class TitleParser {
         }
 
         // for dates in the format MM/DD
-        Pattern p = Pattern.compile("(?i)(\\(|\\b)(1[0-2]|0?[1-9])(\\/|-)(3[0-1]|[0-2]?[0-9])(\\/|-)?(\\d{4}|\\d{2})?(\\)|\\b)");
-        Matcher match = p.matcher(inputText);
-        if (match.find()){
+        Matcher match = monthSlashDayPattern.matcher(inputText);
+        if (hasDigit(inputText) && match.find()){
             Calendar dCal = Calendar.getInstance();
             setCalendarToDefaultTime(dCal);
             dCal.set(Calendar.MONTH, Integer.parseInt(match.group(2).trim()) - 1);
@@ -264,26 +371,11 @@ public class TitleParser {
             inputText = removeIfParenthetical(match, inputText);
         }
 
-        HashMap<String, Integer> dayTimes = new HashMap<String, Integer>();
-        dayTimes.put("(?i)\\bbreakfast\\b", 8);
-        dayTimes.put("(?i)\\blunch\\b", 12);
-        dayTimes.put("(?i)\\bsupper\\b", 18);
-        dayTimes.put("(?i)\\bdinner\\b", 18);
-        dayTimes.put("(?i)\\bbrunch\\b", 10);
-        dayTimes.put("(?i)\\bmorning\\b", 8);
-        dayTimes.put("(?i)\\bafternoon\\b", 15);
-        dayTimes.put("(?i)\\bevening\\b", 19);
-        dayTimes.put("(?i)\\bnight\\b", 19);
-        dayTimes.put("(?i)\\bmidnight\\b", 0);
-        dayTimes.put("(?i)\\bnoon\\b", 12);
-
-        Set<String> keys = dayTimes.keySet();
-        for (String dayTime : keys) {
-            Pattern pattern = Pattern.compile(dayTime);
-            Matcher m = pattern.matcher(inputText);
-            if (m.find()) {
+        for (Token<Integer> dayTime : dayTimeTokens) {
+            Matcher m = dayTime.matcher(inputText, lowerCase);
+            if (m != null && m.find()) {
                 containsSpecificTime = true;
-                int timeHour = dayTimes.get(dayTime);
+                int timeHour = dayTime.value;
                 Calendar dayTimesCal = Calendar.getInstance();
                 setCalendarToDefaultTime(dayTimesCal);
                 dayTimesCal.set(Calendar.HOUR, timeHour);
@@ -296,24 +388,10 @@ public class TitleParser {
             }
         }
 
-        String[] times = {
-                //[time] am/pm
-                "(?i)(\\b)([01]?\\d):?([0-5]\\d)? ?([ap]\\.?m?\\.?)\\b",
-                //army time
-                "(?i)\\b(([0-2]?[0-9]):([0-5][0-9]))(\\b)",
-                //[int] o'clock
-                "(?i)\\b(([01]?\\d)() ?o'? ?clock) ?([ap]\\.?m\\.?)?\\b",
-                //at [int]
-                "(?i)(\\bat) ([01]?\\d)()($|\\D($|\\D))"
-
-                //m.group(2) holds the hour
-                //m.group(3) holds the minutes
-                //m.group(4) holds am/pm
-        };
-
-        for (String time : times){
-            Pattern pattern = Pattern.compile(time);
-            Matcher m = pattern.matcher(inputText);
+        // every time format has a number in it
+        Pattern[] times = hasDigit(inputText) ? timePatterns : NO_PATTERNS;
+        for (Pattern time : times){
+            Matcher m = time.matcher(inputText);
             if (m.find()) {
                 containsSpecificTime = true;
                 Calendar today = Calendar.getInstance();
@@ -371,12 +449,9 @@ public class TitleParser {
     }
     //---------------------DATE--------------------------
 
-    //Parses through the text and sets the frequency of the task.
-    private static boolean repeatHelper(Task task) {
-        if (task.containsNonNullValue(Task.RECURRENCE)) {
-            return false;
-        }
-        String inputText = task.getValue(Task.TITLE);
+    private static final Token<Frequency>[] repeatTokens;
+    private static final Token<Frequency>[] repeatIntervalOneTokens;
+    static {
         HashMap<String, Frequency> repeatTimes = new HashMap<String, Frequency>();
         repeatTimes.put("(?i)\\bevery ?\\w{0,6} days?\\b" , Frequency.DAILY);
         repeatTimes.put("(?i)\\bevery ?\\w{0,6} ?nights?\\b" , Frequency.DAILY);
@@ -396,12 +471,47 @@ public class TitleParser {
         repeatTimesIntervalOne.put( "(?i)\\bmonthly\\b" ,Frequency.MONTHLY);
         repeatTimesIntervalOne.put( "(?i)\\byearly\\b" , Frequency.YEARLY);
 
-        Set<String> keys = repeatTimes.keySet();
-        for (String repeatTime : keys){
-            Pattern pattern = Pattern.compile(repeatTime);
-            Matcher m = pattern.matcher(inputText);
-            if (m.find()){
-                Frequency rtime = repeatTimes.get(repeatTime);
+        // the first match wins, so keep the order the maps have always had
+        ArrayList<Token<Frequency>> tokens = new ArrayList<Token<Frequency>>();
+        for (String repeatTime : repeatTimes.keySet()) {
+            tokens.add(new Token<Frequency>(repeatTime, "every", repeatTimes.get(repeatTime)));
+        }
+        repeatTokens = tokens.toArray(TitleParser.<Frequency>newTokenArray(tokens.size()));
+
+        tokens.clear();
+        for (String repeatTime : repeatTimesIntervalOne.keySet()) {
+            tokens.add(new Token<Frequency>(repeatTime, wordHint(repeatTime),
+                    repeatTimesIntervalOne.get(repeatTime)));
+        }
+        repeatIntervalOneTokens = tokens.toArray(TitleParser.<Frequency>newTokenArray(tokens.size()));
+    }
+
+    private static final Pattern intervalPattern = Pattern.compile("(?i)\\bevery (\\w*)\\b");
+
+    private static final HashMap<String, Integer> wordsToNum = new HashMap<String, Integer>();
+    static {
+        String[] words = new String[] {
+                "one", "two", "three", "four", "five", "six",
+                "seven", "eight", "nine", "ten", "eleven", "twelve"
+        };
+        for(int i = 0; i < words.length; i++) {
+            wordsToNum.put(words[i], i+1);
+            wordsToNum.put(Integer.toString(i + 1), i + 1);
+        }
+        wordsToNum.put("other" , 2);
+    }
+
+    //Parses through the text and sets the frequency of the task.
+    private static boolean repeatHelper(Task task) {
+        if (task.containsNonNullValue(Task.RECURRENCE)) {
+            return false;
+        }
+        String inputText = task.getValue(Task.TITLE);
+        String lowerCase = lowerCase(inputText);
+        for (Token<Frequency> repeatTime : repeatTokens){
+            Matcher m = repeatTime.matcher(inputText, lowerCase);
+            if (m != null && m.find()){
+                Frequency rtime = repeatTime.value;
                 RRule rrule = new RRule();
                 rrule.setFreq(rtime);
                 rrule.setInterval(findInterval(inputText));
@@ -410,11 +520,10 @@ public class TitleParser {
             }
         }
 
-        for (String repeatTimeIntervalOne:repeatTimesIntervalOne.keySet()){
-            Pattern pattern = Pattern.compile(repeatTimeIntervalOne);
-            Matcher m = pattern.matcher(inputText);
-            if (m.find()) {
-                Frequency rtime = repeatTimesIntervalOne.get(repeatTimeIntervalOne);
+        for (Token<Frequency> repeatTimeIntervalOne : repeatIntervalOneTokens){
+            Matcher m = repeatTimeIntervalOne.matcher(inputText, lowerCase);
+            if (m != null && m.find()) {
+                Frequency rtime = repeatTimeIntervalOne.value;
                 RRule rrule = new RRule();
                 rrule.setFreq(rtime);
                 rrule.setInterval(1);
@@ -428,20 +537,8 @@ public class TitleParser {
 
     //helper method for repeatHelper.
     private static int findInterval(String inputText) {
-        HashMap<String,Integer> wordsToNum = new HashMap<String, Integer>();
-        String[] words = new String[] {
-                "one", "two", "three", "four", "five", "six",
-                "seven", "eight", "nine", "ten", "eleven", "twelve"
-        };
-        for(int i = 0; i < words.length; i++) {
-            wordsToNum.put(words[i], i+1);
-            wordsToNum.put(Integer.toString(i + 1), i + 1);
-        }
-        wordsToNum.put("other" , 2);
-
-        Pattern pattern = Pattern.compile("(?i)\\bevery (\\w*)\\b");
         int interval = 1;
-        Matcher m = pattern.matcher(inputText);
+        Matcher m = intervalPattern.matcher(inputText);
         if (m.find() && m.group(1)!=null){
             String intervalStr = m.group(1);
             if (wordsToNum.containsKey(intervalStr)) {
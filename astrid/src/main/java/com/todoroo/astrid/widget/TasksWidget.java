@@ -26,7 +26,6 @@ import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.utility.AndroidUtilities;
-import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.actfm.TagViewFragment;
 import com.todoroo.astrid.activity.TaskEditActivity;
@@ -56,9 +55,6 @@ public class TasksWidget extends AppWidgetProvider {
 
     private static final int NUM_VISIBLE_TASKS = 25;
 
-    public static long suppressUpdateFlag = 0; // Timestamp--don't update widgets if this flag is non-zero and now() is within 5 minutes
-    private static final long SUPPRESS_TIME = DateUtilities.ONE_MINUTE * 5;
-
     static {
         AstridDependencyInjector.initialize();
     }
@@ -82,10 +78,6 @@ public class TasksWidget extends AppWidgetProvider {
      * Update all widgets
      */
     public static void updateWidgets(Context context) {
-        if (suppressUpdateFlag > 0 && DateUtilities.now() - suppressUpdateFlag < SUPPRESS_TIME) {
-            return;
-        }
-        suppressUpdateFlag = 0;
         context.startService(new Intent(context,
                 TasksWidget.WidgetUpdateService.class));
     }
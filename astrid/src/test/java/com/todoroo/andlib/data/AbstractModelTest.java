@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import android.content.ContentValues;
+import android.os.Parcel;
+
+import com.todoroo.astrid.data.Task;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class AbstractModelTest {
+
+    @Test
+    public void testDefaultsUntilSet() {
+        Task task = new Task();
+        assertFalse(task.containsValue(Task.TITLE));
+        assertEquals("", task.getValue(Task.TITLE));
+        assertEquals(0, task.getSetValues().size());
+
+        task.setValue(Task.TITLE, "title");
+        task.setValue(Task.DUE_DATE, 1234L);
+        assertEquals("title", task.getValue(Task.TITLE));
+        assertEquals(Long.valueOf(1234L), task.getValue(Task.DUE_DATE));
+        assertEquals(2, task.getSetValues().size());
+    }
+
+    @Test
+    public void testMarkSavedClearsSetValues() {
+        Task task = new Task();
+        task.setValue(Task.IMPORTANCE, Task.IMPORTANCE_MUST_DO);
+        task.markSaved();
+        assertEquals(0, task.getSetValues().size());
+        assertEquals(Integer.valueOf(Task.IMPORTANCE_MUST_DO), task.getValue(Task.IMPORTANCE));
+
+        // setting a saved value again is not a change
+        task.setValue(Task.IMPORTANCE, Task.IMPORTANCE_MUST_DO);
+        assertEquals(0, task.getSetValues().size());
+    }
+
+    @Test
+    public void testMergeConvertsTypes() {
+        ContentValues values = new ContentValues();
+        values.put(Task.DUE_DATE.name, "5");
+        values.put(Task.IMPORTANCE.name, 2L);
+        values.put("not-a-column", "value");
+
+        Task task = new Task();
+        task.mergeWith(values);
+        assertEquals(Long.valueOf(5), task.getValue(Task.DUE_DATE));
+        assertEquals(Integer.valueOf(2), task.getValue(Task.IMPORTANCE));
+        assertTrue(task.getSetValues().containsKey("not-a-column"));
+
+        task.clearValue("not-a-column");
+        assertFalse(task.getSetValues().containsKey("not-a-column"));
+    }
+
+    @Test
+    public void testCloneIsIndependent() {
+        Task task = new Task();
+        task.setId(3);
+        task.setValue(Task.TITLE, "a");
+        Task clone = (Task) task.clone();
+        clone.setValue(Task.TITLE, "b");
+        assertEquals("a", task.getValue(Task.TITLE));
+        assertEquals(3, clone.getId());
+        assertEquals(task.getId(), clone.getId());
+    }
+
+    @Test
+    public void testDatabaseValuesKeepStoredValue() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "stored");
+        task.setValue(Task.IMPORTANCE, Task.IMPORTANCE_MUST_DO);
+        task.markSaved();
+
+        task.setValue(Task.TITLE, "changed");
+        task.setValue(Task.TITLE, "changed again");
+        ContentValues database = task.getDatabaseValues();
+        assertEquals("stored", database.getAsString(Task.TITLE.name));
+        assertEquals(Integer.valueOf(Task.IMPORTANCE_MUST_DO), database.getAsInteger(Task.IMPORTANCE.name));
+        assertEquals("changed again", task.getSetValues().getAsString(Task.TITLE.name));
+        assertEquals("changed again", task.getMergedValues().getAsString(Task.TITLE.name));
+
+        task.markSaved();
+        assertEquals("changed again", task.getDatabaseValues().getAsString(Task.TITLE.name));
+        assertEquals(0, task.getSetValues().size());
+    }
+
+    @Test
+    public void testValuesAreCopies() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "title");
+        task.getSetValues().put(Task.TITLE.name, "other");
+        task.getDatabaseValues().put(Task.TITLE.name, "other");
+        assertEquals("title", task.getValue(Task.TITLE));
+    }
+
+    @Test
+    public void testClearValueDropsStoredValue() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "stored");
+        task.markSaved();
+        task.setValue(Task.TITLE, "changed");
+        task.clearValue(Task.TITLE);
+        assertFalse(task.getDatabaseValues().containsKey(Task.TITLE.name));
+        assertFalse(task.getSetValues().containsKey(Task.TITLE.name));
+    }
+
+    @Test
+    public void testParcelKeepsStoredAndSetValues() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "stored");
+        task.markSaved();
+        task.setValue(Task.TITLE, "changed");
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            task.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            Task copy = Task.CREATOR.createFromParcel(parcel);
+            assertEquals("stored", copy.getDatabaseValues().getAsString(Task.TITLE.name));
+            assertEquals("changed", copy.getSetValues().getAsString(Task.TITLE.name));
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeSetTest {
+
+    @Test
+    public void testRecordsIds() {
+        ChangeSet changes = new ChangeSet();
+        assertTrue(changes.isEmpty());
+        changes.add(Task.TABLE.name, 1);
+        changes.add(Task.TABLE.name, 2);
+        assertTrue(changes.affects(Task.TABLE));
+        assertTrue(changes.affects(Task.TABLE, 2));
+        assertFalse(changes.affects(Task.TABLE, 3));
+        assertFalse(changes.affects(Metadata.TABLE));
+        assertEquals(2, changes.getChangedIds(Task.TABLE).size());
+        assertTrue(changes.getChangedIds(Metadata.TABLE).isEmpty());
+    }
+
+    @Test
+    public void testAllRowsWins() {
+        ChangeSet changes = new ChangeSet();
+        changes.add(Task.TABLE.name, 1);
+        changes.add(Task.TABLE.name, ChangeSet.ALL_ROWS);
+        changes.add(Task.TABLE.name, 2);
+        assertNull(changes.getChangedIds(Task.TABLE));
+        assertTrue(changes.affects(Task.TABLE, 5));
+    }
+
+    @Test
+    public void testMerge() {
+        ChangeSet first = new ChangeSet();
+        first.add(Task.TABLE.name, 1);
+        ChangeSet second = new ChangeSet();
+        second.add(Task.TABLE.name, 2);
+        second.add(Metadata.TABLE.name, ChangeSet.ALL_ROWS);
+        first.addAll(second);
+        assertEquals(2, first.getChangedIds(Task.TABLE).size());
+        assertNull(first.getChangedIds(Metadata.TABLE));
+    }
+
+    @Test
+    public void testRecordsColumns() {
+        ChangeSet changes = new ChangeSet();
+        changes.add(Task.TABLE.name, 1, new HashSet<String>(Arrays.asList(Task.TITLE.name)));
+        changes.add(Task.TABLE.name, 2, new HashSet<String>(Arrays.asList(Task.NOTES.name)));
+        assertEquals(new HashSet<String>(Arrays.asList(Task.TITLE.name, Task.NOTES.name)),
+                changes.getChangedColumns(Task.TABLE));
+        assertTrue(changes.getChangedColumns(Metadata.TABLE).isEmpty());
+
+        // inserts and deletes may change any column
+        ChangeSet inserted = new ChangeSet();
+        inserted.add(Task.TABLE.name, 3);
+        changes.addAll(inserted);
+        assertNull(changes.getChangedColumns(Task.TABLE));
+        changes.add(Task.TABLE.name, 4, new HashSet<String>(Arrays.asList(Task.TITLE.name)));
+        assertNull(changes.getChangedColumns(Task.TABLE));
+    }
+}
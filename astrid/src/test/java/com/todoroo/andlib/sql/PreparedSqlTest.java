@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.sql;
+
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreparedSqlTest {
+
+    @Test
+    public void testInlineStringUnchanged() {
+        assertEquals("(tasks.title='it''s')", Task.TITLE.eq("it's").toString());
+        assertEquals("(tasks._id=4)", Task.ID.eq(4L).toString());
+    }
+
+    @Test
+    public void testBindsColumnValues() {
+        PreparedSql sql = Criterion.and(Task.ID.eq(4L), Task.TITLE.eq("it's")).prepare();
+        assertEquals("((tasks._id=?) AND (tasks.title=?))", sql.sql);
+        assertArrayEquals(new String[] { "4", "it's" }, sql.args);
+    }
+
+    @Test
+    public void testSameShapeSameSql() {
+        PreparedSql first = Query.select(Task.ID).from(Task.TABLE).where(Task.ID.eq(1L)).prepare();
+        PreparedSql second = Query.select(Task.ID).from(Task.TABLE).where(Task.ID.eq(2L)).prepare();
+        assertEquals(first.sql, second.sql);
+        assertArrayEquals(new String[] { "2" }, second.args);
+    }
+
+    @Test
+    public void testFunctionsStayInline() {
+        PreparedSql sql = Functions.upper(Task.TITLE).gt(3).prepare();
+        assertEquals("(UPPER(tasks.title)>3)", sql.sql);
+        assertNull(sql.args);
+    }
+
+    @Test
+    public void testArgumentOrderAcrossJoinsAndSubqueries() {
+        PreparedSql sql = Query.select(Task.ID).from(Task.TABLE).join(
+                Join.left(Metadata.TABLE, Metadata.KEY.eq("tags"))).where(
+                Task.ID.in(Query.select(Metadata.TASK).from(Metadata.TABLE).where(
+                        Metadata.VALUE1.eq("a")))).prepare();
+        assertArrayEquals(new String[] { "tags", "a" }, sql.args);
+    }
+
+    @Test
+    public void testEscapedLike() {
+        PreparedSql sql = Task.TITLE.eqCaseInsensitive("a_b").prepare();
+        assertEquals("(tasks.title LIKE ? ESCAPE '\\')", sql.sql);
+        assertArrayEquals(new String[] { "a\\_b" }, sql.args);
+    }
+}
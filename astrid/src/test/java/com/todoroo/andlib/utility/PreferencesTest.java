@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.utility;
+
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.Editor;
+
+import com.todoroo.andlib.test.TodorooRobolectricTestCase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.tasks.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferencesTest extends TodorooRobolectricTestCase {
+
+    @Test
+    public void testSetIfUnsetIsReadAfterCommit() {
+        Preferences.clear(Preferences.getKey(R.string.p_rmd_time));
+        assertEquals(5, Preferences.getIntegerFromString(R.string.p_rmd_time, 5));
+
+        SharedPreferences prefs = Preferences.getPrefs(getContext());
+        Editor editor = prefs.edit();
+        Preferences.setIfUnset(prefs, editor, getContext().getResources(), R.string.p_rmd_time, 18);
+        assertEquals(5, Preferences.getIntegerFromString(R.string.p_rmd_time, 5));
+
+        Preferences.commit(editor);
+        assertEquals(18, Preferences.getIntegerFromString(R.string.p_rmd_time, 5));
+    }
+
+    @Test
+    public void testSetterIsReadRightAway() {
+        Preferences.clear("long"); //$NON-NLS-1$
+        assertEquals(-1L, Preferences.getLong("long", -1L)); //$NON-NLS-1$
+
+        Preferences.setLong("long", 42L); //$NON-NLS-1$
+        assertEquals(42L, Preferences.getLong("long", -1L)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testWriteOutsidePreferencesIsSeen() {
+        Preferences.setBoolean("boolean", false); //$NON-NLS-1$
+        assertEquals(false, Preferences.getBoolean("boolean", true)); //$NON-NLS-1$
+
+        Preferences.getPrefs(getContext()).edit().putBoolean("boolean", true).commit(); //$NON-NLS-1$
+        assertTrue(Preferences.getBoolean("boolean", false)); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.backup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class BackupHeaderTest {
+
+    private static File backup(String format, Object... args) {
+        return new File("/sdcard/astrid", String.format(format, args) +
+                BackupConstants.COMPRESSED_SUFFIX);
+    }
+
+    @Test
+    public void testFullBackupName() {
+        File file = backup(BackupConstants.BACKUP_FILE_NAME, "131017-1200", 1000L);
+        assertTrue(file.getName().matches(BackupService.BACKUP_FILE_NAME_REGEX));
+
+        BackupHeader header = BackupHeader.fromName(file);
+        assertEquals(file, header.file);
+        assertEquals(1000L, header.checkpoint);
+        assertEquals(0L, header.since);
+        assertFalse(header.isDelta());
+    }
+
+    @Test
+    public void testDeltaBackupName() {
+        File file = backup(BackupConstants.BACKUP_DELTA_FILE_NAME, "131018-1200", 2000L, 1000L);
+        assertTrue(file.getName().matches(BackupService.BACKUP_FILE_NAME_REGEX));
+
+        BackupHeader header = BackupHeader.fromName(file);
+        assertEquals(2000L, header.checkpoint);
+        assertEquals(1000L, header.since);
+        assertTrue(header.isDelta());
+    }
+
+    @Test
+    public void testOldNamesHaveNoHeader() {
+        File full = new File("/sdcard/astrid", "auto.131017-1200.xml.gz");
+        File delta = new File("/sdcard/astrid", "auto.131018-1200.delta.xml.gz");
+        assertTrue(full.getName().matches(BackupService.BACKUP_FILE_NAME_REGEX));
+        assertTrue(delta.getName().matches(BackupService.BACKUP_FILE_NAME_REGEX));
+
+        assertNull(BackupHeader.fromName(full));
+        assertNull(BackupHeader.fromName(delta));
+    }
+
+    @Test
+    public void testOtherFilesAreNotBackups() {
+        assertFalse("user.131017-1200.xml".matches(BackupService.BACKUP_FILE_NAME_REGEX));
+        assertNull(BackupHeader.fromName(new File("/sdcard/astrid", "user.131017-1200.xml")));
+    }
+
+}
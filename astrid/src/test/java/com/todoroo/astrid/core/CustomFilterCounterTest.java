@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.core;
+
+import com.todoroo.astrid.core.CustomFilterActivity.CriterionInstance;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class CustomFilterCounterTest {
+
+    private static final long[] UNIVERSE = new long[] { 1, 2, 3, 4, 5, 6 };
+
+    @Test
+    public void testSetOperations() {
+        long[] a = new long[] { 1, 3, 5, 7 };
+        long[] b = new long[] { 3, 4, 5 };
+        assertArrayEquals(new long[] { 1, 3, 4, 5, 7 }, CustomFilterCounter.union(a, b));
+        assertArrayEquals(new long[] { 3, 5 }, CustomFilterCounter.intersect(a, b));
+        assertArrayEquals(new long[] { 1, 7 }, CustomFilterCounter.subtract(a, b));
+        assertArrayEquals(new long[0], CustomFilterCounter.subtract(b, UNIVERSE));
+    }
+
+    @Test
+    public void testIntersectAndSubtract() {
+        int[] counts = CustomFilterCounter.combine(
+                new int[] { CriterionInstance.TYPE_UNIVERSE, CriterionInstance.TYPE_INTERSECT, CriterionInstance.TYPE_SUBTRACT },
+                new long[][] { UNIVERSE, new long[] { 2, 3, 4, 8 }, new long[] { 3 } });
+        assertArrayEquals(new int[] { 6, 3, 2 }, counts);
+    }
+
+    @Test
+    public void testAddStartsNewGroup() {
+        // universe AND a OR b AND NOT c == (universe AND a) OR (b AND NOT c)
+        int[] counts = CustomFilterCounter.combine(
+                new int[] { CriterionInstance.TYPE_UNIVERSE, CriterionInstance.TYPE_INTERSECT,
+                        CriterionInstance.TYPE_ADD, CriterionInstance.TYPE_SUBTRACT },
+                new long[][] { UNIVERSE, new long[] { 1, 2 }, new long[] { 2, 7, 8 }, new long[] { 8 } });
+        assertArrayEquals(new int[] { 6, 2, 4, 3 }, counts);
+    }
+}
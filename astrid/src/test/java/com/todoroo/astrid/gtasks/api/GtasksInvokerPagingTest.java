@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.gtasks.api;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskLists;
+import com.google.api.services.tasks.model.Tasks;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class GtasksInvokerPagingTest {
+
+    @Test
+    public void testFollowsPageTokens() throws Exception {
+        StubGtasksInvoker invoker = new StubGtasksInvoker(100, 0);
+        for (int i = 0; i < 250; i++) {
+            invoker.addTask("list", new Task().setTitle("task " + i));
+        }
+
+        Tasks tasks = invoker.getAllGtasksFromListId("list", false, false, 0);
+        assertEquals(250, tasks.getItems().size());
+        assertEquals("task 249", tasks.getItems().get(249).getTitle());
+        assertNull(tasks.getNextPageToken());
+        assertEquals(3, invoker.getRequestCount());
+    }
+
+    @Test
+    public void testUpdatedMinLimitsPages() throws Exception {
+        StubGtasksInvoker invoker = new StubGtasksInvoker(100, 0);
+        for (int i = 0; i < 150; i++) {
+            invoker.addTask("list", new Task().setTitle("old " + i).setUpdated(new DateTime(1000L)));
+        }
+        invoker.addTask("list", new Task().setTitle("new").setUpdated(new DateTime(5000L)));
+
+        Tasks tasks = invoker.getAllGtasksFromListId("list", false, false, 2000L);
+        assertEquals(1, tasks.getItems().size());
+        assertEquals("new", tasks.getItems().get(0).getTitle());
+        assertEquals(1, invoker.getRequestCount());
+    }
+
+    @Test
+    public void testListsArePaged() throws Exception {
+        StubGtasksInvoker invoker = new StubGtasksInvoker(2, 0);
+        for (int i = 0; i < 5; i++) {
+            invoker.addList("list " + i);
+        }
+
+        TaskLists lists = invoker.allGtaskLists();
+        assertEquals(5, lists.getItems().size());
+        assertEquals("list 4", lists.getItems().get(4).getId());
+        assertEquals(3, invoker.getRequestCount());
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.gtasks.api;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.api.services.tasks.model.TaskLists;
+import com.google.api.services.tasks.model.Tasks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand-in for the Google Tasks API, for exercising paging and
+ * sync throughput offline. Every request can be delayed to simulate network
+ * latency.
+ */
+public class StubGtasksInvoker extends GtasksInvoker {
+
+    private final LinkedHashMap<String, ArrayList<Task>> lists = new LinkedHashMap<String, ArrayList<Task>>();
+    private final int pageSize;
+    private final long latency;
+    private final AtomicInteger requests = new AtomicInteger();
+    private int nextId = 0;
+
+    public StubGtasksInvoker(int pageSize, long latency) {
+        this.pageSize = pageSize;
+        this.latency = latency;
+    }
+
+    // --- setup
+
+    public synchronized void addList(String listId) {
+        if (!lists.containsKey(listId)) {
+            lists.put(listId, new ArrayList<Task>());
+        }
+    }
+
+    /**
+     * Add a task to the list, giving it an id and position if it has none
+     */
+    public synchronized Task addTask(String listId, Task task) {
+        addList(listId);
+        ArrayList<Task> tasks = lists.get(listId);
+        if (task.getId() == null) {
+            task.setId("stub-" + (nextId++)); //$NON-NLS-1$
+        }
+        if (task.getPosition() == null) {
+            task.setPosition(String.format("%020d", tasks.size())); //$NON-NLS-1$
+        }
+        if (task.getUpdated() == null) {
+            task.setUpdated(new DateTime(System.currentTimeMillis()));
+        }
+        tasks.add(task);
+        return task;
+    }
+
+    /** @return number of requests made so far */
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    // --- requests
+
+    @Override
+    public void ping() throws IOException {
+        simulateRequest();
+    }
+
+    @Override
+    protected TaskLists getGtaskListsPage(String pageToken) throws IOException {
+        simulateRequest();
+        ArrayList<TaskList> all = new ArrayList<TaskList>();
+        synchronized (this) {
+            for (String listId : lists.keySet()) {
+                all.add(new TaskList().setId(listId).setTitle(listId));
+            }
+        }
+        int start = pageToken == null ? 0 : Integer.parseInt(pageToken);
+        int end = Math.min(all.size(), start + pageSize);
+        TaskLists page = new TaskLists();
+        page.setItems(new ArrayList<TaskList>(all.subList(start, end)));
+        page.setNextPageToken(end < all.size() ? Integer.toString(end) : null);
+        return page;
+    }
+
+    @Override
+    public TaskList getGtaskList(String id) throws IOException {
+        simulateRequest();
+        synchronized (this) {
+            return lists.containsKey(id) ? new TaskList().setId(id).setTitle(id) : null;
+        }
+    }
+
+    @Override
+    public Tasks getGtasksPage(String listId, boolean includeDeleted, boolean includeHidden,
+            long lastSyncDate, String pageToken) throws IOException {
+        simulateRequest();
+        ArrayList<Task> matching = new ArrayList<Task>();
+        synchronized (this) {
+            List<Task> tasks = lists.get(listId);
+            if (tasks == null) {
+                throw new IOException("No such list: " + listId); //$NON-NLS-1$
+            }
+            for (Task task : tasks) {
+                if (task.getUpdated().getValue() < lastSyncDate) {
+                    continue;
+                }
+                if (!includeDeleted && Boolean.TRUE.equals(task.getDeleted())) {
+                    continue;
+                }
+                if (!includeHidden && Boolean.TRUE.equals(task.getHidden())) {
+                    continue;
+                }
+                matching.add(task);
+            }
+        }
+
+        int start = pageToken == null ? 0 : Integer.parseInt(pageToken);
+        int end = Math.min(matching.size(), start + pageSize);
+        Tasks page = new Tasks();
+        page.setItems(new ArrayList<Task>(matching.subList(start, end)));
+        page.setNextPageToken(end < matching.size() ? Integer.toString(end) : null);
+        return page;
+    }
+
+    @Override
+    public Task createGtask(String listId, Task task, String parent, String priorSiblingId) throws IOException {
+        simulateRequest();
+        task.setParent(parent);
+        return addTask(listId, task);
+    }
+
+    @Override
+    public synchronized void updateGtask(String listId, Task task) throws IOException {
+        simulateRequest();
+        List<Task> tasks = lists.get(listId);
+        for (int i = 0; tasks != null && i < tasks.size(); i++) {
+            if (tasks.get(i).getId().equals(task.getId())) {
+                task.setUpdated(new DateTime(System.currentTimeMillis()));
+                tasks.set(i, task);
+                return;
+            }
+        }
+        throw new IOException("No such task: " + task.getId()); //$NON-NLS-1$
+    }
+
+    @Override
+    public synchronized void deleteGtask(String listId, String taskId) throws IOException {
+        simulateRequest();
+        List<Task> tasks = lists.get(listId);
+        for (int i = 0; tasks != null && i < tasks.size(); i++) {
+            if (tasks.get(i).getId().equals(taskId)) {
+                tasks.get(i).setDeleted(true).setUpdated(new DateTime(System.currentTimeMillis()));
+                return;
+            }
+        }
+    }
+
+    private void simulateRequest() throws IOException {
+        requests.incrementAndGet();
+        if (latency <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted"); //$NON-NLS-1$
+        }
+    }
+}
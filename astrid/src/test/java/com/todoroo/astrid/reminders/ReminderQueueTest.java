@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.reminders;
+
+import android.app.AlarmManager;
+import android.content.Context;
+
+import com.todoroo.andlib.test.TodorooRobolectricTestCase;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.reminders.ReminderQueue.Loader;
+import com.todoroo.astrid.reminders.ReminderQueue.Reminder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowAlarmManager;
+import org.robolectric.shadows.ShadowAlarmManager.ScheduledAlarm;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ReminderQueueTest extends TodorooRobolectricTestCase {
+
+    private ShadowAlarmManager alarmManager() {
+        return Robolectric.shadowOf((AlarmManager) getContext().getSystemService(Context.ALARM_SERVICE));
+    }
+
+    /** queue loaded with the given task reminders, as if read from the database */
+    private ReminderQueue loadedQueue(final long[][] reminders) {
+        ReminderQueue queue = new ReminderQueue();
+        queue.setLoader(new Loader() {
+            @Override
+            public void load(long horizon) {
+                // nothing stored
+            }
+        });
+        queue.reload();
+        for(long[] reminder : reminders) {
+            queue.setReminder(reminder[0], reminder[1], ReminderService.TYPE_DUE);
+        }
+        return queue;
+    }
+
+    @Test
+    public void testDueRemindersComeInTimeOrder() {
+        long now = DateUtilities.now();
+        ReminderQueue queue = loadedQueue(new long[][] {
+                { 1, now - 1000 },
+                { 2, now - 3000 },
+                { 3, now + DateUtilities.ONE_HOUR },
+                { 4, now - 2000 },
+        });
+        queue.setAlarm(10, 5, now - 2500);
+
+        ArrayList<Reminder> due = queue.takeDueReminders(now);
+        assertEquals(4, due.size());
+        assertEquals(2, due.get(0).taskId);
+        assertEquals(10, due.get(1).alarmId);
+        assertEquals(4, due.get(2).taskId);
+        assertEquals(1, due.get(3).taskId);
+
+        // taken reminders are gone, later ones stay
+        assertTrue(queue.takeDueReminders(now).isEmpty());
+        assertEquals(3, queue.takeDueReminders(now + DateUtilities.ONE_HOUR).get(0).taskId);
+    }
+
+    @Test
+    public void testTaskKeepsOneReminder() {
+        long now = DateUtilities.now();
+        ReminderQueue queue = loadedQueue(new long[][] {
+                { 1, now + 1000 },
+                { 1, now + 2000 },
+        });
+        ArrayList<Reminder> due = queue.takeDueReminders(now + DateUtilities.ONE_HOUR);
+        assertEquals(1, due.size());
+        assertEquals(now + 2000, due.get(0).time);
+    }
+
+    @Test
+    public void testOnlyEarliestReminderIsArmed() {
+        long now = DateUtilities.now();
+        ReminderQueue queue = loadedQueue(new long[][] {
+                { 1, now + 3 * DateUtilities.ONE_HOUR },
+                { 2, now + DateUtilities.ONE_HOUR },
+                { 3, now + 2 * DateUtilities.ONE_HOUR },
+        });
+        assertEquals(1, alarmManager().getScheduledAlarms().size());
+        assertEquals(now + DateUtilities.ONE_HOUR, alarmManager().getNextScheduledAlarm().triggerAtTime);
+
+        // clearing the earliest moves the one alarm to the next
+        queue.clearReminder(2, ReminderService.TYPE_DUE);
+        ScheduledAlarm alarm = alarmManager().getNextScheduledAlarm();
+        assertEquals(now + 2 * DateUtilities.ONE_HOUR, alarm.triggerAtTime);
+        assertNull(alarmManager().getNextScheduledAlarm());
+    }
+
+    @Test
+    public void testReloadWakesUpAtHorizon() {
+        final long[] loadedUntil = new long[1];
+        ReminderQueue queue = new ReminderQueue();
+        queue.setLoader(new Loader() {
+            @Override
+            public void load(long horizon) {
+                loadedUntil[0] = horizon;
+            }
+        });
+
+        long before = DateUtilities.now();
+        queue.reload();
+        long after = DateUtilities.now();
+
+        // nothing queued: the alarm goes off at the end of the loaded window
+        assertTrue(loadedUntil[0] >= before + DateUtilities.ONE_DAY);
+        assertTrue(loadedUntil[0] <= after + DateUtilities.ONE_DAY);
+        assertEquals(loadedUntil[0], alarmManager().getNextScheduledAlarm().triggerAtTime);
+
+        // reminders past the window don't move it
+        queue.setReminder(1, loadedUntil[0] + DateUtilities.ONE_HOUR, ReminderService.TYPE_DUE);
+        assertNull(alarmManager().getNextScheduledAlarm());
+
+        // the window isn't loaded again until it has passed
+        long firstHorizon = loadedUntil[0];
+        queue.loadIfNecessary();
+        assertEquals(firstHorizon, loadedUntil[0]);
+    }
+
+}
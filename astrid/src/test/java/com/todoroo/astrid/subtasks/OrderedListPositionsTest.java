@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.subtasks;
+
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class OrderedListPositionsTest {
+
+    private static ArrayList<Node> nodes(long... positions) {
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        for (int i = 0; i < positions.length; i++) {
+            Node node = new Node(Integer.toString(i), null, 0);
+            node.position = positions[i];
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private static void assertIncreasing(ArrayList<Node> nodes) {
+        for (int i = 1; i < nodes.size(); i++) {
+            assertTrue(nodes.get(i - 1).position < nodes.get(i).position);
+        }
+    }
+
+    @Test
+    public void testNewList() {
+        long none = OrderedListPositions.NONE;
+        ArrayList<Node> nodes = nodes(none, none, none);
+        OrderedListPositions.assign(nodes);
+        assertEquals(OrderedListPositions.STEP, nodes.get(0).position);
+        assertIncreasing(nodes);
+    }
+
+    @Test
+    public void testMovedNodeIsTheOnlyOneChanged() {
+        // last node moved to the front
+        ArrayList<Node> nodes = nodes(400, 100, 200, 300);
+        OrderedListPositions.assign(nodes);
+        assertIncreasing(nodes);
+        assertEquals(100, nodes.get(1).position);
+        assertEquals(200, nodes.get(2).position);
+        assertEquals(300, nodes.get(3).position);
+    }
+
+    @Test
+    public void testNewNodeGoesBetweenNeighbours() {
+        ArrayList<Node> nodes = nodes(100, OrderedListPositions.NONE, 200);
+        OrderedListPositions.assign(nodes);
+        assertEquals(100, nodes.get(0).position);
+        assertEquals(150, nodes.get(1).position);
+        assertEquals(200, nodes.get(2).position);
+    }
+
+    @Test
+    public void testNewNodesAtEnds() {
+        long none = OrderedListPositions.NONE;
+        ArrayList<Node> nodes = nodes(none, 100, none, none);
+        OrderedListPositions.assign(nodes);
+        assertIncreasing(nodes);
+        assertEquals(100, nodes.get(1).position);
+    }
+
+    @Test
+    public void testRenumbersWhenGapRunsOut() {
+        ArrayList<Node> nodes = nodes(1, OrderedListPositions.NONE, 2);
+        OrderedListPositions.assign(nodes);
+        assertIncreasing(nodes);
+        assertEquals(OrderedListPositions.STEP, nodes.get(0).position);
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.subtasks;
+
+import com.todoroo.astrid.subtasks.AstridOrderedListUpdater.Node;
+
+import org.json.JSONArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class TreeSerializationTest {
+
+    private static final String TREE = "[\"-1\",[\"a\",\"b\",[\"c\",\"d\"]],\"e\",\"f\"]";
+
+    @Test
+    public void testRoundTrip() {
+        Node root = AstridOrderedListUpdater.buildTreeModel(TREE, null);
+        assertEquals(3, root.children.size());
+        Node a = root.children.get(0);
+        assertEquals("a", a.uuid);
+        assertEquals(0, a.indent);
+        assertEquals("d", a.children.get(1).children.get(0).uuid);
+        assertEquals(2, a.children.get(1).children.get(0).indent);
+        assertEquals(TREE, AstridOrderedListUpdater.serializeTree(root));
+    }
+
+    @Test
+    public void testMatchesJSONArray() throws Exception {
+        Node root = AstridOrderedListUpdater.buildTreeModel(TREE, null);
+        root.children.get(1).uuid = "quote\"slash/";
+        String serialized = AstridOrderedListUpdater.serializeTree(root);
+        assertEquals(new JSONArray(serialized).toString(), serialized);
+        assertEquals("quote\"slash/", AstridOrderedListUpdater.buildTreeModel(serialized, null).children.get(1).uuid);
+    }
+
+    @Test
+    public void testReadsLegacyNumericIds() {
+        Node root = AstridOrderedListUpdater.buildTreeModel("[-1, [1, 2], 3]", null);
+        assertEquals("1", root.children.get(0).uuid);
+        assertEquals("2", root.children.get(0).children.get(0).uuid);
+        assertEquals("3", root.children.get(1).uuid);
+    }
+
+    @Test
+    public void testEmptyTree() {
+        assertEquals(0, AstridOrderedListUpdater.buildTreeModel("[]", null).children.size());
+    }
+}
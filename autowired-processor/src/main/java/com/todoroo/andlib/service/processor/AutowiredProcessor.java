@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2012 Todoroo Inc
+ *
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.service.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a <code>FieldInjector</code> for every class with
+ * <code>@Autowired</code> fields, so that they can be injected without
+ * scanning fields with reflection.
+ * <p>
+ * Generated injectors look up each {@link java.lang.reflect.Field} once and
+ * resolve injections through the same <code>getInjection(Field)</code> chain
+ * as reflective injection, but set the fields directly. They live in the
+ * class's package, so classes with private or final autowired fields, or
+ * that can't be named from their package, get no injector and keep being
+ * injected reflectively.
+ */
+@SupportedAnnotationTypes(AutowiredProcessor.AUTOWIRED)
+public class AutowiredProcessor extends AbstractProcessor {
+
+    static final String AUTOWIRED = "com.todoroo.andlib.service.Autowired"; //$NON-NLS-1$
+
+    private static final String FIELD_INJECTOR = "com.todoroo.andlib.service.FieldInjector"; //$NON-NLS-1$
+
+    private static final String SERVICE = "com.todoroo.andlib.service.DependencyInjectionService"; //$NON-NLS-1$
+
+    private static final String SUFFIX = "$$Injector"; //$NON-NLS-1$
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement autowired = processingEnv.getElementUtils().getTypeElement(AUTOWIRED);
+        if(autowired == null) {
+            return false;
+        }
+
+        LinkedHashMap<TypeElement, List<VariableElement>> fieldsByClass =
+            new LinkedHashMap<TypeElement, List<VariableElement>>();
+        for(Element element : roundEnv.getElementsAnnotatedWith(autowired)) {
+            if(element.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            VariableElement field = (VariableElement) element;
+            if(field.asType().getKind().isPrimitive()) {
+                error(field, "Tried to dependency-inject primitive field '%s'"); //$NON-NLS-1$
+                continue;
+            }
+            TypeElement type = (TypeElement) field.getEnclosingElement();
+            List<VariableElement> fields = fieldsByClass.get(type);
+            if(fields == null) {
+                fields = new ArrayList<VariableElement>();
+                fieldsByClass.put(type, fields);
+            }
+            fields.add(field);
+        }
+
+        for(Entry<TypeElement, List<VariableElement>> entry : fieldsByClass.entrySet()) {
+            TypeElement type = entry.getKey();
+            if(canGenerate(type, entry.getValue())) {
+                write(type, entry.getValue());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether generated code in the class's package can set all of
+     *         its autowired fields
+     */
+    private boolean canGenerate(TypeElement type, List<VariableElement> fields) {
+        for(Element enclosing = type; enclosing instanceof TypeElement;
+                enclosing = enclosing.getEnclosingElement()) {
+            NestingKind nesting = ((TypeElement) enclosing).getNestingKind();
+            if(nesting == NestingKind.ANONYMOUS || nesting == NestingKind.LOCAL ||
+                    enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        for(VariableElement field : fields) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if(modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                note(field, "Autowired field '%s' is private or final, injecting its class reflectively"); //$NON-NLS-1$
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(TypeElement type, List<VariableElement> fields) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String injectorName = binaryName.substring(packageName.length() + 1) + SUFFIX;
+        String typeName = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by ").append(getClass().getSimpleName()).append(". Do not edit\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        source.append("package ").append(packageName).append(";\n\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        source.append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n"); //$NON-NLS-1$
+        source.append("public final class ").append(injectorName).append(" implements ") //$NON-NLS-1$ //$NON-NLS-2$
+            .append(FIELD_INJECTOR).append(" {\n\n"); //$NON-NLS-1$
+        for(int i = 0; i < fields.size(); i++) {
+            source.append("    private static final java.lang.reflect.Field FIELD_").append(i) //$NON-NLS-1$
+                .append(" = field(\"").append(fields.get(i).getSimpleName()).append("\");\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        source.append("\n    @Override\n"); //$NON-NLS-1$
+        source.append("    public void inject(Object target, ").append(SERVICE).append(" service) {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        source.append("        ").append(typeName).append(" object = (").append(typeName).append(") target;\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        for(int i = 0; i < fields.size(); i++) {
+            VariableElement field = fields.get(i);
+            String name = field.getSimpleName().toString();
+            String fieldType = processingEnv.getTypeUtils().erasure(field.asType()).toString();
+            source.append("        if(object.").append(name).append(" == null) {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            source.append("            object.").append(name).append(" = (").append(fieldType) //$NON-NLS-1$ //$NON-NLS-2$
+                .append(") service.getInjection(object, FIELD_").append(i).append(");\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            source.append("        }\n"); //$NON-NLS-1$
+        }
+        source.append("    }\n\n"); //$NON-NLS-1$
+        source.append("    private static java.lang.reflect.Field field(String name) {\n"); //$NON-NLS-1$
+        source.append("        try {\n"); //$NON-NLS-1$
+        source.append("            return ").append(typeName).append(".class.getDeclaredField(name);\n"); //$NON-NLS-1$ //$NON-NLS-2$
+        source.append("        } catch (NoSuchFieldException e) {\n"); //$NON-NLS-1$
+        source.append("            throw new IllegalStateException(e);\n"); //$NON-NLS-1$
+        source.append("        }\n"); //$NON-NLS-1$
+        source.append("    }\n\n}\n"); //$NON-NLS-1$
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                    packageName + "." + injectorName, type); //$NON-NLS-1$
+            Writer writer = file.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Unable to write injector for " + binaryName + ": " + e, type); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private void error(VariableElement field, String format) {
+        processingEnv.getMessager().printMessage(Kind.ERROR,
+                String.format(format, field.getSimpleName()), field);
+    }
+
+    private void note(VariableElement field, String format) {
+        processingEnv.getMessager().printMessage(Kind.NOTE,
+                String.format(format, field.getSimpleName()), field);
+    }
+
+}